@@ -1,32 +1,63 @@
 package ggc.app;
 
+import java.io.IOException;
+
 import pt.tecnico.uilib.Dialog;
 import pt.tecnico.uilib.menus.Menu;
+import ggc.RenderCache;
 import ggc.WarehouseManager;
 import ggc.exceptions.ImportFileException;
 
 /** Main driver for the management application. */
 public class App {
 
+  /**
+   * Creates a manager prepared as the properties ask: "mergeBatches" merges
+   * batches, "renderCache=false" disables the render cache, and "import" names
+   * a file to import. Shared by the drivers which serve a manager.
+   *
+   * @return Warehouse manager.
+   */
+  public static WarehouseManager createManager() {
+    WarehouseManager manager = new WarehouseManager();
+
+    if (Boolean.getBoolean("mergeBatches"))
+      manager.setBatchMerging(true);
+
+    if ("false".equals(System.getProperty("renderCache")))
+      RenderCache.setEnabled(false);
+
+    String datafile = System.getProperty("import");
+    if (datafile != null) {
+      try {
+        manager.importFile(datafile);
+      } catch (ImportFileException e) {
+        // no behavior described: just present the problem
+        e.printStackTrace();
+      }
+    }
+    return manager;
+  }
+
   /**
    * @param args command line arguments.
    */
   public static void main(String[] args) {
     try (var ui = Dialog.UI) {
-      WarehouseManager manager = new WarehouseManager();
+      WarehouseManager manager = createManager();
+
+      Menu menu = new ggc.app.main.Menu(manager);
+      menu.open();
 
-      String datafile = System.getProperty("import");
-      if (datafile != null) {
+      String statistics = System.getProperty("statistics");
+      if (statistics != null) {
         try {
-          manager.importFile(datafile);
-        } catch (ImportFileException e) {
+          manager.saveStatistics(statistics);
+        } catch (IOException e) {
           // no behavior described: just present the problem
           e.printStackTrace();
         }
       }
-
-      Menu menu = new ggc.app.main.Menu(manager);
-      menu.open();
     }
   }
 
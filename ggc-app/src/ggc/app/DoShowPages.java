@@ -0,0 +1,46 @@
+package ggc.app;
+
+import pt.tecnico.uilib.forms.Form;
+import pt.tecnico.uilib.menus.Command;
+import pt.tecnico.uilib.menus.CommandException;
+
+import ggc.Page;
+import ggc.WarehouseManager;
+
+/**
+ * Show a listing a page at a time, asking after each page whether to show the
+ * next one. Pages hold as many entries as the "pageSize" property (20 by
+ * default).
+ */
+public abstract class DoShowPages extends Command<WarehouseManager> {
+
+  /** Most entries in a page. */
+  private static final int PAGE_SIZE = Math.max(1, Integer.getInteger("pageSize", 20));
+
+  /**
+   * @param title    menu entry
+   * @param receiver command executor
+   */
+  protected DoShowPages(String title, WarehouseManager receiver) {
+    super(title, receiver);
+  }
+
+  /**
+   * @param cursor cursor of the page, or null for the first one
+   * @param size   most entries in the page
+   * @return the page
+   * @throws CommandException
+   */
+  protected abstract Page<String> page(String cursor, int size) throws CommandException;
+
+  @Override
+  public final void execute() throws CommandException {
+    Page<String> page = page(null, PAGE_SIZE);
+    _display.popup(page.entries());
+    while (page.hasNext() && Form.confirm(Prompt.nextPage())) {
+      page = page(page.next(), PAGE_SIZE);
+      _display.popup(page.entries());
+    }
+  }
+
+}
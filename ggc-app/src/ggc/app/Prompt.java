@@ -0,0 +1,13 @@
+package ggc.app;
+
+/**
+ * Prompts shared by the menus.
+ */
+interface Prompt {
+
+  /** @return string asking whether to show the next page of a listing */
+  static String nextPage() {
+    return "Mostrar a página seguinte? ";
+  }
+
+}
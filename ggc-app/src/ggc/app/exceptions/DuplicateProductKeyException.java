@@ -0,0 +1,18 @@
+package ggc.app.exceptions;
+
+import pt.tecnico.uilib.menus.CommandException;
+
+/** Exception thrown when a product key is duplicated. */
+public class DuplicateProductKeyException extends CommandException {
+
+  /** Serial number for serialization. */
+  private static final long serialVersionUID = 202610191500L;
+
+  /**
+   * @param key the duplicated key
+   */
+  public DuplicateProductKeyException(String key) {
+    super(Message.duplicateProductKey(key));
+  }
+
+}
@@ -0,0 +1,18 @@
+package ggc.app.exceptions;
+
+import pt.tecnico.uilib.menus.CommandException;
+
+/** Exception for requests which can't be understood. */
+public class InvalidRequestException extends CommandException {
+
+  /** Serial number for serialization. */
+  private static final long serialVersionUID = 202610191501L;
+
+  /**
+   * @param request Request to report.
+   */
+  public InvalidRequestException(String request) {
+    super(Message.invalidRequest(request));
+  }
+
+}
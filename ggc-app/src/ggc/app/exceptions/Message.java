@@ -42,6 +42,14 @@ interface Message {
     return "O parceiro '" + key + "' já existe.";
   }
 
+  /**
+   * @param key product key
+   * @return string reporting a duplicate product
+   */
+  static String duplicateProductKey(String key) {
+    return "O produto '" + key + "' já existe.";
+  }
+
   /**
    * @param key
    * @return string with problem description.
@@ -68,6 +76,14 @@ interface Message {
     return "A transacção '" + key + "' não existe.";
   }
 
+  /**
+   * @param key
+   * @return string with problem description.
+   */
+  static String unknownReservationKey(int key) {
+    return "A reserva '" + key + "' não existe.";
+  }
+
   /**
    * @param key
    * @return string with problem description.
@@ -92,6 +108,22 @@ interface Message {
     return "Nível de serviço desconhecido: '" + level + "'.";
   }
 
+  /**
+   * @param request Bad request.
+   * @return string with problem description.
+   */
+  static String invalidRequest(String request) {
+    return "Pedido inválido: '" + request + "'.";
+  }
+
+  /**
+   * @param limit Most bytes in a request.
+   * @return string with problem description.
+   */
+  static String requestTooLong(int limit) {
+    return "Pedido com mais de " + limit + " bytes.";
+  }
+
   /**
    * @param date Bad date..
    * @return string with problem description.
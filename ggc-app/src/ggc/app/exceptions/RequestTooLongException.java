@@ -0,0 +1,18 @@
+package ggc.app.exceptions;
+
+import pt.tecnico.uilib.menus.CommandException;
+
+/** Exception for requests longer than a server takes. */
+public class RequestTooLongException extends CommandException {
+
+  /** Serial number for serialization. */
+  private static final long serialVersionUID = 202610201001L;
+
+  /**
+   * @param limit Most bytes in a request.
+   */
+  public RequestTooLongException(int limit) {
+    super(Message.requestTooLong(limit));
+  }
+
+}
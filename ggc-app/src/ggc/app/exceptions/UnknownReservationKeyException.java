@@ -0,0 +1,18 @@
+package ggc.app.exceptions;
+
+import pt.tecnico.uilib.menus.CommandException;
+
+/** Exception for unknown reservation keys. */
+public class UnknownReservationKeyException extends CommandException {
+
+  /** Serial number for serialization. */
+  private static final long serialVersionUID = 202610191601L;
+
+  /**
+   * @param key Unknown key to report.
+   */
+  public UnknownReservationKeyException(int key) {
+    super(Message.unknownReservationKey(key));
+  }
+
+}
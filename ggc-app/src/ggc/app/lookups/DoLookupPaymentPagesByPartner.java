@@ -0,0 +1,28 @@
+package ggc.app.lookups;
+
+import pt.tecnico.uilib.menus.CommandException;
+
+import ggc.Page;
+import ggc.WarehouseManager;
+import ggc.app.DoShowPages;
+
+/**
+ * Lookup payments by a given partner, a page at a time.
+ */
+public class DoLookupPaymentPagesByPartner extends DoShowPages {
+
+  public DoLookupPaymentPagesByPartner(WarehouseManager receiver) {
+    super(Label.PAID_PAGES_BY_PARTNER, receiver);
+    addStringField("partnerKey", Prompt.partnerKey());
+  }
+
+  @Override
+  protected Page<String> page(String cursor, int size) throws CommandException {
+    try {
+      return _receiver.partnerPaidTransactions(stringField("partnerKey"), cursor, size);
+    } catch (ggc.exceptions.UnknownPartnerKeyException e) {
+      throw new ggc.app.exceptions.UnknownPartnerKeyException(e.getPartnerKey());
+    }
+  }
+
+}
@@ -19,7 +19,7 @@ public class DoLookupPaymentsByPartner extends Command<WarehouseManager> {
   public void execute() throws CommandException {
     String partnerKey = stringField("partnerKey");
     try {
-      _display.popup(_receiver.partnerPaidTransactions(partnerKey));
+      _display.popup(out -> _receiver.partnerPaidTransactions(partnerKey, out));
     } catch (ggc.exceptions.UnknownPartnerKeyException e) {
       throw new ggc.app.exceptions.UnknownPartnerKeyException(e.getPartnerKey());
     }
@@ -0,0 +1,24 @@
+package ggc.app.lookups;
+
+import pt.tecnico.uilib.menus.CommandException;
+
+import ggc.Page;
+import ggc.WarehouseManager;
+import ggc.app.DoShowPages;
+
+/**
+ * Lookup batches cheaper than a given price, a page at a time.
+ */
+public class DoLookupProductBatchPagesUnderGivenPrice extends DoShowPages {
+
+  public DoLookupProductBatchPagesUnderGivenPrice(WarehouseManager receiver) {
+    super(Label.PRODUCT_PAGES_UNDER_PRICE, receiver);
+    addRealField("priceLimit", Prompt.priceLimit());
+  }
+
+  @Override
+  protected Page<String> page(String cursor, int size) throws CommandException {
+    return _receiver.batchesByPrice(realField("priceLimit"), cursor, size);
+  }
+
+}
@@ -18,7 +18,7 @@ public class DoLookupProductBatchesUnderGivenPrice extends Command<WarehouseMana
   @Override
   public void execute() throws CommandException {
     double priceLimit = realField("priceLimit");
-    _display.popup(_receiver.batchesByPrice(priceLimit));
+    _display.popup(out -> _receiver.batchesByPrice(priceLimit, out));
   }
 
 }
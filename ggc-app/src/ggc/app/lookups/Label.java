@@ -23,4 +23,10 @@ interface Label {
   /** List trips from location. */
   String PARTNERS_BY_PRODUCT = "Parceiros que Compram um Produto";
 
-}
\ No newline at end of file
+  /** Lookup batches cheaper than a given price, by pages. */
+  String PRODUCT_PAGES_UNDER_PRICE = "Produtos com Preço Abaixo de Limite, por páginas";
+
+  /** Lookup payments by a given partner, by pages. */
+  String PAID_PAGES_BY_PARTNER = "Facturas pagas por parceiro, por páginas";
+
+}
@@ -11,7 +11,9 @@ public class Menu extends pt.tecnico.uilib.menus.Menu {
   public Menu(WarehouseManager receiver) {
     super(Label.TITLE, //
         new DoLookupProductBatchesUnderGivenPrice(receiver), //
-        new DoLookupPaymentsByPartner(receiver) //
+        new DoLookupPaymentsByPartner(receiver), //
+        new DoLookupProductBatchPagesUnderGivenPrice(receiver), //
+        new DoLookupPaymentPagesByPartner(receiver) //
     );
   }
 
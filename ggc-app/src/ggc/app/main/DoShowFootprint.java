@@ -0,0 +1,21 @@
+package ggc.app.main;
+
+import pt.tecnico.uilib.menus.Command;
+import pt.tecnico.uilib.menus.CommandException;
+
+import ggc.WarehouseManager;
+
+/**
+ * Show the memory retained by each subsystem of the warehouse.
+ */
+class DoShowFootprint extends Command<WarehouseManager> {
+
+  DoShowFootprint(WarehouseManager receiver) {
+    super(Label.SHOW_FOOTPRINT, receiver);
+  }
+
+  @Override
+  public final void execute() throws CommandException {
+    _display.popup(_receiver.footprint());
+  }
+}
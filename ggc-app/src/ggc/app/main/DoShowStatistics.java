@@ -0,0 +1,21 @@
+package ggc.app.main;
+
+import pt.tecnico.uilib.menus.Command;
+import pt.tecnico.uilib.menus.CommandException;
+
+import ggc.WarehouseManager;
+
+/**
+ * Show the statistics of the operations.
+ */
+class DoShowStatistics extends Command<WarehouseManager> {
+
+  DoShowStatistics(WarehouseManager receiver) {
+    super(Label.SHOW_STATISTICS, receiver);
+  }
+
+  @Override
+  public final void execute() throws CommandException {
+    _display.popup(_receiver.statistics());
+  }
+}
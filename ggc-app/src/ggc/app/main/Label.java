@@ -35,4 +35,10 @@ interface Label {
   /** Show balance. */
   String SHOW_BALANCE = "Ver Saldo Global";
 
+  /** Show statistics. */
+  String SHOW_STATISTICS = "Ver Estatísticas";
+
+  /** Show memory footprint. */
+  String SHOW_FOOTPRINT = "Ver Ocupação de Memória";
+
 }
\ No newline at end of file
@@ -16,7 +16,7 @@ class DoShowAllPartners extends Command<WarehouseManager> {
 
   @Override
   public void execute() throws CommandException {
-    _display.popup(_receiver.partners());
+    _display.popup(out -> _receiver.partners(out));
   }
 
 }
@@ -19,7 +19,7 @@ class DoShowPartner extends Command<WarehouseManager> {
   public void execute() throws CommandException {
     String partnerKey = stringField("partnerKey");
     try {
-      _display.popup(_receiver.partner(partnerKey));
+      _display.popup(out -> _receiver.partner(partnerKey, out));
     } catch (ggc.exceptions.UnknownPartnerKeyException e) {
       throw new ggc.app.exceptions.UnknownPartnerKeyException(e.getPartnerKey());
     }
@@ -0,0 +1,28 @@
+package ggc.app.partners;
+
+import pt.tecnico.uilib.menus.CommandException;
+
+import ggc.Page;
+import ggc.WarehouseManager;
+import ggc.app.DoShowPages;
+
+/**
+ * Show the acquisitions from a partner, a page at a time.
+ */
+class DoShowPartnerAcquisitionPages extends DoShowPages {
+
+  DoShowPartnerAcquisitionPages(WarehouseManager receiver) {
+    super(Label.SHOW_PARTNER_ACQUISITION_PAGES, receiver);
+    addStringField("partnerKey", Prompt.partnerKey());
+  }
+
+  @Override
+  protected Page<String> page(String cursor, int size) throws CommandException {
+    try {
+      return _receiver.partnerAcquisitions(stringField("partnerKey"), cursor, size);
+    } catch (ggc.exceptions.UnknownPartnerKeyException e) {
+      throw new ggc.app.exceptions.UnknownPartnerKeyException(e.getPartnerKey());
+    }
+  }
+
+}
@@ -19,7 +19,7 @@ class DoShowPartnerAcquisitions extends Command<WarehouseManager> {
   public void execute() throws CommandException {
     String partnerKey = stringField("partnerKey");
     try {
-      _display.popup(_receiver.partnerAcquisitions(partnerKey));
+      _display.popup(out -> _receiver.partnerAcquisitions(partnerKey, out));
     } catch (ggc.exceptions.UnknownPartnerKeyException e) {
       throw new ggc.app.exceptions.UnknownPartnerKeyException(e.getPartnerKey());
     }
@@ -0,0 +1,23 @@
+package ggc.app.partners;
+
+import pt.tecnico.uilib.menus.CommandException;
+
+import ggc.Page;
+import ggc.WarehouseManager;
+import ggc.app.DoShowPages;
+
+/**
+ * Show all partners, a page at a time.
+ */
+class DoShowPartnerPages extends DoShowPages {
+
+  DoShowPartnerPages(WarehouseManager receiver) {
+    super(Label.SHOW_PARTNER_PAGES, receiver);
+  }
+
+  @Override
+  protected Page<String> page(String cursor, int size) throws CommandException {
+    return _receiver.partners(cursor, size);
+  }
+
+}
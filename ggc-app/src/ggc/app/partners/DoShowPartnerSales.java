@@ -19,7 +19,7 @@ class DoShowPartnerSales extends Command<WarehouseManager> {
   public void execute() throws CommandException {
     String partnerKey = stringField("partnerKey");
     try {
-      _display.popup(_receiver.partnerSalesAndBreakdowns(partnerKey));
+      _display.popup(out -> _receiver.partnerSalesAndBreakdowns(partnerKey, out));
     } catch (ggc.exceptions.UnknownPartnerKeyException e) {
       throw new ggc.app.exceptions.UnknownPartnerKeyException(e.getPartnerKey());
     }
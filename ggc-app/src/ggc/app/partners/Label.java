@@ -24,4 +24,13 @@ interface Label {
   /** Show all sale/breakdown transactions with partner. */
   String SHOW_PARTNER_SALES = "Mostrar vendas (e desagregações) com parceiro";
 
+  /** Show all partners, by pages. */
+  String SHOW_PARTNER_PAGES = "Mostrar parceiros por páginas";
+
+  /** Show the acquisitions from a partner, by pages. */
+  String SHOW_PARTNER_ACQUISITION_PAGES = "Mostrar compras com parceiro, por páginas";
+
+  /** Show the sales and breakdowns with a partner, by pages. */
+  String SHOW_PARTNER_SALE_PAGES = "Mostrar vendas (e desagregações) com parceiro, por páginas";
+
 }
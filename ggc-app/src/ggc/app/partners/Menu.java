@@ -15,7 +15,10 @@ public class Menu extends pt.tecnico.uilib.menus.Menu {
         new DoRegisterPartner(receiver), //
         new DoToggleProductNotifications(receiver), //
         new DoShowPartnerAcquisitions(receiver), //
-        new DoShowPartnerSales(receiver) //
+        new DoShowPartnerSales(receiver), //
+        new DoShowPartnerPages(receiver), //
+        new DoShowPartnerAcquisitionPages(receiver), //
+        new DoShowPartnerSalePages(receiver) //
     );
   }
 
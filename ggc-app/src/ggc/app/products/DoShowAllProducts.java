@@ -16,7 +16,7 @@ class DoShowAllProducts extends Command<WarehouseManager> {
 
   @Override
   public final void execute() throws CommandException {
-    _display.popup(_receiver.products());
+    _display.popup(out -> _receiver.products(out));
   }
 
 }
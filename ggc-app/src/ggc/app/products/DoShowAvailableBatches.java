@@ -16,7 +16,7 @@ class DoShowAvailableBatches extends Command<WarehouseManager> {
 
   @Override
   public final void execute() throws CommandException {
-    _display.popup(_receiver.batches());
+    _display.popup(out -> _receiver.batches(out));
   }
 
 }
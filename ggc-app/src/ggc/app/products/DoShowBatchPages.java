@@ -0,0 +1,23 @@
+package ggc.app.products;
+
+import pt.tecnico.uilib.menus.CommandException;
+
+import ggc.Page;
+import ggc.WarehouseManager;
+import ggc.app.DoShowPages;
+
+/**
+ * Show all batches, a page at a time.
+ */
+class DoShowBatchPages extends DoShowPages {
+
+  DoShowBatchPages(WarehouseManager receiver) {
+    super(Label.SHOW_BATCH_PAGES, receiver);
+  }
+
+  @Override
+  protected Page<String> page(String cursor, int size) throws CommandException {
+    return _receiver.batches(cursor, size);
+  }
+
+}
@@ -0,0 +1,28 @@
+package ggc.app.products;
+
+import pt.tecnico.uilib.menus.CommandException;
+
+import ggc.Page;
+import ggc.WarehouseManager;
+import ggc.app.DoShowPages;
+
+/**
+ * Show the batches supplied by a partner, a page at a time.
+ */
+class DoShowBatchPagesByPartner extends DoShowPages {
+
+  DoShowBatchPagesByPartner(WarehouseManager receiver) {
+    super(Label.SHOW_BATCH_PAGES_BY_PARTNER, receiver);
+    addStringField("partnerKey", Prompt.partnerKey());
+  }
+
+  @Override
+  protected Page<String> page(String cursor, int size) throws CommandException {
+    try {
+      return _receiver.batchesByPartner(stringField("partnerKey"), cursor, size);
+    } catch (ggc.exceptions.UnknownPartnerKeyException e) {
+      throw new ggc.app.exceptions.UnknownPartnerKeyException(e.getPartnerKey());
+    }
+  }
+
+}
@@ -0,0 +1,28 @@
+package ggc.app.products;
+
+import pt.tecnico.uilib.menus.CommandException;
+
+import ggc.Page;
+import ggc.WarehouseManager;
+import ggc.app.DoShowPages;
+
+/**
+ * Show the batches of a product, a page at a time.
+ */
+class DoShowBatchPagesByProduct extends DoShowPages {
+
+  DoShowBatchPagesByProduct(WarehouseManager receiver) {
+    super(Label.SHOW_BATCH_PAGES_BY_PRODUCT, receiver);
+    addStringField("productKey", Prompt.productKey());
+  }
+
+  @Override
+  protected Page<String> page(String cursor, int size) throws CommandException {
+    try {
+      return _receiver.batchesByProduct(stringField("productKey"), cursor, size);
+    } catch (ggc.exceptions.UnknownProductKeyException e) {
+      throw new ggc.app.exceptions.UnknownProductKeyException(e.getProductKey());
+    }
+  }
+
+}
@@ -19,7 +19,7 @@ class DoShowBatchesByPartner extends Command<WarehouseManager> {
   public final void execute() throws CommandException {
     String partnerKey = stringField("partnerKey");
     try {
-      _display.popup(_receiver.batchesByPartner(partnerKey));
+      _display.popup(out -> _receiver.batchesByPartner(partnerKey, out));
     } catch (ggc.exceptions.UnknownPartnerKeyException e) {
       throw new ggc.app.exceptions.UnknownPartnerKeyException(e.getPartnerKey());
     }
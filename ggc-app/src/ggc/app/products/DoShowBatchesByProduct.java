@@ -19,7 +19,7 @@ class DoShowBatchesByProduct extends Command<WarehouseManager> {
   public final void execute() throws CommandException {
     String productKey = stringField("productKey");
     try {
-      _display.popup(_receiver.batchesByProduct(productKey));
+      _display.popup(out -> _receiver.batchesByProduct(productKey, out));
     } catch (ggc.exceptions.UnknownProductKeyException e) {
       throw new ggc.app.exceptions.UnknownProductKeyException(e.getProductKey());
     }
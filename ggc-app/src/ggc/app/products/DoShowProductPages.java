@@ -0,0 +1,23 @@
+package ggc.app.products;
+
+import pt.tecnico.uilib.menus.CommandException;
+
+import ggc.Page;
+import ggc.WarehouseManager;
+import ggc.app.DoShowPages;
+
+/**
+ * Show all products, a page at a time.
+ */
+class DoShowProductPages extends DoShowPages {
+
+  DoShowProductPages(WarehouseManager receiver) {
+    super(Label.SHOW_PRODUCT_PAGES, receiver);
+  }
+
+  @Override
+  protected Page<String> page(String cursor, int size) throws CommandException {
+    return _receiver.products(cursor, size);
+  }
+
+}
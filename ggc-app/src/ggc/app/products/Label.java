@@ -20,4 +20,16 @@ interface Label {
   /** Show batches supplied by partner. */
   String SHOW_BATCHES_BY_PRODUCT = "Visualizar lotes de um dado produto";
 
-}
\ No newline at end of file
+  /** Show all products, by pages. */
+  String SHOW_PRODUCT_PAGES = "Visualizar produtos por páginas";
+
+  /** Show all batches, by pages. */
+  String SHOW_BATCH_PAGES = "Visualizar lotes por páginas";
+
+  /** Show the batches supplied by a partner, by pages. */
+  String SHOW_BATCH_PAGES_BY_PARTNER = "Visualizar lotes fornecidos por parceiro, por páginas";
+
+  /** Show the batches of a product, by pages. */
+  String SHOW_BATCH_PAGES_BY_PRODUCT = "Visualizar lotes de um dado produto, por páginas";
+
+}
@@ -13,7 +13,11 @@ public class Menu extends pt.tecnico.uilib.menus.Menu {
         new DoShowAllProducts(receiver), //
         new DoShowAvailableBatches(receiver), //
         new DoShowBatchesByPartner(receiver), //
-        new DoShowBatchesByProduct(receiver) //
+        new DoShowBatchesByProduct(receiver), //
+        new DoShowProductPages(receiver), //
+        new DoShowBatchPages(receiver), //
+        new DoShowBatchPagesByPartner(receiver), //
+        new DoShowBatchPagesByProduct(receiver) //
     );
   }
 
@@ -0,0 +1,75 @@
+package ggc.app.replay;
+
+import java.util.Arrays;
+
+/**
+ * Latencies of the commands of one type, in a replay.
+ */
+class Latencies {
+  /** Latencies (ns), in the order they were added. */
+  private long[] _samples;
+
+  /** Number of latencies. */
+  private int _count;
+
+  /** Number of commands which failed. */
+  private int _failed;
+
+  /** Whether the samples are sorted. */
+  private boolean _sorted;
+
+  Latencies() {
+    this._samples = new long[16];
+  }
+
+  /**
+   * @param nanos Latency of a command.
+   * @param failed Whether it failed.
+   */
+  void add(long nanos, boolean failed) {
+    if (this._count == this._samples.length)
+      this._samples = Arrays.copyOf(this._samples, this._count * 2);
+    this._samples[this._count++] = nanos;
+    if (failed)
+      this._failed++;
+    this._sorted = false;
+  }
+
+  /**
+   * @return Number of commands.
+   */
+  int count() {
+    return this._count;
+  }
+
+  /**
+   * @return Number of commands which failed.
+   */
+  int failed() {
+    return this._failed;
+  }
+
+  /**
+   * @return Sum of the latencies (ns).
+   */
+  long total() {
+    long total = 0;
+    for (int i = 0; i < this._count; i++)
+      total += this._samples[i];
+    return total;
+  }
+
+  /**
+   * @param fraction Fraction of the commands, between 0 and 1.
+   * @return Least latency (ns) greater or equal to that of the fraction of the
+   *         commands.
+   */
+  long percentile(double fraction) {
+    if (!this._sorted) {
+      Arrays.sort(this._samples, 0, this._count);
+      this._sorted = true;
+    }
+    int rank = (int) Math.ceil(fraction * this._count);
+    return this._samples[Math.max(0, Math.min(rank, this._count) - 1)];
+  }
+}
@@ -0,0 +1,239 @@
+package ggc.app.replay;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import pt.tecnico.uilib.Dialog;
+import pt.tecnico.uilib.menus.Command;
+import pt.tecnico.uilib.text.ReplayInteraction;
+
+import ggc.WarehouseManager;
+import ggc.app.App;
+
+/**
+ * Replays a session of the application against a new warehouse, without
+ * showing menus, and reports the throughput, the latencies of each type of
+ * command and how the output differs from the session's. Sessions are recorded
+ * by running the application with the "log" property, and also "logTimes" to
+ * be able to replay them at their pace, and "out" to compare the output:
+ *
+ * <pre>
+ * java -Dlog=session.log -DlogTimes=true -Dout=session.out ggc.app.App
+ * java ggc.app.replay.Replay [options] session.log
+ * </pre>
+ *
+ * Like the application, the "import", "mergeBatches" and "renderCache"
+ * properties prepare the warehouse. Options:
+ *
+ * <pre>
+ * -expected file  compare the output with the file (the session's output)
+ * -out file       write the output to the file
+ * -paced [speed]  give input at the session's pace, or speed times faster
+ * -repeat n       replay n times, each on a new warehouse, reporting the last
+ * </pre>
+ *
+ * Exits with 1 if the output differs from the expected one.
+ */
+public class Replay {
+  /** Most differences shown. */
+  private static final int SHOWN_DIFFERENCES = 5;
+
+  /** Most lines looked ahead for where outputs which differ agree again. */
+  private static final int RESYNC_WINDOW = 200;
+
+  /** The session's log. */
+  private final List<String> _log;
+
+  /** Latencies of each type of command, in the order they first ran. */
+  private final Map<String, Latencies> _latencies;
+
+  /** Duration of the last replay (ns), without waiting for input. */
+  private long _elapsed;
+
+  /** Time the last replay spent waiting for input (ns). */
+  private long _waited;
+
+  /**
+   * @param log The session's log.
+   */
+  public Replay(List<String> log) {
+    this._log = log;
+    this._latencies = new LinkedHashMap<String, Latencies>();
+  }
+
+  /**
+   * Replays the session on a new warehouse.
+   *
+   * @param speed Pace relative to the session's (0: as fast as possible).
+   * @param out Output.
+   * @param transcript Whether menus and prompts are written to the output.
+   */
+  public void run(double speed, PrintStream out, boolean transcript) {
+    this._latencies.clear();
+    ReplayInteraction interaction = new ReplayInteraction(this._log, speed, out, transcript, this::record);
+    Dialog previous = Dialog.UI;
+    Dialog.UI = new Dialog(interaction);
+    try {
+      // Commands take the dialog when they are made
+      WarehouseManager manager = App.createManager();
+      pt.tecnico.uilib.menus.Menu menu = new ggc.app.main.Menu(manager);
+
+      long start = System.nanoTime();
+      menu.open();
+      this._waited = interaction.waited();
+      this._elapsed = System.nanoTime() - start - this._waited;
+    } finally {
+      Dialog.UI.close();
+      Dialog.UI = previous;
+    }
+  }
+
+  /**
+   * @param command Command performed.
+   * @param nanos How long it took.
+   * @param failed Whether it failed.
+   */
+  private void record(Command<?> command, long nanos, boolean failed) {
+    this._latencies.computeIfAbsent(command.getClass().getSimpleName(), name -> new Latencies()).add(nanos, failed);
+  }
+
+  /**
+   * Writes the throughput and the latencies of each type of command of the
+   * last replay.
+   *
+   * @param out Where to write.
+   */
+  public void report(PrintStream out) {
+    int count = 0, failed = 0;
+    for (Latencies latencies : this._latencies.values()) {
+      count += latencies.count();
+      failed += latencies.failed();
+    }
+
+    out.printf("%d commands (%d failed) in %.3f ms, %.1f commands/s", count, failed, this._elapsed / 1e6,
+        count / (this._elapsed / 1e9));
+    if (this._waited > 0)
+      out.printf(", %.3f ms waiting for input", this._waited / 1e6);
+    out.println();
+
+    out.printf("%-40s %8s %8s %10s %10s %10s %10s %10s%n", "command", "count", "failed", "mean(us)", "p50(us)",
+        "p90(us)", "p99(us)", "max(us)");
+    for (Map.Entry<String, Latencies> entry : this._latencies.entrySet()) {
+      Latencies latencies = entry.getValue();
+      out.printf("%-40s %8d %8d %10.1f %10.1f %10.1f %10.1f %10.1f%n", entry.getKey(), latencies.count(),
+          latencies.failed(), latencies.total() / 1e3 / latencies.count(), latencies.percentile(0.5) / 1e3,
+          latencies.percentile(0.9) / 1e3, latencies.percentile(0.99) / 1e3, latencies.percentile(1) / 1e3);
+    }
+  }
+
+  /**
+   * Writes how an output differs from the expected one. Where they differ, the
+   * nearest lines where they agree again are looked for, so that a missing or
+   * extra line is one difference, not every line after it.
+   *
+   * @param expected Expected lines.
+   * @param actual Actual lines.
+   * @param out Where to write.
+   * @return Whether they differ.
+   */
+  static boolean compare(List<String> expected, List<String> actual, PrintStream out) {
+    int i = 0, j = 0, differences = 0, hunks = 0;
+    while (i < expected.size() || j < actual.size()) {
+      if (i < expected.size() && j < actual.size() && expected.get(i).equals(actual.get(j))) {
+        i++;
+        j++;
+        continue;
+      }
+
+      // Skip the fewest lines, on either side, after which both agree
+      int skipExpected = expected.size() - i, skipActual = actual.size() - j;
+      search: for (int skipped = 1; skipped <= 2 * RESYNC_WINDOW; skipped++)
+        for (int a = Math.max(0, skipped - RESYNC_WINDOW); a <= Math.min(skipped, RESYNC_WINDOW); a++) {
+          int b = skipped - a;
+          if (i + a < expected.size() && j + b < actual.size() && expected.get(i + a).equals(actual.get(j + b))) {
+            skipExpected = a;
+            skipActual = b;
+            break search;
+          }
+        }
+
+      if (hunks++ < SHOWN_DIFFERENCES) {
+        out.println("line " + (i + 1) + ":");
+        for (int a = 0; a < skipExpected; a++)
+          out.println("- " + expected.get(i + a));
+        for (int b = 0; b < skipActual; b++)
+          out.println("+ " + actual.get(j + b));
+      }
+      differences += Math.max(skipExpected, skipActual);
+      i += skipExpected;
+      j += skipActual;
+    }
+
+    if (differences == 0)
+      out.println("output: same as expected");
+    else
+      out.println("output: " + differences + " lines differ, in " + hunks + " places");
+    return differences > 0;
+  }
+
+  /**
+   * @param args Options and the session's log, as described above.
+   * @throws IOException
+   */
+  public static void main(String[] args) throws IOException {
+    Path log = null, expected = null, output = null;
+    double speed = 0;
+    int repeat = 1;
+
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "-expected" -> expected = Path.of(args[++i]);
+        case "-out" -> output = Path.of(args[++i]);
+        case "-paced" -> {
+          speed = 1;
+          if (i + 1 < args.length && args[i + 1].matches("[0-9.]+"))
+            speed = Double.parseDouble(args[++i]);
+        }
+        case "-repeat" -> repeat = Integer.parseInt(args[++i]);
+        default -> log = Path.of(args[i]);
+      }
+    }
+    if (log == null) {
+      System.err.println("usage: Replay [-expected file] [-out file] [-paced [speed]] [-repeat n] log");
+      System.exit(2);
+    }
+
+    Charset charset = Charset.defaultCharset();
+    List<String> lines = Files.readAllLines(log, charset);
+    if (speed > 0 && !ReplayInteraction.isTimed(lines))
+      System.err.println("the log has no times (record with -DlogTimes=true): replaying as fast as possible");
+
+    Replay replay = new Replay(lines);
+    boolean transcript = expected != null || output != null;
+    ByteArrayOutputStream captured = new ByteArrayOutputStream();
+    for (int i = 0; i < repeat; i++) {
+      // Only the last replay's output is kept
+      captured.reset();
+      OutputStream sink = transcript ? captured : OutputStream.nullOutputStream();
+      replay.run(speed, new PrintStream(sink, false, charset), transcript);
+    }
+    replay.report(System.out);
+
+    if (output != null)
+      try (FileOutputStream file = new FileOutputStream(output.toFile())) {
+        captured.writeTo(file);
+      }
+    if (expected != null
+        && compare(Files.readAllLines(expected, charset), captured.toString(charset).lines().toList(), System.out))
+      System.exit(1);
+  }
+}
@@ -0,0 +1,749 @@
+package ggc.app.server;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import pt.tecnico.uilib.menus.CommandException;
+
+import ggc.app.exceptions.FileOpenFailedException;
+import ggc.app.exceptions.InvalidRequestException;
+import ggc.app.exceptions.UnavailableProductException;
+import ggc.app.exceptions.UnknownProductKeyException;
+import ggc.app.exceptions.UnknownTransactionKeyException;
+
+/**
+ * Serves a warehouse split among several nodes, each of them a server with its
+ * own warehouse, in its own process. Each node keeps the products whose keys
+ * fall in its range; partners are registered in every node.
+ *
+ * Operations on a product go to the node which keeps it. A product made out of
+ * components kept by other nodes has stand-ins for them in its node, which are
+ * never stocked. Selling it takes two phases: the units needed are first held
+ * in every node involved, going down the recipes as the units available run
+ * out, and only once all of them are held are they taken, components first,
+ * and the sale registered. If any of them can't be held, every hold is
+ * released. If taking them or registering the sale fails, the units already
+ * taken are put back, with the partners and prices they had; a node which
+ * can't put them back is named in the error. Breakdowns of such products aren't
+ * supported.
+ *
+ * Transactions are registered by the nodes, so transaction n of node i out of
+ * N is shown as transaction n * N + i. Partners are shown with the sums of
+ * their values in every node, and the highest of their ranks, since each node
+ * only knows the payments it received.
+ *
+ * The coordinator keeps no state of its own: it learns the products from the
+ * nodes when it starts.
+ */
+public class Coordinator implements Server.Handler, AutoCloseable {
+  /**
+   * A product known to the coordinator.
+   */
+  private static class Product {
+    /** Product key. */
+    private final String _key;
+
+    /** Node which keeps the product. */
+    private final int _node;
+
+    /** Keys of the components, or null for a simple product. */
+    private final String[] _components;
+
+    /** Amount of each component. */
+    private final int[] _amounts;
+
+    Product(String key, int node, String[] components, int[] amounts) {
+      this._key = key;
+      this._node = node;
+      this._components = components;
+      this._amounts = amounts;
+    }
+  }
+
+  /**
+   * Units of a product needed by a sale which spans several nodes.
+   */
+  private static class Part {
+    /** Product. */
+    private final Product _product;
+
+    /** Number of units. */
+    private final int _amount;
+
+    /** Number of units to make out of components. */
+    private final int _fabricated;
+
+    /** Components of the units to make. */
+    private final List<Part> _components;
+
+    Part(Product product, int amount, int fabricated) {
+      this._product = product;
+      this._amount = amount;
+      this._fabricated = fabricated;
+      this._components = new ArrayList<Part>();
+    }
+  }
+
+  /** Order of ranks, from lowest to highest. */
+  private static final List<String> RANKS = List.of("NORMAL", "SELECTION", "ELITE");
+
+  /** Nodes. */
+  private final NodeClient[] _nodes;
+
+  /** First key of the range of each node but the first, in order. */
+  private final String[] _bounds;
+
+  /** Orders keys the way the warehouses list them. */
+  private final Collator _collator;
+
+  /** Known products, by their case-folded key. */
+  private final Map<String, Product> _products;
+
+  /** Prefix of the names of holders. */
+  private final String _holderPrefix;
+
+  /** Number of holders named. */
+  private final AtomicLong _holders;
+
+  /**
+   * Learns the products kept by the nodes.
+   *
+   * @param nodes Addresses of the nodes.
+   * @param bounds First key of the range of each node but the first, in order.
+   * @throws CommandException if a node can't be reached.
+   */
+  public Coordinator(SocketAddress[] nodes, String[] bounds) throws CommandException {
+    if (bounds.length != nodes.length - 1)
+      throw new IllegalArgumentException("Expected " + (nodes.length - 1) + " range bounds");
+
+    this._nodes = new NodeClient[nodes.length];
+    for (int i = 0; i < nodes.length; i++)
+      this._nodes[i] = new NodeClient(nodes[i]);
+    this._bounds = bounds.clone();
+    this._collator = Collator.getInstance(Locale.getDefault());
+    this._collator.setStrength(Collator.SECONDARY);
+    this._products = new ConcurrentHashMap<String, Product>();
+    this._holderPrefix = "c" + ProcessHandle.current().pid() + "-";
+    this._holders = new AtomicLong(0);
+    this.learnProducts();
+  }
+
+  /**
+   * Learns the products kept by each node, forgetting the ones known before.
+   *
+   * @throws CommandException if a node can't be reached.
+   */
+  private void learnProducts() throws CommandException {
+    this._products.clear();
+    for (int node = 0; node < this._nodes.length; node++) {
+      for (String line : this.call(node, "products")) {
+        String[] fields = line.split("\\|");
+        if (this.owner(fields[0]) == node)
+          this.learn(fields[0], fields.length > 3 ? fields[3] : null);
+      }
+    }
+  }
+
+  /**
+   * Learns a product.
+   *
+   * @param key Product key.
+   * @param recipe Recipe, as in "A:2#B:1", or null for a simple product.
+   */
+  private void learn(String key, String recipe) {
+    String[] components = null;
+    int[] amounts = null;
+    if (recipe != null) {
+      String[] fields = recipe.split("#");
+      components = new String[fields.length];
+      amounts = new int[fields.length];
+      for (int i = 0; i < fields.length; i++) {
+        String[] component = fields[i].split(":");
+        components[i] = component[0];
+        amounts[i] = Integer.parseInt(component[1]);
+      }
+    }
+    this._products.putIfAbsent(fold(key), new Product(key, this.owner(key), components, amounts));
+  }
+
+  private static String fold(String key) {
+    return key.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * @param key Product key.
+   * @return Node which keeps the product.
+   */
+  private int owner(String key) {
+    int node = 0;
+    while (node < this._bounds.length && this._collator.compare(key, this._bounds[node]) >= 0)
+      node++;
+    return node;
+  }
+
+  /**
+   * @param key Product key.
+   * @return The product.
+   * @throws UnknownProductKeyException
+   */
+  private Product product(String key) throws UnknownProductKeyException {
+    Product product = this._products.get(fold(key));
+    if (product == null)
+      throw new UnknownProductKeyException(key);
+    return product;
+  }
+
+  /**
+   * @param product Product.
+   * @return Whether the whole recipe of the product is kept by its node.
+   * @throws UnknownProductKeyException
+   */
+  private boolean isLocal(Product product) throws UnknownProductKeyException {
+    if (product._components == null)
+      return true;
+    for (String key : product._components) {
+      Product component = this.product(key);
+      if (component._node != product._node || !this.isLocal(component))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Sends a request to a node.
+   *
+   * @param node Node.
+   * @param fields Name of the operation followed by its arguments.
+   * @return Lines of output.
+   * @throws CommandException if the node reports an error, or can't be reached.
+   */
+  private List<String> call(int node, Object... fields) throws CommandException {
+    try {
+      return this._nodes[node].call(fields);
+    } catch (IOException e) {
+      throw new RemoteException("node " + node + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Sends a request to every node, in order, stopping at the first error.
+   *
+   * @param fields Name of the operation followed by its arguments.
+   * @return Lines of output of each node.
+   * @throws CommandException if a node reports an error, or can't be reached.
+   */
+  private List<List<String>> broadcast(Object... fields) throws CommandException {
+    List<List<String>> outputs = new ArrayList<List<String>>();
+    for (int node = 0; node < this._nodes.length; node++)
+      outputs.add(this.call(node, fields));
+    return outputs;
+  }
+
+  @Override
+  public boolean ordersChanges() {
+    return true;
+  }
+
+  @Override
+  public String execute(Operation operation, Operation.Arguments arguments) throws CommandException {
+    switch (operation) {
+      case DATE:
+        return String.join("\n", this.call(0, "date"));
+
+      case ADVANCE_DATE:
+        this.broadcast("advanceDate", arguments.integer("days"));
+        return "";
+
+      case BALANCE: {
+        long available = 0;
+        long accounting = 0;
+        for (List<String> output : this.broadcast("balance")) {
+          String[] fields = output.get(0).split("\\|");
+          available += Long.parseLong(fields[0]);
+          accounting += Long.parseLong(fields[1]);
+        }
+        return available + "|" + accounting;
+      }
+
+      case SAVE:
+        for (int node = 0; node < this._nodes.length; node++)
+          this.call(node, "save", arguments.string("file") + "." + node);
+        return "";
+
+      case OPEN:
+        for (int node = 0; node < this._nodes.length; node++)
+          this.call(node, "open", arguments.string("file") + "." + node);
+        this.learnProducts();
+        return "";
+
+      case IMPORT:
+        this.importFile(arguments.string("file"));
+        return "";
+
+      case PRODUCTS: {
+        // Ranges follow the order of listings, so the nodes are listed in turn
+        List<String> lines = new ArrayList<String>();
+        for (int node = 0; node < this._nodes.length; node++)
+          for (String line : this.call(node, "products"))
+            if (this.owner(line.substring(0, line.indexOf('|'))) == node)
+              lines.add(line);
+        return String.join("\n", lines);
+      }
+
+      case REGISTER_PRODUCT: {
+        String key = arguments.string("product");
+        this.call(this.owner(key), "registerProduct", key);
+        this.learn(key, null);
+        return "";
+      }
+
+      case REGISTER_DERIVATE: {
+        String key = arguments.string("product");
+        String recipe = arguments.string("recipe");
+        int node = this.owner(key);
+        for (String component : recipe.split("#"))
+          this.addStandIn(node, this.product(component.split(":")[0]));
+        this.call(node, "registerDerivate", key, arguments.string("aggravation"), recipe);
+        this.learn(key, recipe);
+        return "";
+      }
+
+      case BATCHES:
+        return this.batches(this.broadcast("batches"));
+
+      case BATCHES_BY_PARTNER:
+        return this.batches(this.broadcast("batchesByPartner", arguments.string("partner")));
+
+      case BATCHES_BY_PRODUCT: {
+        Product product = this.product(arguments.string("product"));
+        return String.join("\n", this.call(product._node, "batchesByProduct", product._key));
+      }
+
+      case BATCHES_BY_PRICE:
+        return this.batches(this.broadcast("batchesByPrice", arguments.string("price")));
+
+      case PARTNER: {
+        List<List<String>> outputs = this.broadcast("partner", arguments.string("partner"));
+        List<String> lines = new ArrayList<String>();
+        List<String> partners = new ArrayList<String>();
+        for (List<String> output : outputs)
+          partners.add(output.get(0));
+        lines.add(mergePartner(partners));
+        for (List<String> output : outputs)
+          lines.addAll(output.subList(1, output.size()));
+        return String.join("\n", lines);
+      }
+
+      case PARTNERS: {
+        // Every node lists the same partners, in the same order
+        List<List<String>> outputs = this.broadcast("partners");
+        List<String> lines = new ArrayList<String>();
+        for (int i = 0; i < outputs.get(0).size(); i++) {
+          List<String> partners = new ArrayList<String>();
+          for (List<String> output : outputs)
+            partners.add(output.get(i));
+          lines.add(mergePartner(partners));
+        }
+        return String.join("\n", lines);
+      }
+
+      case REGISTER_PARTNER:
+        this.broadcast("registerPartner", arguments.string("partner"), arguments.string("name"),
+            arguments.string("address"));
+        return "";
+
+      case TOGGLE_NOTIFICATIONS: {
+        Product product = this.product(arguments.string("product"));
+        this.call(product._node, "toggleNotifications", arguments.string("partner"), product._key);
+        return "";
+      }
+
+      case ACQUISITIONS:
+      case SALES:
+      case PAYMENTS:
+      case HISTORY:
+        return this.transactions(this.broadcast(operation.key(), arguments.string("partner")));
+
+      case TRANSACTION: {
+        int id = arguments.integer("transaction");
+        List<String> output = this.callTransaction(id, "transaction");
+        return this.globalize(output.get(0), Math.floorMod(id, this._nodes.length));
+      }
+
+      case BREAKDOWN: {
+        Product product = this.product(arguments.string("product"));
+        if (!this.isLocal(product))
+          throw new InvalidRequestException(operation.key() + "|" + product._key);
+        this.call(product._node, "breakdown", arguments.string("partner"), product._key, arguments.integer("amount"));
+        return "";
+      }
+
+      case SALE:
+        this.sale(arguments.string("partner"), this.product(arguments.string("product")),
+            arguments.integer("deadline"), arguments.integer("amount"));
+        return "";
+
+      case ACQUISITION: {
+        Product product = this.product(arguments.string("product"));
+        this.call(product._node, "acquisition", arguments.string("partner"), product._key,
+            arguments.integer("amount"), arguments.string("price"));
+        return "";
+      }
+
+      case PAYMENT:
+        this.callTransaction(arguments.integer("transaction"), "payment");
+        return "";
+
+      default:
+        // Holds and reservations are the nodes' business
+        throw new InvalidRequestException(operation.key());
+    }
+  }
+
+  /**
+   * Registers a stand-in for a component in the node of a product made out of
+   * it, unless the node keeps the component.
+   *
+   * @param node Node.
+   * @param component Component.
+   * @throws CommandException
+   */
+  private void addStandIn(int node, Product component) throws CommandException {
+    if (component._node == node)
+      return;
+    try {
+      this.call(node, "registerProduct", component._key);
+    } catch (RemoteException e) {
+      // Already registered
+    }
+  }
+
+  /**
+   * Sends a request about a transaction to the node which registered it.
+   *
+   * @param id Transaction id, as shown by the coordinator.
+   * @param operation Operation.
+   * @return Lines of output.
+   * @throws CommandException
+   */
+  private List<String> callTransaction(int id, String operation) throws CommandException {
+    if (id < 0)
+      throw new UnknownTransactionKeyException(id);
+    try {
+      return this.call(id % this._nodes.length, operation, id / this._nodes.length);
+    } catch (RemoteException e) {
+      throw new UnknownTransactionKeyException(id);
+    }
+  }
+
+  /**
+   * Rewrites the id of a transaction, as shown by its node, to the id shown by
+   * the coordinator.
+   *
+   * @param line Transaction, starting with its type and id.
+   * @param node Node which registered it.
+   * @return Rewritten transaction.
+   */
+  private String globalize(String line, int node) {
+    int start = line.indexOf('|') + 1;
+    int end = line.indexOf('|', start);
+    int id = Integer.parseInt(line.substring(start, end));
+    return line.substring(0, start) + (id * this._nodes.length + node) + line.substring(end);
+  }
+
+  /**
+   * Merges lists of transactions, sorted by their id.
+   *
+   * @param outputs Lists of transactions of each node.
+   * @return Merged list.
+   */
+  private String transactions(List<List<String>> outputs) {
+    List<String> lines = new ArrayList<String>();
+    for (int node = 0; node < outputs.size(); node++)
+      for (String line : outputs.get(node))
+        lines.add(this.globalize(line, node));
+    lines.sort(Comparator.comparingInt(line -> Integer.parseInt(line.split("\\|", 3)[1])));
+    return String.join("\n", lines);
+  }
+
+  /**
+   * Merges lists of batches, sorted as a warehouse sorts them: by product,
+   * partner, price and amount.
+   *
+   * @param outputs Lists of batches of each node.
+   * @return Merged list.
+   */
+  private String batches(List<List<String>> outputs) {
+    List<String[]> batches = new ArrayList<String[]>();
+    for (List<String> output : outputs)
+      for (String line : output)
+        batches.add(line.split("\\|"));
+    batches.sort(Comparator.<String[], String>comparing(b -> b[0], this._collator)
+        .thenComparing(b -> b[1])
+        .thenComparingDouble(b -> Double.parseDouble(b[2]))
+        .thenComparingInt(b -> Integer.parseInt(b[3])));
+
+    List<String> lines = new ArrayList<String>();
+    for (String[] batch : batches)
+      lines.add(String.join("|", batch));
+    return String.join("\n", lines);
+  }
+
+  /**
+   * Merges the descriptions of a partner given by each node.
+   *
+   * @param partners Descriptions, as in "key|name|address|rank|points|..."
+   * @return Merged description.
+   */
+  private static String mergePartner(List<String> partners) {
+    String[] merged = partners.get(0).split("\\|");
+    for (String partner : partners.subList(1, partners.size())) {
+      String[] fields = partner.split("\\|");
+      if (RANKS.indexOf(fields[3]) > RANKS.indexOf(merged[3]))
+        merged[3] = fields[3];
+      for (int i = 4; i < merged.length; i++)
+        merged[i] = Long.toString(Long.parseLong(merged[i]) + Long.parseLong(fields[i]));
+    }
+    return String.join("|", merged);
+  }
+
+  /**
+   * Registers a sale. A product whose whole recipe is kept by its node is sold
+   * by the node alone; otherwise, the sale takes two phases.
+   *
+   * @param partnerKey Partner key.
+   * @param product Product.
+   * @param deadline Sale payment deadline.
+   * @param amount Number of units.
+   * @throws CommandException
+   */
+  private void sale(String partnerKey, Product product, int deadline, int amount) throws CommandException {
+    if (this.isLocal(product)) {
+      this.call(product._node, "sale", partnerKey, product._key, deadline, amount);
+      return;
+    }
+
+    String holder = this._holderPrefix + this._holders.incrementAndGet();
+    Set<Integer> nodes = new HashSet<Integer>();
+    try {
+      // Hold every unit needed, then take them
+      Part part = this.hold(holder, partnerKey, product, amount, nodes);
+      try {
+        long value = 0;
+        for (Part component : part._components)
+          value += this.transfer(holder, component);
+        this.call(product._node, "assembledSale", holder, partnerKey, product._key, deadline, amount,
+            part._fabricated, value);
+      } catch (CommandException | RuntimeException e) {
+        List<Integer> kept = this.restock(holder, nodes);
+        if (!kept.isEmpty())
+          throw new RemoteException(e.getMessage() + " (units taken not put back by nodes " + kept + ")");
+        throw e;
+      }
+    } finally {
+      // Whatever wasn't taken is no longer needed
+      for (int node : nodes) {
+        try {
+          this.call(node, "release", holder);
+        } catch (CommandException e) {
+          // The node will have lost its holds
+        }
+      }
+    }
+  }
+
+  /**
+   * Holds the units of a product needed by a sale, and the units of the
+   * components needed to make the ones which aren't available.
+   *
+   * @param holder Holder of the units.
+   * @param partnerKey Partner key.
+   * @param product Product.
+   * @param amount Number of units.
+   * @param nodes Collects the nodes holding units.
+   * @return Units held.
+   * @throws CommandException if there aren't enough units.
+   */
+  private Part hold(String holder, String partnerKey, Product product, int amount, Set<Integer> nodes)
+      throws CommandException {
+    nodes.add(product._node);
+    int held = Integer.parseInt(this.call(product._node, "hold", holder, partnerKey, product._key, amount).get(0));
+    Part part = new Part(product, amount, amount - held);
+    if (part._fabricated == 0)
+      return part;
+    if (product._components == null)
+      throw new UnavailableProductException(product._key, amount, held);
+
+    for (int i = 0; i < product._components.length; i++) {
+      Product component = this.product(product._components[i]);
+      part._components.add(this.hold(holder, partnerKey, component, part._fabricated * product._amounts[i], nodes));
+    }
+    return part;
+  }
+
+  /**
+   * Puts back the units taken for a sale which failed, in every node involved.
+   *
+   * @param holder Holder of the units.
+   * @param nodes Nodes holding units.
+   * @return Nodes which couldn't put their units back.
+   */
+  private List<Integer> restock(String holder, Set<Integer> nodes) {
+    List<Integer> kept = new ArrayList<Integer>();
+    for (int node : nodes) {
+      try {
+        this.call(node, "restock", holder);
+      } catch (CommandException e) {
+        kept.add(node);
+      }
+    }
+    return kept;
+  }
+
+  /**
+   * Takes held units, components first.
+   *
+   * @param holder Holder of the units.
+   * @param part Units held.
+   * @return Value of the units, in micro-units.
+   * @throws CommandException
+   */
+  private long transfer(String holder, Part part) throws CommandException {
+    long value = 0;
+    for (Part component : part._components)
+      value += this.transfer(holder, component);
+    return Long.parseLong(this.call(part._product._node, "transfer", holder, part._product._key, part._amount,
+        part._fabricated, value).get(0));
+  }
+
+  /**
+   * Imports a text file, splitting it among the nodes. Each node imports the
+   * partners, and the batches of the products it keeps.
+   *
+   * @param file Name of the file.
+   * @throws CommandException
+   */
+  private void importFile(String file) throws CommandException {
+    List<String> lines;
+    try {
+      lines = Files.readAllLines(Path.of(file), Charset.defaultCharset());
+    } catch (IOException e) {
+      throw new FileOpenFailedException(file);
+    }
+
+    List<StringBuilder> parts = new ArrayList<StringBuilder>();
+    List<Set<String>> standIns = new ArrayList<Set<String>>();
+    for (int node = 0; node < this._nodes.length; node++) {
+      parts.add(new StringBuilder());
+      standIns.add(new LinkedHashSet<String>());
+    }
+
+    List<String[]> products = new ArrayList<String[]>();
+    for (String line : lines) {
+      String[] fields = line.split("\\|");
+      if (fields[0].equals("PARTNER")) {
+        for (StringBuilder part : parts)
+          part.append(line).append('\n');
+        continue;
+      }
+
+      // Bad entries are reported by the first node
+      int node = fields.length > 1 ? this.owner(fields[1]) : 0;
+      parts.get(node).append(line).append('\n');
+      if (fields[0].equals("BATCH_S") && fields.length > 1) {
+        products.add(new String[] { fields[1], null });
+      } else if (fields[0].equals("BATCH_M") && fields.length > 6) {
+        products.add(new String[] { fields[1], fields[6] });
+        for (String component : fields[6].split("#")) {
+          String key = component.split(":")[0];
+          if (this.owner(key) != node)
+            standIns.get(node).add(key);
+        }
+      }
+    }
+
+    for (int node = 0; node < this._nodes.length; node++) {
+      for (String key : standIns.get(node)) {
+        try {
+          this.call(node, "registerProduct", key);
+        } catch (RemoteException e) {
+          // Already registered
+        }
+      }
+
+      Path path = null;
+      try {
+        path = Files.createTempFile("ggc-import-" + node + "-", ".txt");
+        Files.writeString(path, parts.get(node), Charset.defaultCharset());
+        this.call(node, "import", path.toString());
+      } catch (IOException e) {
+        throw new FileOpenFailedException(file);
+      } catch (CommandException e) {
+        throw new FileOpenFailedException(file);
+      } finally {
+        try {
+          if (path != null)
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+          // Left in the temporary directory
+        }
+      }
+    }
+
+    for (String[] product : products)
+      this.learn(product[0], product[1]);
+  }
+
+  @Override
+  public void close() throws IOException {
+    for (NodeClient node : this._nodes)
+      node.close();
+  }
+
+  /**
+   * Starts a coordinator. The "nodes" property lists the addresses of the nodes,
+   * separated by commas, each a TCP port on the loopback interface or the path
+   * of a Unix domain socket. The "ranges" property lists, separated by commas,
+   * the first key of the range of each node but the first. The coordinator
+   * listens like a server, on the address given by the "socket" or "port"
+   * properties.
+   *
+   * For instance, with nodes started by
+   * "java -Dsocket=/tmp/n0 ggc.app.server.Server" and
+   * "java -Dsocket=/tmp/n1 ggc.app.server.Server", the coordinator is started
+   * by "java -Dnodes=/tmp/n0,/tmp/n1 -Dranges=M -Dport=9000
+   * ggc.app.server.Coordinator".
+   *
+   * @param args command line arguments.
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    String[] addresses = System.getProperty("nodes", "").split(",");
+    String ranges = System.getProperty("ranges", "");
+    String[] bounds = ranges.isEmpty() ? new String[0] : ranges.split(",");
+
+    SocketAddress[] nodes = new SocketAddress[addresses.length];
+    for (int i = 0; i < addresses.length; i++)
+      nodes[i] = NodeClient.parseAddress(addresses[i]);
+
+    try (Coordinator coordinator = new Coordinator(nodes, bounds);
+        Server server = new Server(coordinator, Server.listenAddress())) {
+      System.out.println(server.address());
+      server.run();
+    }
+  }
+}
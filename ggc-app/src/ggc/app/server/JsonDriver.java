@@ -0,0 +1,117 @@
+package ggc.app.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import pt.tecnico.uilib.menus.CommandException;
+
+import ggc.WarehouseManager;
+
+/**
+ * Non-interactive driver which reads one request per line from the standard
+ * input, written as a JSON object with the operation in "op", such as
+ * {"op":"sale","partner":"P1","product":"X","amount":3,"deadline":10}, and
+ * writes one JSON result per line to the standard output, in the same order.
+ *
+ * A result is either {"ok":true,"output":[lines]} or
+ * {"ok":false,"error":message}. If the request has an "id" member, it is
+ * copied to the result.
+ *
+ * Output is buffered, and only flushed when there are no more requests
+ * waiting to be read, so that pipelined requests are answered in bulk.
+ */
+public class JsonDriver {
+  /** Manager which runs the requests. */
+  private final WarehouseManager _manager;
+
+  /** Reused to build each result. */
+  private final StringBuilder _builder;
+
+  /**
+   * @param manager Manager which runs the requests.
+   */
+  public JsonDriver(WarehouseManager manager) {
+    this._manager = manager;
+    this._builder = new StringBuilder();
+  }
+
+  /**
+   * Runs a request.
+   *
+   * @param line Request text.
+   * @return Result text, without the line terminator.
+   */
+  public String handle(String line) {
+    StringBuilder builder = this._builder;
+    builder.setLength(0);
+    builder.append('{');
+
+    try {
+      JsonRequest request = JsonRequest.parse(line);
+      String id = request.raw("id");
+      if (id != null)
+        builder.append("\"id\":").append(id).append(',');
+
+      String output = Operation.fromKey(request.string("op")).execute(this._manager, request);
+      builder.append("\"ok\":true,\"output\":[");
+      int start = 0;
+      while (start < output.length()) {
+        int end = output.indexOf('\n', start);
+        if (end < 0)
+          end = output.length();
+        if (start > 0)
+          builder.append(',');
+        JsonRequest.quote(builder, output.substring(start, end));
+        start = end + 1;
+      }
+      builder.append(']');
+    } catch (CommandException e) {
+      builder.append("\"ok\":false,\"error\":");
+      JsonRequest.quote(builder, e.getMessage());
+    } catch (RuntimeException e) {
+      builder.append("\"ok\":false,\"error\":");
+      JsonRequest.quote(builder, e.toString());
+    }
+
+    return builder.append('}').toString();
+  }
+
+  /**
+   * Runs every request, until the input ends.
+   *
+   * @param reader Requests.
+   * @param writer Results.
+   * @throws IOException
+   */
+  public void run(BufferedReader reader, Writer writer) throws IOException {
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.isBlank())
+        continue;
+      writer.write(this.handle(line));
+      writer.write('\n');
+      if (!reader.ready())
+        writer.flush();
+    }
+    writer.flush();
+  }
+
+  /**
+   * Runs the requests read from the standard input. Like the interactive
+   * application, the "import" and "mergeBatches" properties prepare the
+   * warehouse.
+   *
+   * @param args command line arguments.
+   * @throws IOException
+   */
+  public static void main(String[] args) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 1 << 16);
+    Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+    new JsonDriver(Server.createManager()).run(reader, writer);
+  }
+}
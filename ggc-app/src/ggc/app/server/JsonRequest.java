@@ -0,0 +1,187 @@
+package ggc.app.server;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import ggc.app.exceptions.InvalidRequestException;
+
+/**
+ * Request written as a flat JSON object, such as
+ * {"op":"sale","partner":"P1","product":"X","amount":3,"deadline":10}. Values
+ * may be strings, numbers, booleans or null; nested objects and arrays aren't
+ * supported.
+ */
+class JsonRequest implements Operation.Arguments {
+  /** Value of each member, with strings unescaped and other values as written. */
+  private final Map<String, String> _values;
+
+  /** Text of each member's value, as written. */
+  private final Map<String, String> _raw;
+
+  /** Request text. */
+  private final String _text;
+
+  /** Position of the parser in the text. */
+  private int _position;
+
+  private JsonRequest(String text) {
+    this._values = new HashMap<String, String>();
+    this._raw = new HashMap<String, String>();
+    this._text = text;
+    this._position = 0;
+  }
+
+  /**
+   * Parses a request.
+   *
+   * @param text Request text.
+   * @return Request.
+   * @throws InvalidRequestException if the text isn't a flat JSON object.
+   */
+  static JsonRequest parse(String text) throws InvalidRequestException {
+    JsonRequest request = new JsonRequest(text);
+    request.parseObject();
+    return request;
+  }
+
+  @Override
+  public String string(String name) throws InvalidRequestException {
+    String value = this._values.get(name);
+    if (value == null)
+      throw new InvalidRequestException(name);
+    return value;
+  }
+
+  /**
+   * @param name Member name.
+   * @return Value of the member as written, or null if there is none.
+   */
+  String raw(String name) {
+    return this._raw.get(name);
+  }
+
+  private void parseObject() throws InvalidRequestException {
+    this.expect('{');
+    if (this.peek() != '}') {
+      do {
+        String name = this.parseString();
+        this.expect(':');
+        int start = this.skipSpaces();
+        String value = this.peek() == '"' ? this.parseString() : this.parseLiteral();
+        this._raw.put(name, this._text.substring(start, this._position));
+        if (value != null)
+          this._values.put(name, value);
+      } while (this.accept(','));
+    }
+    this.expect('}');
+    if (this.skipSpaces() != this._text.length())
+      throw this.error();
+  }
+
+  private String parseString() throws InvalidRequestException {
+    this.expect('"');
+    StringBuilder builder = new StringBuilder();
+    while (this._position < this._text.length()) {
+      char c = this._text.charAt(this._position++);
+      if (c == '"')
+        return builder.toString();
+      if (c != '\\') {
+        builder.append(c);
+        continue;
+      }
+      if (this._position >= this._text.length())
+        break;
+
+      c = this._text.charAt(this._position++);
+      switch (c) {
+        case 'b' -> builder.append('\b');
+        case 'f' -> builder.append('\f');
+        case 'n' -> builder.append('\n');
+        case 'r' -> builder.append('\r');
+        case 't' -> builder.append('\t');
+        case 'u' -> {
+          if (this._position + 4 > this._text.length())
+            throw this.error();
+          try {
+            builder.append((char) Integer.parseInt(this._text.substring(this._position, this._position + 4), 16));
+          } catch (NumberFormatException e) {
+            throw this.error();
+          }
+          this._position += 4;
+        }
+        default -> builder.append(c);
+      }
+    }
+    throw this.error();
+  }
+
+  /**
+   * Parses a number, boolean or null.
+   *
+   * @return Text of the value, or null for null.
+   * @throws InvalidRequestException
+   */
+  private String parseLiteral() throws InvalidRequestException {
+    int start = this._position;
+    while (this._position < this._text.length() && ",} \t".indexOf(this._text.charAt(this._position)) < 0)
+      this._position++;
+    String literal = this._text.substring(start, this._position);
+    if (literal.isEmpty())
+      throw this.error();
+    return literal.equals("null") ? null : literal;
+  }
+
+  private int skipSpaces() {
+    while (this._position < this._text.length() && Character.isWhitespace(this._text.charAt(this._position)))
+      this._position++;
+    return this._position;
+  }
+
+  private char peek() {
+    this.skipSpaces();
+    return this._position < this._text.length() ? this._text.charAt(this._position) : 0;
+  }
+
+  private boolean accept(char c) {
+    if (this.peek() != c)
+      return false;
+    this._position++;
+    return true;
+  }
+
+  private void expect(char c) throws InvalidRequestException {
+    if (!this.accept(c))
+      throw this.error();
+  }
+
+  private InvalidRequestException error() {
+    return new InvalidRequestException(this._text);
+  }
+
+  /**
+   * Writes a string as a JSON string.
+   *
+   * @param builder Where to write.
+   * @param value String.
+   */
+  static void quote(StringBuilder builder, String value) {
+    builder.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"' -> builder.append("\\\"");
+        case '\\' -> builder.append("\\\\");
+        case '\n' -> builder.append("\\n");
+        case '\r' -> builder.append("\\r");
+        case '\t' -> builder.append("\\t");
+        default -> {
+          if (c < 0x20)
+            builder.append(String.format("\\u%04x", (int) c));
+          else
+            builder.append(c);
+        }
+      }
+    }
+    builder.append('"');
+  }
+}
@@ -0,0 +1,122 @@
+package ggc.app.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Client of a server, which sends requests to it over a pool of connections,
+ * so that many threads may send requests at the same time.
+ */
+class NodeClient implements AutoCloseable {
+  /**
+   * A connection to the server.
+   */
+  private static class Connection {
+    /** Channel. */
+    private final SocketChannel _channel;
+
+    /** Reads responses. */
+    private final BufferedReader _reader;
+
+    /** Writes requests. */
+    private final Writer _writer;
+
+    Connection(SocketAddress address) throws IOException {
+      this._channel = SocketChannel.open(address);
+      this._reader = new BufferedReader(Channels.newReader(this._channel, StandardCharsets.UTF_8));
+      this._writer = Channels.newWriter(this._channel, StandardCharsets.UTF_8);
+    }
+  }
+
+  /** Address of the server. */
+  private final SocketAddress _address;
+
+  /** Idle connections. */
+  private final ConcurrentLinkedQueue<Connection> _idle;
+
+  /**
+   * @param address Address of the server.
+   */
+  NodeClient(SocketAddress address) {
+    this._address = address;
+    this._idle = new ConcurrentLinkedQueue<Connection>();
+  }
+
+  /**
+   * Parses the address of a server: a port on the loopback interface, or else
+   * the path of a Unix domain socket.
+   *
+   * @param address Port or path.
+   * @return Address.
+   */
+  static SocketAddress parseAddress(String address) {
+    if (address.chars().allMatch(Character::isDigit))
+      return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+    return UnixDomainSocketAddress.of(address);
+  }
+
+  /**
+   * Sends a request and waits for its response.
+   *
+   * @param fields Name of the operation followed by its arguments.
+   * @return Lines of output.
+   * @throws RemoteException if the server reports an error.
+   * @throws IOException if the server can't be reached.
+   */
+  List<String> call(Object... fields) throws RemoteException, IOException {
+    StringBuilder request = new StringBuilder();
+    for (Object field : fields) {
+      if (request.length() > 0)
+        request.append('|');
+      request.append(field);
+    }
+    request.append('\n');
+
+    Connection connection = this._idle.poll();
+    if (connection == null)
+      connection = new Connection(this._address);
+
+    List<String> lines;
+    try {
+      connection._writer.write(request.toString());
+      connection._writer.flush();
+
+      String status = connection._reader.readLine();
+      if (status == null)
+        throw new IOException("Connection to " + this._address + " closed");
+      if (status.startsWith("ERR|")) {
+        this._idle.add(connection);
+        throw new RemoteException(status.substring(4));
+      }
+
+      int count = Integer.parseInt(status.substring(3));
+      lines = new ArrayList<String>(count);
+      for (int i = 0; i < count; i++)
+        lines.add(connection._reader.readLine());
+    } catch (IOException | RuntimeException e) {
+      connection._channel.close();
+      throw e;
+    }
+
+    this._idle.add(connection);
+    return lines;
+  }
+
+  @Override
+  public void close() throws IOException {
+    Connection connection;
+    while ((connection = this._idle.poll()) != null)
+      connection._channel.close();
+  }
+}
@@ -0,0 +1,549 @@
+package ggc.app.server;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import pt.tecnico.uilib.menus.CommandException;
+
+import ggc.Statistics;
+import ggc.WarehouseManager;
+import ggc.app.exceptions.DuplicatePartnerKeyException;
+import ggc.app.exceptions.DuplicateProductKeyException;
+import ggc.app.exceptions.FileOpenFailedException;
+import ggc.app.exceptions.InvalidDateException;
+import ggc.app.exceptions.InvalidRequestException;
+import ggc.app.exceptions.UnavailableProductException;
+import ggc.app.exceptions.UnknownPartnerKeyException;
+import ggc.app.exceptions.UnknownProductKeyException;
+import ggc.app.exceptions.UnknownReservationKeyException;
+import ggc.app.exceptions.UnknownTransactionKeyException;
+
+/**
+ * Operations of the warehouse manager which can be requested remotely. Each
+ * operation has a name, a list of named parameters, and knows whether it
+ * changes the warehouse.
+ */
+public enum Operation {
+  /** Shows the current date. */
+  DATE("date", false) {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) {
+      return Integer.toString(manager.date());
+    }
+  },
+
+  /** Advances the current date. */
+  ADVANCE_DATE("advanceDate", true, "days") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      manager.advanceDate(arguments.integer("days"));
+      return "";
+    }
+  },
+
+  /** Shows the available and accounting balances. */
+  BALANCE("balance", false) {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) {
+      return Math.round(manager.availableBalance()) + "|" + Math.round(manager.accountingBalance());
+    }
+  },
+
+  /** Saves the warehouse to a file. */
+  SAVE("save", false, "file") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      manager.saveAs(arguments.string("file"));
+      return "";
+    }
+  },
+
+  /** Loads the warehouse from a file. */
+  OPEN("open", true, "file") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      manager.load(arguments.string("file"));
+      return "";
+    }
+  },
+
+  /** Imports a text file. */
+  IMPORT("import", true, "file") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      manager.importFile(arguments.string("file"));
+      return "";
+    }
+  },
+
+  /** Lists all products. */
+  PRODUCTS("products", false) {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) {
+      return manager.products();
+    }
+  },
+
+  /** Registers a simple product. */
+  REGISTER_PRODUCT("registerProduct", true, "product") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      manager.registerProduct(arguments.string("product"));
+      return "";
+    }
+  },
+
+  /**
+   * Registers a derivate product. The recipe is written as in import files, such
+   * as "A:2#B:1".
+   */
+  REGISTER_DERIVATE("registerDerivate", true, "product", "aggravation", "recipe") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      String[] components = arguments.string("recipe").split("#");
+      String[] keys = new String[components.length];
+      int[] amounts = new int[components.length];
+      for (int i = 0; i < components.length; i++) {
+        String[] component = components[i].split(":");
+        if (component.length != 2)
+          throw new InvalidRequestException(arguments.string("recipe"));
+        keys[i] = component[0];
+        amounts[i] = Arguments.parseInteger(component[1]);
+      }
+      manager.registerProduct(arguments.string("product"), arguments.real("aggravation"), keys, amounts);
+      return "";
+    }
+  },
+
+  /** Lists all batches. */
+  BATCHES("batches", false) {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) {
+      return manager.batches();
+    }
+  },
+
+  /** Lists the batches of a partner. */
+  BATCHES_BY_PARTNER("batchesByPartner", false, "partner") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      return manager.batchesByPartner(arguments.string("partner"));
+    }
+  },
+
+  /** Lists the batches of a product. */
+  BATCHES_BY_PRODUCT("batchesByProduct", false, "product") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      return manager.batchesByProduct(arguments.string("product"));
+    }
+  },
+
+  /** Lists the batches under a given price. */
+  BATCHES_BY_PRICE("batchesByPrice", false, "price") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      return manager.batchesByPrice(arguments.real("price"));
+    }
+  },
+
+  /** Shows a partner and its pending notifications. */
+  PARTNER("partner", true, "partner") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      return manager.partner(arguments.string("partner"));
+    }
+  },
+
+  /** Lists all partners. */
+  PARTNERS("partners", false) {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) {
+      return manager.partners();
+    }
+  },
+
+  /** Registers a partner. */
+  REGISTER_PARTNER("registerPartner", true, "partner", "name", "address") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      manager.registerPartner(arguments.string("partner"), arguments.string("name"), arguments.string("address"));
+      return "";
+    }
+  },
+
+  /** Toggles the notifications of a partner about a product. */
+  TOGGLE_NOTIFICATIONS("toggleNotifications", true, "partner", "product") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      manager.toggleNotification(arguments.string("partner"), arguments.string("product"));
+      return "";
+    }
+  },
+
+  /** Lists the acquisitions made to a partner. */
+  ACQUISITIONS("acquisitions", false, "partner") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      return manager.partnerAcquisitions(arguments.string("partner"));
+    }
+  },
+
+  /** Lists the sales and breakdowns of a partner. */
+  SALES("sales", false, "partner") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      return manager.partnerSalesAndBreakdowns(arguments.string("partner"));
+    }
+  },
+
+  /** Lists the paid transactions of a partner. */
+  PAYMENTS("payments", false, "partner") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      return manager.partnerPaidTransactions(arguments.string("partner"));
+    }
+  },
+
+  /** Lists every transaction of a partner. */
+  HISTORY("history", false, "partner") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      return manager.partnerHistory(arguments.string("partner"));
+    }
+  },
+
+  /** Shows a transaction. */
+  TRANSACTION("transaction", false, "transaction") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      return manager.transaction(arguments.integer("transaction"));
+    }
+  },
+
+  /** Registers a breakdown. */
+  BREAKDOWN("breakdown", true, "partner", "product", "amount") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      manager.registerBreakdown(arguments.string("partner"), arguments.string("product"), arguments.integer("amount"));
+      return "";
+    }
+  },
+
+  /** Registers a sale. */
+  SALE("sale", true, "partner", "product", "deadline", "amount") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      manager.registerSale(arguments.string("partner"), arguments.string("product"), arguments.integer("deadline"),
+          arguments.integer("amount"));
+      return "";
+    }
+  },
+
+  /**
+   * Reserves units of a product for a sale, for a number of milliseconds. Shows
+   * the reservation id.
+   */
+  RESERVE("reserve", true, "partner", "product", "amount", "timeout") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      return Integer.toString(manager.reserve(arguments.string("partner"), arguments.string("product"),
+          arguments.integer("amount"), arguments.longInteger("timeout")));
+    }
+  },
+
+  /** Cancels a reservation. */
+  CANCEL_RESERVATION("cancelReservation", true, "reservation") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      manager.cancelReservation(arguments.integer("reservation"));
+      return "";
+    }
+  },
+
+  /** Registers the sale of the units of a reservation. */
+  RESERVED_SALE("reservedSale", true, "reservation", "deadline") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      manager.registerSale(arguments.integer("reservation"), arguments.integer("deadline"));
+      return "";
+    }
+  },
+
+  /** Registers an acquisition. */
+  ACQUISITION("acquisition", true, "partner", "product", "amount", "price") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      manager.registerAcquisition(arguments.string("partner"), arguments.string("product"),
+          arguments.integer("amount"), arguments.real("price"));
+      return "";
+    }
+  },
+
+  /** Receives the payment of a sale. */
+  PAYMENT("payment", true, "transaction") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      manager.receiveSalePayment(arguments.integer("transaction"));
+      return "";
+    }
+  },
+
+  /**
+   * Holds units of a product for a sale coordinated across warehouses. Shows the
+   * number of units held.
+   */
+  HOLD("hold", true, "holder", "partner", "product", "amount") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      return Integer.toString(manager.hold(arguments.string("holder"), arguments.string("partner"),
+          arguments.string("product"), arguments.integer("amount")));
+    }
+  },
+
+  /** Releases the units held for a holder. */
+  RELEASE("release", true, "holder") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      manager.release(arguments.string("holder"));
+      return "";
+    }
+  },
+
+  /**
+   * Takes held units of a product, to make another product in another warehouse.
+   * Shows their value, in micro-units.
+   */
+  TRANSFER("transfer", true, "holder", "product", "amount", "fabricated", "value") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      return Long.toString(manager.transfer(arguments.string("holder"), arguments.string("product"),
+          arguments.integer("amount"), arguments.integer("fabricated"), arguments.longInteger("value")));
+    }
+  },
+
+  /** Puts back the units taken for a holder, when its sale failed. */
+  RESTOCK("restock", true, "holder") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      manager.restock(arguments.string("holder"));
+      return "";
+    }
+  },
+
+  /** Registers a sale of held units, or of units made out of transferred ones. */
+  ASSEMBLED_SALE("assembledSale", true, "holder", "partner", "product", "deadline", "amount", "fabricated", "value") {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      manager.registerAssembledSale(arguments.string("holder"), arguments.string("partner"),
+          arguments.string("product"), arguments.integer("deadline"), arguments.integer("amount"),
+          arguments.integer("fabricated"), arguments.longInteger("value"));
+      return "";
+    }
+  },
+
+  /**
+   * Shows how far a replica, following the journal of another server, is behind
+   * it: the number of the last record read, and the time since every record
+   * written was last applied, in milliseconds. While reading the journal
+   * fails, followed by the number of reads which failed in a row and why.
+   */
+  REPLICATION("replication", false) {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      if (!manager.following())
+        throw new InvalidRequestException(this.key());
+      String failure = manager.replicationFailure();
+      return manager.replicatedSequence() + "|" + manager.replicationLag() + (failure == null ? "" : "|" + failure);
+    }
+  },
+
+  /**
+   * Shows the statistics of the operations of the server's process, in the CSV
+   * written by WarehouseManager.saveStatistics().
+   */
+  STATISTICS("statistics", false) {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      StringWriter writer = new StringWriter();
+      Statistics.write(writer);
+      return writer.toString().stripTrailing();
+    }
+  },
+
+  /**
+   * Shows the memory retained by each subsystem of the warehouse, as a table.
+   */
+  FOOTPRINT("footprint", false) {
+    @Override
+    String run(WarehouseManager manager, Arguments arguments) throws Exception {
+      return manager.footprint();
+    }
+  };
+
+  /**
+   * Arguments of a request, accessed by parameter name.
+   */
+  public interface Arguments {
+    /**
+     * @param name Parameter name.
+     * @return Value of the argument.
+     * @throws InvalidRequestException if the argument is missing.
+     */
+    String string(String name) throws InvalidRequestException;
+
+    /**
+     * @param name Parameter name.
+     * @return Value of the argument.
+     * @throws InvalidRequestException if the argument is missing or isn't an
+     *           integer.
+     */
+    default int integer(String name) throws InvalidRequestException {
+      return parseInteger(this.string(name));
+    }
+
+    /**
+     * @param name Parameter name.
+     * @return Value of the argument.
+     * @throws InvalidRequestException if the argument is missing or isn't an
+     *           integer.
+     */
+    default long longInteger(String name) throws InvalidRequestException {
+      String value = this.string(name);
+      try {
+        return Long.parseLong(value);
+      } catch (NumberFormatException e) {
+        throw new InvalidRequestException(value);
+      }
+    }
+
+    /**
+     * @param name Parameter name.
+     * @return Value of the argument.
+     * @throws InvalidRequestException if the argument is missing or isn't a
+     *           number.
+     */
+    default double real(String name) throws InvalidRequestException {
+      String value = this.string(name);
+      try {
+        return Double.parseDouble(value);
+      } catch (NumberFormatException e) {
+        throw new InvalidRequestException(value);
+      }
+    }
+
+    /**
+     * @param value Text.
+     * @return Integer value of the text.
+     * @throws InvalidRequestException if the text isn't an integer.
+     */
+    static int parseInteger(String value) throws InvalidRequestException {
+      try {
+        return Integer.parseInt(value);
+      } catch (NumberFormatException e) {
+        throw new InvalidRequestException(value);
+      }
+    }
+  }
+
+  /** Name used in requests. */
+  private final String _name;
+
+  /** Does the operation change the warehouse? */
+  private final boolean _mutates;
+
+  /** Names of the parameters, in the order used by positional requests. */
+  private final String[] _parameters;
+
+  private Operation(String name, boolean mutates, String... parameters) {
+    this._name = name;
+    this._mutates = mutates;
+    this._parameters = parameters;
+  }
+
+  /**
+   * @return Name used in requests.
+   */
+  public String key() {
+    return this._name;
+  }
+
+  /**
+   * Returns whether the operation changes the warehouse. Showing a partner is
+   * one of them, since it consumes the partner's notifications.
+   *
+   * @return Whether the operation changes the warehouse.
+   */
+  public boolean mutates() {
+    return this._mutates;
+  }
+
+  /**
+   * @return Names of the parameters, in the order used by positional requests.
+   */
+  public String[] parameters() {
+    return this._parameters.clone();
+  }
+
+  /**
+   * Finds an operation from its name.
+   *
+   * @param name Name used in requests.
+   * @return The operation.
+   * @throws InvalidRequestException if there is no such operation.
+   */
+  public static Operation fromKey(String name) throws InvalidRequestException {
+    for (Operation operation : values())
+      if (operation._name.equals(name))
+        return operation;
+    throw new InvalidRequestException(name);
+  }
+
+  /**
+   * Runs the operation.
+   *
+   * @param manager Warehouse manager.
+   * @param arguments Arguments of the request.
+   * @return Output of the operation, which may span several lines.
+   * @throws Exception
+   */
+  abstract String run(WarehouseManager manager, Arguments arguments) throws Exception;
+
+  /**
+   * Runs the operation, reporting errors the same way the menus do.
+   *
+   * @param manager Warehouse manager.
+   * @param arguments Arguments of the request.
+   * @return Output of the operation, which may span several lines.
+   * @throws CommandException
+   */
+  public String execute(WarehouseManager manager, Arguments arguments) throws CommandException {
+    try {
+      return this.run(manager, arguments);
+    } catch (CommandException e) {
+      throw e;
+    } catch (ggc.exceptions.UnknownPartnerKeyException e) {
+      throw new UnknownPartnerKeyException(e.getPartnerKey());
+    } catch (ggc.exceptions.UnknownProductKeyException e) {
+      throw new UnknownProductKeyException(e.getProductKey());
+    } catch (ggc.exceptions.UnknownTransactionKeyException e) {
+      throw new UnknownTransactionKeyException(e.getTransactionKey());
+    } catch (ggc.exceptions.UnknownReservationKeyException e) {
+      throw new UnknownReservationKeyException(e.getReservationKey());
+    } catch (ggc.exceptions.UnavailableProductException e) {
+      throw new UnavailableProductException(e.getProductKey(), e.getRequested(), e.getAvailable());
+    } catch (ggc.exceptions.DuplicatePartnerKeyException e) {
+      throw new DuplicatePartnerKeyException(e.getPartnerKey());
+    } catch (ggc.exceptions.DuplicateProductKeyException e) {
+      throw new DuplicateProductKeyException(e.getProductKey());
+    } catch (ggc.exceptions.InvalidDateException e) {
+      throw new InvalidDateException(e.getDate());
+    } catch (ggc.exceptions.UnavailableFileException e) {
+      throw new FileOpenFailedException(e.getFilename());
+    } catch (ggc.exceptions.ImportFileException | IOException e) {
+      throw new FileOpenFailedException(arguments.string("file"));
+    } catch (Exception e) {
+      throw new InvalidRequestException(this._name);
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package ggc.app.server;
+
+import pt.tecnico.uilib.menus.CommandException;
+
+/** Error reported by another server, with the message it wrote. */
+class RemoteException extends CommandException {
+
+  /** Serial number for serialization. */
+  private static final long serialVersionUID = 202610191530L;
+
+  /**
+   * @param message Message written by the server.
+   */
+  RemoteException(String message) {
+    super(message);
+  }
+
+}
@@ -0,0 +1,416 @@
+package ggc.app.server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import pt.tecnico.uilib.menus.CommandException;
+
+import ggc.WarehouseManager;
+import ggc.app.App;
+import ggc.app.exceptions.InvalidRequestException;
+import ggc.app.exceptions.RequestTooLongException;
+
+/**
+ * Serves a warehouse manager to local clients, over TCP on the loopback
+ * interface or over a Unix domain socket.
+ *
+ * Each request is a line with the name of an operation followed by its
+ * arguments, separated by '|', as in "sale|P1|X|10|3". The response is either
+ * "OK|n" followed by the n lines of output, or "ERR|message". Requests of a
+ * connection are answered in order, one at a time.
+ *
+ * All connections are handled by a single thread, so idle connections cost no
+ * thread at all. Operations which change the warehouse run one at a time, in a
+ * single writer thread, unless the manager sequences them itself; the others
+ * run concurrently in a small pool.
+ *
+ * Requests are carried out by a handler: usually a warehouse manager, or else
+ * a Coordinator, which serves a warehouse split among several servers.
+ */
+public class Server implements AutoCloseable {
+  /** Stop reading from a client with this many requests waiting. */
+  private static final int MAX_PENDING = 64;
+
+  /**
+   * Runs the requested operations.
+   */
+  public interface Handler {
+    /**
+     * Runs an operation.
+     *
+     * @param operation Operation.
+     * @param arguments Arguments of the request.
+     * @return Output of the operation, which may span several lines.
+     * @throws CommandException
+     */
+    String execute(Operation operation, Operation.Arguments arguments) throws CommandException;
+
+    /**
+     * Returns whether the handler orders the operations which change the
+     * warehouse by itself, so that they may be run concurrently.
+     *
+     * @return Whether changes may be run concurrently.
+     */
+    default boolean ordersChanges() {
+      return false;
+    }
+  }
+
+  /** Runs the requested operations. */
+  private final Handler _handler;
+
+  /** Selector of the event loop. */
+  private final Selector _selector;
+
+  /** Listening channel. */
+  private final ServerSocketChannel _listener;
+
+  /** Runs the operations which change the warehouse, in order. */
+  private final ExecutorService _writer;
+
+  /** Runs the other operations. */
+  private final ExecutorService _readers;
+
+  /** Sessions whose running request has finished. */
+  private final Queue<Session> _finished;
+
+  /** Is the server running? */
+  private volatile boolean _running;
+
+  /**
+   * @param manager Manager to serve.
+   * @param address Address to listen on, either a socket address or a Unix
+   *          domain socket address.
+   * @throws IOException
+   */
+  public Server(WarehouseManager manager, SocketAddress address) throws IOException {
+    this(new Handler() {
+      @Override
+      public String execute(Operation operation, Operation.Arguments arguments) throws CommandException {
+        return operation.execute(manager, arguments);
+      }
+
+      @Override
+      public boolean ordersChanges() {
+        return manager.journaled();
+      }
+    }, address);
+  }
+
+  /**
+   * @param handler Runs the requested operations.
+   * @param address Address to listen on, either a socket address or a Unix
+   *          domain socket address.
+   * @throws IOException
+   */
+  public Server(Handler handler, SocketAddress address) throws IOException {
+    this._handler = handler;
+    this._selector = Selector.open();
+    this._listener = address instanceof UnixDomainSocketAddress
+        ? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+        : ServerSocketChannel.open();
+    this._listener.bind(address);
+    this._listener.configureBlocking(false);
+    this._listener.register(this._selector, SelectionKey.OP_ACCEPT);
+
+    this._writer = Executors.newSingleThreadExecutor();
+    this._readers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    this._finished = new ConcurrentLinkedQueue<Session>();
+    this._running = true;
+  }
+
+  /**
+   * @return Address the server is listening on.
+   * @throws IOException
+   */
+  public SocketAddress address() throws IOException {
+    return this._listener.getLocalAddress();
+  }
+
+  /**
+   * Runs the event loop, until the server is closed.
+   *
+   * @throws IOException
+   */
+  public void run() throws IOException {
+    try {
+      while (this._running)
+        this.poll();
+    } finally {
+      this.shutdown();
+    }
+  }
+
+  /**
+   * Runs one iteration of the event loop.
+   *
+   * @throws IOException
+   */
+  private void poll() throws IOException {
+    this._selector.select();
+
+    // Send the responses of the requests which have finished
+    Session session;
+    while ((session = this._finished.poll()) != null) {
+      session.finish();
+      if (session.channel().isOpen()) {
+        this.dispatch(session);
+        this.flush(session);
+      }
+    }
+
+    Iterator<SelectionKey> keys = this._selector.selectedKeys().iterator();
+    while (keys.hasNext()) {
+      SelectionKey key = keys.next();
+      keys.remove();
+      try {
+        if (!key.isValid())
+          continue;
+        if (key.isAcceptable())
+          this.accept();
+        if (key.isValid() && key.isReadable())
+          this.read(key);
+        if (key.isValid() && key.isWritable())
+          this.flush((Session) key.attachment());
+      } catch (IOException e) {
+        key.cancel();
+        key.channel().close();
+      }
+    }
+  }
+
+  private void accept() throws IOException {
+    SocketChannel channel;
+    while ((channel = this._listener.accept()) != null) {
+      channel.configureBlocking(false);
+      channel.register(this._selector, SelectionKey.OP_READ, new Session(channel));
+    }
+  }
+
+  /**
+   * Reads the requests of a session and starts them. A client which closes its
+   * side of the connection still gets the answers to every request it sent,
+   * and the connection is closed after them.
+   *
+   * @param key Key of the session.
+   * @throws IOException
+   */
+  private void read(SelectionKey key) throws IOException {
+    Session session = (Session) key.attachment();
+    session.read();
+    this.dispatch(session);
+    this.flush(session);
+  }
+
+  /**
+   * Starts the next requests of a session. Requests which can't be parsed are
+   * answered right away.
+   *
+   * @param session Session.
+   */
+  private void dispatch(Session session) {
+    String line;
+    while ((line = session.start()) != null) {
+      Operation operation;
+      Operation.Arguments arguments;
+      try {
+        if (line.isEmpty())
+          throw new RequestTooLongException(Session.MAX_LINE_LENGTH);
+        String[] fields = line.split("\\|", -1);
+        operation = Operation.fromKey(fields[0]);
+        arguments = positional(operation, fields, line);
+      } catch (InvalidRequestException | RequestTooLongException e) {
+        session.complete(error(e));
+        session.finish();
+        continue;
+      }
+
+      // With a journal, changes are already applied in order by the manager, and
+      // changes waiting together are synced together
+      ExecutorService executor = operation.mutates() && !this._handler.ordersChanges() ? this._writer
+          : this._readers;
+      executor.execute(() -> {
+        session.complete(this.execute(operation, arguments));
+        this._finished.add(session);
+        this._selector.wakeup();
+      });
+    }
+  }
+
+  /**
+   * Writes the queued responses of a session, and only asks to be woken up
+   * when the client can take more, or when there is room for more requests.
+   * Closes the connection once a client which closed its side has every
+   * answer.
+   *
+   * @param session Session.
+   * @throws IOException
+   */
+  private void flush(Session session) throws IOException {
+    SelectionKey key = session.channel().keyFor(this._selector);
+    if (key == null || !key.isValid())
+      return;
+
+    boolean flushed = session.flush();
+    if (session.done()) {
+      key.cancel();
+      key.channel().close();
+      return;
+    }
+
+    int interest = session.pending() < MAX_PENDING && !session.ended() ? SelectionKey.OP_READ : 0;
+    if (!flushed)
+      interest |= SelectionKey.OP_WRITE;
+    key.interestOps(interest);
+  }
+
+  /**
+   * Runs an operation and formats its response.
+   *
+   * @param operation Operation.
+   * @param arguments Arguments of the request.
+   * @return Response.
+   */
+  private String execute(Operation operation, Operation.Arguments arguments) {
+    try {
+      String output = this._handler.execute(operation, arguments);
+      if (output.isEmpty())
+        return "OK|0\n";
+      return "OK|" + output.split("\n", -1).length + "\n" + output + "\n";
+    } catch (CommandException e) {
+      return error(e);
+    } catch (RuntimeException e) {
+      return "ERR|" + e + "\n";
+    }
+  }
+
+  private static String error(CommandException e) {
+    return "ERR|" + e.getMessage().replace('\n', ' ') + "\n";
+  }
+
+  /**
+   * Binds positional fields to the parameters of an operation.
+   *
+   * @param operation Operation.
+   * @param fields Name of the operation followed by the arguments.
+   * @param line Request, for error reports.
+   * @return Arguments.
+   * @throws InvalidRequestException if the number of arguments is wrong.
+   */
+  private static Operation.Arguments positional(Operation operation, String[] fields, String line)
+      throws InvalidRequestException {
+    String[] parameters = operation.parameters();
+    if (fields.length != parameters.length + 1)
+      throw new InvalidRequestException(line);
+
+    return name -> {
+      for (int i = 0; i < parameters.length; i++)
+        if (parameters[i].equals(name))
+          return fields[i + 1];
+      throw new InvalidRequestException(name);
+    };
+  }
+
+  /**
+   * Stops the event loop. May be called from any thread.
+   */
+  @Override
+  public void close() {
+    this._running = false;
+    this._selector.wakeup();
+  }
+
+  /**
+   * Releases everything, once the event loop has stopped.
+   *
+   * @throws IOException
+   */
+  private void shutdown() throws IOException {
+    this._writer.shutdown();
+    this._readers.shutdown();
+
+    SocketAddress address = this._listener.getLocalAddress();
+    for (SelectionKey key : this._selector.keys())
+      key.channel().close();
+    this._selector.close();
+    if (address instanceof UnixDomainSocketAddress)
+      Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+  }
+
+  /**
+   * Creates the manager to serve, prepared by App.createManager() like the
+   * interactive application's. The "journal" property names a journal which
+   * records every change, and holds the changes to apply after a restart, and
+   * the "shards" property sets how many threads apply the changes recorded in
+   * it. The "follow" property instead names the journal of another server,
+   * which the manager follows as a read-only replica, reading it every
+   * "followInterval" milliseconds.
+   *
+   * @return Warehouse manager.
+   * @throws IOException if the journal can't be opened.
+   */
+  static WarehouseManager createManager() throws IOException {
+    WarehouseManager manager = App.createManager();
+
+    String primary = System.getProperty("follow");
+    if (primary != null) {
+      manager.follow(primary, Long.getLong("followInterval", 50));
+      return manager;
+    }
+
+    String journal = System.getProperty("journal");
+    if (journal != null)
+      manager.openJournal(journal, Integer.getInteger("shards", 1));
+    return manager;
+  }
+
+  /**
+   * Returns the address to listen on, given by the "socket" property, with the
+   * path of a Unix domain socket, or else by the "port" property, with a TCP port
+   * on the loopback interface.
+   *
+   * @return Address to listen on.
+   * @throws IOException
+   */
+  static SocketAddress listenAddress() throws IOException {
+    String socket = System.getProperty("socket");
+    if (socket == null)
+      return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.getInteger("port", 0));
+
+    // A server which was killed leaves its socket behind
+    UnixDomainSocketAddress address = UnixDomainSocketAddress.of(socket);
+    Files.deleteIfExists(address.getPath());
+    return address;
+  }
+
+  /**
+   * Starts a server. The address is given by the "socket" property, with the
+   * path of a Unix domain socket, or else by the "port" property, with a TCP
+   * port on the loopback interface.
+   *
+   * @param args command line arguments.
+   * @throws IOException
+   */
+  public static void main(String[] args) throws IOException {
+    WarehouseManager manager = createManager();
+
+    try (Server server = new Server(manager, listenAddress())) {
+      System.out.println(server.address());
+      server.run();
+    }
+  }
+}
@@ -0,0 +1,204 @@
+package ggc.app.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * State of a client connection. Only the server's event loop touches it,
+ * except for complete(), which hands the response of a request back from the
+ * thread which ran it.
+ */
+class Session {
+  /** Initial size of the input buffer. */
+  private static final int INITIAL_BUFFER_SIZE = 512;
+
+  /** Most bytes in a request, without its line separator. */
+  static final int MAX_LINE_LENGTH = 1 << 16;
+
+  /** Connection to the client. */
+  private final SocketChannel _channel;
+
+  /** Bytes read which don't make a full line yet. */
+  private ByteBuffer _input;
+
+  /**
+   * Requests received and not yet started. Lines which were too long are
+   * queued as empty requests, which can't be confused with others, since
+   * empty lines are skipped.
+   */
+  private final Queue<String> _pending;
+
+  /** Is the rest of a line which was too long being dropped? */
+  private boolean _dropping;
+
+  /** Has the client closed its side of the connection? */
+  private boolean _ended;
+
+  /** Responses waiting to be written. */
+  private final Queue<ByteBuffer> _output;
+
+  /** Is there a request running? */
+  private boolean _busy;
+
+  /** Response of the running request, once it has finished. */
+  private volatile String _response;
+
+  /**
+   * @param channel Connection to the client.
+   */
+  Session(SocketChannel channel) {
+    this._channel = channel;
+    this._input = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    this._pending = new ArrayDeque<String>();
+    this._output = new ArrayDeque<ByteBuffer>();
+    this._busy = false;
+  }
+
+  /**
+   * @return Connection to the client.
+   */
+  SocketChannel channel() {
+    return this._channel;
+  }
+
+  /**
+   * Reads what the client sent, splitting it into requests. Once the client
+   * closes its side of the connection, what it sent after its last line
+   * separator is its last request.
+   *
+   * @return false if the client closed its side of the connection.
+   * @throws IOException
+   */
+  boolean read() throws IOException {
+    int read;
+    while ((read = this._channel.read(this._input)) > 0) {
+      this.splitLines();
+      if (this._input.hasRemaining())
+        continue;
+      if (this._input.capacity() > MAX_LINE_LENGTH) {
+        // Drop the line up to its end, where it will be answered
+        this._input.clear();
+        this._dropping = true;
+      } else {
+        // A single line doesn't fit, so make room for it
+        ByteBuffer larger = ByteBuffer.allocate(Math.min(this._input.capacity() * 2, MAX_LINE_LENGTH + 2));
+        this._input.flip();
+        larger.put(this._input);
+        this._input = larger;
+      }
+    }
+
+    if (read == -1 && !this._ended) {
+      this._ended = true;
+      if (this._input.position() > 0 || this._dropping) {
+        this._input.put((byte) '\n');
+        this.splitLines();
+      }
+    }
+    return !this._ended;
+  }
+
+  private void splitLines() {
+    byte[] bytes = this._input.array();
+    int start = 0;
+    for (int i = 0; i < this._input.position(); i++) {
+      if (bytes[i] == '\n') {
+        int end = i > start && bytes[i - 1] == '\r' ? i - 1 : i;
+        if (this._dropping || end - start > MAX_LINE_LENGTH)
+          this._pending.add("");
+        else if (end > start)
+          this._pending.add(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+        this._dropping = false;
+        start = i + 1;
+      }
+    }
+
+    this._input.flip();
+    this._input.position(start);
+    this._input.compact();
+  }
+
+  /**
+   * @return Whether the client closed its side of the connection.
+   */
+  boolean ended() {
+    return this._ended;
+  }
+
+  /**
+   * @return Whether the client closed its side of the connection, and every
+   *         request it sent has been answered.
+   */
+  boolean done() {
+    return this._ended && !this._busy && this._pending.isEmpty() && this._output.isEmpty();
+  }
+
+  /**
+   * @return Number of requests received and not yet started.
+   */
+  int pending() {
+    return this._pending.size();
+  }
+
+  /**
+   * Starts the next request, unless one is already running.
+   *
+   * @return The request, or null if there is none or one is running.
+   */
+  String start() {
+    if (this._busy || this._pending.isEmpty())
+      return null;
+    this._busy = true;
+    return this._pending.poll();
+  }
+
+  /**
+   * Hands back the response of the running request. May be called from any
+   * thread.
+   *
+   * @param response Response.
+   */
+  void complete(String response) {
+    this._response = response;
+  }
+
+  /**
+   * Queues the response of the running request for writing, allowing the next
+   * request to start.
+   */
+  void finish() {
+    this.respond(this._response);
+    this._response = null;
+    this._busy = false;
+  }
+
+  /**
+   * Queues a response for writing.
+   *
+   * @param response Response.
+   */
+  void respond(String response) {
+    this._output.add(ByteBuffer.wrap(response.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Writes as much of the queued responses as possible.
+   *
+   * @return Whether everything was written.
+   * @throws IOException
+   */
+  boolean flush() throws IOException {
+    while (!this._output.isEmpty()) {
+      ByteBuffer buffer = this._output.peek();
+      this._channel.write(buffer);
+      if (buffer.hasRemaining())
+        return false;
+      this._output.poll();
+    }
+    return true;
+  }
+}
@@ -0,0 +1,36 @@
+package ggc.bench;
+
+import java.util.Map;
+
+import ggc.Warehouse;
+
+/**
+ * Warehouse.advanceDate() by a day, which updates the price of every unpaid
+ * sale.
+ */
+class AdvanceDate extends Benchmark {
+  private Warehouse _warehouse;
+
+  @Override
+  public Map<String, String[]> parameters() {
+    return Fixtures.parameters("sales", new String[] { "100", "10000", "100000" });
+  }
+
+  @Override
+  public int operations() {
+    return 20;
+  }
+
+  @Override
+  public void setUp(Params params) throws Exception {
+    int sales = params.integer("sales");
+    this._warehouse = Fixtures.warehouse(100, 100, 100, sales / 100 + 1);
+    Fixtures.sales(this._warehouse, 100, 100, sales);
+  }
+
+  @Override
+  public long run() throws Exception {
+    this._warehouse.advanceDate(1);
+    return this._warehouse.date();
+  }
+}
@@ -0,0 +1,39 @@
+package ggc.bench;
+
+import java.util.Map;
+
+import ggc.Warehouse;
+
+/**
+ * The available and accounting balances, computed by visiting every
+ * transaction.
+ */
+class Balance extends Benchmark {
+  private Warehouse _warehouse;
+  private boolean _accounting;
+
+  @Override
+  public Map<String, String[]> parameters() {
+    return Fixtures.parameters("transactions", new String[] { "100", "10000", "100000" }, "kind",
+        new String[] { "available", "accounting" });
+  }
+
+  @Override
+  public int operations() {
+    return 50;
+  }
+
+  @Override
+  public void setUp(Params params) throws Exception {
+    int transactions = params.integer("transactions");
+    // Half acquisitions, half sales
+    this._warehouse = Fixtures.warehouse(100, 100, transactions / 2, 1);
+    Fixtures.sales(this._warehouse, 100, 100, transactions / 2);
+    this._accounting = params.string("kind").equals("accounting");
+  }
+
+  @Override
+  public long run() throws Exception {
+    return this._accounting ? this._warehouse.accountingBalance() : this._warehouse.availableBalance();
+  }
+}
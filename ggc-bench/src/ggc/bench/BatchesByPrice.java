@@ -0,0 +1,35 @@
+package ggc.bench;
+
+import java.util.Map;
+
+import ggc.Money;
+import ggc.Warehouse;
+
+/**
+ * Warehouse.batchesByPrice(), with a limit below which about a tenth of the
+ * batches are.
+ */
+class BatchesByPrice extends Benchmark {
+  private Warehouse _warehouse;
+
+  @Override
+  public Map<String, String[]> parameters() {
+    return Fixtures.parameters("batches", new String[] { "100", "10000", "100000" });
+  }
+
+  @Override
+  public int operations() {
+    return 100;
+  }
+
+  @Override
+  public void setUp(Params params) throws Exception {
+    int batches = params.integer("batches");
+    this._warehouse = Fixtures.warehouse(100, Math.max(1, batches / 10), batches, 1);
+  }
+
+  @Override
+  public long run() throws Exception {
+    return this._warehouse.batchesByPrice(11 * Money.UNIT).size();
+  }
+}
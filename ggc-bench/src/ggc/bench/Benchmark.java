@@ -0,0 +1,71 @@
+package ggc.bench;
+
+import java.util.Map;
+
+/**
+ * A benchmark of an operation. The harness sets it up once for each
+ * combination of the values of its parameters, then runs the operation many
+ * times in each iteration, timing only the operations themselves. Whatever
+ * must be done for the operations to run again, such as restocking what they
+ * consumed, is done between iterations, untimed.
+ */
+public abstract class Benchmark {
+  /**
+   * @return Name of the benchmark.
+   */
+  public String name() {
+    return this.getClass().getSimpleName();
+  }
+
+  /**
+   * Returns the parameters of the benchmark, in order, with the values measured
+   * unless others are asked for.
+   *
+   * @return Values of each parameter, by name.
+   */
+  public abstract Map<String, String[]> parameters();
+
+  /**
+   * @return Number of operations run in each iteration, unless another is
+   *         asked for.
+   */
+  public int operations() {
+    return 1000;
+  }
+
+  /**
+   * Prepares the state the operations run on.
+   *
+   * @param params Values of the parameters.
+   * @throws Exception
+   */
+  public abstract void setUp(Params params) throws Exception;
+
+  /**
+   * Prepares an iteration, so that the operations can run that many times.
+   *
+   * @param operations Number of operations about to run.
+   * @throws Exception
+   */
+  public void setUpIteration(int operations) throws Exception {
+    // Most operations can simply run again
+  }
+
+  /**
+   * Runs the operation once.
+   *
+   * @return A value which depends on what the operation did, so that it can't
+   *         be optimized away.
+   * @throws Exception
+   */
+  public abstract long run() throws Exception;
+
+  /**
+   * Releases what setUp() acquired.
+   *
+   * @throws Exception
+   */
+  public void tearDown() throws Exception {
+    // Most benchmarks only hold memory
+  }
+}
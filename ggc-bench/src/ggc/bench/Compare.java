@@ -0,0 +1,65 @@
+package ggc.bench;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares the results of two runs of the benchmarks, as written by Harness.
+ * A benchmark regressed when it got slower by more than the threshold, and by
+ * more than the errors of both runs, so that noise isn't reported. Usage:
+ *
+ * <pre>
+ * Compare baseline.csv candidate.csv [threshold %, default 5]
+ * </pre>
+ *
+ * Exits with status 1 if some benchmark regressed.
+ */
+public class Compare {
+  /**
+   * @param args Results files and threshold.
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.err.println("usage: Compare baseline.csv candidate.csv [threshold%]");
+      System.exit(2);
+    }
+    double threshold = args.length > 2 ? Double.parseDouble(args[2]) / 100 : 0.05;
+
+    Map<String, Result> baseline = new LinkedHashMap<String, Result>();
+    for (Result result : Result.read(Path.of(args[0])))
+      baseline.put(result.key(), result);
+
+    int regressions = 0;
+    for (Result candidate : Result.read(Path.of(args[1]))) {
+      Result base = baseline.remove(candidate.key());
+      if (base == null) {
+        System.out.printf(Locale.ROOT, "%-60s %14s %14.1f  new%n", candidate.key(), "-", candidate.score());
+        continue;
+      }
+
+      double change = candidate.score() / base.score() - 1;
+      // Only differences larger than the noise of both runs count
+      double noise = (zeroIfUnknown(base.error()) + zeroIfUnknown(candidate.error())) / base.score();
+      String verdict = "";
+      if (change > threshold && change > noise) {
+        verdict = "REGRESSION";
+        regressions++;
+      } else if (-change > threshold && -change > noise) {
+        verdict = "improvement";
+      }
+      System.out.printf(Locale.ROOT, "%-60s %14.1f %14.1f %+7.1f%%  %s%n", candidate.key(), base.score(),
+          candidate.score(), change * 100, verdict);
+    }
+    for (Result missing : baseline.values())
+      System.out.printf(Locale.ROOT, "%-60s %14.1f %14s  gone%n", missing.key(), missing.score(), "-");
+
+    System.exit(regressions > 0 ? 1 : 0);
+  }
+
+  private static double zeroIfUnknown(double error) {
+    return Double.isNaN(error) ? 0 : error;
+  }
+}
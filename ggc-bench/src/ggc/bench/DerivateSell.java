@@ -0,0 +1,52 @@
+package ggc.bench;
+
+import java.util.Map;
+
+import ggc.Money;
+import ggc.Warehouse;
+import ggc.partners.Partner;
+import ggc.products.Product;
+
+/**
+ * DerivateProduct.sell() of a unit which must be fabricated all the way down a
+ * chain of recipes. Level i is made of a unit of level i - 1 and a unit of a
+ * simple product, and only the simple products have stock.
+ */
+class DerivateSell extends Benchmark {
+  private Partner _partner;
+  private Product[] _components;
+  private Product _product;
+
+  @Override
+  public Map<String, String[]> parameters() {
+    return Fixtures.parameters("depth", new String[] { "1", "4", "16" });
+  }
+
+  @Override
+  public void setUp(Params params) throws Exception {
+    int depth = params.integer("depth");
+    Warehouse warehouse = Fixtures.warehouse(1, depth + 1, 0, 0);
+    this._partner = warehouse.partner(Fixtures.partner(0));
+    this._components = new Product[depth + 1];
+    for (int i = 0; i <= depth; i++)
+      this._components[i] = warehouse.product(Fixtures.product(i));
+
+    String below = Fixtures.product(0);
+    for (int i = 1; i <= depth; i++) {
+      warehouse.registerProduct("D" + i, 0.1, new String[] { below, Fixtures.product(i) }, new int[] { 1, 1 });
+      below = "D" + i;
+    }
+    this._product = warehouse.product(below);
+  }
+
+  @Override
+  public void setUpIteration(int operations) {
+    for (Product component : this._components)
+      component.addBatch(this._partner, operations, Money.UNIT);
+  }
+
+  @Override
+  public long run() throws Exception {
+    return this._product.sell(1);
+  }
+}
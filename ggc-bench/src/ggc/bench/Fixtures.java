@@ -0,0 +1,134 @@
+package ggc.bench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import ggc.Generator;
+import ggc.Money;
+import ggc.Warehouse;
+
+/**
+ * Builds the warehouses the benchmarks run on. Every fixture is the same for
+ * the same sizes, so that runs can be compared.
+ */
+final class Fixtures {
+  /** Seed of the prices. */
+  private static final long SEED = 20211110;
+
+  private Fixtures() {
+  }
+
+  /**
+   * @param values Name and values of each parameter, alternately.
+   * @return Values of each parameter, by name, in order.
+   */
+  static Map<String, String[]> parameters(Object... values) {
+    Map<String, String[]> parameters = new LinkedHashMap<String, String[]>();
+    for (int i = 0; i < values.length; i += 2)
+      parameters.put((String) values[i], (String[]) values[i + 1]);
+    return parameters;
+  }
+
+  /**
+   * @param i Index.
+   * @return Key of the i-th partner.
+   */
+  static String partner(int i) {
+    return "P" + i;
+  }
+
+  /**
+   * @param i Index.
+   * @return Key of the i-th simple product.
+   */
+  static String product(int i) {
+    return "S" + i;
+  }
+
+  /**
+   * Creates a warehouse with partners and simple products, and batches of the
+   * products acquired from the partners, in turns, at prices between 1 and 100.
+   *
+   * @param partners Number of partners.
+   * @param products Number of products.
+   * @param batches Number of batches.
+   * @param amount Units in each batch.
+   * @return Warehouse.
+   * @throws Exception
+   */
+  static Warehouse warehouse(int partners, int products, int batches, int amount) throws Exception {
+    Warehouse warehouse = new Warehouse();
+    for (int i = 0; i < partners; i++)
+      warehouse.registerPartner(partner(i), "Partner " + i, "Lisboa");
+    for (int i = 0; i < products; i++)
+      warehouse.registerProduct(product(i));
+
+    Random random = new Random(SEED);
+    for (int i = 0; i < batches; i++)
+      warehouse.registerAcquisition(partner(i % partners), product(i % products), amount, price(random));
+    return warehouse;
+  }
+
+  /**
+   * Registers sales of one unit each, to the partners and of the products in
+   * turns.
+   *
+   * @param warehouse Warehouse made by warehouse().
+   * @param partners Number of partners.
+   * @param products Number of products.
+   * @param sales Number of sales.
+   * @throws Exception
+   */
+  static void sales(Warehouse warehouse, int partners, int products, int sales) throws Exception {
+    for (int i = 0; i < sales; i++)
+      warehouse.registerSale(partner(i % partners), product(i % products), 1 + i % 30, 1);
+  }
+
+  /**
+   * @param random Source of the prices.
+   * @return Price between 1 and 100, in micro-units.
+   */
+  static long price(Random random) {
+    return Money.UNIT + random.nextInt(99 * 100) * (Money.UNIT / 100);
+  }
+
+  /**
+   * @param lines Number of lines of a file written by importFile().
+   * @param i Index.
+   * @return Key of one of the simple products of the file, at least 1000 lines
+   *         long.
+   */
+  static String importedProduct(int lines, int i) {
+    // The generator puts the simple products first
+    return Generator.productKey(i % 8);
+  }
+
+  /**
+   * Writes an import file with partners, batches of simple products and batches
+   * of products made out of them, as made by the generator.
+   *
+   * @param lines Number of lines.
+   * @return Path of the file.
+   * @throws IOException
+   */
+  static Path importFile(int lines) throws IOException {
+    // Every partner observes every product, so there are few partners
+    int partners = Math.max(1, Math.min(lines / 100, 100));
+    Generator generator = new Generator(Generator.Options.parse("-seed", Long.toString(SEED), "-partners",
+        Integer.toString(partners), "-products", Integer.toString(Math.max(1, lines / 5)), "-batches",
+        Integer.toString(lines - partners)));
+
+    Path path = Files.createTempFile("ggc-bench", ".import");
+    path.toFile().deleteOnExit();
+    try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+      generator.writeImport(out);
+    }
+    return path;
+  }
+}
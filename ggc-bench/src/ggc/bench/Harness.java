@@ -0,0 +1,178 @@
+package ggc.bench;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the benchmarks of the core's hot paths, printing their results and
+ * optionally writing them to a file, to be compared with Compare.
+ *
+ * Each benchmark runs once for each combination of the values of its
+ * parameters: first some warmup iterations, so that the code is compiled, then
+ * the measured ones. Options:
+ *
+ * <pre>
+ * -l             list the benchmarks and their parameters
+ * -wi n          warmup iterations (default 5)
+ * -i n           measured iterations (default 10)
+ * -ops n         operations in each iteration (default: the benchmark's)
+ * -p name=a,b    values of a parameter, for every benchmark which has it
+ * -o file        write the results to the file
+ * regex          only run the benchmarks whose name matches
+ * </pre>
+ */
+public class Harness {
+  /** Every benchmark. */
+  private static final List<Supplier<Benchmark>> BENCHMARKS = List.of(ProductTake::new, DerivateSell::new,
+      SellCheck::new, ProductBreakdown::new, RegisterSale::new, RegisterAcquisition::new, AdvanceDate::new,
+      Balance::new, PartnerHistory::new, BatchesByPrice::new, ImportFile::new, SaveLoad::new);
+
+  /** Sum of the values returned by the operations, so they must run. */
+  private static volatile long _sink;
+
+  /**
+   * Runs a benchmark with some values of its parameters.
+   *
+   * @param benchmark Benchmark.
+   * @param params Values of the parameters.
+   * @param warmups Number of warmup iterations.
+   * @param iterations Number of measured iterations.
+   * @param operations Operations in each iteration.
+   * @return Result.
+   * @throws Exception
+   */
+  static Result run(Benchmark benchmark, Params params, int warmups, int iterations, int operations)
+      throws Exception {
+    benchmark.setUp(params);
+    try {
+      double[] times = new double[iterations];
+      for (int i = -warmups; i < iterations; i++) {
+        benchmark.setUpIteration(operations);
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int j = 0; j < operations; j++)
+          sink += benchmark.run();
+        long time = System.nanoTime() - start;
+        _sink += sink;
+        if (i >= 0)
+          times[i] = (double) time / operations;
+      }
+      return Result.of(benchmark.name(), params.toString(), operations, times);
+    } finally {
+      benchmark.tearDown();
+    }
+  }
+
+  /**
+   * Lists the combinations of the values of the parameters.
+   *
+   * @param parameters Values of each parameter.
+   * @return Combinations, in order.
+   */
+  private static List<Params> combinations(Map<String, String[]> parameters) {
+    List<Map<String, String>> combinations = new ArrayList<Map<String, String>>();
+    combinations.add(new LinkedHashMap<String, String>());
+    for (Map.Entry<String, String[]> parameter : parameters.entrySet()) {
+      List<Map<String, String>> next = new ArrayList<Map<String, String>>();
+      for (Map<String, String> combination : combinations) {
+        for (String value : parameter.getValue()) {
+          Map<String, String> extended = new LinkedHashMap<String, String>(combination);
+          extended.put(parameter.getKey(), value);
+          next.add(extended);
+        }
+      }
+      combinations = next;
+    }
+
+    List<Params> params = new ArrayList<Params>();
+    for (Map<String, String> combination : combinations)
+      params.add(new Params(combination));
+    return params;
+  }
+
+  /**
+   * @param args Options, as described above.
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    int warmups = 5, iterations = 10, operations = 0;
+    boolean list = false;
+    Map<String, String[]> overrides = new LinkedHashMap<String, String[]>();
+    Path output = null;
+    Pattern filter = Pattern.compile(".*");
+
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "-l" -> list = true;
+        case "-wi" -> warmups = Integer.parseInt(args[++i]);
+        case "-i" -> iterations = Integer.parseInt(args[++i]);
+        case "-ops" -> operations = Integer.parseInt(args[++i]);
+        case "-p" -> {
+          String[] parameter = args[++i].split("=", 2);
+          overrides.put(parameter[0], parameter[1].split(","));
+        }
+        case "-o" -> output = Path.of(args[++i]);
+        default -> filter = Pattern.compile(args[i]);
+      }
+    }
+
+    List<Result> results = new ArrayList<Result>();
+    for (Supplier<Benchmark> supplier : BENCHMARKS) {
+      Benchmark benchmark = supplier.get();
+      if (!filter.matcher(benchmark.name()).find())
+        continue;
+
+      Map<String, String[]> parameters = new LinkedHashMap<String, String[]>(benchmark.parameters());
+      for (String name : parameters.keySet())
+        if (overrides.containsKey(name))
+          parameters.put(name, overrides.get(name));
+
+      if (list) {
+        System.out.print(benchmark.name());
+        parameters.forEach((name, values) -> System.out.print(" " + name + "=" + String.join(",", values)));
+        System.out.println();
+        continue;
+      }
+
+      for (Params params : combinations(parameters)) {
+        Result result = run(supplier.get(), params, warmups, iterations,
+            operations > 0 ? operations : benchmark.operations());
+        System.out.println(result);
+        results.add(result);
+      }
+    }
+
+    if (output != null)
+      write(output, results);
+  }
+
+  /**
+   * Writes a results file, starting with a description of the run.
+   *
+   * @param path File.
+   * @param results Results.
+   * @throws IOException
+   */
+  private static void write(Path path, List<Result> results) throws IOException {
+    try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+      out.println("# date " + Instant.now());
+      out.println("# java " + System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+      out.println("# os " + System.getProperty("os.name") + " " + System.getProperty("os.arch") + ", "
+          + Runtime.getRuntime().availableProcessors() + " processors, " + Runtime.getRuntime().maxMemory()
+          + " bytes of heap");
+      out.println(Result.HEADER);
+      for (Result result : results)
+        out.println(result.toCsv());
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package ggc.bench;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import ggc.WarehouseManager;
+
+/**
+ * WarehouseManager.importFile() of a file of partners and batches, into an
+ * empty warehouse.
+ */
+class ImportFile extends Benchmark {
+  private Path _file;
+
+  @Override
+  public Map<String, String[]> parameters() {
+    return Fixtures.parameters("lines", new String[] { "1000", "10000" });
+  }
+
+  @Override
+  public int operations() {
+    return 5;
+  }
+
+  @Override
+  public void setUp(Params params) throws Exception {
+    this._file = Fixtures.importFile(params.integer("lines"));
+  }
+
+  @Override
+  public long run() throws Exception {
+    WarehouseManager manager = new WarehouseManager();
+    manager.importFile(this._file.toString());
+    return manager.date();
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    Files.deleteIfExists(this._file);
+  }
+}
@@ -0,0 +1,49 @@
+package ggc.bench;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Values of the parameters of a benchmark, for one of its runs.
+ */
+public class Params {
+  /** Value of each parameter, by name, in order. */
+  private final Map<String, String> _values;
+
+  /**
+   * @param values Value of each parameter, by name, in order.
+   */
+  Params(Map<String, String> values) {
+    this._values = new LinkedHashMap<String, String>(values);
+  }
+
+  /**
+   * @param name Parameter name.
+   * @return Value of the parameter.
+   */
+  public String string(String name) {
+    String value = this._values.get(name);
+    if (value == null)
+      throw new IllegalArgumentException("Unknown parameter: " + name);
+    return value;
+  }
+
+  /**
+   * @param name Parameter name.
+   * @return Value of the parameter, as an integer.
+   */
+  public int integer(String name) {
+    return Integer.parseInt(this.string(name));
+  }
+
+  /**
+   * Returns the values as "name=value" pairs separated by spaces, as written to
+   * the results.
+   */
+  @Override
+  public String toString() {
+    return this._values.entrySet().stream().map(e -> e.getKey() + "=" + e.getValue())
+        .collect(Collectors.joining(" "));
+  }
+}
@@ -0,0 +1,46 @@
+package ggc.bench;
+
+import java.util.Map;
+
+import ggc.Warehouse;
+
+/**
+ * The queries of a partner's transactions, in a warehouse where the partner
+ * has a share of the transactions.
+ */
+class PartnerHistory extends Benchmark {
+  private static final int PARTNERS = 10;
+
+  private Warehouse _warehouse;
+  private String _query;
+
+  @Override
+  public Map<String, String[]> parameters() {
+    return Fixtures.parameters("transactions", new String[] { "100", "10000", "100000" }, "query",
+        new String[] { "acquisitions", "sales", "paid", "all" });
+  }
+
+  @Override
+  public int operations() {
+    return 100;
+  }
+
+  @Override
+  public void setUp(Params params) throws Exception {
+    int transactions = params.integer("transactions");
+    this._warehouse = Fixtures.warehouse(PARTNERS, 100, transactions / 2, 1);
+    Fixtures.sales(this._warehouse, PARTNERS, 100, transactions / 2);
+    this._query = params.string("query");
+  }
+
+  @Override
+  public long run() throws Exception {
+    String partner = Fixtures.partner(0);
+    return switch (this._query) {
+      case "acquisitions" -> this._warehouse.partnerAcquisitions(partner).size();
+      case "sales" -> this._warehouse.partnerSalesAndBreakdowns(partner).size();
+      case "paid" -> this._warehouse.partnerPaidTransactions(partner).size();
+      default -> this._warehouse.partnerTransactions(partner).size();
+    };
+  }
+}
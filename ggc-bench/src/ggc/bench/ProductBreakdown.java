@@ -0,0 +1,56 @@
+package ggc.bench;
+
+import java.util.Map;
+
+import ggc.Money;
+import ggc.Warehouse;
+import ggc.partners.Partner;
+import ggc.products.Product;
+import ggc.visitors.ProductBreaker;
+
+/**
+ * ProductBreaker on a unit of a product made out of several simple products.
+ */
+class ProductBreakdown extends Benchmark {
+  private Partner _partner;
+  private Product[] _components;
+  private Product _product;
+
+  @Override
+  public Map<String, String[]> parameters() {
+    return Fixtures.parameters("components", new String[] { "2", "8" });
+  }
+
+  @Override
+  public void setUp(Params params) throws Exception {
+    int count = params.integer("components");
+    Warehouse warehouse = Fixtures.warehouse(1, count, count, 1);
+    this._partner = warehouse.partner(Fixtures.partner(0));
+    this._components = new Product[count];
+    String[] keys = new String[count];
+    int[] amounts = new int[count];
+    for (int i = 0; i < count; i++) {
+      keys[i] = Fixtures.product(i);
+      amounts[i] = 1 + i % 3;
+      this._components[i] = warehouse.product(keys[i]);
+    }
+    this._product = warehouse.registerProduct("D", 0.1, keys, amounts);
+  }
+
+  @Override
+  public void setUpIteration(int operations) throws Exception {
+    // Drop the batches made by the last iteration, keeping one so that prices
+    // come from a batch, and stock the units to break down
+    for (Product component : this._components)
+      if (component.available() > 1)
+        component.take(component.available() - 1);
+    this._product.addBatch(this._partner, operations, 10 * Money.UNIT);
+  }
+
+  @Override
+  public long run() throws Exception {
+    ProductBreaker breaker = new ProductBreaker(this._partner, 1);
+    this._product.accept(breaker);
+    return breaker.breakdownValue();
+  }
+}
@@ -0,0 +1,43 @@
+package ggc.bench;
+
+import java.util.Map;
+import java.util.Random;
+
+import ggc.Warehouse;
+import ggc.partners.Partner;
+import ggc.products.Product;
+
+/**
+ * Product.take() of a single unit, from a product with many batches of a
+ * single unit, so that each take consumes the cheapest batch.
+ */
+class ProductTake extends Benchmark {
+  private Partner _partner;
+  private Product _product;
+  private Random _random;
+
+  @Override
+  public Map<String, String[]> parameters() {
+    return Fixtures.parameters("batches", new String[] { "10", "1000", "100000" });
+  }
+
+  @Override
+  public void setUp(Params params) throws Exception {
+    Warehouse warehouse = Fixtures.warehouse(1, 1, params.integer("batches"), 1);
+    this._partner = warehouse.partner(Fixtures.partner(0));
+    this._product = warehouse.product(Fixtures.product(0));
+    this._random = new Random(1);
+  }
+
+  @Override
+  public void setUpIteration(int operations) {
+    // Put back as many batches as will be taken
+    for (int i = 0; i < operations; i++)
+      this._product.addBatch(this._partner, 1, Fixtures.price(this._random));
+  }
+
+  @Override
+  public long run() throws Exception {
+    return this._product.take(1);
+  }
+}
@@ -0,0 +1,53 @@
+package ggc.bench;
+
+import java.util.Map;
+import java.util.Random;
+
+import ggc.Warehouse;
+import ggc.products.Product;
+
+/**
+ * Warehouse.registerAcquisition() of a batch of a simple product, among many
+ * partners and products.
+ */
+class RegisterAcquisition extends Benchmark {
+  private static final int PARTNERS = 100;
+
+  private Warehouse _warehouse;
+  private String[] _products;
+  private Random _random;
+  private int _next;
+
+  @Override
+  public Map<String, String[]> parameters() {
+    return Fixtures.parameters("products", new String[] { "10", "1000", "100000" });
+  }
+
+  @Override
+  public void setUp(Params params) throws Exception {
+    int products = params.integer("products");
+    this._warehouse = Fixtures.warehouse(PARTNERS, products, products, 1);
+    this._products = new String[products];
+    for (int i = 0; i < products; i++)
+      this._products[i] = Fixtures.product(i);
+    this._random = new Random(1);
+    this._next = 0;
+  }
+
+  @Override
+  public void setUpIteration(int operations) throws Exception {
+    // Drop the batches acquired by the last iteration
+    for (String key : this._products) {
+      Product product = this._warehouse.product(key);
+      if (product.available() > 1)
+        product.take(product.available() - 1);
+    }
+  }
+
+  @Override
+  public long run() throws Exception {
+    int i = this._next++;
+    return this._warehouse.registerAcquisition(Fixtures.partner(i % PARTNERS),
+        this._products[i % this._products.length], 1, Fixtures.price(this._random));
+  }
+}
@@ -0,0 +1,50 @@
+package ggc.bench;
+
+import java.util.Map;
+
+import ggc.Money;
+import ggc.Warehouse;
+import ggc.partners.Partner;
+import ggc.products.Product;
+
+/**
+ * Warehouse.registerSale() of a unit of a simple product, among many partners
+ * and products.
+ */
+class RegisterSale extends Benchmark {
+  private static final int PARTNERS = 100;
+
+  private Warehouse _warehouse;
+  private Partner _partner;
+  private Product[] _products;
+  private int _next;
+
+  @Override
+  public Map<String, String[]> parameters() {
+    return Fixtures.parameters("products", new String[] { "10", "1000", "100000" });
+  }
+
+  @Override
+  public void setUp(Params params) throws Exception {
+    int products = params.integer("products");
+    this._warehouse = Fixtures.warehouse(PARTNERS, products, products, 1);
+    this._partner = this._warehouse.partner(Fixtures.partner(0));
+    this._products = new Product[products];
+    for (int i = 0; i < products; i++)
+      this._products[i] = this._warehouse.product(Fixtures.product(i));
+    this._next = 0;
+  }
+
+  @Override
+  public void setUpIteration(int operations) {
+    for (int i = 0; i < operations; i++)
+      this._products[(this._next + i) % this._products.length].addBatch(this._partner, 1, Money.UNIT);
+  }
+
+  @Override
+  public long run() throws Exception {
+    int i = this._next++;
+    return this._warehouse.registerSale(Fixtures.partner(i % PARTNERS),
+        this._products[i % this._products.length].key(), 10, 1);
+  }
+}
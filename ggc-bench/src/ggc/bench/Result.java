@@ -0,0 +1,142 @@
+package ggc.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measurements of a benchmark with some values of its parameters. Results are
+ * written one per line, as comma separated values, so that runs can be kept
+ * and compared later. Lines starting with '#' describe the run.
+ */
+public class Result {
+  /** Header of a results file. */
+  static final String HEADER = "benchmark,parameters,operations,iterations,score,error,min,max,unit";
+
+  /** Unit of the scores. */
+  static final String UNIT = "ns/op";
+
+  /** Name of the benchmark. */
+  private final String _benchmark;
+
+  /** Values of the parameters. */
+  private final String _parameters;
+
+  /** Operations run in each iteration. */
+  private final int _operations;
+
+  /** Number of iterations measured. */
+  private final int _iterations;
+
+  /** Mean time of an operation. */
+  private final double _score;
+
+  /** Half the width of the 99% confidence interval of the score. */
+  private final double _error;
+
+  /** Mean time of an operation in the fastest iteration. */
+  private final double _min;
+
+  /** Mean time of an operation in the slowest iteration. */
+  private final double _max;
+
+  Result(String benchmark, String parameters, int operations, int iterations, double score, double error,
+      double min, double max) {
+    this._benchmark = benchmark;
+    this._parameters = parameters;
+    this._operations = operations;
+    this._iterations = iterations;
+    this._score = score;
+    this._error = error;
+    this._min = min;
+    this._max = max;
+  }
+
+  /**
+   * Summarizes the iterations of a benchmark.
+   *
+   * @param benchmark Name of the benchmark.
+   * @param parameters Values of the parameters.
+   * @param operations Operations run in each iteration.
+   * @param times Mean time of an operation in each iteration, in nanoseconds.
+   * @return Result.
+   */
+  static Result of(String benchmark, String parameters, int operations, double[] times) {
+    int n = times.length;
+    double sum = 0, min = Double.MAX_VALUE, max = 0;
+    for (double time : times) {
+      sum += time;
+      min = Math.min(min, time);
+      max = Math.max(max, time);
+    }
+    double mean = sum / n;
+
+    double squares = 0;
+    for (double time : times)
+      squares += (time - mean) * (time - mean);
+    // Normal approximation, which is close enough from 10 iterations on
+    double error = n < 2 ? Double.NaN : 2.576 * Math.sqrt(squares / (n - 1)) / Math.sqrt(n);
+
+    return new Result(benchmark, parameters, operations, n, mean, error, min, max);
+  }
+
+  /**
+   * @return Key which identifies the benchmark and the values of its parameters
+   *         across runs.
+   */
+  String key() {
+    return this._benchmark + " " + this._parameters;
+  }
+
+  /**
+   * @return Mean time of an operation, in nanoseconds.
+   */
+  double score() {
+    return this._score;
+  }
+
+  /**
+   * @return Half the width of the 99% confidence interval of the score.
+   */
+  double error() {
+    return this._error;
+  }
+
+  /**
+   * @return A line of a results file.
+   */
+  String toCsv() {
+    return String.format(Locale.ROOT, "%s,%s,%d,%d,%.3f,%.3f,%.3f,%.3f,%s", this._benchmark, this._parameters,
+        this._operations, this._iterations, this._score, this._error, this._min, this._max, UNIT);
+  }
+
+  /**
+   * Reads a results file.
+   *
+   * @param path File.
+   * @return Results, in the order they were written.
+   * @throws IOException
+   */
+  static List<Result> read(Path path) throws IOException {
+    List<Result> results = new ArrayList<Result>();
+    for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+      if (line.isEmpty() || line.startsWith("#") || line.equals(HEADER))
+        continue;
+      String[] fields = line.split(",", -1);
+      results.add(new Result(fields[0], fields[1], Integer.parseInt(fields[2]), Integer.parseInt(fields[3]),
+          Double.parseDouble(fields[4]), Double.parseDouble(fields[5]), Double.parseDouble(fields[6]),
+          Double.parseDouble(fields[7])));
+    }
+    return results;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.ROOT, "%-22s %-36s %14.1f +- %10.1f %s", this._benchmark, this._parameters,
+        this._score, this._error, UNIT);
+  }
+}
@@ -0,0 +1,64 @@
+package ggc.bench;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import ggc.WarehouseManager;
+
+/**
+ * WarehouseManager.saveAs() and load() of a warehouse imported from a file,
+ * with transactions registered on top. Since only changed warehouses are
+ * written, each save follows a toggle of a notification.
+ */
+class SaveLoad extends Benchmark {
+  private WarehouseManager _manager;
+  private Path _file;
+  private boolean _save;
+  private String _product;
+
+  @Override
+  public Map<String, String[]> parameters() {
+    return Fixtures.parameters("lines", new String[] { "1000", "10000" }, "mode", new String[] { "save", "load" });
+  }
+
+  @Override
+  public int operations() {
+    return 5;
+  }
+
+  @Override
+  public void setUp(Params params) throws Exception {
+    int lines = params.integer("lines");
+    Path data = Fixtures.importFile(lines);
+    this._manager = new WarehouseManager();
+    this._manager.importFile(data.toString());
+    Files.delete(data);
+
+    for (int i = 0; i < lines / 10; i++)
+      this._manager.registerAcquisition(Fixtures.partner(0), Fixtures.importedProduct(lines, i), 1, 1.5);
+
+    this._file = Files.createTempFile("ggc-bench", ".dat");
+    this._file.toFile().deleteOnExit();
+    this._manager.saveAs(this._file.toString());
+    this._save = params.string("mode").equals("save");
+    this._product = Fixtures.importedProduct(lines, 0);
+  }
+
+  @Override
+  public long run() throws Exception {
+    if (this._save) {
+      this._manager.toggleNotification(Fixtures.partner(0), this._product);
+      this._manager.saveAs(this._file.toString());
+      return Files.size(this._file);
+    }
+    WarehouseManager manager = new WarehouseManager();
+    manager.load(this._file.toString());
+    return manager.date();
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    Files.deleteIfExists(this._file);
+  }
+}
@@ -0,0 +1,53 @@
+package ggc.bench;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import ggc.Money;
+import ggc.Warehouse;
+import ggc.products.Product;
+import ggc.visitors.SellChecker;
+
+/**
+ * SellChecker on a product made out of a tree of recipes, each with several
+ * components, none of which has stock but the simple products at the leaves.
+ */
+class SellCheck extends Benchmark {
+  private Product _product;
+
+  @Override
+  public Map<String, String[]> parameters() {
+    return Fixtures.parameters("depth", new String[] { "1", "3", "6" }, "fanout", new String[] { "2", "4" });
+  }
+
+  @Override
+  public void setUp(Params params) throws Exception {
+    int depth = params.integer("depth");
+    int fanout = params.integer("fanout");
+    Warehouse warehouse = Fixtures.warehouse(1, fanout, 0, 0);
+    for (int i = 0; i < fanout; i++)
+      warehouse.registerAcquisition(Fixtures.partner(0), Fixtures.product(i), Integer.MAX_VALUE / 2, Money.UNIT);
+
+    // Each level is made of every product of the level below it
+    String[] below = new String[fanout];
+    for (int i = 0; i < fanout; i++)
+      below[i] = Fixtures.product(i);
+    int[] amounts = new int[fanout];
+    Arrays.fill(amounts, 1);
+    for (int level = 1; level <= depth; level++) {
+      String[] keys = new String[fanout];
+      for (int i = 0; i < fanout; i++) {
+        keys[i] = "D" + level + "." + i;
+        warehouse.registerProduct(keys[i], 0.1, below, amounts);
+      }
+      below = keys;
+    }
+    this._product = warehouse.product(below[0]);
+  }
+
+  @Override
+  public long run() throws Exception {
+    this._product.accept(new SellChecker(1));
+    return 1;
+  }
+}
@@ -0,0 +1,96 @@
+package ggc;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Versions of an immutable state, which writers replace by compare-and-set
+ * instead of changing it under a lock. A writer computes the next state from
+ * the current one, and starts over if another writer replaced it meanwhile, so
+ * writers of different entities never wait for each other, and writers of the
+ * same entity only repeat their (short) computation.
+ *
+ * Like Versions, a state is only kept once replaced if some pinned reader may
+ * still see it, and states no pinned reader can see are dropped on the next
+ * write. Readers must be pinned on the clock while calling read(), and no
+ * writer may be running while a reader is being pinned.
+ *
+ * @param <S> Type of the state, which must be immutable.
+ */
+public final class AtomicVersions<S> {
+
+  /** Version of the state, in a list sorted from newest to oldest. */
+  private static final class Node<S> {
+    /** The state. */
+    private final S _state;
+
+    /** Epoch since which this version is the current one. */
+    private final long _version;
+
+    /** Previous version. */
+    private volatile Node<S> _next;
+
+    Node(S state, long version, Node<S> next) {
+      this._state = state;
+      this._version = version;
+      this._next = next;
+    }
+  }
+
+  /** Newest version. */
+  private final AtomicReference<Node<S>> _head;
+
+  /**
+   * @param state Initial state.
+   */
+  public AtomicVersions(S state) {
+    this._head = new AtomicReference<Node<S>>(new Node<S>(state, 0, null));
+  }
+
+  /**
+   * @return Current state.
+   */
+  public S get() {
+    return this._head.get()._state;
+  }
+
+  /**
+   * Replaces the current state by the one computed from it, retrying until no
+   * other writer replaces it in between.
+   *
+   * @param clock Clock.
+   * @param version Epoch of the write.
+   * @param change Computes the next state from the current one. May be called
+   *          several times, so it must have no side effects.
+   * @return The state replaced.
+   */
+  public S update(Versions.Clock clock, long version, UnaryOperator<S> change) {
+    while (true) {
+      Node<S> head = this._head.get();
+      // Keep the current state only if a pinned reader may still see it
+      Node<S> next = clock.newestPin() >= head._version ? head : head._next;
+      Node<S> node = new Node<S>(change.apply(head._state), version, next);
+      if (this._head.compareAndSet(head, node)) {
+        // Drop the versions older than the one seen by the oldest reader
+        long oldest = clock.oldestPin();
+        while (node._version > oldest && node._next != null)
+          node = node._next;
+        node._next = null;
+        return head._state;
+      }
+    }
+  }
+
+  /**
+   * Returns the state at a pinned epoch.
+   *
+   * @param epoch Pinned epoch.
+   * @return State.
+   */
+  public S read(long epoch) {
+    Node<S> node = this._head.get();
+    while (node._version > epoch)
+      node = node._next;
+    return node._state;
+  }
+}
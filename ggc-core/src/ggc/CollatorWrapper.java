@@ -1,5 +1,6 @@
 package ggc;
 
+import java.text.CollationKey;
 import java.text.Collator;
 
 import java.util.Comparator;
@@ -29,6 +30,17 @@ class CollatorWrapper implements Comparator<String>, Serializable {
     this._collator.setStrength(Collator.SECONDARY);
   }
 
+  /**
+   * Computes the collation key of a string, which can be compared bytewise
+   * without running the collator again.
+   * 
+   * @param s String.
+   * @return Collation key.
+   */
+  public CollationKey collationKey(String s) {
+    return this._collator.getCollationKey(s);
+  }
+
   @Override
   public int compare(String s1, String s2) {
     return this._collator.compare(s1, s2);
@@ -0,0 +1,346 @@
+package ggc;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Follows the journal written by a warehouse manager in another process,
+ * applying its records to a copy of the warehouse as they are written.
+ *
+ * The journal is read every interval, from where the last read stopped. When
+ * it starts with a checkpoint record not seen before, the records read before
+ * are gone. If the checkpoint saved a warehouse with every record applied to
+ * the copy, reading goes on after it; otherwise, the copy is replaced by the
+ * warehouse in the file the checkpoint names, and reading starts over from
+ * there. The same happens when a record can't be applied.
+ *
+ * Transactions are applied in the order of their ids, which may differ from
+ * the order of their records, as the journal's writer threads allocate them.
+ *
+ * Failed reads are retried every interval; how many failed in a row, and why
+ * the last one did, are kept for whoever checks on the copy.
+ */
+class Follower implements Runnable, AutoCloseable {
+  /** Most bytes a checkpoint record may take. */
+  private static final int CHECKPOINT_SIZE = 1 << 12;
+
+  /** Most bytes read at once, unless a single record takes more. */
+  private static final int CHUNK_SIZE = 1 << 20;
+
+  /** Journal file. */
+  private final Path _path;
+
+  /** Time between reads, in milliseconds. */
+  private final long _interval;
+
+  /** Gives the copy of the warehouse. */
+  private final Supplier<Warehouse> _warehouse;
+
+  /** Replaces the copy of the warehouse. */
+  private final Consumer<Warehouse> _replace;
+
+  /** Reading thread. */
+  private final Thread _thread;
+
+  /** Records of transactions read but not applied yet, by transaction id. */
+  private final TreeMap<Integer, String[]> _transactions;
+
+  /** Checkpoint record the journal started with when last read, or null. */
+  private String _checkpoint;
+
+  /** File named by the last checkpoint record, or null. */
+  private String _snapshot;
+
+  /** Position in the journal after the last record read. */
+  private long _position;
+
+  /** Has the journal been read from its start? */
+  private boolean _started;
+
+  /** Must reading start over? */
+  private boolean _stale;
+
+  /** Number of the last record read. */
+  private volatile long _sequence;
+
+  /** Last time every record written was applied, in milliseconds. */
+  private volatile long _caughtUp;
+
+  /** Number of reads which failed since the last one which didn't. */
+  private volatile int _failures;
+
+  /** Why the last read failed, or null if it didn't. */
+  private volatile String _failure;
+
+  /** Has close() been called? */
+  private volatile boolean _closed;
+
+  /**
+   * Starts following a journal.
+   *
+   * @param path Journal file.
+   * @param interval Time between reads, in milliseconds.
+   * @param warehouse Gives the copy of the warehouse.
+   * @param replace Replaces the copy of the warehouse.
+   */
+  Follower(Path path, long interval, Supplier<Warehouse> warehouse, Consumer<Warehouse> replace) {
+    this._path = path;
+    this._interval = interval;
+    this._warehouse = warehouse;
+    this._replace = replace;
+    this._transactions = new TreeMap<Integer, String[]>();
+    this._checkpoint = null;
+    this._snapshot = null;
+    this._position = 0;
+    this._started = false;
+    this._stale = true;
+    this._sequence = warehouse.get().journalSequence();
+    this._caughtUp = System.currentTimeMillis();
+    this._failures = 0;
+    this._failure = null;
+    this._closed = false;
+
+    this._thread = new Thread(this, "ggc-follower");
+    this._thread.setDaemon(true);
+    this._thread.start();
+  }
+
+  /**
+   * @return Number of the last record read.
+   */
+  long sequence() {
+    return this._sequence;
+  }
+
+  /**
+   * Returns how long the copy may be behind the journal: the time since every
+   * record written was last applied.
+   *
+   * @return Time, in milliseconds.
+   */
+  long lag() {
+    return System.currentTimeMillis() - this._caughtUp;
+  }
+
+  /**
+   * @return Number of reads which failed since the last one which didn't.
+   */
+  int failures() {
+    return this._failures;
+  }
+
+  /**
+   * @return Why the last read failed, or null if it didn't.
+   */
+  String failure() {
+    return this._failure;
+  }
+
+  @Override
+  public void run() {
+    while (!this._closed) {
+      try {
+        this.poll();
+        this._failures = 0;
+        this._failure = null;
+      } catch (IOException | RuntimeException e) {
+        // Try again from the last checkpoint
+        this._stale = true;
+        this._failure = e.getMessage() == null ? e.toString() : e.getMessage();
+        this._failures++;
+      }
+
+      try {
+        Thread.sleep(this._interval);
+      } catch (InterruptedException e) {
+        // Woken up to close
+      }
+    }
+  }
+
+  /**
+   * Reads the records written since the last read and applies them.
+   *
+   * @throws IOException if the journal can't be read, or a record can't be
+   *           applied.
+   */
+  private void poll() throws IOException {
+    long now = System.currentTimeMillis();
+    FileChannel channel;
+    try {
+      channel = FileChannel.open(this._path, StandardOpenOption.READ);
+    } catch (NoSuchFileException e) {
+      // Nothing written yet
+      this._caughtUp = now;
+      return;
+    }
+
+    try (channel) {
+      long size = channel.size();
+      String checkpoint = checkpoint(channel, size);
+      if (this._stale || !Objects.equals(checkpoint, this._checkpoint) || size < this._position)
+        this.restart(checkpoint);
+
+      // Only whole lines are read; the rest is still being written
+      ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size - this._position, CHUNK_SIZE));
+      while (this._position < size) {
+        buffer.clear().limit((int) Math.min(size - this._position, buffer.capacity()));
+        while (buffer.hasRemaining() && channel.read(buffer, this._position + buffer.position()) >= 0)
+          continue;
+
+        byte[] bytes = buffer.array();
+        int end = buffer.position();
+        while (end > 0 && bytes[end - 1] != '\n')
+          end--;
+        if (end == 0) {
+          if (buffer.hasRemaining() || buffer.limit() == size - this._position)
+            break;
+          // A record longer than the buffer
+          buffer = ByteBuffer.allocate((int) Math.min(size - this._position, 2L * buffer.capacity()));
+          continue;
+        }
+        for (String line : new String(bytes, 0, end, StandardCharsets.UTF_8).split("\n"))
+          if (!line.isEmpty())
+            this.apply(Journal.decode(line));
+        this._position += end;
+      }
+
+      if (this._position == size && this._transactions.isEmpty())
+        this._caughtUp = now;
+    }
+  }
+
+  /**
+   * Reads the checkpoint record the journal starts with.
+   *
+   * @param channel Journal.
+   * @param size Size of the journal.
+   * @return The line of the record, or null if the journal doesn't start with
+   *         one.
+   * @throws IOException
+   */
+  private static String checkpoint(FileChannel channel, long size) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, CHECKPOINT_SIZE));
+    channel.read(buffer, 0);
+    byte[] bytes = buffer.array();
+    for (int i = 0; i < buffer.position(); i++) {
+      if (bytes[i] == '\n') {
+        String line = new String(bytes, 0, i, StandardCharsets.UTF_8);
+        return Journal.decode(line)[1].equals("CHECKPOINT") ? line : null;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Starts reading the journal over, replacing the copy of the warehouse by the
+   * one saved at the checkpoint, unless it has every record before it.
+   *
+   * @param checkpoint Checkpoint record the journal starts with, or null.
+   * @throws IOException if there is no saved warehouse matching the journal.
+   */
+  private void restart(String checkpoint) throws IOException {
+    String[] record = checkpoint == null ? null : Journal.decode(checkpoint);
+    if (record != null)
+      this._snapshot = record[3];
+
+    if (!this._started && record == null) {
+      // The journal starts from the warehouse given
+    } else if (this._started && !this._stale && record != null && record[2].equals("SAVE")
+        && Long.parseLong(record[0]) == this._sequence && this._transactions.isEmpty()) {
+      // The warehouse saved is the copy
+    } else if (this._snapshot == null) {
+      throw new IOException("No saved warehouse to follow " + this._path + " from");
+    } else {
+      Warehouse warehouse = read(this._snapshot);
+      if (record != null && warehouse.journalSequence() != Long.parseLong(record[0]))
+        throw new IOException("Saved warehouse " + this._snapshot + " doesn't match " + this._path);
+      this._replace.accept(warehouse);
+      this._sequence = warehouse.journalSequence();
+      this._transactions.clear();
+    }
+
+    this._checkpoint = checkpoint;
+    this._position = checkpoint == null ? 0 : checkpoint.getBytes(StandardCharsets.UTF_8).length + 1;
+    this._started = true;
+    this._stale = false;
+  }
+
+  /**
+   * Applies a record read, unless it was applied before. Transactions wait
+   * until every transaction before them is applied.
+   *
+   * @param record Fields of the record, starting with its number.
+   * @throws IOException if records are missing, or the record can't be
+   *           applied.
+   */
+  private void apply(String[] record) throws IOException {
+    long sequence = Long.parseLong(record[0]);
+    if (sequence <= this._sequence)
+      return;
+    if (sequence != this._sequence + 1)
+      throw new IOException("Journal records " + (this._sequence + 1) + " to " + (sequence - 1) + " missing");
+
+    Warehouse warehouse = this._warehouse.get();
+    int id = Journal.transaction(record);
+    if (id >= 0) {
+      this._transactions.put(id, record);
+      while (!this._transactions.isEmpty() && this._transactions.firstKey() == warehouse.nextTransactionId())
+        Journal.replay(warehouse, Collections.singletonList(this._transactions.pollFirstEntry().getValue()));
+    } else {
+      // Every transaction before another change was written before it
+      Journal.replay(warehouse, new ArrayList<String[]>(this._transactions.values()));
+      this._transactions.clear();
+      Journal.replay(warehouse, Collections.singletonList(record));
+    }
+    this._sequence = sequence;
+  }
+
+  /**
+   * Reads a warehouse saved by a warehouse manager.
+   *
+   * @param filename File name.
+   * @return Warehouse.
+   * @throws IOException
+   */
+  private static Warehouse read(String filename) throws IOException {
+    try (ObjectInputStream o = new ObjectInputStream(new FileInputStream(filename))) {
+      return (Warehouse) o.readObject();
+    } catch (ClassNotFoundException e) {
+      throw new IOException(filename, e);
+    }
+  }
+
+  /**
+   * Stops following the journal.
+   */
+  @Override
+  public void close() {
+    this._closed = true;
+    this._thread.interrupt();
+
+    boolean interrupted = false;
+    while (this._thread.isAlive()) {
+      try {
+        this._thread.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted)
+      Thread.currentThread().interrupt();
+  }
+}
@@ -0,0 +1,449 @@
+package ggc;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.text.CollationKey;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Estimate of the memory retained by each subsystem of the warehouse, from a
+ * walk of its object graph. Subsystems are given roots, and the walk from a
+ * root stops at the roots of every subsystem, so that, for example, the
+ * transactions don't count the products they refer to. Every other object is
+ * counted once, in the first subsystem it's reached from.
+ *
+ * Sizes are estimated for a 64-bit JVM with compressed references: 12 byte
+ * object headers, 16 byte array headers, 4 byte references and objects
+ * aligned to 8 bytes. The fields of the warehouse's classes are read by
+ * reflection. Those of the JDK's can't be, so collections are walked through
+ * their interfaces, and the size of their nodes and tables is estimated from
+ * the layout of the implementations.
+ */
+public class Footprint {
+  /** Size of an object header. */
+  private static final int HEADER = 12;
+
+  /** Size of an array header. */
+  private static final int ARRAY_HEADER = 16;
+
+  /** Size of a reference. */
+  private static final int REFERENCE = 4;
+
+  /** Alignment of objects. */
+  private static final int ALIGNMENT = 8;
+
+  /** Size of a node of HashMap, HashSet and ConcurrentHashMap. */
+  private static final int HASH_NODE = 32;
+
+  /** Size of a node of LinkedHashMap and LinkedHashSet. */
+  private static final int LINKED_HASH_NODE = 40;
+
+  /** Size of a node of TreeMap and TreeSet. */
+  private static final int TREE_NODE = 40;
+
+  /**
+   * Size of a node of ConcurrentSkipListMap, with its share of the index nodes
+   * (one for every fourth node, and so on up).
+   */
+  private static final int SKIP_LIST_NODE = 32;
+
+  /** Size of a node of LinkedList. */
+  private static final int LIST_NODE = 24;
+
+  /** Load factor of the hash tables. */
+  private static final double LOAD_FACTOR = 0.75;
+
+  /**
+   * Memory retained by a subsystem.
+   */
+  public static final class Subsystem {
+    /** Name of the subsystem. */
+    private final String _name;
+
+    /** Number of entities. */
+    private int _entities;
+
+    /** Estimated bytes retained. */
+    private long _bytes;
+
+    /** Roots of the subsystem. */
+    private final List<Object> _roots;
+
+    /**
+     * @param name Name of the subsystem.
+     */
+    private Subsystem(String name) {
+      this._name = name;
+      this._roots = new ArrayList<Object>();
+    }
+
+    /**
+     * @return Name of the subsystem.
+     */
+    public String name() {
+      return this._name;
+    }
+
+    /**
+     * @return Number of entities.
+     */
+    public int entities() {
+      return this._entities;
+    }
+
+    /**
+     * @return Estimated bytes retained.
+     */
+    public long bytes() {
+      return this._bytes;
+    }
+
+    /**
+     * @return Estimated bytes retained by each entity, or 0 if there are none.
+     */
+    public double bytesPerEntity() {
+      return this._entities == 0 ? 0 : (double) this._bytes / this._entities;
+    }
+  }
+
+  /** Subsystems, in the order they were added. */
+  private final Map<String, Subsystem> _subsystems;
+
+  /** Every root, identified by reference. */
+  private final Set<Object> _roots;
+
+  /** Objects counted so far, identified by reference. */
+  private final Set<Object> _seen;
+
+  /** Size of the instances of each class measured. */
+  private final Map<Class<?>, Long> _sizes;
+
+  /** Reference fields of each class walked. */
+  private final Map<Class<?>, List<Field>> _fields;
+
+  public Footprint() {
+    this._subsystems = new LinkedHashMap<String, Subsystem>();
+    this._roots = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+    this._seen = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+    this._sizes = new HashMap<Class<?>, Long>();
+    this._fields = new HashMap<Class<?>, List<Field>>();
+  }
+
+  /**
+   * Adds entities and roots to a subsystem, which is created the first time.
+   * Must be called before measure().
+   *
+   * @param subsystem Name of the subsystem.
+   * @param entities Number of entities.
+   * @param roots Objects retained by the subsystem.
+   */
+  public void add(String subsystem, int entities, Object... roots) {
+    Subsystem s = this._subsystems.computeIfAbsent(subsystem, Subsystem::new);
+    s._entities += entities;
+    for (Object root : roots)
+      if (root != null && this._roots.add(root))
+        s._roots.add(root);
+  }
+
+  /**
+   * Walks the object graph from the roots of every subsystem, in the order they
+   * were added.
+   *
+   * @return The subsystems, in the order they were added.
+   */
+  public List<Subsystem> measure() {
+    ArrayDeque<Object> pending = new ArrayDeque<Object>();
+    for (Subsystem subsystem : this._subsystems.values()) {
+      for (Object root : subsystem._roots) {
+        if (!this._seen.add(root))
+          continue;
+        subsystem._bytes += this.visit(root, pending);
+
+        while (!pending.isEmpty()) {
+          Object object = pending.pop();
+          if (this._roots.contains(object) || !this._seen.add(object))
+            continue;
+          subsystem._bytes += this.visit(object, pending);
+        }
+      }
+    }
+    return this.subsystems();
+  }
+
+  /**
+   * @return The subsystems, in the order they were added.
+   */
+  public List<Subsystem> subsystems() {
+    return new ArrayList<Subsystem>(this._subsystems.values());
+  }
+
+  /**
+   * @return Estimated bytes retained by every subsystem.
+   */
+  public long total() {
+    long total = 0;
+    for (Subsystem subsystem : this._subsystems.values())
+      total += subsystem._bytes;
+    return total;
+  }
+
+  /**
+   * @return Table of the subsystems, with their entities, bytes and bytes per
+   *         entity, followed by the total.
+   */
+  public String table() {
+    StringBuilder builder = new StringBuilder();
+    builder.append(String.format("%-30s %10s %12s %12s", "subsystem", "entities", "bytes", "bytes/entity"));
+    for (Subsystem subsystem : this._subsystems.values()) {
+      builder.append('\n').append(String.format("%-30s %10d %12d", subsystem.name(), subsystem.entities(),
+          subsystem.bytes()));
+      if (subsystem.entities() > 0)
+        builder.append(String.format(" %12.1f", subsystem.bytesPerEntity()));
+      else
+        builder.append(String.format(" %12s", "-"));
+    }
+    builder.append('\n').append(String.format("%-30s %10s %12d", "total", "", this.total()));
+    return builder.toString();
+  }
+
+  /**
+   * Measures an object and queues the objects it refers to.
+   *
+   * @param object Object.
+   * @param pending Where to queue the objects it refers to.
+   * @return Estimated size of the object, and of the nodes and tables of
+   *         collections, which aren't walked.
+   */
+  private long visit(Object object, ArrayDeque<Object> pending) {
+    Class<?> type = object.getClass();
+    if (type.isArray())
+      return this.visitArray(object, pending);
+    if (object instanceof Class || object instanceof Enum || isCached(object))
+      return 0; // Shared by the whole process
+    if (isJdk(type))
+      return this.shallow(type) + this.visitJdk(object, pending);
+
+    for (Field field : this.fields(type)) {
+      try {
+        Object value = field.get(object);
+        if (value != null)
+          pending.push(value);
+      } catch (IllegalAccessException e) {
+        // Made accessible by fields(): never happens
+      }
+    }
+    return this.shallow(type);
+  }
+
+  /**
+   * @param array Array.
+   * @param pending Where to queue its elements.
+   * @return Estimated size of the array.
+   */
+  private long visitArray(Object array, ArrayDeque<Object> pending) {
+    Class<?> component = array.getClass().getComponentType();
+    int length = Array.getLength(array);
+    if (!component.isPrimitive())
+      for (Object element : (Object[]) array)
+        if (element != null)
+          pending.push(element);
+    return array(length, component.isPrimitive() ? size(component) : REFERENCE);
+  }
+
+  /**
+   * @param object Object of a class of the JDK.
+   * @param pending Where to queue the objects it refers to.
+   * @return Estimated size of the nodes and tables of the object, if it's a
+   *         collection, or of its characters, if it's a string.
+   */
+  private long visitJdk(Object object, ArrayDeque<Object> pending) {
+    if (object instanceof String) {
+      String string = (String) object;
+      boolean latin1 = string.chars().allMatch(c -> c < 256);
+      return array(string.length(), latin1 ? 1 : 2);
+    }
+    if (object instanceof CollationKey)
+      return this.shallow(String.class) + array(((CollationKey) object).toByteArray().length, 1);
+    if (object instanceof BitSet)
+      return array(((BitSet) object).size() / Long.SIZE, Long.BYTES);
+    if (object instanceof AtomicReference) {
+      Object value = ((AtomicReference<?>) object).get();
+      if (value != null)
+        pending.push(value);
+      return 0;
+    }
+
+    if (object instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) object;
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        if (entry.getKey() != null)
+          pending.push(entry.getKey());
+        if (entry.getValue() != null)
+          pending.push(entry.getValue());
+      }
+      if (map instanceof LinkedHashMap)
+        return hashTable(map.size()) + (long) map.size() * LINKED_HASH_NODE;
+      if (map instanceof HashMap || map instanceof ConcurrentHashMap)
+        return hashTable(map.size()) + (long) map.size() * HASH_NODE;
+      if (map instanceof IdentityHashMap)
+        return array(2 * tableCapacity(map.size()), REFERENCE);
+      if (map instanceof ConcurrentSkipListMap)
+        return (long) map.size() * SKIP_LIST_NODE;
+      return (long) map.size() * TREE_NODE;
+    }
+
+    if (object instanceof Collection) {
+      Collection<?> collection = (Collection<?>) object;
+      for (Object element : collection)
+        if (element != null)
+          pending.push(element);
+      // Sets are backed by a map, which isn't seen
+      if (collection instanceof LinkedHashSet)
+        return this.shallow(LinkedHashMap.class) + hashTable(collection.size())
+            + (long) collection.size() * LINKED_HASH_NODE;
+      if (collection instanceof HashSet)
+        return this.shallow(HashMap.class) + hashTable(collection.size()) + (long) collection.size() * HASH_NODE;
+      if (collection instanceof TreeSet)
+        return this.shallow(TreeMap.class) + (long) collection.size() * TREE_NODE;
+      if (collection instanceof ConcurrentSkipListSet)
+        return this.shallow(ConcurrentSkipListMap.class) + (long) collection.size() * SKIP_LIST_NODE;
+      if (collection instanceof LinkedList)
+        return (long) collection.size() * LIST_NODE;
+      // Backed by an array, assumed to be full
+      return array(collection.size(), REFERENCE);
+    }
+
+    // Anything else is assumed to hold nothing of the warehouse's
+    return 0;
+  }
+
+  /**
+   * @param type Class of an object.
+   * @return Estimated size of the instances of the class, without the objects
+   *         they refer to.
+   */
+  private long shallow(Class<?> type) {
+    Long size = this._sizes.get(type);
+    if (size == null) {
+      long fields = 0;
+      for (Class<?> c = type; c != null; c = c.getSuperclass())
+        for (Field field : c.getDeclaredFields())
+          if (!Modifier.isStatic(field.getModifiers()))
+            fields += field.getType().isPrimitive() ? size(field.getType()) : REFERENCE;
+      size = align(HEADER + fields);
+      this._sizes.put(type, size);
+    }
+    return size;
+  }
+
+  /**
+   * @param type Class of the warehouse's.
+   * @return Its reference fields and those it inherits, made accessible.
+   */
+  private List<Field> fields(Class<?> type) {
+    List<Field> fields = this._fields.get(type);
+    if (fields == null) {
+      fields = new ArrayList<Field>();
+      for (Class<?> c = type; c != null && !isJdk(c); c = c.getSuperclass())
+        for (Field field : c.getDeclaredFields())
+          if (!Modifier.isStatic(field.getModifiers()) && !field.getType().isPrimitive()
+              && field.trySetAccessible())
+            fields.add(field);
+      this._fields.put(type, fields);
+    }
+    return fields;
+  }
+
+  /**
+   * @param type Class.
+   * @return Whether it belongs to the JDK, so its fields can't be read.
+   */
+  private static boolean isJdk(Class<?> type) {
+    String name = type.getName();
+    return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("jdk.")
+        || name.startsWith("sun.");
+  }
+
+  /**
+   * @param object Object.
+   * @return Whether it's a boxed value which valueOf() takes from a cache.
+   */
+  private static boolean isCached(Object object) {
+    if (object instanceof Integer || object instanceof Long || object instanceof Short) {
+      long value = ((Number) object).longValue();
+      return value >= -128 && value <= 127;
+    }
+    return object instanceof Boolean;
+  }
+
+  /**
+   * @param type Primitive type.
+   * @return Its size.
+   */
+  private static int size(Class<?> type) {
+    if (type == long.class || type == double.class)
+      return 8;
+    if (type == int.class || type == float.class)
+      return 4;
+    if (type == short.class || type == char.class)
+      return 2;
+    return 1;
+  }
+
+  /**
+   * @param length Number of elements.
+   * @param element Size of an element.
+   * @return Size of an array.
+   */
+  private static long array(int length, int element) {
+    return align(ARRAY_HEADER + (long) length * element);
+  }
+
+  /**
+   * @param size Number of entries.
+   * @return Size of the table of a hash map with the entries, which has grown
+   *         from the default capacity.
+   */
+  private static long hashTable(int size) {
+    return size == 0 ? 0 : array(tableCapacity(size), REFERENCE);
+  }
+
+  /**
+   * @param size Number of entries.
+   * @return Capacity of a hash table with the entries.
+   */
+  private static int tableCapacity(int size) {
+    int capacity = 16;
+    while (capacity * LOAD_FACTOR < size)
+      capacity *= 2;
+    return capacity;
+  }
+
+  /**
+   * @param size Size.
+   * @return Size, rounded up to the alignment of objects.
+   */
+  private static long align(long size) {
+    return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+  }
+}
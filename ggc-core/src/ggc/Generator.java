@@ -0,0 +1,573 @@
+package ggc;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates synthetic warehouses: an import file, and a script of operations
+ * to run on the warehouse imported, one request per line as served by the
+ * server ("sale|P1|X2|10|3"). The same options and seed always generate the
+ * same files.
+ *
+ * Products are either simple or made out of products of the levels below
+ * them, up to the recipe depth. Keys and recipes follow from the seed and the
+ * index of each entity, and the files are written as they are generated, so
+ * that warehouses of any size can be generated with little memory: only the
+ * stock of each product, and the unpaid sales, are kept. The script keeps
+ * track of the stock, so that its sales and breakdowns succeed and its
+ * payments refer to the sales it made; a sale which can't be made is replaced
+ * by the acquisition of the product missing.
+ *
+ * Options, given as "-name value":
+ *
+ * <pre>
+ * seed        seed of every choice (1)
+ * partners    number of partners (100)
+ * products    number of products (1000)
+ * derived     share of the products made out of others (0.2)
+ * depth       levels of recipes above the simple products (3)
+ * fanout      components of each recipe (3)
+ * batches     batches in the import file, at least one per product (5000)
+ * price       price distribution: uniform, lognormal or pareto (lognormal)
+ * minPrice    lowest price (1)
+ * maxPrice    highest price (1000)
+ * skew        popularity skew of partners and products, from 0 to 1 (0.5)
+ * operations  operations in the script (10000)
+ * mix         weights of the operations (sale=40,acquisition=25,payment=20,breakdown=3,query=12)
+ * dateEvery   operations between date advances, or 0 for none (1000)
+ * import      file to write the import file to, or "-" (none)
+ * script      file to write the script to, or "-" (none)
+ * </pre>
+ */
+public class Generator {
+  /** Operations of the script, in the order of their weights. */
+  private static final String[] OPERATIONS = { "sale", "acquisition", "payment", "breakdown", "query" };
+
+  /** Addresses of the partners. */
+  private static final String[] CITIES = { "Lisboa", "Porto", "Braga", "Coimbra", "Faro", "Évora", "Aveiro" };
+
+  /** Options of the generator. */
+  public static class Options {
+    /** Seed of every choice. */
+    long _seed = 1;
+
+    /** Number of partners. */
+    int _partners = 100;
+
+    /** Number of products. */
+    int _products = 1000;
+
+    /** Share of the products made out of others. */
+    double _derived = 0.2;
+
+    /** Levels of recipes above the simple products. */
+    int _depth = 3;
+
+    /** Components of each recipe. */
+    int _fanout = 3;
+
+    /** Batches in the import file. */
+    long _batches = 5000;
+
+    /** Price distribution. */
+    String _price = "lognormal";
+
+    /** Lowest price. */
+    double _minPrice = 1;
+
+    /** Highest price. */
+    double _maxPrice = 1000;
+
+    /** Popularity skew of partners and products. */
+    double _skew = 0.5;
+
+    /** Operations in the script. */
+    long _operations = 10000;
+
+    /** Weights of the operations, in the order of OPERATIONS. */
+    int[] _mix = { 40, 25, 20, 3, 12 };
+
+    /** Operations between date advances, or 0. */
+    int _dateEvery = 1000;
+
+    /** File to write the import file to, "-" for the standard output, or null. */
+    String _importFile = null;
+
+    /** File to write the script to, "-" for the standard output, or null. */
+    String _scriptFile = null;
+
+    /**
+     * Reads options given as "-name value".
+     *
+     * @param args Options.
+     * @return Options.
+     * @throws IllegalArgumentException if an option is unknown or invalid.
+     */
+    public static Options parse(String... args) {
+      Options options = new Options();
+      for (int i = 0; i + 1 < args.length; i += 2) {
+        String value = args[i + 1];
+        switch (args[i]) {
+          case "-seed" -> options._seed = Long.parseLong(value);
+          case "-partners" -> options._partners = Integer.parseInt(value);
+          case "-products" -> options._products = Integer.parseInt(value);
+          case "-derived" -> options._derived = Double.parseDouble(value);
+          case "-depth" -> options._depth = Integer.parseInt(value);
+          case "-fanout" -> options._fanout = Integer.parseInt(value);
+          case "-batches" -> options._batches = Long.parseLong(value);
+          case "-price" -> options._price = value;
+          case "-minPrice" -> options._minPrice = Double.parseDouble(value);
+          case "-maxPrice" -> options._maxPrice = Double.parseDouble(value);
+          case "-skew" -> options._skew = Double.parseDouble(value);
+          case "-operations" -> options._operations = Long.parseLong(value);
+          case "-mix" -> options._mix = parseMix(value);
+          case "-dateEvery" -> options._dateEvery = Integer.parseInt(value);
+          case "-import" -> options._importFile = value;
+          case "-script" -> options._scriptFile = value;
+          default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+        }
+      }
+      if (args.length % 2 != 0)
+        throw new IllegalArgumentException("Missing value of " + args[args.length - 1]);
+      if (options._partners < 1 || options._products < 1 || options._fanout < 1 || options._depth < 0
+          || options._skew < 0 || options._skew >= 1 || options._minPrice <= 0 || options._maxPrice < options._minPrice)
+        throw new IllegalArgumentException("Invalid options");
+      return options;
+    }
+
+    private static int[] parseMix(String value) {
+      Map<String, Integer> weights = new LinkedHashMap<String, Integer>();
+      for (String operation : OPERATIONS)
+        weights.put(operation, 0);
+      for (String weight : value.split(",")) {
+        String[] pair = weight.split("=");
+        if (!weights.containsKey(pair[0]))
+          throw new IllegalArgumentException("Unknown operation: " + pair[0]);
+        weights.put(pair[0], Integer.parseInt(pair[1]));
+      }
+      return weights.values().stream().mapToInt(Integer::intValue).toArray();
+    }
+  }
+
+  /** Options. */
+  private final Options _options;
+
+  /** Source of the choices made while writing. */
+  private final Random _random;
+
+  /** Number of simple products, which come first. */
+  private final int _simple;
+
+  /** Stock of each product, as the script leaves it. */
+  private final int[] _stock;
+
+  /** Products whose stock take() changed, followed by their stock before. */
+  private int[] _undo;
+
+  /** Number of entries of the undo log. */
+  private int _undoCount;
+
+  /** Ids of the sales not paid yet. */
+  private int[] _unpaid;
+
+  /** Number of unpaid sales. */
+  private int _unpaidCount;
+
+  /** Id of the next transaction. */
+  private int _nextTransaction;
+
+  /** Current date. */
+  private int _date;
+
+  /**
+   * @param options Options.
+   */
+  public Generator(Options options) {
+    this._options = options;
+    this._random = new Random(options._seed);
+    int derived = options._depth == 0 ? 0 : (int) Math.round(options._products * options._derived);
+    this._simple = Math.max(1, options._products - derived);
+    this._stock = new int[options._products];
+    this._undo = new int[16];
+    this._undoCount = 0;
+    this._unpaid = new int[16];
+    this._unpaidCount = 0;
+    this._nextTransaction = 0;
+    this._date = 0;
+  }
+
+  /**
+   * @param i Partner index.
+   * @return Key of the partner.
+   */
+  public static String partnerKey(int i) {
+    return "P" + i;
+  }
+
+  /**
+   * @param i Product index.
+   * @return Key of the product.
+   */
+  public static String productKey(int i) {
+    return "X" + i;
+  }
+
+  /**
+   * Returns the level of a product: 0 for simple products, and the derived
+   * products split evenly among the levels above.
+   *
+   * @param product Product index.
+   * @return Level.
+   */
+  private int level(int product) {
+    if (product < this._simple)
+      return 0;
+    int derived = this._options._products - this._simple;
+    return 1 + (int) ((long) (product - this._simple) * this._options._depth / derived);
+  }
+
+  /**
+   * @param level Level, at least 1.
+   * @return Index of the first product of the level.
+   */
+  private int firstOfLevel(int level) {
+    int derived = this._options._products - this._simple;
+    // Inverse of level(): the first index whose level is this one
+    return this._simple + (int) (((long) (level - 1) * derived + this._options._depth - 1) / this._options._depth);
+  }
+
+  /**
+   * Returns the recipe of a derived product: components, with at least one
+   * from the level right below it, so that recipes reach the full depth.
+   *
+   * @param product Product index.
+   * @return Indexes of the components followed by their amounts.
+   */
+  private int[] recipe(int product) {
+    Random random = new Random(this._options._seed * 0x9E3779B97F4A7C15L + product);
+    int level = this.level(product);
+    int below = level == 1 ? 0 : this.firstOfLevel(level - 1);
+    int end = this.firstOfLevel(level);
+
+    int count = Math.min(this._options._fanout, end);
+    int[] recipe = new int[2 * count];
+    // The level below may be empty, with fewer derived products than levels
+    recipe[0] = end > below ? below + random.nextInt(end - below) : random.nextInt(end);
+    for (int i = 1; i < count; i++) {
+      int component;
+      do
+        component = random.nextInt(end);
+      while (contains(recipe, i, component));
+      recipe[i] = component;
+    }
+    for (int i = 0; i < count; i++)
+      recipe[count + i] = 1 + random.nextInt(3);
+    return recipe;
+  }
+
+  private static boolean contains(int[] values, int count, int value) {
+    for (int i = 0; i < count; i++)
+      if (values[i] == value)
+        return true;
+    return false;
+  }
+
+  /**
+   * @param recipe Recipe, as returned by recipe().
+   * @return Recipe, as in import files.
+   */
+  private static String recipeText(int[] recipe) {
+    int count = recipe.length / 2;
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < count; i++)
+      text.append(i == 0 ? "" : "#").append(productKey(recipe[i])).append(':').append(recipe[count + i]);
+    return text.toString();
+  }
+
+  /**
+   * Picks an index, favouring the lower ones as much as the skew asks.
+   *
+   * @param count Number of indexes.
+   * @return Index.
+   */
+  private int pick(int count) {
+    double u = this._random.nextDouble();
+    return Math.min(count - 1, (int) (count * Math.pow(u, 1 / (1 - this._options._skew))));
+  }
+
+  /**
+   * @return A price, from the price distribution.
+   */
+  private String price() {
+    Options o = this._options;
+    double price = switch (o._price) {
+      case "uniform" -> o._minPrice + this._random.nextDouble() * (o._maxPrice - o._minPrice);
+      case "pareto" -> o._minPrice / Math.pow(1 - this._random.nextDouble(), 1 / 1.5);
+      default -> Math.sqrt(o._minPrice * o._maxPrice) * Math.exp(this._random.nextGaussian());
+    };
+    price = Math.max(o._minPrice, Math.min(o._maxPrice, price));
+    return String.format(Locale.ROOT, "%.2f", price);
+  }
+
+  /**
+   * @return Number of units of a batch or an operation.
+   */
+  private int amount() {
+    return 1 + this.pick(20);
+  }
+
+  /**
+   * Writes the import file: the partners, then a batch of each product, in the
+   * order of their levels, so that components come before the products made
+   * out of them, then the other batches.
+   *
+   * @param out Import file.
+   * @throws IOException
+   */
+  public void writeImport(Writer out) throws IOException {
+    Options o = this._options;
+    for (int i = 0; i < o._partners; i++)
+      out.write("PARTNER|" + partnerKey(i) + "|Partner " + i + "|" + CITIES[i % CITIES.length] + "\n");
+
+    for (long i = 0; i < Math.max(o._batches, o._products); i++) {
+      int product = i < o._products ? (int) i : this.pick(o._products);
+      String partner = partnerKey(this.pick(o._partners));
+      int amount = this.amount();
+      this._stock[product] += amount;
+      if (product < this._simple) {
+        out.write("BATCH_S|" + productKey(product) + "|" + partner + "|" + this.price() + "|" + amount + "\n");
+      } else {
+        Random random = new Random(o._seed + product);
+        String aggravation = String.format(Locale.ROOT, "%.2f", 0.05 + 0.05 * random.nextInt(6));
+        out.write("BATCH_M|" + productKey(product) + "|" + partner + "|" + this.price() + "|" + amount + "|"
+            + aggravation + "|" + recipeText(this.recipe(product)) + "\n");
+      }
+    }
+  }
+
+  /**
+   * Writes the script of operations. Must follow writeImport(), so that the
+   * stock is known.
+   *
+   * @param out Script.
+   * @throws IOException
+   */
+  public void writeScript(Writer out) throws IOException {
+    Options o = this._options;
+    int total = Arrays.stream(o._mix).sum();
+    for (long n = 1; n <= o._operations; n++) {
+      if (o._dateEvery > 0 && n % o._dateEvery == 0) {
+        this._date++;
+        out.write("advanceDate|1\n");
+        continue;
+      }
+
+      int choice = this._random.nextInt(total);
+      int operation = 0;
+      while (choice >= o._mix[operation])
+        choice -= o._mix[operation++];
+
+      switch (OPERATIONS[operation]) {
+        case "sale" -> this.sale(out);
+        case "acquisition" -> this.acquisition(out, this.pick(o._products));
+        case "payment" -> this.payment(out);
+        case "breakdown" -> this.breakdown(out);
+        default -> this.query(out);
+      }
+    }
+  }
+
+  /**
+   * Writes a sale of a product, or the acquisition of a component missing.
+   *
+   * @param out Script.
+   * @throws IOException
+   */
+  private void sale(Writer out) throws IOException {
+    int product = this.pick(this._options._products);
+    int amount = this.amount();
+    this._undoCount = 0;
+    int missing = this.take(product, amount);
+    if (missing >= 0) {
+      // Undo the part of the sale taken, and stock the product missing instead
+      while (this._undoCount > 0) {
+        this._undoCount -= 2;
+        this._stock[this._undo[this._undoCount]] = this._undo[this._undoCount + 1];
+      }
+      this.acquisition(out, missing);
+      return;
+    }
+
+    out.write("sale|" + partnerKey(this.pick(this._options._partners)) + "|" + productKey(product) + "|"
+        + (this._date + 1 + this._random.nextInt(30)) + "|" + amount + "\n");
+    if (this._unpaidCount == this._unpaid.length)
+      this._unpaid = Arrays.copyOf(this._unpaid, 2 * this._unpaidCount);
+    this._unpaid[this._unpaidCount++] = this._nextTransaction++;
+  }
+
+  /**
+   * Takes units of a product from the stock as a sale would, making the units
+   * missing out of their components.
+   *
+   * @param product Product index.
+   * @param amount Number of units.
+   * @return Index of a simple product missing, or -1 if the units were taken.
+   */
+  private int take(int product, int amount) {
+    int available = this._stock[product];
+    if (available < amount && product < this._simple)
+      return product;
+
+    if (this._undoCount == this._undo.length)
+      this._undo = Arrays.copyOf(this._undo, 2 * this._undoCount);
+    this._undo[this._undoCount++] = product;
+    this._undo[this._undoCount++] = available;
+    if (available >= amount) {
+      this._stock[product] -= amount;
+      return -1;
+    }
+
+    this._stock[product] = 0;
+    int[] recipe = this.recipe(product);
+    int count = recipe.length / 2;
+    for (int i = 0; i < count; i++) {
+      int missing = this.take(recipe[i], (amount - available) * recipe[count + i]);
+      if (missing >= 0)
+        return missing;
+    }
+    return -1;
+  }
+
+  /**
+   * Writes an acquisition of a product.
+   *
+   * @param out Script.
+   * @param product Product index.
+   * @throws IOException
+   */
+  private void acquisition(Writer out, int product) throws IOException {
+    int amount = this.amount() * 5;
+    this._stock[product] += amount;
+    this._nextTransaction++;
+    out.write("acquisition|" + partnerKey(this.pick(this._options._partners)) + "|" + productKey(product) + "|"
+        + amount + "|" + this.price() + "\n");
+  }
+
+  /**
+   * Writes the payment of an unpaid sale, or a sale if there is none.
+   *
+   * @param out Script.
+   * @throws IOException
+   */
+  private void payment(Writer out) throws IOException {
+    if (this._unpaidCount == 0) {
+      this.sale(out);
+      return;
+    }
+    // Sales near the front of the list, mostly older ones, are favoured
+    int i = this.pick(this._unpaidCount);
+    int id = this._unpaid[i];
+    this._unpaid[i] = this._unpaid[--this._unpaidCount];
+    out.write("payment|" + id + "\n");
+  }
+
+  /**
+   * Writes a breakdown of units of a derived product in stock, or a sale if
+   * none is.
+   *
+   * @param out Script.
+   * @throws IOException
+   */
+  private void breakdown(Writer out) throws IOException {
+    int derived = this._options._products - this._simple;
+    int product = derived == 0 ? -1 : this._simple + this.pick(derived);
+    if (product < 0 || this._stock[product] == 0) {
+      this.sale(out);
+      return;
+    }
+
+    int amount = 1 + this._random.nextInt(this._stock[product]);
+    this._stock[product] -= amount;
+    // Each component gets as many units as were broken down
+    int[] recipe = this.recipe(product);
+    for (int i = 0; i < recipe.length / 2; i++)
+      this._stock[recipe[i]] += amount;
+    this._nextTransaction++;
+    out.write("breakdown|" + partnerKey(this.pick(this._options._partners)) + "|" + productKey(product) + "|"
+        + amount + "\n");
+  }
+
+  /**
+   * Writes a query of a partner, a product or the balance.
+   *
+   * @param out Script.
+   * @throws IOException
+   */
+  private void query(Writer out) throws IOException {
+    String partner = partnerKey(this.pick(this._options._partners));
+    switch (this._random.nextInt(8)) {
+      case 0 -> out.write("partner|" + partner + "\n");
+      case 1 -> out.write("history|" + partner + "\n");
+      case 2 -> out.write("sales|" + partner + "\n");
+      case 3 -> out.write("acquisitions|" + partner + "\n");
+      case 4 -> out.write("batchesByProduct|" + productKey(this.pick(this._options._products)) + "\n");
+      case 5 -> out.write("batchesByPrice|" + this.price() + "\n");
+      case 6 -> out.write("transaction|" + this._random.nextInt(Math.max(1, this._nextTransaction)) + "\n");
+      default -> out.write("balance\n");
+    }
+  }
+
+  /**
+   * Writes a file, or to the standard output, which is left open.
+   *
+   * @param file File name, or "-".
+   * @param write Writes the contents.
+   * @throws IOException
+   */
+  private static void write(String file, Contents write) throws IOException {
+    boolean standard = file.equals("-");
+    Writer out = new BufferedWriter(new OutputStreamWriter(standard ? System.out : new FileOutputStream(file),
+        StandardCharsets.UTF_8), 1 << 16);
+    try {
+      write.to(out);
+    } finally {
+      if (standard)
+        out.flush();
+      else
+        out.close();
+    }
+  }
+
+  /** Writes the contents of a file. */
+  private interface Contents {
+    void to(Writer out) throws IOException;
+  }
+
+  /**
+   * Generates a warehouse, with the options described above.
+   *
+   * @param args Options.
+   * @throws IOException
+   */
+  public static void main(String[] args) throws IOException {
+    Options options = Options.parse(args);
+    Generator generator = new Generator(options);
+
+    // The script needs the stock left by the import file, even if not written
+    if (options._importFile == null)
+      generator.writeImport(Writer.nullWriter());
+    else
+      write(options._importFile, generator::writeImport);
+    if (options._scriptFile != null)
+      write(options._scriptFile, generator::writeScript);
+  }
+}
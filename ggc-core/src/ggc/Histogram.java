@@ -0,0 +1,131 @@
+package ggc;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of non-negative values, such as latencies in nanoseconds, which
+ * may be recorded concurrently. Like an HDR histogram, values below 32 have a
+ * bucket each, and every larger power of two is split in 16 buckets, so a
+ * value is known to within 1/16 of it, over the whole range of longs, in a
+ * fixed number of buckets.
+ */
+public class Histogram {
+  /** Bits of a value, after its most significant, which select its bucket. */
+  private static final int SUB_BUCKET_BITS = 4;
+
+  /** Number of buckets. */
+  private static final int BUCKETS = bucket(Long.MAX_VALUE) + 1;
+
+  /** Number of values in each bucket. */
+  private final AtomicLongArray _counts;
+
+  /** Number of values. */
+  private final LongAdder _count;
+
+  /** Sum of the values. */
+  private final LongAdder _sum;
+
+  /** Largest value. */
+  private final AtomicLong _max;
+
+  public Histogram() {
+    this._counts = new AtomicLongArray(BUCKETS);
+    this._count = new LongAdder();
+    this._sum = new LongAdder();
+    this._max = new AtomicLong();
+  }
+
+  /**
+   * @param value Non-negative value.
+   * @return Index of the bucket of the value.
+   */
+  private static int bucket(long value) {
+    int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+    return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+  }
+
+  /**
+   * @param bucket Index of a bucket.
+   * @return Largest value in the bucket.
+   */
+  public static long highest(int bucket) {
+    int shift = Math.max(0, (bucket >> SUB_BUCKET_BITS) - 1);
+    long lowest = (long) (bucket - (shift << SUB_BUCKET_BITS)) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+
+  /**
+   * Records a value. Negative values are recorded as 0.
+   *
+   * @param value Value.
+   */
+  public void record(long value) {
+    value = Math.max(0, value);
+    this._counts.incrementAndGet(bucket(value));
+    this._count.increment();
+    this._sum.add(value);
+
+    long max = this._max.get();
+    while (value > max && !this._max.compareAndSet(max, value))
+      max = this._max.get();
+  }
+
+  /**
+   * @return Number of buckets.
+   */
+  public int buckets() {
+    return BUCKETS;
+  }
+
+  /**
+   * @param bucket Index of a bucket.
+   * @return Number of values in the bucket.
+   */
+  public long count(int bucket) {
+    return this._counts.get(bucket);
+  }
+
+  /**
+   * @return Number of values.
+   */
+  public long count() {
+    return this._count.sum();
+  }
+
+  /**
+   * @return Mean of the values, or 0 if there are none.
+   */
+  public double mean() {
+    long count = this._count.sum();
+    return count == 0 ? 0 : (double) this._sum.sum() / count;
+  }
+
+  /**
+   * @return Largest value, or 0 if there are none.
+   */
+  public long max() {
+    return this._max.get();
+  }
+
+  /**
+   * @param fraction Fraction of the values, between 0 and 1.
+   * @return Largest value of the bucket which holds the value greater or equal
+   *         to that fraction of the values, or 0 if there are none.
+   */
+  public long valueAt(double fraction) {
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++)
+      total += this._counts.get(i);
+    long rank = Math.max(1, (long) Math.ceil(fraction * total));
+
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += this._counts.get(i);
+      if (seen >= rank)
+        return Math.min(highest(i), this.max());
+    }
+    return 0;
+  }
+}
@@ -0,0 +1,370 @@
+package ggc;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import ggc.products.Batch;
+
+/**
+ * Append-only log of the changes made to a warehouse since it was last saved.
+ * Each record is a line with its number and the fields of the change,
+ * separated by '|'. Records are buffered by append() and only written, and
+ * forced to the disk, by sync(), so that many records share a single sync.
+ *
+ * Records may be appended by many threads, also while another thread syncs.
+ * Records of changes which register a transaction end with its id, since
+ * changes to different product families may be recorded in a different order
+ * than they were applied.
+ *
+ * Once emptied, the journal starts with a checkpoint record, numbered as the
+ * last record before it, which names the file the warehouse was saved to or
+ * loaded from. Other processes following the journal notice from it that the
+ * records they read before are gone.
+ */
+class Journal implements Closeable {
+  /** Journal file. */
+  private final FileChannel _channel;
+
+  /** Records appended and not yet written. Guards the record numbers. */
+  private StringBuilder _pending;
+
+  /** Number of the last record appended. */
+  private long _sequence;
+
+  /** Held while writing records. */
+  private final Object _syncLock;
+
+  /**
+   * Opens a journal, creating it if needed.
+   *
+   * @param path Journal file.
+   * @throws IOException
+   */
+  Journal(Path path) throws IOException {
+    this._channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    this._pending = new StringBuilder();
+    this._sequence = 0;
+    this._syncLock = new Object();
+  }
+
+  /**
+   * Reads every complete record. A record which was only partly written, when
+   * the process stopped, is dropped from the file.
+   *
+   * @return Fields of each record, starting with its number.
+   * @throws IOException
+   */
+  List<String[]> read() throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate((int) this._channel.size());
+    this._channel.read(buffer, 0);
+
+    // Only keep whole lines
+    byte[] bytes = buffer.array();
+    int end = bytes.length;
+    while (end > 0 && bytes[end - 1] != '\n')
+      end--;
+    this._channel.truncate(end);
+    this._channel.position(end);
+
+    List<String[]> records = new ArrayList<String[]>();
+    for (String line : new String(bytes, 0, end, StandardCharsets.UTF_8).split("\n"))
+      if (!line.isEmpty())
+        records.add(decode(line));
+    return records;
+  }
+
+  /**
+   * @return Number of the last record appended.
+   */
+  long sequence() {
+    synchronized (this._syncLock) {
+      synchronized (this) {
+        return this._sequence;
+      }
+    }
+  }
+
+  /**
+   * @param sequence Number of the last record appended.
+   */
+  void setSequence(long sequence) {
+    synchronized (this._syncLock) {
+      synchronized (this) {
+        this._sequence = sequence;
+      }
+    }
+  }
+
+  /**
+   * Buffers a record, numbering it after the last one.
+   *
+   * @param fields Fields of the record.
+   */
+  synchronized void append(String[] fields) {
+    StringBuilder pending = this._pending;
+    pending.append(++this._sequence);
+    for (String field : fields) {
+      pending.append('|');
+      escape(pending, field);
+    }
+    pending.append('\n');
+  }
+
+  /**
+   * Writes the buffered records and forces them to the disk. Records appended
+   * before the call are durable once it returns.
+   *
+   * @throws IOException
+   */
+  void sync() throws IOException {
+    synchronized (this._syncLock) {
+      StringBuilder pending;
+      synchronized (this) {
+        if (this._pending.length() == 0)
+          return;
+        pending = this._pending;
+        this._pending = new StringBuilder(pending.capacity());
+      }
+
+      ByteBuffer buffer = ByteBuffer.wrap(pending.toString().getBytes(StandardCharsets.UTF_8));
+      while (buffer.hasRemaining())
+        this._channel.write(buffer);
+      this._channel.force(false);
+    }
+  }
+
+  /**
+   * Drops every record, once the warehouse has been saved with them, and
+   * writes a checkpoint record instead, numbered as the last record.
+   *
+   * @param checkpoint Fields of the checkpoint record.
+   * @throws IOException
+   */
+  void truncate(String[] checkpoint) throws IOException {
+    synchronized (this._syncLock) {
+      synchronized (this) {
+        this._pending.setLength(0);
+        this._pending.append(this._sequence);
+        for (String field : checkpoint) {
+          this._pending.append('|');
+          escape(this._pending, field);
+        }
+        this._pending.append('\n');
+      }
+      this._channel.truncate(0);
+      this._channel.position(0);
+    }
+    this.sync();
+  }
+
+  @Override
+  public void close() throws IOException {
+    this._channel.close();
+  }
+
+  /**
+   * Builds the fields of a record.
+   *
+   * @param fields Values of the fields.
+   * @return Fields, as strings.
+   */
+  static String[] record(Object... fields) {
+    String[] record = new String[fields.length];
+    for (int i = 0; i < fields.length; i++)
+      record[i] = String.valueOf(fields[i]);
+    return record;
+  }
+
+  /**
+   * Builds the fields of a checkpoint record.
+   *
+   * @param kind "SAVE" or "LOAD".
+   * @param filename File the warehouse was saved to or loaded from.
+   * @return Fields of the record.
+   */
+  static String[] checkpoint(String kind, String filename) {
+    // Tells apart checkpoints of the same file at the same record
+    return record("CHECKPOINT", kind, Path.of(filename).toAbsolutePath(), UUID.randomUUID());
+  }
+
+  /**
+   * Encodes the number of units of each product a sale made out of components,
+   * so that the sale is repeated the same way whatever the units held when it
+   * is replayed.
+   *
+   * @param plan Number of units of each product, as in Reservation.plan().
+   * @return Field of a sale record.
+   */
+  static String plan(List<Integer> plan) {
+    return plan.stream().map(String::valueOf).collect(Collectors.joining(","));
+  }
+
+  private static int[] parsePlan(String field) {
+    return Arrays.stream(field.split(",")).mapToInt(Integer::parseInt).toArray();
+  }
+
+  /**
+   * Applies a record read from a journal to a warehouse.
+   *
+   * @param warehouse Warehouse.
+   * @param record Fields of the record, starting with its number.
+   * @return Id of the transaction registered by the change, or -1.
+   * @throws Exception if the change fails, which means the journal doesn't
+   *           belong to the warehouse.
+   */
+  static int apply(Warehouse warehouse, String[] record) throws Exception {
+    switch (record[1]) {
+      case "BREAKDOWN":
+        return warehouse.registerBreakdown(record[2], record[3], Integer.parseInt(record[4]));
+      case "SALE":
+        if (record.length > 7)
+          return warehouse.replaySale(record[2], record[3], Integer.parseInt(record[4]), Integer.parseInt(record[5]),
+              parsePlan(record[6]));
+        return warehouse.registerSale(record[2], record[3], Integer.parseInt(record[4]), Integer.parseInt(record[5]));
+      case "ACQUISITION":
+        return warehouse.registerAcquisition(record[2], record[3], Integer.parseInt(record[4]),
+            Long.parseLong(record[5]));
+      case "ASSEMBLY":
+        return warehouse.registerAssembledSale(null, record[2], record[3], Integer.parseInt(record[4]),
+            Integer.parseInt(record[5]), Integer.parseInt(record[6]), Long.parseLong(record[7]));
+      case "TRANSFER":
+        warehouse.transfer(null, record[2], Integer.parseInt(record[3]), Integer.parseInt(record[4]),
+            Long.parseLong(record[5]));
+        break;
+      case "RESTOCK":
+        List<Batch> batches = new ArrayList<Batch>();
+        for (int i = 2; i + 3 < record.length; i += 4)
+          batches.add(new Batch(warehouse.product(record[i]), warehouse.partner(record[i + 1]),
+              Integer.parseInt(record[i + 2]), Long.parseLong(record[i + 3])));
+        warehouse.restock(batches);
+        break;
+      case "DATE":
+        warehouse.advanceDate(Integer.parseInt(record[2]));
+        break;
+      case "MERGE":
+        warehouse.setBatchMerging(Boolean.parseBoolean(record[2]));
+        break;
+      case "PRODUCT":
+        warehouse.registerProduct(record[2]);
+        break;
+      case "DERIVATE":
+        int count = (record.length - 4) / 2;
+        String[] keys = new String[count];
+        int[] amounts = new int[count];
+        for (int i = 0; i < count; i++) {
+          keys[i] = record[4 + 2 * i];
+          amounts[i] = Integer.parseInt(record[5 + 2 * i]);
+        }
+        warehouse.registerProduct(record[2], Double.parseDouble(record[3]), keys, amounts);
+        break;
+      case "PARTNER":
+        warehouse.registerPartner(record[2], record[3], record[4]);
+        break;
+      case "TOGGLE":
+        warehouse.toggleNotification(record[2], record[3]);
+        break;
+      case "PAYMENT":
+        warehouse.receiveSalePayment(Integer.parseInt(record[2]));
+        break;
+      case "IMPORT":
+        warehouse.importData(new BufferedReader(new StringReader(record[2])));
+        break;
+      case "CHECKPOINT":
+        // Already part of the saved warehouse
+        break;
+      default:
+        throw new IOException("Unknown journal record: " + record[1]);
+    }
+    return -1;
+  }
+
+  /**
+   * @param record Fields of a record, starting with its number.
+   * @return Id of the transaction the record registered, or -1 if it didn't
+   *         register one.
+   */
+  static int transaction(String[] record) {
+    switch (record[1]) {
+      case "BREAKDOWN", "SALE", "ACQUISITION", "ASSEMBLY":
+        return Integer.parseInt(record[record.length - 1]);
+      default:
+        return -1;
+    }
+  }
+
+  /**
+   * Applies records to a warehouse, sorted by the id of the transaction they
+   * registered, checking each registers the same transaction again.
+   *
+   * @param warehouse Warehouse.
+   * @param records Records.
+   * @throws IOException if a record can't be applied.
+   */
+  static void replay(Warehouse warehouse, List<String[]> records) throws IOException {
+    List<String[]> sorted = new ArrayList<String[]>(records);
+    sorted.sort(Comparator.comparingInt(Journal::transaction));
+    for (String[] record : sorted) {
+      try {
+        int id = apply(warehouse, record);
+        if (id != transaction(record))
+          throw new IOException("Journal record " + record[0] + " registered transaction " + id);
+      } catch (IOException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new IOException("Journal record " + record[0] + " can't be applied", e);
+      }
+    }
+  }
+
+  private static void escape(StringBuilder builder, String field) {
+    for (int i = 0; i < field.length(); i++) {
+      char c = field.charAt(i);
+      switch (c) {
+        case '\\' -> builder.append("\\\\");
+        case '|' -> builder.append("\\p");
+        case '\n' -> builder.append("\\n");
+        case '\r' -> builder.append("\\r");
+        default -> builder.append(c);
+      }
+    }
+  }
+
+  /**
+   * Decodes a line of a journal.
+   *
+   * @param line Line, without its end.
+   * @return Fields of the record, starting with its number.
+   */
+  static String[] decode(String line) {
+    List<String> fields = new ArrayList<String>();
+    StringBuilder field = new StringBuilder();
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == '|') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else if (c == '\\' && i + 1 < line.length()) {
+        c = line.charAt(++i);
+        field.append(c == 'p' ? '|' : c == 'n' ? '\n' : c == 'r' ? '\r' : c);
+      } else {
+        field.append(c);
+      }
+    }
+    fields.add(field.toString());
+    return fields.toArray(new String[0]);
+  }
+}
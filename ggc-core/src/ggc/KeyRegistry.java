@@ -0,0 +1,172 @@
+package ggc;
+
+import java.text.CollationKey;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import java.io.Serializable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * Registry of entities identified by a case-insensitive key. Two keys are the
+ * same key when they fold to the same string (see fold()), so exact lookups,
+ * including those of keys which aren't registered, are served by a hash index
+ * on the folded key and never run the collator. The collated order is kept
+ * separately, through precomputed collation keys, and is only used for
+ * listings; keys the collator considers equal but which fold differently are
+ * different keys, ordered by their folded form.
+ *
+ * Entities are only added while the warehouse is held exclusively, but both
+ * indices are concurrent maps, so lookups and listings may run at any time.
+ *
+ * @param <T> Type of the registered entities.
+ */
+class KeyRegistry<T> implements Serializable {
+  /** Serial number for serialization. */
+  private static final long serialVersionUID = 202610191200L;
+
+  /** Collator used to build the sort keys. */
+  private CollatorWrapper _collator;
+
+  /** Entities, by their case-folded key. */
+  private transient Map<String, T> _index;
+
+  /** Entities, sorted by the collation key of their key. */
+  private transient ConcurrentSkipListMap<SortKey, T> _sorted;
+
+  /**
+   * Position of a key in the collated order: its collation key, then its
+   * folded form, for keys the collator considers equal.
+   */
+  private static final class SortKey implements Comparable<SortKey> {
+    /** Collation key. */
+    private final CollationKey _collationKey;
+
+    /** Folded key. */
+    private final String _folded;
+
+    SortKey(CollationKey collationKey, String folded) {
+      this._collationKey = collationKey;
+      this._folded = folded;
+    }
+
+    @Override
+    public int compareTo(SortKey other) {
+      int order = this._collationKey.compareTo(other._collationKey);
+      return order != 0 ? order : this._folded.compareTo(other._folded);
+    }
+  }
+
+  /** Default constructor. */
+  public KeyRegistry() {
+    this._collator = new CollatorWrapper();
+    this._index = new ConcurrentHashMap<String, T>();
+    this._sorted = new ConcurrentSkipListMap<SortKey, T>();
+  }
+
+  private void writeObject(ObjectOutputStream oos) throws IOException {
+    oos.defaultWriteObject();
+    oos.writeInt(this._sorted.size());
+    for (Map.Entry<SortKey, T> entry : this._sorted.entrySet()) {
+      oos.writeObject(entry.getKey()._collationKey.getSourceString());
+      oos.writeObject(entry.getValue());
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+    ois.defaultReadObject();
+    this._index = new ConcurrentHashMap<String, T>();
+    this._sorted = new ConcurrentSkipListMap<SortKey, T>();
+
+    // Sort keys depend on the current locale, so they are always rebuilt
+    int size = ois.readInt();
+    for (int i = 0; i < size; i++) {
+      String key = (String) ois.readObject();
+      this.putIfAbsent(key, (T) ois.readObject());
+    }
+  }
+
+  /**
+   * Folds a key so that keys which only differ in case map to the same string.
+   * Keys are compared by this alone: there is no fallback to the collator.
+   *
+   * @param key Key.
+   * @return Case-folded key.
+   */
+  private static String fold(String key) {
+    return key.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Returns the entity registered with a key equivalent to the given one.
+   *
+   * @param key Key.
+   * @return The entity, or null if there is none.
+   */
+  public T get(String key) {
+    return this._index.get(fold(key));
+  }
+
+  /**
+   * @param key Key.
+   * @return Position of the key in the collated order.
+   */
+  private SortKey sortKey(String key) {
+    return new SortKey(this._collator.collationKey(key), fold(key));
+  }
+
+  /**
+   * Registers an entity, unless there is already one with an equivalent key.
+   *
+   * @param key Key.
+   * @param value Entity.
+   * @return The entity previously registered with that key, or null if the new
+   *         one was registered.
+   */
+  public T putIfAbsent(String key, T value) {
+    // A new key is only collated once it's known not to be registered
+    T previous = this._index.putIfAbsent(fold(key), value);
+    if (previous == null)
+      this._sorted.put(this.sortKey(key), value);
+    return previous;
+  }
+
+  /**
+   * Returns the number of registered entities.
+   *
+   * @return Number of entities.
+   */
+  public int size() {
+    return this._index.size();
+  }
+
+  /**
+   * Returns all registered entities, sorted by their key.
+   *
+   * @return Collection of entities.
+   */
+  public Collection<T> values() {
+    return Collections.unmodifiableCollection(this._sorted.values());
+  }
+
+  /**
+   * Returns the registered entities whose key sorts after a given one, sorted
+   * by their key. The key need not be registered.
+   *
+   * @param key Key.
+   * @param inclusive Whether the entity with an equivalent key is included.
+   * @return Collection of entities.
+   */
+  public Collection<T> tail(String key, boolean inclusive) {
+    return Collections.unmodifiableCollection(
+        this._sorted.tailMap(this.sortKey(key), inclusive).values());
+  }
+}
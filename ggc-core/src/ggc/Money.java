@@ -0,0 +1,71 @@
+package ggc;
+
+/**
+ * Fixed-point representation of money. Values are stored as a long number of
+ * micro-units, so that sums and differences are exact. Conversions from and to
+ * double only happen at the boundary of the core.
+ */
+public final class Money {
+  /** Number of micro-units in one unit of money. */
+  public static final long UNIT = 1_000_000L;
+
+  /** Zero. */
+  public static final long ZERO = 0L;
+
+  private Money() {
+    // Static utility class
+  }
+
+  /**
+   * Converts a floating point value into micro-units.
+   *
+   * @param value Value, in units.
+   * @return Value, in micro-units.
+   */
+  public static long fromDouble(double value) {
+    return Math.round(value * UNIT);
+  }
+
+  /**
+   * Converts micro-units into a floating point value.
+   *
+   * @param value Value, in micro-units.
+   * @return Value, in units.
+   */
+  public static double toDouble(long value) {
+    return (double) value / UNIT;
+  }
+
+  /**
+   * Rounds a value to the nearest whole unit, with ties rounded up, just like
+   * Math.round.
+   *
+   * @param value Value, in micro-units.
+   * @return Rounded value, in units.
+   */
+  public static long round(long value) {
+    return Math.floorDiv(value + UNIT / 2, UNIT);
+  }
+
+  /**
+   * Multiplies a value by a factor, rounding to the nearest micro-unit.
+   *
+   * @param value Value, in micro-units.
+   * @param factor Factor.
+   * @return Result, in micro-units.
+   */
+  public static long multiply(long value, double factor) {
+    return Math.round(value * factor);
+  }
+
+  /**
+   * Divides a value by a positive integer, rounding to the nearest micro-unit.
+   *
+   * @param value Value, in micro-units.
+   * @param divisor Divisor.
+   * @return Result, in micro-units.
+   */
+  public static long divide(long value, int divisor) {
+    return Math.floorDiv(2 * value + divisor, 2L * divisor);
+  }
+}
@@ -0,0 +1,80 @@
+package ggc;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * A page of a listing, with the cursor from which the next page is listed.
+ * Cursors are only meant to be given back to the query which returned them:
+ * they name the position after the page's last entry, so the next page starts
+ * there even if entries were added meanwhile. Queries reject malformed
+ * cursors with an IllegalArgumentException.
+ *
+ * @param <T> Type of the entries.
+ */
+public class Page<T> {
+  /** Entries of the page. */
+  private final List<T> _entries;
+
+  /** Cursor of the next page, or null if this is the last one. */
+  private final String _next;
+
+  /**
+   * @param entries Entries of the page.
+   * @param next Cursor of the next page, or null if this is the last one.
+   */
+  public Page(List<T> entries, String next) {
+    this._entries = Collections.unmodifiableList(entries);
+    this._next = next;
+  }
+
+  /**
+   * Makes a page out of the entries from a cursor on, of which one more than
+   * fit in a page were taken, to know whether there's a next page.
+   * 
+   * @param <T> Type of the entries.
+   * @param entries Entries, at most one more than fit in the page, which is
+   *          removed.
+   * @param size Most entries in a page.
+   * @param cursor Cursor of the entries after an entry.
+   * @return Page.
+   */
+  static <T> Page<T> of(List<T> entries, int size, Function<T, String> cursor) {
+    if (entries.size() <= size)
+      return new Page<T>(entries, null);
+    entries.subList(size, entries.size()).clear();
+    return new Page<T>(entries, cursor.apply(entries.get(size - 1)));
+  }
+
+  /**
+   * @return Entries of the page.
+   */
+  public List<T> entries() {
+    return this._entries;
+  }
+
+  /**
+   * @return Cursor of the next page, or null if this is the last one.
+   */
+  public String next() {
+    return this._next;
+  }
+
+  /**
+   * @return Whether there's a next page.
+   */
+  public boolean hasNext() {
+    return this._next != null;
+  }
+
+  /**
+   * @param <U> Type of the entries of the new page.
+   * @param mapper Maps each entry.
+   * @return Page with the entries mapped, and the same cursor.
+   */
+  public <U> Page<U> map(Function<? super T, ? extends U> mapper) {
+    return new Page<U>(this._entries.stream().map(mapper).collect(Collectors.toList()), this._next);
+  }
+}
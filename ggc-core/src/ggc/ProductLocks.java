@@ -0,0 +1,174 @@
+package ggc;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import ggc.products.DerivateProduct;
+import ggc.products.Product;
+import ggc.products.Recipe;
+
+/**
+ * One lock per product. Operations on a product lock the whole closure of its
+ * recipe (the product itself and every product it may be made of), always in
+ * ascending ordinal order, so that operations on disjoint products run in
+ * parallel and overlapping ones can't deadlock.
+ *
+ * The lock of a product alone guards its state, since every operation which
+ * changes the product holds it.
+ *
+ * Products connected by recipes form a family, named by the lowest ordinal
+ * among them. Families only ever merge, when a new recipe connects them.
+ *
+ * Products must be registered in ordinal order, while the warehouse is held
+ * exclusively. Registered products may be locked at any time, since the table
+ * is republished through a volatile field whenever it changes.
+ */
+class ProductLocks {
+
+  /** Lock and recipe closure of a product. */
+  private static class Entry {
+    /** Lock of the product. */
+    private final ReentrantLock _lock = new ReentrantLock();
+
+    /** Recipe closure of the product, sorted by ordinal. */
+    private final Product[] _closure;
+
+    /** Ordinal of a product of the same family, or its own for the family's name. */
+    private volatile int _parent;
+
+    Entry(Product[] closure, int parent) {
+      this._closure = closure;
+      this._parent = parent;
+    }
+  }
+
+  /** Entry of each product, indexed by product ordinal. */
+  private volatile Entry[] _entries = new Entry[16];
+
+  /** Number of registered products. */
+  private int _size = 0;
+
+  /**
+   * Registers a new product. Its components must already be registered.
+   *
+   * @param product Product.
+   */
+  public void register(Product product) {
+    Product[] closure = { product };
+    int family = product.ordinal();
+    if (product instanceof DerivateProduct) {
+      for (Recipe.Component component : ((DerivateProduct) product).recipe().components()) {
+        closure = merge(closure, this.closure(component.product()));
+        family = Math.min(family, this.family(component.product()));
+      }
+    }
+
+    Entry[] entries = this._entries;
+    if (this._size == entries.length)
+      entries = Arrays.copyOf(entries, entries.length * 2);
+    entries[this._size++] = new Entry(closure, family);
+    this._entries = entries;
+
+    // Merge the families the recipe connects
+    if (product instanceof DerivateProduct) {
+      for (Recipe.Component component : ((DerivateProduct) product).recipe().components())
+        entries[this.family(component.product())]._parent = family;
+    }
+  }
+
+  /**
+   * Returns the family of a product, named by the lowest ordinal among its
+   * products. A product's family changes when a new recipe connects it to a
+   * family with a lower name.
+   *
+   * @param product Product.
+   * @return Family of the product, or -1 if the product isn't registered yet.
+   */
+  public int family(Product product) {
+    Entry[] entries = this._entries;
+    int ordinal = product.ordinal();
+    if (ordinal >= entries.length || entries[ordinal] == null)
+      return -1;
+
+    // Parents always have lower ordinals, so they are in any table the product is
+    int parent;
+    while ((parent = entries[ordinal]._parent) != ordinal)
+      ordinal = parent;
+    return ordinal;
+  }
+
+  /**
+   * Returns every product the given product may touch, sorted by ordinal. The
+   * array must not be changed.
+   *
+   * @param product Product.
+   * @return Recipe closure of the product.
+   */
+  public Product[] closure(Product product) {
+    return this._entries[product.ordinal()]._closure;
+  }
+
+  /**
+   * Locks every product the given product may touch.
+   *
+   * @param product Product.
+   */
+  public void lock(Product product) {
+    Entry[] entries = this._entries;
+    for (Product member : entries[product.ordinal()]._closure)
+      entries[member.ordinal()]._lock.lock();
+  }
+
+  /**
+   * Unlocks the locks acquired by lock().
+   *
+   * @param product Product.
+   */
+  public void unlock(Product product) {
+    Entry[] entries = this._entries;
+    Product[] closure = entries[product.ordinal()]._closure;
+    for (int i = closure.length - 1; i >= 0; i--)
+      entries[closure[i].ordinal()]._lock.unlock();
+  }
+
+  /**
+   * Runs an action while holding the lock of a single product.
+   *
+   * @param <T> Type of the result.
+   * @param product Product.
+   * @param action Action to run.
+   * @return Result of the action.
+   */
+  public <T> T withLock(Product product, Supplier<T> action) {
+    ReentrantLock lock = this._entries[product.ordinal()]._lock;
+    lock.lock();
+    try {
+      return action.get();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Merges two arrays of products sorted by ordinal, without duplicates.
+   *
+   * @param lhs Sorted products.
+   * @param rhs Sorted products.
+   * @return Sorted union.
+   */
+  private static Product[] merge(Product[] lhs, Product[] rhs) {
+    Product[] out = new Product[lhs.length + rhs.length];
+    int i = 0, j = 0, n = 0;
+    while (i < lhs.length || j < rhs.length) {
+      Product next;
+      if (j == rhs.length || (i < lhs.length && lhs[i].ordinal() <= rhs[j].ordinal()))
+        next = lhs[i++];
+      else
+        next = rhs[j++];
+      if (n == 0 || out[n - 1] != next)
+        out[n++] = next;
+    }
+    return Arrays.copyOf(out, n);
+  }
+}
@@ -0,0 +1,35 @@
+package ggc;
+
+/**
+ * Whether the lines describing the entities of a listing are kept once made,
+ * for the whole process. Lines are only kept by what they can't go stale on:
+ * states of products and partners, which are replaced by new states when they
+ * change, transactions, and sales, which forget theirs when paid or when their
+ * value changes with the date. So listing a warehouse which barely changed
+ * since the last listing mostly copies lines already made. Enabled by default.
+ */
+public final class RenderCache {
+  /** Whether lines are kept. */
+  private static volatile boolean _enabled = true;
+
+  private RenderCache() {
+    // Static utility class
+  }
+
+  /**
+   * @return Whether lines are kept.
+   */
+  public static boolean enabled() {
+    return _enabled;
+  }
+
+  /**
+   * Enables or disables keeping lines. Lines kept until then still are, since
+   * they can't be stale.
+   *
+   * @param enabled Whether lines should be kept.
+   */
+  public static void setEnabled(boolean enabled) {
+    _enabled = enabled;
+  }
+}
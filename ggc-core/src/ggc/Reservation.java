@@ -0,0 +1,113 @@
+package ggc;
+
+import java.util.Map;
+
+import ggc.partners.Partner;
+import ggc.products.Product;
+
+/**
+ * Units of a product held for a sale to a partner, until the sale is
+ * registered or the reservation expires. Units which weren't available were
+ * held as the components needed to make them. The units are held by the
+ * reservation itself, not by a named holder, so only whoever removes the
+ * reservation from the warehouse can take or release them.
+ */
+class Reservation {
+  /** Reservation id. */
+  private final int _id;
+
+  /** Partner the units are for. */
+  private final Partner _partner;
+
+  /** Product. */
+  private final Product _product;
+
+  /** Number of units. */
+  private final int _amount;
+
+  /**
+   * Number of units of each product to make out of components, starting with
+   * the product reserved and going down its recipe, the components of a
+   * product following it in the order of its recipe.
+   */
+  private final int[] _plan;
+
+  /** Units held, by product. */
+  private final Map<Product, Integer> _holds;
+
+  /** Timer which expires the reservation, guarded by its monitor. */
+  private TimerWheel.Timer _timer;
+
+  /**
+   * @param id Reservation id.
+   * @param partner Partner the units are for.
+   * @param product Product.
+   * @param amount Number of units.
+   * @param plan Number of units of each product to make out of components.
+   * @param holds Units held, by product.
+   */
+  Reservation(int id, Partner partner, Product product, int amount, int[] plan, Map<Product, Integer> holds) {
+    this._id = id;
+    this._partner = partner;
+    this._product = product;
+    this._amount = amount;
+    this._plan = plan;
+    this._holds = holds;
+  }
+
+  /**
+   * @return Reservation id.
+   */
+  int id() {
+    return this._id;
+  }
+
+  /**
+   * @return Units held, by product.
+   */
+  Map<Product, Integer> holds() {
+    return this._holds;
+  }
+
+  /**
+   * @return Timer which expires the reservation, or null if not scheduled yet.
+   */
+  TimerWheel.Timer timer() {
+    return this._timer;
+  }
+
+  /**
+   * @param timer Timer which expires the reservation.
+   */
+  void setTimer(TimerWheel.Timer timer) {
+    this._timer = timer;
+  }
+
+  /**
+   * @return Partner the units are for.
+   */
+  Partner partner() {
+    return this._partner;
+  }
+
+  /**
+   * @return Product.
+   */
+  Product product() {
+    return this._product;
+  }
+
+  /**
+   * @return Number of units.
+   */
+  int amount() {
+    return this._amount;
+  }
+
+  /**
+   * @return Number of units of each product to make out of components.
+   */
+  int[] plan() {
+    return this._plan.clone();
+  }
+}
@@ -0,0 +1,416 @@
+package ggc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+
+/**
+ * Applies the changes made to a warehouse in writer threads, in the order
+ * they were submitted, and records them in a journal.
+ *
+ * Submitted changes wait in bounded queues. A writer thread takes every change
+ * waiting, up to a batch, applies each of them, and then syncs the journal once
+ * for the whole batch. The future of each change only completes after that
+ * sync, so a completed change survives a crash, while the cost of the sync is
+ * shared by every change of the batch.
+ *
+ * The changes which register a transaction are split among lanes by the family
+ * of their product, each lane with its own writer thread, since changes to
+ * different families never touch the same product. Every other change, such as
+ * a payment, which depends on the partner's points, goes to every lane: it is
+ * applied by the first lane once each lane has applied the changes submitted
+ * before it, and no lane goes on until it is applied.
+ */
+class Sequencer implements AutoCloseable {
+  /** Number of changes which may wait in each lane. */
+  private static final int CAPACITY = 1 << 14;
+
+  /** Maximum number of changes synced together. */
+  private static final int BATCH_SIZE = 1024;
+
+  /**
+   * A change to a warehouse.
+   */
+  interface Command {
+    /**
+     * @param warehouse Warehouse to change.
+     * @throws Exception if the change fails.
+     */
+    void apply(Warehouse warehouse) throws Exception;
+  }
+
+  /**
+   * A change to a warehouse which registers a transaction.
+   */
+  interface TransactionCommand {
+    /**
+     * @param warehouse Warehouse to change.
+     * @return Id of the transaction, or -1 if the change had no effect.
+     * @throws Exception if the change fails.
+     */
+    int apply(Warehouse warehouse) throws Exception;
+  }
+
+  /**
+   * A submitted change.
+   */
+  private static class Entry {
+    /** Journal record of the change. */
+    private final String[] _record;
+
+    /** Is the change a checkpoint? */
+    private final boolean _checkpoint;
+
+    /** Change. */
+    private final TransactionCommand _command;
+
+    /** Is the change applied by a single lane? */
+    private final boolean _routed;
+
+    /** Completed once the change is durable. */
+    private final CompletableFuture<Void> _future;
+
+    /** Counts the lanes which have reached a change which goes to every lane. */
+    private final CountDownLatch _arrived;
+
+    /** Released once a change which goes to every lane is applied. */
+    private final CountDownLatch _applied;
+
+    /** Why the change failed, if it did. */
+    private Throwable _failure;
+
+    /**
+     * @param record Journal record of the change.
+     * @param command Change, or null to close the lanes.
+     * @param lanes Number of lanes which apply the change, or 0 if it is
+     *          applied by a single lane.
+     */
+    Entry(String[] record, TransactionCommand command, int lanes) {
+      this(record, command, lanes, false);
+    }
+
+    /**
+     * @param record Journal record of the change, or the checkpoint record.
+     * @param command Change, or null to close the lanes.
+     * @param lanes Number of lanes which apply the change, or 0 if it is
+     *          applied by a single lane.
+     * @param checkpoint Is the change a checkpoint?
+     */
+    Entry(String[] record, TransactionCommand command, int lanes, boolean checkpoint) {
+      this._record = record;
+      this._checkpoint = checkpoint;
+      this._command = command;
+      this._routed = lanes == 0;
+      this._future = new CompletableFuture<Void>();
+      this._arrived = this._routed ? null : new CountDownLatch(lanes - 1);
+      this._applied = this._routed ? null : new CountDownLatch(1);
+    }
+  }
+
+  /**
+   * A writer thread and the changes waiting for it.
+   */
+  private class Lane implements Runnable {
+    /** Changes waiting to be applied. */
+    private final BlockingQueue<Entry> _queue;
+
+    /** Writer thread. */
+    private final Thread _thread;
+
+    /** Does this lane apply the changes which go to every lane? */
+    private final boolean _leader;
+
+    /**
+     * @param index Index of the lane.
+     */
+    Lane(int index) {
+      this._queue = new ArrayBlockingQueue<Entry>(CAPACITY);
+      this._thread = new Thread(this, "ggc-sequencer-" + index);
+      this._thread.setDaemon(true);
+      this._leader = index == 0;
+    }
+
+    @Override
+    public void run() {
+      List<Entry> batch = new ArrayList<Entry>(BATCH_SIZE);
+      while (true) {
+        try {
+          batch.add(this._queue.take());
+        } catch (InterruptedException e) {
+          continue;
+        }
+        this._queue.drainTo(batch, BATCH_SIZE - 1);
+
+        int start = 0;
+        int end = batch.size();
+        for (int i = 0; i < end; i++) {
+          Entry entry = batch.get(i);
+          if (entry._routed) {
+            this.apply(entry);
+            continue;
+          }
+
+          if (!this._leader) {
+            // Wait until the first lane applies the change
+            entry._arrived.countDown();
+            if (entry._command != null)
+              awaitUninterruptibly(entry._applied);
+          } else {
+            awaitUninterruptibly(entry._arrived);
+            if (entry._command == null) {
+              // Nothing else is applied after closing
+            } else if (entry._checkpoint) {
+              // Everything before a checkpoint must be durable when it runs
+              this.commit(batch.subList(start, i));
+              Sequencer.this.runCheckpoint(entry);
+              start = i + 1;
+            } else {
+              this.apply(entry);
+            }
+            entry._applied.countDown();
+          }
+
+          if (entry._command == null) {
+            end = i;
+            break;
+          }
+        }
+        this.commit(batch.subList(start, end));
+
+        if (end < batch.size()) {
+          // Don't leave anyone waiting for changes submitted after closing
+          batch.subList(0, end + 1).clear();
+          this._queue.drainTo(batch);
+          for (Entry entry : batch)
+            entry._future.completeExceptionally(new IllegalStateException("Journal closed"));
+          return;
+        }
+        batch.clear();
+      }
+    }
+
+    /**
+     * Applies a change and, if it has an effect, appends its record to the
+     * journal.
+     *
+     * @param entry Change.
+     */
+    private void apply(Entry entry) {
+      int id;
+      try {
+        id = entry._command.apply(Sequencer.this._warehouse.get());
+      } catch (Exception | Error e) {
+        entry._failure = e;
+        return;
+      }
+
+      if (!entry._routed) {
+        Sequencer.this._journal.append(entry._record);
+      } else if (id >= 0) {
+        String[] record = Arrays.copyOf(entry._record, entry._record.length + 1);
+        record[entry._record.length] = String.valueOf(id);
+        Sequencer.this._journal.append(record);
+      }
+    }
+
+    /**
+     * Syncs the journal and completes the changes this lane applied since the
+     * last sync.
+     *
+     * @param entries Changes.
+     */
+    private void commit(List<Entry> entries) {
+      IOException failure = null;
+      try {
+        Sequencer.this._journal.sync();
+      } catch (IOException e) {
+        failure = e;
+      }
+
+      for (Entry entry : entries) {
+        if (!entry._routed && !this._leader)
+          continue;
+        if (entry._failure != null)
+          entry._future.completeExceptionally(entry._failure);
+        else if (failure != null)
+          entry._future.completeExceptionally(new UncheckedIOException(failure));
+        else
+          entry._future.complete(null);
+      }
+    }
+  }
+
+  /** Journal of the changes. */
+  private final Journal _journal;
+
+  /** Gives the warehouse changes are applied to. */
+  private final Supplier<Warehouse> _warehouse;
+
+  /** Lanes. */
+  private final Lane[] _lanes;
+
+  /** Has close() been called? */
+  private volatile boolean _closed;
+
+  /**
+   * Starts the writer threads.
+   *
+   * @param journal Journal of the changes.
+   * @param warehouse Gives the warehouse changes are applied to, which may be
+   *          replaced by a checkpoint.
+   * @param lanes Number of lanes.
+   */
+  Sequencer(Journal journal, Supplier<Warehouse> warehouse, int lanes) {
+    this._journal = journal;
+    this._warehouse = warehouse;
+    this._lanes = new Lane[lanes];
+    for (int i = 0; i < lanes; i++)
+      this._lanes[i] = new Lane(i);
+    for (Lane lane : this._lanes)
+      lane._thread.start();
+    this._closed = false;
+  }
+
+  /**
+   * Submits a change which registers a transaction. Waits while its lane is
+   * full.
+   *
+   * @param family Family of the product the change is about, or -1 if unknown.
+   * @param record Journal record of the change, to which the id of the
+   *          transaction is added.
+   * @param command Change.
+   * @return Completed once the change is durable, or with the exception thrown
+   *         by the change.
+   */
+  CompletableFuture<Void> submit(int family, String[] record, TransactionCommand command) {
+    Entry entry = new Entry(record, command, 0);
+    Lane lane = this._lanes[Math.max(family, 0) % this._lanes.length];
+    return this.enqueue(lane, entry);
+  }
+
+  /**
+   * Submits any other change. Waits while the lanes are full.
+   *
+   * @param record Journal record of the change.
+   * @param command Change.
+   * @return Completed once the change is durable, or with the exception thrown
+   *         by the change.
+   */
+  CompletableFuture<Void> submit(String[] record, Command command) {
+    return this.broadcast(new Entry(record, w -> {
+      command.apply(w);
+      return -1;
+    }, this._lanes.length));
+  }
+
+  /**
+   * Submits a checkpoint: once every change before it is durable, the command
+   * runs, and, if it succeeds, the journal is emptied, but for the checkpoint
+   * record. Used to save or replace the warehouse.
+   *
+   * @param record Checkpoint record.
+   * @param command Checkpoint command.
+   * @return Completed once the checkpoint has run.
+   */
+  CompletableFuture<Void> checkpoint(String[] record, Command command) {
+    return this.broadcast(new Entry(record, w -> {
+      command.apply(w);
+      return -1;
+    }, this._lanes.length, true));
+  }
+
+  /**
+   * Queues a change in every lane. Every lane must see these changes in the
+   * same order.
+   *
+   * @param entry Change.
+   * @return Future of the change.
+   */
+  private CompletableFuture<Void> broadcast(Entry entry) {
+    synchronized (this._lanes) {
+      for (Lane lane : this._lanes)
+        this.enqueue(lane, entry);
+    }
+    return entry._future;
+  }
+
+  private CompletableFuture<Void> enqueue(Lane lane, Entry entry) {
+    if (this._closed)
+      return CompletableFuture.failedFuture(new IllegalStateException("Journal closed"));
+
+    boolean interrupted = false;
+    while (true) {
+      try {
+        lane._queue.put(entry);
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted)
+      Thread.currentThread().interrupt();
+    return entry._future;
+  }
+
+  private void runCheckpoint(Entry entry) {
+    try {
+      Warehouse warehouse = this._warehouse.get();
+      warehouse.setJournalSequence(this._journal.sequence());
+      entry._command.apply(warehouse);
+
+      // The warehouse may have been replaced
+      this._journal.setSequence(this._warehouse.get().journalSequence());
+      this._journal.truncate(entry._record);
+      entry._future.complete(null);
+    } catch (Exception | Error e) {
+      entry._future.completeExceptionally(e);
+    }
+  }
+
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        latch.await();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted)
+      Thread.currentThread().interrupt();
+  }
+
+  /**
+   * Stops the writer threads, once every change submitted before is durable,
+   * and closes the journal.
+   *
+   * @throws IOException
+   */
+  @Override
+  public void close() throws IOException {
+    this.broadcast(new Entry(null, null, this._lanes.length));
+    this._closed = true;
+
+    boolean interrupted = false;
+    for (Lane lane : this._lanes) {
+      while (lane._thread.isAlive()) {
+        try {
+          lane._thread.join();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted)
+      Thread.currentThread().interrupt();
+    this._journal.close();
+  }
+}
@@ -0,0 +1,256 @@
+package ggc;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts of the calls of each operation of the warehouse, and of the errors by
+ * exception type, and histograms of their latencies, for the whole process.
+ * Recording a call takes a few atomic increments, so it's always done.
+ *
+ * Operations are the public methods of the manager, named after them, and some
+ * steps inside them, named after the method which does them. Steps may take
+ * little more than reading the clock, so only a sample of their calls is
+ * timed, though all are counted.
+ */
+public final class Statistics {
+  /** Percentiles reported. */
+  private static final double[] PERCENTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+  /** Names of the percentiles reported. */
+  private static final String[] PERCENTILE_NAMES = { "p50", "p90", "p99", "p99.9" };
+
+  /** One in how many calls of the steps of the operations is timed. */
+  public static final int STEP_SAMPLING = 16;
+
+  /** Every operation, by name. */
+  private static final ConcurrentMap<String, Operation> OPERATIONS = new ConcurrentHashMap<String, Operation>();
+
+  private Statistics() {
+  }
+
+  /**
+   * Statistics of an operation.
+   */
+  public static final class Operation {
+    /** Name of the operation. */
+    private final String _name;
+
+    /** Number of calls. */
+    private final LongAdder _calls;
+
+    /** Number of calls which failed, by the simple name of the exception. */
+    private final ConcurrentMap<String, LongAdder> _errors;
+
+    /** Latencies of the calls timed, in nanoseconds. */
+    private final Histogram _latencies;
+
+    /** One in how many calls is timed. */
+    private final int _sampling;
+
+    /**
+     * @param name Name of the operation.
+     * @param sampling One in how many calls is timed.
+     */
+    private Operation(String name, int sampling) {
+      this._name = name;
+      this._sampling = sampling;
+      this._calls = new LongAdder();
+      this._errors = new ConcurrentHashMap<String, LongAdder>();
+      this._latencies = new Histogram();
+    }
+
+    /**
+     * @return Name of the operation.
+     */
+    public String name() {
+      return this._name;
+    }
+
+    /**
+     * @return Number of calls.
+     */
+    public long calls() {
+      return this._calls.sum();
+    }
+
+    /**
+     * @return Number of calls which failed, by the simple name of the exception,
+     *         in order.
+     */
+    public Map<String, Long> errors() {
+      Map<String, Long> errors = new TreeMap<String, Long>();
+      this._errors.forEach((type, count) -> errors.put(type, count.sum()));
+      return errors;
+    }
+
+    /**
+     * @return Latencies of the calls timed, in nanoseconds.
+     */
+    public Histogram latencies() {
+      return this._latencies;
+    }
+
+    /**
+     * Starts a call.
+     *
+     * @return When the call started, from System.nanoTime(), or 0 if it isn't
+     *         timed.
+     */
+    public long start() {
+      if (this._sampling > 1 && ThreadLocalRandom.current().nextInt(this._sampling) != 0)
+        return 0;
+      return System.nanoTime();
+    }
+
+    /**
+     * Records a call.
+     *
+     * @param start What start() returned.
+     * @param failure Why it failed, or null if it didn't.
+     */
+    public void record(long start, Throwable failure) {
+      if (start != 0)
+        this._latencies.record(System.nanoTime() - start);
+      this._calls.increment();
+      if (failure == null)
+        return;
+
+      if (failure instanceof CompletionException && failure.getCause() != null)
+        failure = failure.getCause();
+      this._errors.computeIfAbsent(failure.getClass().getSimpleName(), type -> new LongAdder()).increment();
+    }
+
+    /**
+     * Records a call which succeeded.
+     *
+     * @param start What start() returned.
+     */
+    public void succeeded(long start) {
+      this.record(start, null);
+    }
+
+    /**
+     * Records a call which failed.
+     *
+     * @param <E> Type of the failure.
+     * @param start What start() returned.
+     * @param failure Why it failed.
+     * @return The failure, to be thrown.
+     */
+    public <E extends Throwable> E failed(long start, E failure) {
+      this.record(start, failure);
+      return failure;
+    }
+  }
+
+  /**
+   * @param name Name of an operation.
+   * @return Statistics of the operation, which times every call.
+   */
+  public static Operation operation(String name) {
+    return operation(name, 1);
+  }
+
+  /**
+   * @param name Name of an operation.
+   * @param sampling One in how many calls is timed, when the operation is first
+   *          asked for.
+   * @return Statistics of the operation.
+   */
+  public static Operation operation(String name, int sampling) {
+    return OPERATIONS.computeIfAbsent(name, key -> new Operation(key, sampling));
+  }
+
+  /**
+   * @return Statistics of the operations called at least once, by name.
+   */
+  public static List<Operation> operations() {
+    List<Operation> operations = new ArrayList<Operation>();
+    for (Operation operation : OPERATIONS.values())
+      if (operation.calls() > 0)
+        operations.add(operation);
+    operations.sort(Comparator.comparing(Operation::name));
+    return operations;
+  }
+
+  /**
+   * @return Table of the statistics, with a line for each operation, followed
+   *         by a line for each type of error, with latencies in microseconds.
+   */
+  public static String table() {
+    StringBuilder builder = new StringBuilder();
+    builder.append(String.format("%-45s %10s %8s %10s %10s %10s %10s %10s %10s", "operation", "calls", "errors",
+        "mean(us)", "p50(us)", "p90(us)", "p99(us)", "p99.9(us)", "max(us)"));
+    for (Operation operation : operations()) {
+      Histogram latencies = operation.latencies();
+      Map<String, Long> errors = operation.errors();
+      long failed = errors.values().stream().mapToLong(Long::longValue).sum();
+
+      builder.append('\n').append(String.format("%-45s %10d %8d %10.1f", operation.name(), operation.calls(), failed,
+          latencies.mean() / 1e3));
+      for (double percentile : PERCENTILES)
+        builder.append(String.format(" %10.1f", latencies.valueAt(percentile) / 1e3));
+      builder.append(String.format(" %10.1f", latencies.max() / 1e3));
+      errors.forEach((type, count) -> builder.append("\n  ").append(type).append(": ").append(count));
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Writes the statistics in CSV, one value per line, with the columns
+   * operation, metric and value. The metrics are calls; errors.Type for each
+   * type of error; mean, p50, p90, p99, p99.9 and max latencies, in
+   * nanoseconds; and bucket.N for each bucket of the histogram of the
+   * latencies which isn't empty, N being the largest latency in the bucket.
+   *
+   * @param out Where to write.
+   * @throws IOException
+   */
+  public static void write(Writer out) throws IOException {
+    out.write("operation,metric,value\n");
+    for (Operation operation : operations()) {
+      String name = operation.name();
+      Histogram latencies = operation.latencies();
+
+      write(out, name, "calls", Long.toString(operation.calls()));
+      for (Map.Entry<String, Long> error : operation.errors().entrySet())
+        write(out, name, "errors." + error.getKey(), error.getValue().toString());
+      write(out, name, "mean", String.format(Locale.ROOT, "%.1f", latencies.mean()));
+      for (int i = 0; i < PERCENTILES.length; i++)
+        write(out, name, PERCENTILE_NAMES[i], Long.toString(latencies.valueAt(PERCENTILES[i])));
+      write(out, name, "max", Long.toString(latencies.max()));
+      for (int i = 0; i < latencies.buckets(); i++)
+        if (latencies.count(i) > 0)
+          write(out, name, "bucket." + Histogram.highest(i), Long.toString(latencies.count(i)));
+    }
+    out.flush();
+  }
+
+  /**
+   * @param out Where to write.
+   * @param operation Name of the operation.
+   * @param metric Name of the metric.
+   * @param value Value.
+   * @throws IOException
+   */
+  private static void write(Writer out, String operation, String metric, String value) throws IOException {
+    out.write(operation);
+    out.write(',');
+    out.write(metric);
+    out.write(',');
+    out.write(value);
+    out.write('\n');
+  }
+}
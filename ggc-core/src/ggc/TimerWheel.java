@@ -0,0 +1,144 @@
+package ggc;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs tasks once their delay has passed, with the precision of a tick.
+ *
+ * Tasks are kept in a ring of slots, one per tick, so that scheduling a task
+ * and running the tasks of a tick cost the same however many tasks wait. A
+ * task due more than a turn of the ring away waits in its slot for the turns
+ * left. Cancelling a task drops it from its slot, so that whatever it refers
+ * to isn't kept until it is due.
+ *
+ * Tasks run in a thread of the wheel, which only lives while tasks wait.
+ */
+class TimerWheel {
+  /**
+   * A task waiting in a slot, returned by schedule() to cancel it.
+   */
+  static class Timer {
+    /** Task. */
+    private final Runnable _task;
+
+    /** Tick the task is due at. */
+    private final long _tick;
+
+    Timer(Runnable task, long tick) {
+      this._task = task;
+      this._tick = tick;
+    }
+  }
+
+  /** Length of a tick, in nanoseconds. */
+  private final long _tickLength;
+
+  /** Tasks waiting, by tick modulo the number of slots. */
+  private final List<Set<Timer>> _slots;
+
+  /** Time the ticks are counted from, in nanoseconds. */
+  private final long _start;
+
+  /** Last tick whose tasks ran. */
+  private long _tick;
+
+  /** Number of tasks waiting. */
+  private int _count;
+
+  /** Thread running the tasks, or null if none wait. */
+  private Thread _thread;
+
+  /**
+   * @param tickMillis Length of a tick, in milliseconds.
+   * @param slots Number of slots.
+   */
+  TimerWheel(long tickMillis, int slots) {
+    this._tickLength = tickMillis * 1000000;
+    this._slots = new ArrayList<Set<Timer>>(slots);
+    for (int i = 0; i < slots; i++)
+      this._slots.add(new LinkedHashSet<Timer>());
+    this._start = System.nanoTime();
+    this._tick = 0;
+    this._count = 0;
+    this._thread = null;
+  }
+
+  /**
+   * Schedules a task.
+   *
+   * @param task Task.
+   * @param delayMillis Time to wait before running it, in milliseconds.
+   * @return Timer, to cancel the task.
+   */
+  synchronized Timer schedule(Runnable task, long delayMillis) {
+    long due = System.nanoTime() - this._start + delayMillis * 1000000;
+    long tick = Math.max((due + this._tickLength - 1) / this._tickLength, this._tick + 1);
+    Timer timer = new Timer(task, tick);
+    this._slots.get((int) (tick % this._slots.size())).add(timer);
+    this._count++;
+
+    if (this._thread == null) {
+      this._thread = new Thread(this::run, "ggc-timers");
+      this._thread.setDaemon(true);
+      this._thread.start();
+    }
+    return timer;
+  }
+
+  /**
+   * Cancels a task, unless it already ran or is running.
+   *
+   * @param timer Timer returned by schedule().
+   */
+  synchronized void cancel(Timer timer) {
+    if (this._slots.get((int) (timer._tick % this._slots.size())).remove(timer))
+      this._count--;
+  }
+
+  /**
+   * Runs the tasks of each tick as it passes, until none wait.
+   */
+  private void run() {
+    List<Runnable> due = new ArrayList<Runnable>();
+    while (true) {
+      synchronized (this) {
+        long now = (System.nanoTime() - this._start) / this._tickLength;
+        for (; this._tick < now; this._tick++) {
+          Iterator<Timer> timers = this._slots.get((int) ((this._tick + 1) % this._slots.size())).iterator();
+          while (timers.hasNext()) {
+            Timer timer = timers.next();
+            if (timer._tick <= this._tick + 1) {
+              due.add(timer._task);
+              timers.remove();
+              this._count--;
+            }
+          }
+        }
+
+        if (due.isEmpty() && this._count == 0) {
+          this._thread = null;
+          return;
+        }
+      }
+
+      for (Runnable task : due) {
+        try {
+          task.run();
+        } catch (RuntimeException e) {
+          // A failing task doesn't keep the others from running
+        }
+      }
+      due.clear();
+
+      try {
+        Thread.sleep(this._tickLength / 1000000);
+      } catch (InterruptedException e) {
+        // Only ends once no tasks wait
+      }
+    }
+  }
+}
@@ -0,0 +1,193 @@
+package ggc;
+
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Versions of the state of an entity, so that readers can see the state the
+ * entity had at a given epoch while writers keep changing it.
+ *
+ * The newest version is the live entity itself, and is only copied by the
+ * next writer, right before changing it, when a pinned reader may still need
+ * it. Readers of the live state query it while holding the entity's lock, and
+ * keep nothing in the versions, so that entities nobody writes to hold no
+ * copies. Versions which no pinned reader can see anymore are dropped on the
+ * next write.
+ *
+ * Writers must hold the entity's lock between beforeWrite() and afterWrite().
+ * Readers must be pinned on the clock while calling read(), and no writer may
+ * be running while a reader is being pinned.
+ *
+ * Entities whose state is an immutable value use AtomicVersions instead, which
+ * needs no lock.
+ *
+ * @param <S> Type of the copies of the state.
+ */
+public final class Versions<S> {
+
+  /** Version of the state, in a list sorted from newest to oldest. */
+  private static final class Node<S> {
+    /** Epoch since which this version is the current one. */
+    private volatile long _version;
+
+    /** Copy of the state, or null if it hasn't been copied yet. */
+    private volatile S _state;
+
+    /** Previous version. */
+    private volatile Node<S> _next;
+
+    Node(long version, Node<S> next) {
+      this._version = version;
+      this._next = next;
+    }
+  }
+
+  /**
+   * Source of epochs. Writers tick the clock and readers pin an epoch while they
+   * read.
+   */
+  public static final class Clock {
+    /** Current epoch. */
+    private final AtomicLong _epoch = new AtomicLong(0);
+
+    /** Number of readers pinned on each epoch. */
+    private final TreeMap<Long, Integer> _pins = new TreeMap<Long, Integer>();
+
+    /** Oldest pinned epoch, or Long.MAX_VALUE if there are no readers. */
+    private volatile long _oldestPin = Long.MAX_VALUE;
+
+    /** Newest pinned epoch, or Long.MIN_VALUE if there are no readers. */
+    private volatile long _newestPin = Long.MIN_VALUE;
+
+    /**
+     * Advances the clock, for a new write.
+     *
+     * @return Epoch of the write.
+     */
+    public long tick() {
+      return this._epoch.incrementAndGet();
+    }
+
+    /**
+     * Pins the current epoch for a reader.
+     *
+     * @return Pinned epoch.
+     */
+    public synchronized long pin() {
+      long epoch = this._epoch.get();
+      this._pins.merge(epoch, 1, Integer::sum);
+      this.updatePins();
+      return epoch;
+    }
+
+    /**
+     * Releases an epoch previously returned by pin().
+     *
+     * @param epoch Pinned epoch.
+     */
+    public synchronized void unpin(long epoch) {
+      if (this._pins.merge(epoch, -1, Integer::sum) == 0)
+        this._pins.remove(epoch);
+      this.updatePins();
+    }
+
+    /**
+     * @return Oldest pinned epoch, or Long.MAX_VALUE if there are no readers.
+     */
+    long oldestPin() {
+      return this._oldestPin;
+    }
+
+    /**
+     * @return Newest pinned epoch, or Long.MIN_VALUE if there are no readers.
+     */
+    long newestPin() {
+      return this._newestPin;
+    }
+
+    private void updatePins() {
+      this._oldestPin = this._pins.isEmpty() ? Long.MAX_VALUE : this._pins.firstKey();
+      this._newestPin = this._pins.isEmpty() ? Long.MIN_VALUE : this._pins.lastKey();
+    }
+  }
+
+  /** Newest version. */
+  private volatile Node<S> _head = new Node<S>(0, null);
+
+  /**
+   * Called by a writer before changing the entity. Copies the current state if
+   * some pinned reader may still need it.
+   *
+   * @param clock Clock.
+   * @param capture Copies the current state of the entity.
+   */
+  public void beforeWrite(Clock clock, Supplier<S> capture) {
+    Node<S> head = this._head;
+    if (head._state == null && clock._newestPin >= head._version)
+      head._state = capture.get();
+  }
+
+  /**
+   * Called by a writer after changing the entity.
+   *
+   * @param clock Clock.
+   * @param version Epoch of the write.
+   */
+  public void afterWrite(Clock clock, long version) {
+    Node<S> head = this._head;
+    if (head._state == null) {
+      // No reader can see the previous state, so there is nothing to keep
+      head._version = version;
+      return;
+    }
+
+    head = new Node<S>(version, head);
+    this._head = head;
+
+    // Drop the versions older than the one seen by the oldest reader
+    long oldest = clock._oldestPin;
+    Node<S> node = head;
+    while (node._version > oldest && node._next != null)
+      node = node._next;
+    node._next = null;
+  }
+
+  /**
+   * Returns the state of the entity at a pinned epoch.
+   *
+   * @param epoch Pinned epoch.
+   * @param capture Copies the current state of the entity, while holding its
+   *          lock.
+   * @return Copy of the state.
+   */
+  public S read(long epoch, Supplier<S> capture) {
+    return this.read(epoch, state -> state, capture);
+  }
+
+  /**
+   * Queries the state of the entity at a pinned epoch, either on the copy made
+   * by a writer or, if it is still the live state, on the entity itself.
+   *
+   * @param <T> Type of the result.
+   * @param epoch Pinned epoch.
+   * @param copied Queries a copy of the state.
+   * @param live Queries the live entity, while holding its lock.
+   * @return Result of the query.
+   */
+  public <T> T read(long epoch, Function<S, T> copied, Supplier<T> live) {
+    Node<S> node = this._head;
+    while (node._version > epoch)
+      node = node._next;
+
+    S state = node._state;
+    if (state != null)
+      return copied.apply(state);
+
+    // This is still the live state, unless a writer copied it meanwhile
+    T result = live.get();
+    state = node._state;
+    return state == null ? result : copied.apply(state);
+  }
+}
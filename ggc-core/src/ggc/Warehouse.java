@@ -5,14 +5,35 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.ObjectInputStream;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Collection;
-import java.util.TreeMap;
+import java.util.Collections;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
-
-import java.lang.Math;
-
+import java.util.stream.Stream;
+
+import ggc.events.AcquisitionEvent;
+import ggc.events.AdvanceDateEvent;
+import ggc.events.BreakdownEvent;
+import ggc.events.ImportEvent;
+import ggc.events.PaymentEvent;
+import ggc.events.SaleEvent;
 import ggc.exceptions.*;
 import ggc.notifications.Notification;
 import ggc.notifications.NotificationRegister;
@@ -37,36 +58,570 @@ import ggc.visitors.TransactionDateUpdater;
 
 /**
  * Class Warehouse implements a warehouse.
+ * 
+ * The warehouse is thread-safe. Sales, acquisitions, breakdowns, payments and
+ * notification toggles hold the warehouse lock in shared mode, plus the locks
+ * of the products they touch, so operations on disjoint products run in
+ * parallel. Registrations, date changes and imports hold the warehouse lock
+ * exclusively.
+ * 
+ * Listings and balances don't take any of these locks. They pin an epoch of the
+ * version clock and read the state products, partners and sales had at that
+ * epoch, while writers keep going: a writer only copies the state of an entity
+ * when a pinned reader may still need it. Pinning waits for the writes in
+ * progress to finish, so every epoch is a consistent cut.
  */
 public class Warehouse implements Serializable {
 
   /** Serial number for serialization. */
   private static final long serialVersionUID = 202109192006L;
 
+  /** Length of a tick of the reservation timers, in milliseconds. */
+  private static final long TIMER_TICK = 100;
+
+  /** Number of slots of the reservation timers, a minute's worth of ticks. */
+  private static final int TIMER_SLOTS = 600;
+
+  /** Statistics of updating the transactions when the date advances. */
+  private static final Statistics.Operation ADVANCE_DATE = Statistics.operation("Warehouse.advanceDate");
+
+  /**
+   * An operation run while holding the warehouse exclusively.
+   * 
+   * @param <T> Type of the result.
+   * @param <E> Type of exception thrown by the operation.
+   */
+  public interface Query<T, E extends Throwable> {
+    /**
+     * @return Result of the operation.
+     * @throws E
+     */
+    public T run() throws E;
+  }
+
   /** Current date. */
-  private int _date;
+  private volatile int _date;
 
   /** Products. */
-  private Map<String, Product> _products;
+  private KeyRegistry<Product> _products;
 
   /** Partners. */
-  private Map<String, Partner> _partners;
+  private KeyRegistry<Partner> _partners;
 
   /** Transactions. */
   private Map<Integer, Transaction> _transactions;
 
+  /** Transactions of each partner, indexed by partner ordinal. */
+  private Map<Integer, List<Transaction>> _partnerTransactions;
+
+  /** Next transaction id. */
+  private AtomicInteger _nextTransactionId;
+
   /** Default notification method, which registers all notifications sent. */
   private NotificationRegister _notificationRegister;
 
+  /** Are batches with the same partner and price merged? */
+  private boolean _mergeBatches;
+
+  /** Number of the last journal record applied to this warehouse. */
+  private long _journalSequence;
+
+  /** Shared by operations on products, held exclusively by everything else. */
+  private transient ReentrantReadWriteLock _lock;
+
+  /** Per-product locks. */
+  private transient ProductLocks _productLocks;
+
+  /** Clock used to version the state seen by readers. */
+  private transient Versions.Clock _clock;
+
+  /** Units held by each holder, by product. */
+  private transient Map<String, Map<Product, Integer>> _holds;
+
+  /** Units each holder took through transfer(), by the batch they came from. */
+  private transient Map<String, List<Batch>> _transfers;
+
+  /** Reservations waiting for their sale, by id. */
+  private transient Map<Integer, Reservation> _reservations;
+
+  /** Next reservation id. */
+  private transient AtomicInteger _nextReservationId;
+
+  /** Releases expired reservations. */
+  private transient TimerWheel _timers;
+
+  /**
+   * Consistent view of the warehouse at a pinned epoch. Entities registered
+   * after the epoch are left out.
+   */
+  private class Snapshot implements AutoCloseable {
+    /** Pinned epoch. */
+    private final long _epoch;
+
+    /** Number of products at the epoch. */
+    private final int _productCount;
+
+    /** Number of partners at the epoch. */
+    private final int _partnerCount;
+
+    /** Id of the first transaction registered after the epoch. */
+    private final int _transactionLimit;
+
+    /** Must be created while holding the warehouse exclusively. */
+    Snapshot() {
+      this._epoch = Warehouse.this._clock.pin();
+      this._productCount = Warehouse.this._products.size();
+      this._partnerCount = Warehouse.this._partners.size();
+      this._transactionLimit = Warehouse.this._nextTransactionId.get();
+    }
+
+    @Override
+    public void close() {
+      Warehouse.this._clock.unpin(this._epoch);
+    }
+
+    /**
+     * Queries the state of a product at the epoch: the copy a writer made, if
+     * there is one, or else a view of the live product, while holding its
+     * lock. Queries must not keep views.
+     * 
+     * @param <T> Type of the result.
+     * @param product Product.
+     * @param query Query.
+     * @return Result of the query.
+     */
+    <T> T query(Product product, Function<Product.State, T> query) {
+      return product.versions().read(this._epoch, query,
+          () -> Warehouse.this._productLocks.withLock(product, () -> query.apply(product.view())));
+    }
+
+    /**
+     * @param product Product.
+     * @return State of the product at the epoch, possibly without its batches.
+     */
+    Product.State summary(Product product) {
+      return this.query(product, Product.State::summary);
+    }
+
+    /**
+     * Collects the batches of a product at the epoch which pass a filter, in
+     * the order of batches(), after the last one listed.
+     * 
+     * @param product Product.
+     * @param after Cursor of the last batch listed, or null.
+     * @param filter Filter.
+     * @param limit Most batches to collect.
+     * @return Batches.
+     */
+    List<Batch> batches(Product product, BatchCursor after, Predicate<Batch> filter, int limit) {
+      return this.query(product, state -> {
+        List<Batch> batches = new ArrayList<Batch>();
+        Iterator<Batch> iterator = after == null ? state.batchesAfter(null, 0, 0, 0) : after.batches(state);
+        while (iterator.hasNext() && batches.size() < limit) {
+          Batch b = iterator.next();
+          if (filter.test(b))
+            batches.add(b);
+        }
+        return batches;
+      });
+    }
+
+    /**
+     * @return Every product which existed at the epoch, sorted by their key.
+     */
+    Stream<Product> products() {
+      return this.products(Warehouse.this._products.values());
+    }
+
+    /**
+     * @param products Products, sorted by their key.
+     * @return Those of the products which existed at the epoch.
+     */
+    Stream<Product> products(Collection<Product> products) {
+      return products.stream().filter(p -> p.ordinal() < this._productCount);
+    }
+
+    /**
+     * @param partner Partner.
+     * @return State of the partner at the epoch.
+     */
+    Partner.State partner(Partner partner) {
+      return partner.versions().read(this._epoch);
+    }
+
+    /**
+     * @return States of every partner at the epoch, sorted by their key.
+     */
+    Stream<Partner.State> partners() {
+      return this.partners(Warehouse.this._partners.values());
+    }
+
+    /**
+     * @param partners Partners, sorted by their key.
+     * @return States at the epoch of those of the partners which existed then.
+     */
+    Stream<Partner.State> partners(Collection<Partner> partners) {
+      return partners.stream()
+          .filter(p -> p.ordinal() < this._partnerCount)
+          .map(this::partner);
+    }
+
+    /**
+     * @param transaction Transaction.
+     * @return State of the transaction at the epoch.
+     */
+    Transaction transaction(Transaction transaction) {
+      Versions<Transaction> versions = transaction.versions();
+      return versions == null ? transaction : versions.read(this._epoch, transaction::state);
+    }
+
+    /**
+     * @return States of every transaction at the epoch, sorted by their id.
+     */
+    Stream<Transaction> transactions() {
+      return Warehouse.this._transactions.values().stream()
+          .takeWhile(t -> t.id() < this._transactionLimit)
+          .map(this::transaction);
+    }
+
+    /**
+     * @param partner Partner.
+     * @return States of the transactions of the partner at the epoch, sorted by
+     *         their id.
+     */
+    List<Transaction> partnerTransactions(Partner partner) {
+      List<Transaction> transactions = new ArrayList<Transaction>();
+      this.forEachPartnerTransaction(partner, transactions::add);
+      return transactions;
+    }
+
+    /**
+     * Passes the state at the epoch of each transaction of a partner, sorted by
+     * id, to an action. Histories only grow, so they are read one transaction
+     * at a time, without copying them or holding them while the action runs.
+     * 
+     * @param partner Partner.
+     * @param action Action.
+     */
+    void forEachPartnerTransaction(Partner partner, Consumer<Transaction> action) {
+      this.forEachPartnerTransaction(partner, -1, t -> {
+        action.accept(t);
+        return true;
+      });
+    }
+
+    /**
+     * Passes the state at the epoch of each transaction of a partner with an id
+     * greater than a given one, sorted by id, to an action, until it asks to
+     * stop. The first is found by a binary search of the history.
+     * 
+     * @param partner Partner.
+     * @param after Id, or -1 to start at the first transaction.
+     * @param action Action, which returns whether to go on.
+     */
+    void forEachPartnerTransaction(Partner partner, int after, Predicate<Transaction> action) {
+      List<Transaction> history = Warehouse.this._partnerTransactions.get(partner.ordinal());
+      int low = 0;
+      synchronized (history) {
+        int high = history.size();
+        while (low < high) {
+          int middle = (low + high) >>> 1;
+          if (history.get(middle).id() <= after)
+            low = middle + 1;
+          else
+            high = middle;
+        }
+      }
+
+      for (int i = low;; i++) {
+        Transaction t;
+        synchronized (history) {
+          if (i >= history.size())
+            return;
+          t = history.get(i);
+        }
+        if (t.id() >= this._transactionLimit || !action.test(this.transaction(t)))
+          return;
+      }
+    }
+  }
+
+  /**
+   * Where a page of batches ends: the product, partner, price and amount of the
+   * last batch listed, and how many batches like it were listed, since they
+   * can't be told apart. Written as "price:amount:like:length:partner" and,
+   * when listing several products, ":product", where length is the length of
+   * the partner's key, since keys may hold ':'.
+   */
+  private static class BatchCursor {
+    /** Key of the product, or null when listing a single product. */
+    private final String _product;
+
+    /** Key of the partner. */
+    private final String _partner;
+
+    /** Price of each unit, in micro-units. */
+    private final long _price;
+
+    /** Number of units. */
+    private final int _amount;
+
+    /** Number of batches like the last one listed. */
+    private final int _like;
+
+    BatchCursor(String product, String partner, long price, int amount, int like) {
+      this._product = product;
+      this._partner = partner;
+      this._price = price;
+      this._amount = amount;
+      this._like = like;
+    }
+
+    /**
+     * @param cursor Cursor.
+     * @param product Whether the cursor names the product.
+     * @return Parsed cursor.
+     * @throws IllegalArgumentException if the cursor is malformed.
+     */
+    static BatchCursor parse(String cursor, boolean product) {
+      String[] fields = cursor.split(":", 5);
+      try {
+        if (fields.length == 5) {
+          int like = Integer.parseInt(fields[2]);
+          int length = Integer.parseInt(fields[3]);
+          String keys = fields[4];
+          if (like > 0 && length >= 0 && length <= keys.length()) {
+            String rest = keys.substring(length);
+            if (product ? rest.startsWith(":") : rest.isEmpty())
+              return new BatchCursor(product ? rest.substring(1) : null, keys.substring(0, length),
+                  Long.parseLong(fields[0]), Integer.parseInt(fields[1]), like);
+          }
+        }
+      } catch (NumberFormatException e) {
+        // Malformed as well
+      }
+      throw new IllegalArgumentException("malformed cursor: " + cursor);
+    }
+
+    /**
+     * Makes the cursor of a page.
+     *
+     * @param page Batches of the page.
+     * @param after Cursor the page was listed from, or null.
+     * @param product Whether the cursor names the product.
+     * @return Cursor.
+     */
+    static String of(List<Batch> page, BatchCursor after, boolean product) {
+      Batch last = page.get(page.size() - 1);
+      int like = 1;
+      for (int i = page.size() - 2; i >= 0 && Batch.LIST_COMPARATOR.compare(page.get(i), last) == 0; i--)
+        like++;
+      if (like == page.size() && after != null && after.describes(last))
+        like += after._like;
+      String partner = last.partner().key();
+      return last.price() + ":" + last.amount() + ":" + like + ":" + partner.length() + ":" + partner
+          + (product ? ":" + last.product().key() : "");
+    }
+
+    /**
+     * @param batch Batch.
+     * @return Whether the batch is like the last one listed.
+     */
+    private boolean describes(Batch batch) {
+      return (this._product == null || this._product.equals(batch.product().key()))
+          && this._partner.equals(batch.partner().key()) && this._price == batch.price()
+          && this._amount == batch.amount();
+    }
+
+    /**
+     * @param state State of a product.
+     * @return The batches of the product after the last one listed.
+     */
+    Iterator<Batch> batches(Product.State state) {
+      if (this._product != null && !this._product.equals(state.product().key()))
+        return state.batchesAfter(null, 0, 0, 0);
+      return state.batchesAfter(this._partner, this._price, this._amount, this._like);
+    }
+  }
+
   /** Default constructor. */
   public Warehouse() {
     this._date = 0;
 
-    this._products = new TreeMap<String, Product>(new CollatorWrapper());
-    this._partners = new TreeMap<String, Partner>(new CollatorWrapper());
-    this._transactions = new TreeMap<Integer, Transaction>();
+    this._products = new KeyRegistry<Product>();
+    this._partners = new KeyRegistry<Partner>();
+    this._transactions = new ConcurrentSkipListMap<Integer, Transaction>();
+    this._partnerTransactions = new ConcurrentHashMap<Integer, List<Transaction>>();
+    this._nextTransactionId = new AtomicInteger(0);
 
     this._notificationRegister = new NotificationRegister();
+    this._mergeBatches = false;
+    this._journalSequence = 0;
+
+    this._lock = new ReentrantReadWriteLock();
+    this._productLocks = new ProductLocks();
+    this._clock = new Versions.Clock();
+    this._holds = new ConcurrentHashMap<String, Map<Product, Integer>>();
+    this._transfers = new ConcurrentHashMap<String, List<Batch>>();
+    this._reservations = new ConcurrentHashMap<Integer, Reservation>();
+    this._nextReservationId = new AtomicInteger(0);
+    this._timers = new TimerWheel(TIMER_TICK, TIMER_SLOTS);
+  }
+
+  private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+    ois.defaultReadObject();
+    this._lock = new ReentrantReadWriteLock();
+    this._productLocks = new ProductLocks();
+    this._clock = new Versions.Clock();
+    this._holds = new ConcurrentHashMap<String, Map<Product, Integer>>();
+    this._transfers = new ConcurrentHashMap<String, List<Batch>>();
+    this._reservations = new ConcurrentHashMap<Integer, Reservation>();
+    this._nextReservationId = new AtomicInteger(0);
+    this._timers = new TimerWheel(TIMER_TICK, TIMER_SLOTS);
+
+    // Components are registered before the products made out of them
+    List<Product> products = new ArrayList<Product>(this._products.values());
+    products.sort(Comparator.comparingInt(Product::ordinal));
+    for (Product product : products)
+      this._productLocks.register(product);
+  }
+
+  /**
+   * Runs an operation while holding the warehouse exclusively, so that no other
+   * operation changes its state in the meantime.
+   * 
+   * @param <T> Type of the result.
+   * @param <E> Type of exception thrown by the operation.
+   * @param query Operation to run.
+   * @return Result of the operation.
+   * @throws E
+   */
+  public <T, E extends Throwable> T exclusive(Query<T, E> query) throws E {
+    this._lock.writeLock().lock();
+    try {
+      return query.run();
+    } finally {
+      this._lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Estimates the memory retained by each subsystem of the warehouse: the
+   * partners, the products, their batches and their observer sets, the
+   * notifications, the transactions of each type, the indexes of the
+   * transactions, and everything else. Holds the warehouse exclusively while
+   * walking it.
+   * 
+   * @return Footprint, measured.
+   */
+  public Footprint footprint() {
+    this._lock.writeLock().lock();
+    try {
+      Footprint footprint = new Footprint();
+      for (Partner partner : this._partners.values())
+        footprint.add("partners", 1, partner);
+      footprint.add("partners", 0, this._partners);
+
+      for (Product product : this._products.values()) {
+        footprint.add("products", 1, product);
+        product.measureBatches(footprint, "batches");
+        product.measureObservers(footprint, "observers");
+      }
+      footprint.add("products", 0, this._products);
+      footprint.add("notifications", this._notificationRegister.size(), this._notificationRegister);
+
+      for (Transaction transaction : this._transactions.values())
+        footprint.add("transactions." + transaction.getClass().getSimpleName(), 1, transaction);
+      footprint.add("transaction indexes", this._transactions.size(), this._transactions,
+          this._partnerTransactions);
+      footprint.add("other", 0, this);
+
+      footprint.measure();
+      return footprint;
+    } finally {
+      this._lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Pins the current epoch. Waits for the writes in progress to finish, but
+   * doesn't hold any lock after returning.
+   * 
+   * @return Snapshot, which must be closed.
+   */
+  private Snapshot pin() {
+    this._lock.writeLock().lock();
+    try {
+      return new Snapshot();
+    } finally {
+      this._lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Locks every product a product may touch, before changing them.
+   * 
+   * @param product Product.
+   */
+  private void lockForWrite(Product product) {
+    this._productLocks.lock(product);
+    for (Product member : this._productLocks.closure(product))
+      member.versions().beforeWrite(this._clock, member::state);
+  }
+
+  /**
+   * Unlocks the products locked by lockForWrite().
+   * 
+   * @param product Product.
+   * @param version Epoch of the write.
+   */
+  private void unlockAfterWrite(Product product, long version) {
+    for (Product member : this._productLocks.closure(product))
+      member.versions().afterWrite(this._clock, version);
+    this._productLocks.unlock(product);
+  }
+
+  /**
+   * Changes a transaction, while holding its monitor.
+   * 
+   * @param transaction Transaction.
+   * @param version Epoch of the write.
+   * @param write Changes the transaction.
+   */
+  private void writeTransaction(Transaction transaction, long version, Runnable write) {
+    Versions<Transaction> versions = transaction.versions();
+    if (versions == null) {
+      write.run();
+      return;
+    }
+
+    synchronized (transaction) {
+      versions.beforeWrite(this._clock, transaction::state);
+      write.run();
+      versions.afterWrite(this._clock, version);
+    }
+  }
+
+  /**
+   * @return Number of the last journal record applied to this warehouse.
+   */
+  long journalSequence() {
+    return this._journalSequence;
+  }
+
+  /**
+   * @param sequence Number of the last journal record applied to this
+   *          warehouse.
+   */
+  void setJournalSequence(long sequence) {
+    this._journalSequence = sequence;
+  }
+
+  /**
+   * @return Id of the next transaction to be registered.
+   */
+  int nextTransactionId() {
+    return this._nextTransactionId.get();
   }
 
   /**
@@ -87,399 +642,1580 @@ public class Warehouse implements Serializable {
   public void advanceDate(int days) throws InvalidDateException {
     if (days <= 0) {
       throw new InvalidDateException(days);
-    } else {
+    }
+
+    AdvanceDateEvent event = new AdvanceDateEvent();
+    event.begin();
+    this._lock.writeLock().lock();
+    long start = ADVANCE_DATE.start();
+    try {
       this._date += days;
+      long version = this._clock.tick();
 
       // Update date for every transaction
       TransactionDateUpdater updater = new TransactionDateUpdater(this._date);
       for (Transaction t : this._transactions.values())
-        t.accept(updater);
+        this.writeTransaction(t, version, () -> t.accept(updater));
+
+      if (event.shouldCommit()) {
+        event.days = days;
+        event.date = this._date;
+        event.transactions = this._transactions.size();
+        event.sales = (int) this._transactions.values().stream()
+            .filter(t -> t instanceof Sale && !((Sale) t).paid()).count();
+        event.commit();
+      }
+    } finally {
+      ADVANCE_DATE.succeeded(start);
+      this._lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the available balance.
+   * 
+   * @return Available balance, in micro-units.
+   */
+  public long availableBalance() {
+    try (Snapshot snapshot = this.pin()) {
+      AvailableBalanceCalculator calculator = new AvailableBalanceCalculator();
+      snapshot.transactions().forEach(t -> t.accept(calculator));
+      return calculator.result();
+    }
+  }
+
+  /**
+   * Returns the accounting balance.
+   * 
+   * @return Accounting balance, in micro-units.
+   */
+  public long accountingBalance() {
+    try (Snapshot snapshot = this.pin()) {
+      AccountingBalanceCalculator calculator = new AccountingBalanceCalculator();
+      snapshot.transactions().forEach(t -> t.accept(calculator));
+      return calculator.result();
+    }
+  }
+
+  /**
+   * Enables or disables merging of batches with the same partner and price, on
+   * every product.
+   * 
+   * @param merge Whether batches should be merged.
+   */
+  public void setBatchMerging(boolean merge) {
+    this._lock.writeLock().lock();
+    try {
+      this._mergeBatches = merge;
+      long version = this._clock.tick();
+      for (Product product : this._products.values()) {
+        this.lockForWrite(product);
+        try {
+          product.setBatchMerging(merge);
+        } finally {
+          this.unlockAfterWrite(product, version);
+        }
+      }
+    } finally {
+      this._lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Returns a product from its key.
+   * 
+   * @param key Product key.
+   * @return Product object.
+   * @throws UnknownProductKeyException
+   */
+  public Product product(String key) throws UnknownProductKeyException {
+    Product product = this._products.get(key);
+    if (product == null)
+      throw new UnknownProductKeyException(key);
+    return product;
+  }
+
+  /**
+   * Returns the family of a product. Products connected by recipes belong to the
+   * same family, so operations on products of different families never touch
+   * the same product.
+   * 
+   * @param key Product key.
+   * @return Family of the product, or -1 if the product is unknown.
+   */
+  public int family(String key) {
+    Product product = this._products.get(key);
+    return product == null ? -1 : this._productLocks.family(product);
+  }
+
+  /**
+   * Returns the state of all products known to the warehouse, sorted by their
+   * key. The states describe the products, and may lack their batches.
+   * 
+   * @return Collection of product states.
+   */
+  public Collection<Product.State> products() {
+    List<Product.State> products = new ArrayList<Product.State>();
+    this.forEachProduct(products::add);
+    return products;
+  }
+
+  /**
+   * Passes the state of every product known to the warehouse, sorted by their
+   * key, to an action, one at a time. The states describe the products, and
+   * may lack their batches.
+   * 
+   * @param action Action.
+   */
+  public void forEachProduct(Consumer<Product.State> action) {
+    try (Snapshot snapshot = this.pin()) {
+      snapshot.products().map(snapshot::summary).forEachOrdered(action);
+    }
+  }
+
+  /**
+   * Returns a page of the states of the products known to the warehouse,
+   * sorted by their key, which may lack their batches. The cursor is the key
+   * of the last product listed, and pages start by seeking it in the registry.
+   * 
+   * @param cursor Cursor returned with the previous page, or null for the
+   *          first page.
+   * @param size Most products in the page.
+   * @return Page of product states.
+   */
+  public Page<Product.State> products(String cursor, int size) {
+    checkPageSize(size);
+    Collection<Product> products = cursor == null ? this._products.values() : this._products.tail(cursor, false);
+    try (Snapshot snapshot = this.pin()) {
+      return Page.of(snapshot.products(products).limit(size + 1L).map(snapshot::summary)
+          .collect(Collectors.toList()), size, p -> p.product().key());
+    }
+  }
+
+  /**
+   * Returns all batches known to the warehouse.
+   * 
+   * @return Collection of batches.
+   */
+  public Collection<Batch> batches() {
+    List<Batch> batches = new ArrayList<Batch>();
+    this.forEachBatch(b -> true, batches::add);
+    return batches;
+  }
+
+  /**
+   * Passes the batches known to the warehouse which pass a filter, in the
+   * order of batches(), to an action. The batches of each product are listed
+   * from a copy a writer made for the snapshot, or else from the live product
+   * while holding its lock, and only those of one product are held at a time,
+   * so memory grows with the largest product.
+   * 
+   * @param filter Filter.
+   * @param action Action.
+   */
+  public void forEachBatch(Predicate<Batch> filter, Consumer<Batch> action) {
+    try (Snapshot snapshot = this.pin()) {
+      snapshot.products().forEachOrdered(p -> {
+        for (Batch b : snapshot.query(p, Product.State::batches))
+          if (filter.test(b))
+            action.accept(b);
+      });
+    }
+  }
+
+  /**
+   * Returns a page of the batches known to the warehouse, in the order of
+   * batches().
+   * 
+   * @param cursor Cursor returned with the previous page, or null for the
+   *          first page.
+   * @param size Most batches in the page.
+   * @return Page of batches.
+   * @throws IllegalArgumentException if the cursor is malformed.
+   */
+  public Page<Batch> batches(String cursor, int size) {
+    return this.batches(b -> true, cursor, size);
+  }
+
+  /**
+   * Returns a page of the batches known to the warehouse which pass a filter,
+   * in the order of batches(). The cursor is the last batch listed, as in
+   * BatchCursor: pages start by seeking its product in the registry, and the
+   * batch among the product's, so batches registered or taken meanwhile don't
+   * make pages repeat or skip others.
+   * 
+   * @param filter Filter, which must treat alike batches with the same
+   *          product, partner, price and amount.
+   * @param cursor Cursor returned with the previous page, or null for the
+   *          first page.
+   * @param size Most batches in the page.
+   * @return Page of batches.
+   * @throws IllegalArgumentException if the cursor is malformed.
+   */
+  private Page<Batch> batches(Predicate<Batch> filter, String cursor, int size) {
+    checkPageSize(size);
+    BatchCursor after = cursor == null ? null : BatchCursor.parse(cursor, true);
+    Collection<Product> products = after == null ? this._products.values()
+        : this._products.tail(after._product, true);
+
+    List<Batch> batches = new ArrayList<Batch>();
+    try (Snapshot snapshot = this.pin()) {
+      Iterator<Product> iterator = snapshot.products(products).iterator();
+      while (iterator.hasNext() && batches.size() <= size)
+        batches.addAll(snapshot.batches(iterator.next(), after, filter, size + 1 - batches.size()));
+    }
+    return Page.of(batches, size, b -> BatchCursor.of(batches, after, true));
+  }
+
+  /**
+   * Returns all batches known to the warehouse, associated to a partner.
+   * 
+   * @param partner Partner.
+   * @return Collection of batches.
+   */
+  public Collection<Batch> batchesByPartner(Partner partner) {
+    List<Batch> batches = new ArrayList<Batch>();
+    this.forEachBatch(b -> b.partner() == partner, batches::add);
+    return batches;
+  }
+
+  /**
+   * Returns a page of the batches known to the warehouse, associated to a
+   * partner.
+   * 
+   * @param partner Partner.
+   * @param cursor Cursor returned with the previous page, or null for the
+   *          first page.
+   * @param size Most batches in the page.
+   * @return Page of batches.
+   * @throws IllegalArgumentException if the cursor is malformed.
+   */
+  public Page<Batch> batchesByPartner(Partner partner, String cursor, int size) {
+    return this.batches(b -> b.partner() == partner, cursor, size);
+  }
+
+  /**
+   * Returns all batches of a product.
+   * 
+   * @param productKey Product key.
+   * @return Collection of batches.
+   * @throws UnknownProductKeyException
+   */
+  public Collection<Batch> batchesByProduct(String productKey) throws UnknownProductKeyException {
+    Product product = this.product(productKey);
+    try (Snapshot snapshot = this.pin()) {
+      return snapshot.query(product, Product.State::batches);
+    }
+  }
+
+  /**
+   * Returns a page of the batches of a product. The cursor is the last batch
+   * listed, as in BatchCursor, which pages start by seeking among the
+   * product's batches.
+   * 
+   * @param productKey Product key.
+   * @param cursor Cursor returned with the previous page, or null for the
+   *          first page.
+   * @param size Most batches in the page.
+   * @return Page of batches.
+   * @throws UnknownProductKeyException
+   * @throws IllegalArgumentException if the cursor is malformed.
+   */
+  public Page<Batch> batchesByProduct(String productKey, String cursor, int size)
+      throws UnknownProductKeyException {
+    checkPageSize(size);
+    BatchCursor after = cursor == null ? null : BatchCursor.parse(cursor, false);
+    Product product = this.product(productKey);
+    List<Batch> batches = new ArrayList<Batch>();
+    try (Snapshot snapshot = this.pin()) {
+      batches.addAll(snapshot.batches(product, after, b -> true, size + 1));
+    }
+    return Page.of(batches, size, b -> BatchCursor.of(batches, after, false));
+  }
+
+  /**
+   * Returns all batches below a given price threshold.
+   * 
+   * @param priceLimit Price threshold, in micro-units.
+   * @return Collection of batches.
+   */
+  public Collection<Batch> batchesByPrice(long priceLimit) {
+    List<Batch> batches = new ArrayList<Batch>();
+    this.forEachBatch(b -> b.price() <= priceLimit, batches::add);
+    return batches;
+  }
+
+  /**
+   * Returns a page of the batches below a given price threshold.
+   * 
+   * @param priceLimit Price threshold, in micro-units.
+   * @param cursor Cursor returned with the previous page, or null for the
+   *          first page.
+   * @param size Most batches in the page.
+   * @return Page of batches.
+   * @throws IllegalArgumentException if the cursor is malformed.
+   */
+  public Page<Batch> batchesByPrice(long priceLimit, String cursor, int size) {
+    return this.batches(b -> b.price() <= priceLimit, cursor, size);
+  }
+
+  /**
+   * @param size Most entries in a page.
+   * @throws IllegalArgumentException if pages couldn't hold any entry.
+   */
+  private static void checkPageSize(int size) {
+    if (size < 1)
+      throw new IllegalArgumentException("page size must be positive: " + size);
+  }
+
+  /**
+   * Registers a new simple product.
+   * 
+   * @param key Product key.
+   * @return Product object.
+   * @throws DuplicateProductKeyException
+   */
+  public Product registerProduct(String key) throws DuplicateProductKeyException {
+    this._lock.writeLock().lock();
+    try {
+      // Ordinals are dense, so the next one is the current number of products
+      Product product = new SimpleProduct(this._products.size(), key);
+      return this.registerProduct(key, product);
+    } finally {
+      this._lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Registers a new derivate product.
+   * 
+   * @param key Product key.
+   * @param aggravation Product recipe aggravation.
+   * @param componentKeys Product recipe component keys.
+   * @param amounts Product recipe component amounts.
+   * @return Product object.
+   * @throws DuplicateProductKeyException
+   * @throws UnknownProductKeyException
+   * @throws InvalidRecipeException
+   */
+  public Product registerProduct(String key, double aggravation, String componentKeys[], int amounts[])
+      throws DuplicateProductKeyException, UnknownProductKeyException, InvalidRecipeException {
+    this._lock.writeLock().lock();
+    try {
+      // Get component products
+      Product[] components = new Product[componentKeys.length];
+      for (int i = 0; i < componentKeys.length; i++)
+        components[i] = this.product(componentKeys[i]);
+
+      // Create derivate product
+      Recipe recipe = new Recipe(aggravation, components, amounts);
+      Product product = new DerivateProduct(this._products.size(), key, recipe);
+      return this.registerProduct(key, product);
+    } finally {
+      this._lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Registers a new product object. Must hold the warehouse exclusively.
+   * 
+   * @param key Product key.
+   * @param product Product object.
+   * @return Product object.
+   * @throws DuplicateProductKeyException
+   */
+  private Product registerProduct(String key, Product product) throws DuplicateProductKeyException {
+    if (this._products.putIfAbsent(key, product) != null) {
+      throw new DuplicateProductKeyException(key);
+    }
+    this._productLocks.register(product);
+
+    // Add default notification method
+    product.registerNotificationMethod(this._notificationRegister);
+    product.setBatchMerging(this._mergeBatches);
+
+    // Make all partners listen to notifications from this product
+    for (Partner partner : this._partners.values())
+      product.attachObserver(partner);
+
+    return product;
+  }
+
+  /**
+   * Returns information about a partner from its key.
+   * 
+   * @param key Partner key.
+   * @return Partner object.
+   * @throws UnknownPartnerKeyException
+   */
+  public Partner partner(String key) throws UnknownPartnerKeyException {
+    Partner partner = this._partners.get(key);
+    if (partner == null)
+      throw new UnknownPartnerKeyException(key);
+    return partner;
+  }
+
+  /**
+   * Returns the state of all partners known to the warehouse, sorted by their
+   * key.
+   * 
+   * @return Collection of partner states.
+   */
+  public Collection<Partner.State> partners() {
+    List<Partner.State> partners = new ArrayList<Partner.State>();
+    this.forEachPartner(partners::add);
+    return partners;
+  }
+
+  /**
+   * Passes the state of every partner known to the warehouse, sorted by their
+   * key, to an action, one at a time.
+   * 
+   * @param action Action.
+   */
+  public void forEachPartner(Consumer<Partner.State> action) {
+    try (Snapshot snapshot = this.pin()) {
+      snapshot.partners().forEachOrdered(action);
+    }
+  }
+
+  /**
+   * Returns a page of the states of the partners known to the warehouse,
+   * sorted by their key. The cursor is the key of the last partner listed, and
+   * pages start by seeking it in the registry.
+   * 
+   * @param cursor Cursor returned with the previous page, or null for the
+   *          first page.
+   * @param size Most partners in the page.
+   * @return Page of partner states.
+   */
+  public Page<Partner.State> partners(String cursor, int size) {
+    checkPageSize(size);
+    Collection<Partner> partners = cursor == null ? this._partners.values() : this._partners.tail(cursor, false);
+    try (Snapshot snapshot = this.pin()) {
+      return Page.of(snapshot.partners(partners).limit(size + 1L).collect(Collectors.toList()), size,
+          p -> p.partner().key());
+    }
+  }
+
+  /**
+   * Registers a new partner.
+   * 
+   * @param key Partner key.
+   * @param name Partner name.
+   * @param address Partner address.
+   * @throws DuplicatePartnerKeyException
+   */
+  public void registerPartner(String key, String name, String address) throws DuplicatePartnerKeyException {
+    this._lock.writeLock().lock();
+    try {
+      // Ordinals are dense, so the next one is the current number of partners
+      Partner partner = new Partner(this._partners.size(), key, name, address);
+
+      if (this._partners.putIfAbsent(key, partner) != null) {
+        throw new DuplicatePartnerKeyException(key);
+      }
+      this._partnerTransactions.put(partner.ordinal(), new ArrayList<Transaction>());
+
+      for (Product p : this._products.values())
+        p.attachObserver(partner);
+    } finally {
+      this._lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Toggles whether a partner receives notifications about a product or not.
+   * 
+   * @param partnerKey Partner key.
+   * @param productKey Product key.
+   * @throws UnknownPartnerKeyException
+   * @throws UnknownProductKeyException
+   */
+  public void toggleNotification(String partnerKey, String productKey)
+      throws UnknownPartnerKeyException, UnknownProductKeyException {
+    this._lock.readLock().lock();
+    try {
+      Partner partner = this.partner(partnerKey);
+      Product product = this.product(productKey);
+
+      this._productLocks.lock(product);
+      try {
+        if (product.hasObserverAttached(partner))
+          product.detachObserver(partner);
+        else
+          product.attachObserver(partner);
+      } finally {
+        this._productLocks.unlock(product);
+      }
+    } finally {
+      this._lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the notifications registered for a partner.
+   * 
+   * @param partnerKey Partner key.
+   * @return Collection of notifications.
+   * @throws UnknownPartnerKeyException
+   */
+  public Collection<Notification> partnerNotifications(String partnerKey) throws UnknownPartnerKeyException {
+    Partner partner = this.partner(partnerKey);
+    return this._notificationRegister.popNotifications(partner);
+  }
+
+  /**
+   * Returns the current state of a transaction from its key.
+   * 
+   * @param key Transaction key.
+   * @return Copy of the transaction's state.
+   * @throws UnknownTransactionKeyException
+   */
+  public Transaction transaction(int key) throws UnknownTransactionKeyException {
+    Transaction transaction = this._transactions.get(key);
+    if (transaction == null)
+      throw new UnknownTransactionKeyException(key);
+    try (Snapshot snapshot = this.pin()) {
+      return snapshot.transaction(transaction);
+    }
+  }
+
+  /**
+   * Returns all acquisitions related to a partner.
+   *
+   * @param partnerKey Partner key.
+   * @return Collection of transactions.
+   * @throws UnknownPartnerKeyException
+   */
+  public Collection<Transaction> partnerAcquisitions(String partnerKey) throws UnknownPartnerKeyException {
+    AcquisitionCollector collector = new AcquisitionCollector();
+    this.forEachPartnerTransaction(partnerKey, t -> t.accept(collector));
+    return collector.result();
+  }
+
+  /**
+   * Passes the acquisitions related to a partner to an action, one at a time.
+   *
+   * @param partnerKey Partner key.
+   * @param action Action.
+   * @throws UnknownPartnerKeyException
+   */
+  public void forEachPartnerAcquisition(String partnerKey, Consumer<Transaction> action)
+      throws UnknownPartnerKeyException {
+    AcquisitionCollector collector = new AcquisitionCollector(action);
+    this.forEachPartnerTransaction(partnerKey, t -> t.accept(collector));
+  }
+
+  /**
+   * Returns a page of the acquisitions related to a partner.
+   *
+   * @param partnerKey Partner key.
+   * @param cursor Cursor returned with the previous page, or null for the
+   *          first page.
+   * @param size Most transactions in the page.
+   * @return Page of transactions.
+   * @throws UnknownPartnerKeyException
+   * @throws IllegalArgumentException if the cursor is malformed.
+   */
+  public Page<Transaction> partnerAcquisitions(String partnerKey, String cursor, int size)
+      throws UnknownPartnerKeyException {
+    return this.partnerTransactions(partnerKey, cursor, size, sink -> {
+      AcquisitionCollector collector = new AcquisitionCollector(sink);
+      return t -> t.accept(collector);
+    });
+  }
+
+  /**
+   * Returns all sales and breakdowns related to a partner.
+   *
+   * @param partnerKey Partner key.
+   * @return Collection of transactions.
+   * @throws UnknownPartnerKeyException
+   */
+  public Collection<Transaction> partnerSalesAndBreakdowns(String partnerKey) throws UnknownPartnerKeyException {
+    SaleAndBreakdownCollector collector = new SaleAndBreakdownCollector();
+    this.forEachPartnerTransaction(partnerKey, t -> t.accept(collector));
+    return collector.result();
+  }
+
+  /**
+   * Passes the sales and breakdowns related to a partner to an action, one at
+   * a time.
+   *
+   * @param partnerKey Partner key.
+   * @param action Action.
+   * @throws UnknownPartnerKeyException
+   */
+  public void forEachPartnerSaleAndBreakdown(String partnerKey, Consumer<Transaction> action)
+      throws UnknownPartnerKeyException {
+    SaleAndBreakdownCollector collector = new SaleAndBreakdownCollector(action);
+    this.forEachPartnerTransaction(partnerKey, t -> t.accept(collector));
+  }
+
+  /**
+   * Returns a page of the sales and breakdowns related to a partner.
+   *
+   * @param partnerKey Partner key.
+   * @param cursor Cursor returned with the previous page, or null for the
+   *          first page.
+   * @param size Most transactions in the page.
+   * @return Page of transactions.
+   * @throws UnknownPartnerKeyException
+   * @throws IllegalArgumentException if the cursor is malformed.
+   */
+  public Page<Transaction> partnerSalesAndBreakdowns(String partnerKey, String cursor, int size)
+      throws UnknownPartnerKeyException {
+    return this.partnerTransactions(partnerKey, cursor, size, sink -> {
+      SaleAndBreakdownCollector collector = new SaleAndBreakdownCollector(sink);
+      return t -> t.accept(collector);
+    });
+  }
+
+  /**
+   * Returns all paid transactions related to a partner.
+   * 
+   * @param partnerKey Partner key.
+   * @return Collection of transactions.
+   * @throws UnknownPartnerKeyException
+   */
+  public Collection<Transaction> partnerPaidTransactions(String partnerKey) throws UnknownPartnerKeyException {
+    PaidTransactionsCollector collector = new PaidTransactionsCollector();
+    this.forEachPartnerTransaction(partnerKey, t -> t.accept(collector));
+    return collector.result();
+  }
+
+  /**
+   * Passes the paid transactions related to a partner to an action, one at a
+   * time.
+   *
+   * @param partnerKey Partner key.
+   * @param action Action.
+   * @throws UnknownPartnerKeyException
+   */
+  public void forEachPartnerPaidTransaction(String partnerKey, Consumer<Transaction> action)
+      throws UnknownPartnerKeyException {
+    PaidTransactionsCollector collector = new PaidTransactionsCollector(action);
+    this.forEachPartnerTransaction(partnerKey, t -> t.accept(collector));
+  }
+
+  /**
+   * Returns a page of the paid transactions related to a partner.
+   *
+   * @param partnerKey Partner key.
+   * @param cursor Cursor returned with the previous page, or null for the
+   *          first page.
+   * @param size Most transactions in the page.
+   * @return Page of transactions.
+   * @throws UnknownPartnerKeyException
+   * @throws IllegalArgumentException if the cursor is malformed.
+   */
+  public Page<Transaction> partnerPaidTransactions(String partnerKey, String cursor, int size)
+      throws UnknownPartnerKeyException {
+    return this.partnerTransactions(partnerKey, cursor, size, sink -> {
+      PaidTransactionsCollector collector = new PaidTransactionsCollector(sink);
+      return t -> t.accept(collector);
+    });
+  }
+
+  /**
+   * Returns the state of all transactions related to a partner.
+   * 
+   * @param partnerKey Partner key.
+   * @return Collection of transactions.
+   * @throws UnknownPartnerKeyException
+   */
+  public Collection<Transaction> partnerTransactions(String partnerKey) throws UnknownPartnerKeyException {
+    Partner partner = this.partner(partnerKey);
+    try (Snapshot snapshot = this.pin()) {
+      return Collections.unmodifiableList(snapshot.partnerTransactions(partner));
+    }
+  }
+
+  /**
+   * Passes the state of each transaction related to a partner, sorted by id,
+   * to an action, one at a time.
+   * 
+   * @param partnerKey Partner key.
+   * @param action Action.
+   * @throws UnknownPartnerKeyException
+   */
+  public void forEachPartnerTransaction(String partnerKey, Consumer<Transaction> action)
+      throws UnknownPartnerKeyException {
+    Partner partner = this.partner(partnerKey);
+    try (Snapshot snapshot = this.pin()) {
+      snapshot.forEachPartnerTransaction(partner, action);
+    }
+  }
+
+  /**
+   * Returns a page of the states of the transactions related to a partner,
+   * sorted by id.
+   * 
+   * @param partnerKey Partner key.
+   * @param cursor Cursor returned with the previous page, or null for the
+   *          first page.
+   * @param size Most transactions in the page.
+   * @return Page of transactions.
+   * @throws UnknownPartnerKeyException
+   * @throws IllegalArgumentException if the cursor is malformed.
+   */
+  public Page<Transaction> partnerTransactions(String partnerKey, String cursor, int size)
+      throws UnknownPartnerKeyException {
+    return this.partnerTransactions(partnerKey, cursor, size, sink -> sink);
+  }
+
+  /**
+   * Returns a page of the states of the transactions related to a partner
+   * which pass a filter, sorted by id. The cursor is the id of the last
+   * transaction listed, and pages start by seeking it in the partner's
+   * history.
+   * 
+   * @param partnerKey Partner key.
+   * @param cursor Cursor returned with the previous page, or null for the
+   *          first page.
+   * @param size Most transactions in the page.
+   * @param filter Given where to pass the transactions which pass the filter,
+   *          returns where to pass every transaction.
+   * @return Page of transactions.
+   * @throws UnknownPartnerKeyException
+   * @throws IllegalArgumentException if the cursor is malformed.
+   */
+  private Page<Transaction> partnerTransactions(String partnerKey, String cursor, int size,
+      Function<Consumer<Transaction>, Consumer<Transaction>> filter) throws UnknownPartnerKeyException {
+    checkPageSize(size);
+    Partner partner = this.partner(partnerKey);
+    int after = -1;
+    if (cursor != null) {
+      try {
+        after = Integer.parseInt(cursor);
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("malformed cursor: " + cursor);
+      }
+    }
+    List<Transaction> transactions = new ArrayList<Transaction>();
+    Consumer<Transaction> action = filter.apply(transactions::add);
+    try (Snapshot snapshot = this.pin()) {
+      snapshot.forEachPartnerTransaction(partner, after, t -> {
+        action.accept(t);
+        return transactions.size() <= size;
+      });
+    }
+    return Page.of(transactions, size, t -> String.valueOf(t.id()));
+  }
+
+  /**
+   * Registers a new transaction. The id is allocated while holding the partner's
+   * history, so each history stays sorted by id.
+   * 
+   * @param partner Partner involved in the transaction.
+   * @param factory Creates the transaction from its id.
+   * @return Id of the transaction.
+   */
+  private int registerTransaction(Partner partner, IntFunction<Transaction> factory) {
+    List<Transaction> history = this._partnerTransactions.get(partner.ordinal());
+    Transaction transaction;
+    synchronized (history) {
+      transaction = factory.apply(this._nextTransactionId.getAndIncrement());
+      history.add(transaction);
+    }
+    this._transactions.put(transaction.id(), transaction);
+    return transaction.id();
+  }
+
+  /**
+   * Registers a breakdown transaction.
+   * 
+   * @param partnerKey Partner key.
+   * @param productKey Product key.
+   * @param amount How many units were broke down?
+   * @return Id of the breakdown transaction, or -1 if the product can't be
+   *         broken down.
+   * @throws UnknownPartnerKeyException
+   * @throws UnknownProductKeyException
+   * @throws UnavailableProductException
+   */
+  public int registerBreakdown(String partnerKey, String productKey, int amount)
+      throws UnknownPartnerKeyException, UnknownProductKeyException, UnavailableProductException {
+    BreakdownEvent event = new BreakdownEvent();
+    event.begin();
+    this._lock.readLock().lock();
+    try {
+      Partner partner = this.partner(partnerKey);
+      Product product = this.product(productKey);
+
+      long version = this._clock.tick();
+      this.lockForWrite(product);
+      try {
+        // Breakdown the product
+        ProductBreaker breaker = new ProductBreaker(partner, amount);
+        product.accept(breaker);
+
+        // If the product was broken down
+        int id = -1;
+        if (breaker.breakdownComponents() != null) {
+          // Update partner
+          partner.registerBreakdown(this._clock, version, breaker.breakdownValue());
+          long paidValue = breaker.breakdownValue() > Money.ZERO ? breaker.breakdownValue() : Money.ZERO;
+
+          // Register transaction
+          id = this.registerTransaction(partner, key -> new Breakdown(key, this._date, amount, product, partner,
+              breaker.breakdownValue(), paidValue, breaker.breakdownComponents()));
+        }
+
+        if (event.shouldCommit()) {
+          event.transaction = id;
+          event.partner = partner.key();
+          event.product = product.key();
+          event.amount = amount;
+          event.components = product instanceof DerivateProduct
+              ? ((DerivateProduct) product).recipe().components().length
+              : 0;
+          event.value = Money.toDouble(breaker.breakdownValue());
+          event.commit();
+        }
+        return id;
+      } finally {
+        this.unlockAfterWrite(product, version);
+      }
+    } finally {
+      this._lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Registers a sale transaction.
+   * 
+   * @param partnerKey Partner key.
+   * @param productKey Product key.
+   * @param deadline Sale payment deadline.
+   * @param amount Number of units sold.
+   * @return Id of the sale transaction.
+   * @throws UnknownPartnerKeyException
+   * @throws UnknownProductKeyException
+   * @throws UnavailableProductException
+   */
+  public int registerSale(String partnerKey, String productKey, int deadline, int amount)
+      throws UnknownPartnerKeyException, UnknownProductKeyException, UnavailableProductException {
+    return this.registerSale(partnerKey, productKey, deadline, amount, new ArrayList<Integer>());
+  }
+
+  /**
+   * Registers a sale transaction, collecting the number of units of each
+   * product made out of components, so that replaySale() may repeat it.
+   * 
+   * @param partnerKey Partner key.
+   * @param productKey Product key.
+   * @param deadline Sale payment deadline.
+   * @param amount Number of units sold.
+   * @param plan Collects the number of units of each product made out of
+   *          components, as in Reservation.plan().
+   * @return Id of the sale transaction.
+   * @throws UnknownPartnerKeyException
+   * @throws UnknownProductKeyException
+   * @throws UnavailableProductException
+   */
+  int registerSale(String partnerKey, String productKey, int deadline, int amount, List<Integer> plan)
+      throws UnknownPartnerKeyException, UnknownProductKeyException, UnavailableProductException {
+    SaleEvent event = new SaleEvent();
+    event.begin();
+    this._lock.readLock().lock();
+    try {
+      Partner partner = this.partner(partnerKey);
+      Product product = this.product(productKey);
+
+      long version = this._clock.tick();
+      this.lockForWrite(product);
+      try {
+        // Find the units to sell, or report the missing ones as checkSell() does
+        Map<Product, Integer> holds = new HashMap<Product, Integer>();
+        if (!plan(product, amount, holds, plan)) {
+          releaseAll(holds);
+          product.checkSell(amount);
+          throw new UnavailableProductException(product.key(), amount, product.available());
+        }
+
+        // Sell product
+        long baseValue = this.takeHeld(holds, product, amount, plan.stream().mapToInt(Integer::intValue).iterator());
+
+        // Update partner
+        partner.registerSale(this._clock, version, baseValue);
+
+        // Register sale transaction
+        int id = this.registerTransaction(partner,
+            key -> new Sale(key, this._date, product, amount, partner, deadline, baseValue));
+        if (event.shouldCommit())
+          commit(event, id, partner, product, amount, plan.stream().mapToInt(Integer::intValue).sum(), baseValue);
+        return id;
+      } finally {
+        this.unlockAfterWrite(product, version);
+      }
+    } finally {
+      this._lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Registers an acquisition transaction.
+   * 
+   * @param partnerKey Partner key.
+   * @param productKey Product key.
+   * @param amount Number of units bought.
+   * @param price Price of each unit, in micro-units.
+   * @return Id of the acquisition transaction.
+   * @throws UnknownPartnerKeyException
+   * @throws UnknownProductKeyException
+   */
+  public int registerAcquisition(String partnerKey, String productKey, int amount, long price)
+      throws UnknownPartnerKeyException, UnknownProductKeyException {
+    AcquisitionEvent event = new AcquisitionEvent();
+    event.begin();
+    this._lock.readLock().lock();
+    try {
+      Partner partner = this.partner(partnerKey);
+      Product product = this.product(productKey);
+
+      long version = this._clock.tick();
+      this.lockForWrite(product);
+      try {
+        // Register new batch
+        int notifications = product.addBatch(partner, amount, price);
+
+        // Update partner
+        partner.registerAcquisition(this._clock, version, amount * price);
+
+        // Register acquisition transaction
+        int id = this.registerTransaction(partner,
+            key -> new Acquisition(key, this._date, amount, product, partner, price));
+        if (event.shouldCommit()) {
+          event.transaction = id;
+          event.partner = partner.key();
+          event.product = product.key();
+          event.amount = amount;
+          event.price = Money.toDouble(price);
+          event.notifications = notifications;
+          event.commit();
+        }
+        return id;
+      } finally {
+        this.unlockAfterWrite(product, version);
+      }
+    } finally {
+      this._lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Registers a sale payment.
+   * 
+   * @param transactionKey Sale transaction key.
+   * @throws UnknownTransactionKeyException
+   */
+  public void receiveSalePayment(int transactionKey) throws UnknownTransactionKeyException {
+    PaymentEvent event = new PaymentEvent();
+    event.begin();
+    this._lock.readLock().lock();
+    try {
+      Transaction transaction = this._transactions.get(transactionKey);
+      if (transaction == null)
+        throw new UnknownTransactionKeyException(transactionKey);
+
+      // Paying a sale changes both the sale, under its monitor, and its partner,
+      // whose state is swapped without holding any lock
+      long version = this._clock.tick();
+      TransactionPayer payer = new TransactionPayer(this._date, this._clock, version);
+      this.writeTransaction(transaction, version, () -> transaction.accept(payer));
+
+      if (event.shouldCommit()) {
+        event.transaction = transactionKey;
+        event.partner = transaction.partner().key();
+        event.value = Money.toDouble(payer.value());
+        event.commit();
+      }
+    } finally {
+      this._lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Holds available units of a product for a holder, so that only the holder
+   * takes them, through transfer() or registerAssembledSale(). Holds aren't
+   * saved.
+   * 
+   * @param holder Holder of the units.
+   * @param partnerKey Key of the partner the units are for.
+   * @param productKey Product key.
+   * @param amount Number of units wanted.
+   * @return Number of units held, which is less than the amount wanted if there
+   *         aren't enough units available.
+   * @throws UnknownPartnerKeyException
+   * @throws UnknownProductKeyException
+   */
+  public int hold(String holder, String partnerKey, String productKey, int amount)
+      throws UnknownPartnerKeyException, UnknownProductKeyException {
+    this._lock.readLock().lock();
+    try {
+      this.partner(partnerKey);
+      Product product = this.product(productKey);
+
+      int held = this._productLocks.withLock(product, () -> {
+        int units = Math.min(product.available(), amount);
+        product.hold(units);
+        return units;
+      });
+      this._holds.computeIfAbsent(holder, h -> new ConcurrentHashMap<Product, Integer>())
+          .merge(product, held, Integer::sum);
+      return held;
+    } finally {
+      this._lock.readLock().unlock();
     }
   }
 
   /**
-   * Returns the available balance.
+   * Releases every unit held for a holder, and forgets the units it took.
    * 
-   * @return Available balance.
+   * @param holder Holder of the units.
    */
-  public double availableBalance() {
-    AvailableBalanceCalculator calculator = new AvailableBalanceCalculator();
-    for (Transaction t : this._transactions.values())
-      t.accept(calculator);
-    return calculator.result();
+  public void release(String holder) {
+    this._transfers.remove(holder);
+    this.release(this._holds.remove(holder));
   }
 
   /**
-   * Returns the accounting balance.
+   * Releases held units.
    * 
-   * @return Accounting balance.
+   * @param holds Units held, by product, or null.
    */
-  public double accountingBalance() {
-    AccountingBalanceCalculator calculator = new AccountingBalanceCalculator();
-    for (Transaction t : this._transactions.values())
-      t.accept(calculator);
-    return calculator.result();
+  private void release(Map<Product, Integer> holds) {
+    if (holds == null)
+      return;
+    this._lock.readLock().lock();
+    try {
+      for (Map.Entry<Product, Integer> hold : holds.entrySet())
+        this._productLocks.withLock(hold.getKey(), () -> {
+          hold.getKey().release(hold.getValue());
+          return null;
+        });
+    } finally {
+      this._lock.readLock().unlock();
+    }
   }
 
   /**
-   * Returns a product from its key.
+   * Reserves units of a product for a sale to a partner. The units are held,
+   * and so are, for units which aren't available, the components needed to make
+   * them, so that registerSale(int, int) finds them all. The units are released
+   * if the sale isn't registered before the timeout. Reservations aren't saved.
    * 
-   * @param key Product key.
-   * @return Product object.
+   * @param partnerKey Partner key.
+   * @param productKey Product key.
+   * @param amount Number of units.
+   * @param timeout Time before the reservation expires, in milliseconds.
+   * @return Reservation id.
+   * @throws UnknownPartnerKeyException
    * @throws UnknownProductKeyException
+   * @throws UnavailableProductException if there aren't enough units, reported
+   *           as registerSale() would.
    */
-  public Product product(String key) throws UnknownProductKeyException {
-    Product product = this._products.get(key);
-    if (product == null)
-      throw new UnknownProductKeyException(key);
-    return product;
+  public int reserve(String partnerKey, String productKey, int amount, long timeout)
+      throws UnknownPartnerKeyException, UnknownProductKeyException, UnavailableProductException {
+    this._lock.readLock().lock();
+    try {
+      Partner partner = this.partner(partnerKey);
+      Product product = this.product(productKey);
+
+      Map<Product, Integer> holds = new ConcurrentHashMap<Product, Integer>();
+      List<Integer> plan = new ArrayList<Integer>();
+      this._productLocks.lock(product);
+      try {
+        if (!plan(product, amount, holds, plan)) {
+          releaseAll(holds);
+          product.checkSell(amount);
+          throw new UnavailableProductException(product.key(), amount, product.available());
+        }
+      } finally {
+        this._productLocks.unlock(product);
+      }
+
+      Reservation reservation = new Reservation(this._nextReservationId.getAndIncrement(), partner, product, amount,
+          plan.stream().mapToInt(Integer::intValue).toArray(), holds);
+      synchronized (reservation) {
+        this._reservations.put(reservation.id(), reservation);
+        reservation.setTimer(this._timers.schedule(() -> this.expire(reservation), timeout));
+      }
+      return reservation.id();
+    } finally {
+      this._lock.readLock().unlock();
+    }
   }
 
   /**
-   * Returns all products known to the warehouse, sorted by their key.
-   * 
-   * @return Collection of products.
+   * @param reservationKey Reservation id.
+   * @return The reservation.
+   * @throws UnknownReservationKeyException if there is no such reservation, or
+   *           it was used, cancelled, or expired.
    */
-  public Collection<Product> products() {
-    return this._products.values();
+  Reservation reservation(int reservationKey) throws UnknownReservationKeyException {
+    Reservation reservation = this._reservations.get(reservationKey);
+    if (reservation == null)
+      throw new UnknownReservationKeyException(reservationKey);
+    return reservation;
   }
 
   /**
-   * Returns all batches known to the warehouse.
+   * Removes a reservation to use or cancel it, and cancels the timer which
+   * would expire it, so that the timer doesn't keep the reservation and its
+   * holds until it is due.
    * 
-   * @return Collection of batches.
+   * @param reservationKey Reservation id.
+   * @return The reservation.
+   * @throws UnknownReservationKeyException if there is no such reservation, or
+   *           it was used, cancelled, or expired.
    */
-  public Collection<Batch> batches() {
-    return this._products.values().stream()
-        .flatMap(p -> p.batches().stream())
-        .collect(Collectors.toList());
+  private Reservation removeReservation(int reservationKey) throws UnknownReservationKeyException {
+    Reservation reservation = this._reservations.remove(reservationKey);
+    if (reservation == null)
+      throw new UnknownReservationKeyException(reservationKey);
+    // The timer is set while holding the reservation's monitor, right after it is put
+    synchronized (reservation) {
+      this._timers.cancel(reservation.timer());
+    }
+    return reservation;
   }
 
   /**
-   * Returns all batches known to the warehouse, associated to a partner.
+   * Cancels a reservation, releasing its units.
    * 
-   * @param partner Partner.
-   * @return Collection of batches.
+   * @param reservationKey Reservation id.
+   * @throws UnknownReservationKeyException
    */
-  public Collection<Batch> batchesByPartner(Partner partner) {
-    return this._products.values().stream()
-        .flatMap(p -> p.batches().stream())
-        .filter(b -> b.partner() == partner)
-        .collect(Collectors.toList());
+  public void cancelReservation(int reservationKey) throws UnknownReservationKeyException {
+    this.release(this.removeReservation(reservationKey).holds());
   }
 
   /**
-   * Returns all batches below a given price threshold.
+   * Releases the units of a reservation, unless its sale was registered or it
+   * was cancelled before.
    * 
-   * @param priceLimit Price threshold.
-   * @return Collection of batches.
+   * @param reservation Reservation.
    */
-  public Collection<Batch> batchesByPrice(double priceLimit) {
-    return this._products.values().stream()
-        .flatMap(p -> p.batches().stream())
-        .filter(b -> b.price() <= priceLimit)
-        .collect(Collectors.toList());
+  private void expire(Reservation reservation) {
+    if (this._reservations.remove(reservation.id(), reservation))
+      this.release(reservation.holds());
   }
 
   /**
-   * Registers a new simple product.
+   * Registers the sale of the units of a reservation. The units being held,
+   * they aren't checked again.
    * 
-   * @param key Product key.
-   * @return Product object.
-   * @throws DuplicateProductKeyException
+   * @param reservationKey Reservation id.
+   * @param deadline Sale payment deadline.
+   * @return Id of the sale transaction.
+   * @throws UnknownReservationKeyException
+   * @throws UnavailableProductException if the held units are missing, which
+   *           would be a bug.
    */
-  public Product registerProduct(String key) throws DuplicateProductKeyException {
-    Product product = new SimpleProduct(key);
-    if (this._products.putIfAbsent(key, product) != null) {
-      throw new DuplicateProductKeyException(key);
-    }
+  public int registerSale(int reservationKey, int deadline)
+      throws UnknownReservationKeyException, UnavailableProductException {
+    Reservation reservation = this.removeReservation(reservationKey);
 
-    // Add default notification method
-    product.registerNotificationMethod(this._notificationRegister);
-
-    // Make all partners listen to notifications from this product
-    for (Partner partner : this._partners.values())
-      product.attachObserver(partner);
-
-    return product;
+    SaleEvent event = new SaleEvent();
+    event.begin();
+    this._lock.readLock().lock();
+    try {
+      Partner partner = reservation.partner();
+      Product product = reservation.product();
+
+      long version = this._clock.tick();
+      this.lockForWrite(product);
+      try {
+        long baseValue = this.takeHeld(reservation.holds(), product, reservation.amount(),
+            Arrays.stream(reservation.plan()).iterator());
+        partner.registerSale(this._clock, version, baseValue);
+        int id = this.registerTransaction(partner,
+            key -> new Sale(key, this._date, product, reservation.amount(), partner, deadline, baseValue));
+        if (event.shouldCommit())
+          commit(event, id, partner, product, reservation.amount(), Arrays.stream(reservation.plan()).sum(),
+              baseValue);
+        return id;
+      } finally {
+        this.unlockAfterWrite(product, version);
+      }
+    } finally {
+      this._lock.readLock().unlock();
+    }
   }
 
   /**
-   * Registers a new derivate product.
+   * Repeats a sale registered before, making the same number of units of each
+   * product out of components.
    * 
-   * @param key Product key.
-   * @param aggravation Product recipe aggravation.
-   * @param componentKeys Product recipe component keys.
-   * @param amounts Product recipe component amounts.
-   * @return Product object.
-   * @throws DuplicateProductKeyException
+   * @param partnerKey Partner key.
+   * @param productKey Product key.
+   * @param deadline Sale payment deadline.
+   * @param amount Number of units sold.
+   * @param plan Number of units of each product made out of components, as in
+   *          Reservation.plan().
+   * @return Id of the sale transaction.
+   * @throws UnknownPartnerKeyException
    * @throws UnknownProductKeyException
-   * @throws InvalidRecipeException
+   * @throws UnavailableProductException
    */
-  public Product registerProduct(String key, double aggravation, String componentKeys[], int amounts[])
-      throws DuplicateProductKeyException, UnknownProductKeyException, InvalidRecipeException {
-    // Get component products
-    Product[] components = new Product[componentKeys.length];
-    for (int i = 0; i < componentKeys.length; i++)
-      components[i] = this.product(componentKeys[i]);
-
-    // Create derivate product
-    Product product = new DerivateProduct(key, new Recipe(aggravation, components, amounts));
-    if (this._products.putIfAbsent(key, product) != null) {
-      throw new DuplicateProductKeyException(key);
+  int replaySale(String partnerKey, String productKey, int deadline, int amount, int[] plan)
+      throws UnknownPartnerKeyException, UnknownProductKeyException, UnavailableProductException {
+    SaleEvent event = new SaleEvent();
+    event.begin();
+    this._lock.readLock().lock();
+    try {
+      Partner partner = this.partner(partnerKey);
+      Product product = this.product(productKey);
+
+      long version = this._clock.tick();
+      this.lockForWrite(product);
+      try {
+        long baseValue = this.take(null, product, amount, Arrays.stream(plan).iterator());
+        partner.registerSale(this._clock, version, baseValue);
+        int id = this.registerTransaction(partner,
+            key -> new Sale(key, this._date, product, amount, partner, deadline, baseValue));
+        if (event.shouldCommit())
+          commit(event, id, partner, product, amount, Arrays.stream(plan).sum(), baseValue);
+        return id;
+      } finally {
+        this.unlockAfterWrite(product, version);
+      }
+    } finally {
+      this._lock.readLock().unlock();
     }
+  }
 
-    // Add default notification method
-    product.registerNotificationMethod(this._notificationRegister);
-
-    // Make all partners listen to notifications from this product
-    for (Partner partner : this._partners.values())
-      product.attachObserver(partner);
-
-    return product;
+  /**
+   * @param holder Holder of units, or null.
+   * @return Units held by the holder, by product, or null if there is no
+   *         holder.
+   */
+  private Map<Product, Integer> holds(String holder) {
+    return holder == null ? null : this._holds.getOrDefault(holder, Collections.emptyMap());
   }
 
   /**
-   * Returns information about a partner from its key.
+   * Holds the units of a product needed by a sale and, for units which aren't
+   * available, the components needed to make them, as the product's sell()
+   * would take them. Must hold the product's lock.
    * 
-   * @param key Partner key.
-   * @return Partner object.
-   * @throws UnknownPartnerKeyException
+   * @param product Product.
+   * @param amount Number of units.
+   * @param holds Collects the units held, by product.
+   * @param plan Collects the number of units of each product to make out of
+   *          components, as in Reservation.plan().
+   * @return Whether there were enough units.
    */
-  public Partner partner(String key) throws UnknownPartnerKeyException {
-    Partner partner = this._partners.get(key);
-    if (partner == null)
-      throw new UnknownPartnerKeyException(key);
-    return partner;
+  private static boolean plan(Product product, int amount, Map<Product, Integer> holds, List<Integer> plan) {
+    int units = Math.min(product.available(), amount);
+    product.hold(units);
+    holds.merge(product, units, Integer::sum);
+
+    int fabricated = amount - units;
+    plan.add(fabricated);
+    if (fabricated == 0)
+      return true;
+    if (!(product instanceof DerivateProduct))
+      return false;
+    for (Recipe.Component component : ((DerivateProduct) product).recipe().components())
+      if (!plan(component.product(), fabricated * component.amount(), holds, plan))
+        return false;
+    return true;
   }
 
   /**
-   * Returns all partners known to the warehouse, sorted by their key.
+   * Releases units held by plan(). Must hold the products' locks.
    * 
-   * @return Collection of partners.
+   * @param holds Units held, by product.
    */
-  public Collection<Partner> partners() {
-    return this._partners.values();
+  private static void releaseAll(Map<Product, Integer> holds) {
+    for (Map.Entry<Product, Integer> hold : holds.entrySet())
+      hold.getKey().release(hold.getValue());
   }
 
   /**
-   * Registers a new partner.
+   * Takes the units held by plan() like take() below and, if some are missing,
+   * releases those left before rethrowing, since nobody else would. Must hold
+   * the product's lock.
    * 
-   * @param key Partner key.
-   * @param name Partner name.
-   * @param address Partner address.
-   * @throws DuplicatePartnerKeyException
+   * @param holds Units held, by product.
+   * @param product Product.
+   * @param amount Number of units.
+   * @param plan Number of units of each product to make out of components.
+   * @return Value of the units, in micro-units.
+   * @throws UnavailableProductException
    */
-  public void registerPartner(String key, String name, String address) throws DuplicatePartnerKeyException {
-    Partner partner = new Partner(key, name, address);
-
-    if (this._partners.putIfAbsent(key, partner) != null) {
-      throw new DuplicatePartnerKeyException(key);
+  private long takeHeld(Map<Product, Integer> holds, Product product, int amount, PrimitiveIterator.OfInt plan)
+      throws UnavailableProductException {
+    try {
+      return this.take(holds, product, amount, plan);
+    } catch (UnavailableProductException e) {
+      // take() removes the units it took from the holds
+      releaseAll(holds);
+      throw e;
     }
-
-    for (Product p : this._products.values())
-      p.attachObserver(partner);
   }
 
   /**
-   * Toggles whether a partner receives notifications about a product or not.
+   * Takes the units of a product planned by plan(), components first. Must hold
+   * the product's lock.
    * 
-   * @param partnerKey Partner key.
-   * @param productKey Product key.
-   * @throws UnknownPartnerKeyException
-   * @throws UnknownProductKeyException
+   * @param holds Units held, by product, or null to take available units.
+   * @param product Product.
+   * @param amount Number of units.
+   * @param plan Number of units of each product to make out of components.
+   * @return Value of the units, in micro-units.
+   * @throws UnavailableProductException
    */
-  public void toggleNotification(String partnerKey, String productKey)
-      throws UnknownPartnerKeyException, UnknownProductKeyException {
-    Partner partner = this.partner(partnerKey);
-    Product product = this.product(productKey);
-    if (product.hasObserverAttached(partner))
-      product.detachObserver(partner);
-    else
-      product.attachObserver(partner);
+  private long take(Map<Product, Integer> holds, Product product, int amount, PrimitiveIterator.OfInt plan)
+      throws UnavailableProductException {
+    int fabricated = plan.nextInt();
+    long componentsValue = Money.ZERO;
+    if (fabricated > 0 && product instanceof DerivateProduct)
+      for (Recipe.Component component : ((DerivateProduct) product).recipe().components())
+        componentsValue += this.take(holds, component.product(), fabricated * component.amount(), plan);
+    return this.take(holds, product, amount, fabricated, componentsValue);
   }
 
   /**
-   * Returns the notifications registered for a partner.
+   * Takes units of a product, part of them held before and the rest made out of
+   * components taken elsewhere. Must hold the product's lock.
    * 
-   * @param partnerKey Partner key.
-   * @return Collection of notifications.
-   * @throws UnknownPartnerKeyException
+   * @param holds Units held, by product, or null to take available units.
+   * @param product Product.
+   * @param amount Number of units.
+   * @param fabricated Number of units made out of components.
+   * @param componentsValue Value of the components, in micro-units.
+   * @return Value of the units, in micro-units.
+   * @throws UnavailableProductException
    */
-  public Collection<Notification> partnerNotifications(String partnerKey) throws UnknownPartnerKeyException {
-    Partner partner = this.partner(partnerKey);
-    return this._notificationRegister.popNotifications(partner);
+  private long take(Map<Product, Integer> holds, Product product, int amount, int fabricated, long componentsValue)
+      throws UnavailableProductException {
+    return this.take(holds, product, amount, fabricated, componentsValue, null);
   }
 
   /**
-   * Returns a transaction from its key.
+   * Takes units of a product like take() above, collecting the units taken from
+   * each batch. Must hold the product's lock.
    * 
-   * @param key Transaction key.
-   * @return Transaction object.
-   * @throws UnknownTransactionKeyException
+   * @param holds Units held, by product, or null to take available units.
+   * @param product Product.
+   * @param amount Number of units.
+   * @param fabricated Number of units made out of components.
+   * @param componentsValue Value of the components, in micro-units.
+   * @param taken Collects the units taken from each batch, or null.
+   * @return Value of the units, in micro-units.
+   * @throws UnavailableProductException
    */
-  public Transaction transaction(int key) throws UnknownTransactionKeyException {
-    Transaction transaction = this._transactions.get(key);
-    if (transaction == null)
-      throw new UnknownTransactionKeyException(key);
-    return transaction;
+  private long take(Map<Product, Integer> holds, Product product, int amount, int fabricated, long componentsValue,
+      List<Batch> taken) throws UnavailableProductException {
+    int units = amount - fabricated;
+    if (fabricated > 0 && !(product instanceof DerivateProduct))
+      throw new UnavailableProductException(product.key(), amount, product.available());
+
+    if (holds != null) {
+      Integer held = holds.get(product);
+      if (held == null || held < units)
+        throw new UnavailableProductException(product.key(), amount, held == null ? 0 : held + fabricated);
+      if (held == units)
+        holds.remove(product);
+      else
+        holds.put(product, held - units);
+      product.release(units);
+    }
+
+    long value = product.take(units, taken);
+    if (fabricated > 0)
+      value += ((DerivateProduct) product).fabricate(fabricated, componentsValue);
+    return value;
   }
 
   /**
-   * Returns all acquisitions related to a partner.
-   *
-   * @param partnerKey Partner key.
-   * @return Collection of transactions.
-   * @throws UnknownPartnerKeyException
+   * Fills in and commits the event of a sale.
+   * 
+   * @param event Event, begun before the sale.
+   * @param id Key of the sale transaction.
+   * @param partner Partner.
+   * @param product Product.
+   * @param amount Number of units sold.
+   * @param fabricated Number of units made out of components.
+   * @param value Base value of the sale, in micro-units.
    */
-  public Collection<Transaction> partnerAcquisitions(String partnerKey) throws UnknownPartnerKeyException {
-    AcquisitionCollector collector = new AcquisitionCollector();
-    this.partnerTransactions(partnerKey).forEach(t -> t.accept(collector));
-    return collector.result();
+  private static void commit(SaleEvent event, int id, Partner partner, Product product, int amount, int fabricated,
+      long value) {
+    event.transaction = id;
+    event.partner = partner.key();
+    event.product = product.key();
+    event.amount = amount;
+    event.recipeDepth = depth(product);
+    event.fabricated = fabricated;
+    event.value = Money.toDouble(value);
+    event.commit();
   }
 
   /**
-   * Returns all sales and breakdowns related to a partner.
-   *
-   * @param partnerKey Partner key.
-   * @return Collection of transactions.
-   * @throws UnknownPartnerKeyException
+   * @param product Product.
+   * @return Depth of the product's recipe: 0 for simple products, otherwise one
+   *         more than the deepest of its components.
    */
-  public Collection<Transaction> partnerSalesAndBreakdowns(String partnerKey) throws UnknownPartnerKeyException {
-    SaleAndBreakdownCollector collector = new SaleAndBreakdownCollector();
-    this.partnerTransactions(partnerKey).forEach(t -> t.accept(collector));
-    return collector.result();
+  private static int depth(Product product) {
+    if (!(product instanceof DerivateProduct))
+      return 0;
+    int depth = 0;
+    for (Recipe.Component component : ((DerivateProduct) product).recipe().components())
+      depth = Math.max(depth, depth(component.product()));
+    return depth + 1;
   }
 
   /**
-   * Returns all paid transactions related to a partner.
+   * Takes units of a product, to make another product out of them elsewhere.
+   * Some of the units may be made out of components which were taken the same
+   * way. The units a holder takes are remembered until it is released, so that
+   * they can be put back through untransfer() and restock().
    * 
-   * @param partnerKey Partner key.
-   * @return Collection of transactions.
-   * @throws UnknownPartnerKeyException
+   * @param holder Holder of the units, or null to take available units.
+   * @param productKey Product key.
+   * @param amount Number of units.
+   * @param fabricated Number of units made out of components.
+   * @param componentsValue Value of the components, in micro-units.
+   * @return Value of the units, in micro-units.
+   * @throws UnknownProductKeyException
+   * @throws UnavailableProductException
    */
-  public Collection<Transaction> partnerPaidTransactions(String partnerKey) throws UnknownPartnerKeyException {
-    PaidTransactionsCollector collector = new PaidTransactionsCollector();
-    this.partnerTransactions(partnerKey).forEach(t -> t.accept(collector));
-    return collector.result();
+  public long transfer(String holder, String productKey, int amount, int fabricated, long componentsValue)
+      throws UnknownProductKeyException, UnavailableProductException {
+    this._lock.readLock().lock();
+    try {
+      Product product = this.product(productKey);
+
+      long version = this._clock.tick();
+      this.lockForWrite(product);
+      try {
+        List<Batch> taken = holder == null ? null : new ArrayList<Batch>();
+        long value = this.take(this.holds(holder), product, amount, fabricated, componentsValue, taken);
+        if (taken != null)
+          this._transfers.computeIfAbsent(holder, h -> Collections.synchronizedList(new ArrayList<Batch>()))
+              .addAll(taken);
+        return value;
+      } finally {
+        this.unlockAfterWrite(product, version);
+      }
+    } finally {
+      this._lock.readLock().unlock();
+    }
   }
 
   /**
-   * Returns all transactions related to a partner.
+   * Forgets the units a holder took through transfer(), to put them back.
    * 
-   * @param partnerKey Partner key.
-   * @return Collection of transactions.
-   * @throws UnknownPartnerKeyException
+   * @param holder Holder of the units.
+   * @return Units taken, by the batch they came from.
    */
-  public Collection<Transaction> partnerTransactions(String partnerKey) throws UnknownPartnerKeyException {
-    Partner partner = this.partner(partnerKey);
-    return this._transactions.values().stream()
-        .filter(t -> t.partner() == partner)
-        .collect(Collectors.toList());
+  public List<Batch> untransfer(String holder) {
+    List<Batch> taken = this._transfers.remove(holder);
+    return taken == null ? Collections.emptyList() : taken;
   }
 
   /**
-   * Registers a breakdown transaction.
+   * Puts back units taken from batches, when what they were taken for fails.
    * 
-   * @param partnerKey Partner key.
-   * @param productKey Product key.
-   * @param amount How many units were broke down?
-   * @throws UnknownPartnerKeyException
-   * @throws UnknownProductKeyException
-   * @throws UnavailableProductException
+   * @param batches Units taken, by the batch they came from.
    */
-  public void registerBreakdown(String partnerKey, String productKey, int amount)
-      throws UnknownPartnerKeyException, UnknownProductKeyException, UnavailableProductException {
-    Partner partner = this.partner(partnerKey);
-    Product product = this.product(productKey);
-
-    // Breakdown the product
-    ProductBreaker breaker = new ProductBreaker(partner, amount);
-    product.accept(breaker);
-
-    // If the product was broken down
-    if (breaker.breakdownComponents() != null) {
-      // Update partner
-      partner.registerBreakdown(breaker.breakdownValue());
-      double paidValue = breaker.breakdownValue() > 0.0 ? breaker.breakdownValue() : 0.0;
-
-      // Register transaction
-      Breakdown breakdown = new Breakdown(this._transactions.size(), this._date, amount, product, partner,
-          breaker.breakdownValue(), paidValue, breaker.breakdownComponents());
-      this._transactions.put(breakdown.id(), breakdown);
+  public void restock(List<Batch> batches) {
+    this._lock.readLock().lock();
+    try {
+      for (Batch batch : batches) {
+        Product product = batch.product();
+        long version = this._clock.tick();
+        this.lockForWrite(product);
+        try {
+          product.restock(batch);
+        } finally {
+          this.unlockAfterWrite(product, version);
+        }
+      }
+    } finally {
+      this._lock.readLock().unlock();
     }
-
   }
 
   /**
-   * Registers a sale transaction.
+   * Registers a sale whose units were held before, or made out of components
+   * taken elsewhere through transfer().
    * 
+   * @param holder Holder of the units, or null to take available units.
    * @param partnerKey Partner key.
    * @param productKey Product key.
    * @param deadline Sale payment deadline.
    * @param amount Number of units sold.
+   * @param fabricated Number of units made out of components.
+   * @param componentsValue Value of the components, in micro-units.
+   * @return Id of the sale transaction.
    * @throws UnknownPartnerKeyException
    * @throws UnknownProductKeyException
    * @throws UnavailableProductException
    */
-  public void registerSale(String partnerKey, String productKey, int deadline, int amount)
+  public int registerAssembledSale(String holder, String partnerKey, String productKey, int deadline, int amount,
+      int fabricated, long componentsValue)
       throws UnknownPartnerKeyException, UnknownProductKeyException, UnavailableProductException {
-    Partner partner = this.partner(partnerKey);
-    Product product = this.product(productKey);
-
-    // Sell product
-    product.checkSell(amount);
-    double baseValue = product.sell(amount);
-
-    // Update partner
-    partner.registerSale(baseValue);
-
-    // Register sale transaction
-    Sale sale = new Sale(this._transactions.size(), this._date, product, amount, partner, deadline, baseValue);
-    this._transactions.put(sale.id(), sale);
+    SaleEvent event = new SaleEvent();
+    event.begin();
+    this._lock.readLock().lock();
+    try {
+      Partner partner = this.partner(partnerKey);
+      Product product = this.product(productKey);
+
+      long version = this._clock.tick();
+      this.lockForWrite(product);
+      try {
+        long baseValue = this.take(this.holds(holder), product, amount, fabricated, componentsValue);
+        partner.registerSale(this._clock, version, baseValue);
+        int id = this.registerTransaction(partner,
+            key -> new Sale(key, this._date, product, amount, partner, deadline, baseValue));
+        if (event.shouldCommit())
+          commit(event, id, partner, product, amount, fabricated, baseValue);
+        return id;
+      } finally {
+        this.unlockAfterWrite(product, version);
+      }
+    } finally {
+      this._lock.readLock().unlock();
+    }
   }
 
   /**
-   * Registers an acquisition transaction.
+   * Imports data from a text file.
    * 
-   * @param partnerKey Partner key.
-   * @param productKey Product key.
-   * @param amount Number of units bought.
-   * @param price Price of each unit.
+   * @param txtfile filename to be loaded.
+   * @throws IOException
+   * @throws BadEntryException
+   * @throws DuplicatePartnerKeyException
+   * @throws DuplicateProductKeyException
    * @throws UnknownPartnerKeyException
    * @throws UnknownProductKeyException
+   * @throws InvalidRecipeException
    */
-  public void registerAcquisition(String partnerKey, String productKey, int amount, double price)
-      throws UnknownPartnerKeyException, UnknownProductKeyException {
-    Partner partner = this.partner(partnerKey);
-    Product product = this.product(productKey);
-
-    // Register new batch
-    product.addBatch(partner, amount, price);
-
-    // Update partner
-    partner.registerAcquisition(amount * price);
-
-    // Register acquisition transaction
-    Acquisition acquisition = new Acquisition(this._transactions.size(), this._date, amount, product, partner, price);
-    this._transactions.put(acquisition.id(), acquisition);
-  }
+  void importFile(String txtfile) throws IOException, BadEntryException, DuplicatePartnerKeyException,
+      DuplicateProductKeyException, UnknownPartnerKeyException, UnknownProductKeyException, InvalidRecipeException {
+    FileReader fr = new FileReader(new File(txtfile));
+    BufferedReader br = new BufferedReader(fr);
 
-  /**
-   * Registers a sale payment.
-   * 
-   * @param transactionKey Sale transaction key.
-   * @throws UnknownTransactionKeyException
-   */
-  public void receiveSalePayment(int transactionKey) throws UnknownTransactionKeyException {
-    TransactionPayer payer = new TransactionPayer(this._date);
-    this.transaction(transactionKey).accept(payer);
+    try {
+      this.importData(br);
+    } finally {
+      // Close streams
+      br.close();
+      fr.close();
+    }
   }
 
   /**
-   * Imports data from a text file.
+   * Imports data in the format of import files.
    * 
-   * @param txtfile filename to be loaded.
+   * @param br Reader of the data.
    * @throws IOException
    * @throws BadEntryException
    * @throws DuplicatePartnerKeyException
@@ -488,23 +2224,28 @@ public class Warehouse implements Serializable {
    * @throws UnknownProductKeyException
    * @throws InvalidRecipeException
    */
-  void importFile(String txtfile) throws IOException, BadEntryException, DuplicatePartnerKeyException,
+  void importData(BufferedReader br) throws IOException, BadEntryException, DuplicatePartnerKeyException,
       DuplicateProductKeyException, UnknownPartnerKeyException, UnknownProductKeyException, InvalidRecipeException {
-    FileReader fr = new FileReader(new File(txtfile));
-    BufferedReader br = new BufferedReader(fr);
-
+    ImportEvent event = new ImportEvent();
+    event.begin();
+    this._lock.writeLock().lock();
     try {
+      long version = this._clock.tick();
+      int entries = 0, partners = 0;
+
       // Parse every line of the file
       String line;
       while ((line = br.readLine()) != null) {
         String[] fields = line.split("\\|");
+        entries++;
 
         if (fields[0].equals("PARTNER")) {
           this.registerPartner(fields[1], fields[2], fields[3]);
+          partners++;
         } else if (fields[0].equals("BATCH_S")) {
           // Parse simple product batch field
           Partner partner = this.partner(fields[2]);
-          double price = Double.parseDouble(fields[3]);
+          long price = Money.fromDouble(Double.parseDouble(fields[3]));
           int amount = Integer.parseInt(fields[4]);
 
           // If the product hasn't been registered yet, register it
@@ -514,12 +2255,17 @@ public class Warehouse implements Serializable {
             product = this.registerProduct(fields[1]);
 
           // Register batch
-          product.addBatch(partner, amount, price);
+          this.lockForWrite(product);
+          try {
+            product.addBatch(partner, amount, price);
+          } finally {
+            this.unlockAfterWrite(product, version);
+          }
         } else if (fields[0].equals("BATCH_M")) {
           // Parse derivate product batch field
           String productKey = fields[1];
           Partner partner = this.partner(fields[2]);
-          double price = Double.parseDouble(fields[3]);
+          long price = Money.fromDouble(Double.parseDouble(fields[3]));
           int amount = Integer.parseInt(fields[4]);
 
           // If the product hasn't been registered yet, register it
@@ -544,15 +2290,25 @@ public class Warehouse implements Serializable {
           }
 
           // Register batch
-          product.addBatch(partner, amount, price);
+          this.lockForWrite(product);
+          try {
+            product.addBatch(partner, amount, price);
+          } finally {
+            this.unlockAfterWrite(product, version);
+          }
         } else {
           throw new BadEntryException(fields[0]);
         }
       }
+
+      if (event.shouldCommit()) {
+        event.entries = entries;
+        event.partners = partners;
+        event.batches = entries - partners;
+        event.commit();
+      }
     } finally {
-      // Close streams
-      br.close();
-      fr.close();
+      this._lock.writeLock().unlock();
     }
   }
 }
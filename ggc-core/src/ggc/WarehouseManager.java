@@ -1,32 +1,548 @@
 package ggc;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileNotFoundException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
 
+import ggc.events.LoadEvent;
+import ggc.events.SaveEvent;
 import ggc.exceptions.*;
+import ggc.partners.Partner;
+import ggc.products.Batch;
 
-/** Façade for access. */
+/**
+ * Façade for access. All operations may be called concurrently; listings are
+ * built from a consistent snapshot of the warehouse, without blocking
+ * operations which change it.
+ *
+ * Once a journal is opened, changes are no longer applied by the calling
+ * thread: they are handed to a sequencer, which applies them one at a time, in
+ * order, and records them in the journal. The asynchronous variants return as
+ * soon as the change is queued, with a future which completes once the change
+ * is durable. Saving the warehouse empties the journal. Changes are visible to
+ * other operations as soon as they are applied, slightly before they are
+ * durable. Showing a partner removes its notifications, which isn't recorded.
+ *
+ * A manager may instead follow the journal of a manager in another process,
+ * serving listings of a copy of its warehouse, kept up to date with the records
+ * written to the journal. Such a manager allows no changes.
+ *
+ * Every operation on the warehouse records how long it took and whether it
+ * failed, in Statistics. Changes count until they are durable.
+ */
 public class WarehouseManager {
 
+  /** Statistics of date(). */
+  private static final Statistics.Operation DATE = Statistics.operation("WarehouseManager.date");
+
+  /** Statistics of advanceDate(). */
+  private static final Statistics.Operation ADVANCE_DATE = Statistics.operation("WarehouseManager.advanceDate");
+
+  /** Statistics of setBatchMerging(). */
+  private static final Statistics.Operation SET_BATCH_MERGING =
+      Statistics.operation("WarehouseManager.setBatchMerging");
+
+  /** Statistics of availableBalance(). */
+  private static final Statistics.Operation AVAILABLE_BALANCE =
+      Statistics.operation("WarehouseManager.availableBalance");
+
+  /** Statistics of accountingBalance(). */
+  private static final Statistics.Operation ACCOUNTING_BALANCE =
+      Statistics.operation("WarehouseManager.accountingBalance");
+
+  /** Statistics of products(). */
+  private static final Statistics.Operation PRODUCTS = Statistics.operation("WarehouseManager.products");
+
+  /** Statistics of registerProduct(String). */
+  private static final Statistics.Operation REGISTER_PRODUCT = Statistics.operation("WarehouseManager.registerProduct");
+
+  /** Statistics of registerProduct(String, double, String[], int[]). */
+  private static final Statistics.Operation REGISTER_DERIVATE =
+      Statistics.operation("WarehouseManager.registerDerivate");
+
+  /** Statistics of batches(). */
+  private static final Statistics.Operation BATCHES = Statistics.operation("WarehouseManager.batches");
+
+  /** Statistics of batchesByPartner(). */
+  private static final Statistics.Operation BATCHES_BY_PARTNER =
+      Statistics.operation("WarehouseManager.batchesByPartner");
+
+  /** Statistics of batchesByProduct(). */
+  private static final Statistics.Operation BATCHES_BY_PRODUCT =
+      Statistics.operation("WarehouseManager.batchesByProduct");
+
+  /** Statistics of batchesByPrice(). */
+  private static final Statistics.Operation BATCHES_BY_PRICE = Statistics.operation("WarehouseManager.batchesByPrice");
+
+  /** Statistics of partner(). */
+  private static final Statistics.Operation PARTNER = Statistics.operation("WarehouseManager.partner");
+
+  /** Statistics of partners(). */
+  private static final Statistics.Operation PARTNERS = Statistics.operation("WarehouseManager.partners");
+
+  /** Statistics of registerPartner(). */
+  private static final Statistics.Operation REGISTER_PARTNER = Statistics.operation("WarehouseManager.registerPartner");
+
+  /** Statistics of toggleNotification(). */
+  private static final Statistics.Operation TOGGLE_NOTIFICATION =
+      Statistics.operation("WarehouseManager.toggleNotification");
+
+  /** Statistics of partnerAcquisitions(). */
+  private static final Statistics.Operation PARTNER_ACQUISITIONS =
+      Statistics.operation("WarehouseManager.partnerAcquisitions");
+
+  /** Statistics of partnerSalesAndBreakdowns(). */
+  private static final Statistics.Operation PARTNER_SALES_AND_BREAKDOWNS =
+      Statistics.operation("WarehouseManager.partnerSalesAndBreakdowns");
+
+  /** Statistics of partnerPaidTransactions(). */
+  private static final Statistics.Operation PARTNER_PAID_TRANSACTIONS =
+      Statistics.operation("WarehouseManager.partnerPaidTransactions");
+
+  /** Statistics of partnerHistory(). */
+  private static final Statistics.Operation PARTNER_HISTORY = Statistics.operation("WarehouseManager.partnerHistory");
+
+  /** Statistics of transaction(). */
+  private static final Statistics.Operation TRANSACTION = Statistics.operation("WarehouseManager.transaction");
+
+  /** Statistics of registerBreakdown() and registerBreakdownAsync(). */
+  private static final Statistics.Operation REGISTER_BREAKDOWN =
+      Statistics.operation("WarehouseManager.registerBreakdown");
+
+  /** Statistics of registerSale() and registerSaleAsync(), of new sales. */
+  private static final Statistics.Operation REGISTER_SALE = Statistics.operation("WarehouseManager.registerSale");
+
+  /** Statistics of reserve(). */
+  private static final Statistics.Operation RESERVE = Statistics.operation("WarehouseManager.reserve");
+
+  /** Statistics of cancelReservation(). */
+  private static final Statistics.Operation CANCEL_RESERVATION =
+      Statistics.operation("WarehouseManager.cancelReservation");
+
+  /** Statistics of registerSale() and registerSaleAsync(), of reservations. */
+  private static final Statistics.Operation REGISTER_RESERVED_SALE =
+      Statistics.operation("WarehouseManager.registerReservedSale");
+
+  /** Statistics of registerAcquisition() and registerAcquisitionAsync(). */
+  private static final Statistics.Operation REGISTER_ACQUISITION =
+      Statistics.operation("WarehouseManager.registerAcquisition");
+
+  /** Statistics of receiveSalePayment() and receiveSalePaymentAsync(). */
+  private static final Statistics.Operation RECEIVE_SALE_PAYMENT =
+      Statistics.operation("WarehouseManager.receiveSalePayment");
+
+  /** Statistics of hold(). */
+  private static final Statistics.Operation HOLD = Statistics.operation("WarehouseManager.hold");
+
+  /** Statistics of release(). */
+  private static final Statistics.Operation RELEASE = Statistics.operation("WarehouseManager.release");
+
+  /** Statistics of transfer(). */
+  private static final Statistics.Operation TRANSFER = Statistics.operation("WarehouseManager.transfer");
+
+  /** Statistics of restock(). */
+  private static final Statistics.Operation RESTOCK = Statistics.operation("WarehouseManager.restock");
+
+  /** Statistics of registerAssembledSale(). */
+  private static final Statistics.Operation REGISTER_ASSEMBLED_SALE =
+      Statistics.operation("WarehouseManager.registerAssembledSale");
+
+  /** Statistics of save() and saveAs(). */
+  private static final Statistics.Operation SAVE = Statistics.operation("WarehouseManager.save");
+
+  /** Statistics of serializing the warehouse, when saved. */
+  private static final Statistics.Operation WRITE = Statistics.operation("WarehouseManager.write");
+
+  /** Statistics of load(). */
+  private static final Statistics.Operation LOAD = Statistics.operation("WarehouseManager.load");
+
+  /** Statistics of deserializing a warehouse, when loaded. */
+  private static final Statistics.Operation READ = Statistics.operation("WarehouseManager.read");
+
+  /** Statistics of importFile(). */
+  private static final Statistics.Operation IMPORT_FILE = Statistics.operation("WarehouseManager.importFile");
+
   /** Name of file storing current store. */
-  private String _filename;
+  private volatile String _filename;
 
   /** The warehouse itself. */
-  private Warehouse _warehouse;
+  private volatile Warehouse _warehouse;
 
   /** Was the warehouse changed since the last save? */
-  private boolean _dirtyFlag;
+  private volatile boolean _dirtyFlag;
+
+  /** Applies and records changes, once a journal is open. */
+  private volatile Sequencer _sequencer;
+
+  /** Applies the changes recorded by another manager, while following it. */
+  private volatile Follower _follower;
 
   /** Default constructor. */
   public WarehouseManager() {
     this._filename = null;
     this._warehouse = new Warehouse();
     this._dirtyFlag = true;
+    this._sequencer = null;
+    this._follower = null;
+  }
+
+  /**
+   * Opens a journal of the changes made since the warehouse was last saved,
+   * creating it if needed, and applies the changes it holds which the warehouse
+   * doesn't have yet. From then on, every change is recorded in it.
+   * 
+   * @param path Journal file name.
+   * @throws IOException if the journal can't be read, or doesn't belong to the
+   *           warehouse.
+   */
+  public void openJournal(String path) throws IOException {
+    this.openJournal(path, 1);
+  }
+
+  /**
+   * Opens a journal, like openJournal(String), with changes which register a
+   * transaction applied by several writer threads. Products are split among the
+   * threads by family, products being in the same family when a recipe
+   * connects them. Changes to different families may then be applied in a
+   * different order than they were submitted in.
+   * 
+   * @param path Journal file name.
+   * @param shards Number of writer threads.
+   * @throws IOException if the journal can't be read, or doesn't belong to the
+   *           warehouse.
+   */
+  public synchronized void openJournal(String path, int shards) throws IOException {
+    if (this._sequencer != null || this._follower != null)
+      throw new IllegalStateException("Journal already open");
+
+    Journal journal = new Journal(Path.of(path));
+    Warehouse warehouse = this._warehouse;
+    long last = warehouse.journalSequence();
+    try {
+      // Transactions between other changes are replayed in the order their ids
+      // were allocated in
+      List<String[]> transactions = new ArrayList<String[]>();
+      for (String[] record : journal.read()) {
+        long sequence = Long.parseLong(record[0]);
+        if (sequence <= last)
+          continue;
+        last = sequence;
+        if (Journal.transaction(record) >= 0) {
+          transactions.add(record);
+        } else {
+          Journal.replay(warehouse, transactions);
+          Journal.replay(warehouse, Collections.singletonList(record));
+          transactions.clear();
+        }
+        this._dirtyFlag = true;
+      }
+      Journal.replay(warehouse, transactions);
+    } catch (IOException e) {
+      journal.close();
+      throw e;
+    }
+
+    journal.setSequence(last);
+    this._sequencer = new Sequencer(journal, () -> this._warehouse, shards);
+  }
+
+  /**
+   * @return Whether changes are recorded in a journal.
+   */
+  public boolean journaled() {
+    return this._sequencer != null;
+  }
+
+  /**
+   * Closes the journal, once every change made before is durable.
+   * 
+   * @throws IOException
+   */
+  public synchronized void closeJournal() throws IOException {
+    Sequencer sequencer = this._sequencer;
+    if (sequencer != null) {
+      this._sequencer = null;
+      sequencer.close();
+    }
+  }
+
+  /**
+   * Follows the journal of a manager in another process, which changes the
+   * warehouse, applying the changes it records to this manager's warehouse. The
+   * warehouse must be the one the other manager's journal starts from, unless
+   * the journal starts with a checkpoint: the warehouse is then replaced by the
+   * one saved there. From then on, this manager allows no changes.
+   * 
+   * @param path Journal file name.
+   * @param interval Time between reads of the journal, in milliseconds.
+   */
+  public synchronized void follow(String path, long interval) {
+    if (this._sequencer != null || this._follower != null)
+      throw new IllegalStateException("Journal already open");
+    this._follower = new Follower(Path.of(path), interval, () -> this._warehouse, w -> this._warehouse = w);
+  }
+
+  /**
+   * @return Whether the manager follows another manager's journal.
+   */
+  public boolean following() {
+    return this._follower != null;
+  }
+
+  /**
+   * Stops following another manager's journal, which allows changes again.
+   */
+  public synchronized void stopFollowing() {
+    Follower follower = this._follower;
+    if (follower != null) {
+      this._follower = null;
+      follower.close();
+    }
+  }
+
+  /**
+   * @return Number of the last record read from the journal followed, or -1 if
+   *         the manager follows none.
+   */
+  public long replicatedSequence() {
+    Follower follower = this._follower;
+    return follower == null ? -1 : follower.sequence();
+  }
+
+  /**
+   * Returns how long the warehouse may be behind the journal followed: the time
+   * since every record written to it was last applied.
+   * 
+   * @return Time, in milliseconds, or -1 if the manager follows no journal.
+   */
+  public long replicationLag() {
+    Follower follower = this._follower;
+    return follower == null ? -1 : follower.lag();
+  }
+
+  /**
+   * Returns why the journal followed couldn't be read the last times. Reading
+   * is retried, but a journal which can't be followed at all keeps failing.
+   * 
+   * @return Number of reads which failed in a row and why the last one did, as
+   *         in "3|No saved warehouse...", or null if the last read didn't fail
+   *         or the manager follows no journal.
+   */
+  public String replicationFailure() {
+    Follower follower = this._follower;
+    String failure = follower == null ? null : follower.failure();
+    return failure == null ? null : follower.failures() + "|" + failure;
+  }
+
+  /**
+   * @return Exception thrown by changes while following a journal.
+   */
+  private static IllegalStateException readOnly() {
+    return new IllegalStateException("Following a journal: no changes allowed");
+  }
+
+  /**
+   * Applies a change: right away if there is no journal, or else by the
+   * sequencer.
+   * 
+   * @param operation Statistics of the change, recorded once it's durable.
+   * @param record Journal record of the change.
+   * @param command Change.
+   * @return Completed once the change is durable.
+   */
+  private CompletableFuture<Void> submit(Statistics.Operation operation, String[] record,
+      Sequencer.Command command) {
+    long start = operation.start();
+    if (this._follower != null)
+      return CompletableFuture.failedFuture(operation.failed(start, readOnly()));
+    Sequencer sequencer = this._sequencer;
+    if (sequencer != null)
+      return sequencer.submit(record, command).thenRun(() -> this._dirtyFlag = true)
+          .whenComplete((result, failure) -> operation.record(start, failure));
+
+    try {
+      command.apply(this._warehouse);
+    } catch (Exception e) {
+      return CompletableFuture.failedFuture(operation.failed(start, e));
+    }
+    this._dirtyFlag = true;
+    operation.succeeded(start);
+    return CompletableFuture.completedFuture(null);
+  }
+
+  /**
+   * Applies a change which registers a transaction: right away if there is no
+   * journal, or else by the sequencer, in the lane of the product's family.
+   * 
+   * @param operation Statistics of the change, recorded once it's durable.
+   * @param productKey Product key.
+   * @param record Journal record of the change.
+   * @param command Change.
+   * @return Completed once the change is durable.
+   */
+  private CompletableFuture<Void> submit(Statistics.Operation operation, String productKey, String[] record,
+      Sequencer.TransactionCommand command) {
+    long start = operation.start();
+    if (this._follower != null)
+      return CompletableFuture.failedFuture(operation.failed(start, readOnly()));
+    Sequencer sequencer = this._sequencer;
+    if (sequencer != null)
+      return sequencer.submit(this._warehouse.family(productKey), record, command)
+          .thenRun(() -> this._dirtyFlag = true)
+          .whenComplete((result, failure) -> operation.record(start, failure));
+
+    try {
+      command.apply(this._warehouse);
+    } catch (Exception e) {
+      return CompletableFuture.failedFuture(operation.failed(start, e));
+    }
+    this._dirtyFlag = true;
+    operation.succeeded(start);
+    return CompletableFuture.completedFuture(null);
+  }
+
+  /**
+   * An operation run by measure(). Java infers a single exception type from a
+   * lambda, so operations which throw several types name them, repeating the
+   * last one if there are fewer than three.
+   *
+   * @param <T> Type of the result.
+   * @param <E1> Type of an exception thrown.
+   * @param <E2> Type of an exception thrown.
+   * @param <E3> Type of an exception thrown.
+   */
+  @FunctionalInterface
+  private interface Query<T, E1 extends Exception, E2 extends Exception, E3 extends Exception> {
+    /**
+     * @return Result.
+     * @throws E1
+     * @throws E2
+     * @throws E3
+     */
+    T get() throws E1, E2, E3;
+  }
+
+  /**
+   * Runs an operation, recording its statistics.
+   *
+   * @param <T> Type of the result.
+   * @param <E1> Type of an exception thrown.
+   * @param <E2> Type of an exception thrown.
+   * @param <E3> Type of an exception thrown.
+   * @param operation Statistics of the operation.
+   * @param query Operation.
+   * @return Result.
+   * @throws E1
+   * @throws E2
+   * @throws E3
+   */
+  private static <T, E1 extends Exception, E2 extends Exception, E3 extends Exception> T measure(
+      Statistics.Operation operation, Query<T, E1, E2, E3> query) throws E1, E2, E3 {
+    long start = operation.start();
+    try {
+      T result = query.get();
+      operation.succeeded(start);
+      return result;
+    } catch (Throwable failure) {
+      operation.record(start, failure);
+      throw failure;
+    }
+  }
+
+  /**
+   * A listing written a line at a time.
+   *
+   * @param <E> Type of the exception thrown.
+   */
+  @FunctionalInterface
+  private interface Listing<E extends Exception> {
+    /**
+     * @param out Where to write.
+     * @throws E
+     */
+    void write(PrintStream out) throws E;
+  }
+
+  /**
+   * Builds a string with the lines a listing writes.
+   *
+   * @param <E> Type of the exception thrown.
+   * @param listing Listing, which writes each line with println().
+   * @return Lines, separated by newlines.
+   * @throws E
+   */
+  private static <E extends Exception> String lines(Listing<E> listing) throws E {
+    StringJoiner lines = new StringJoiner("\n");
+    listing.write(new PrintStream(OutputStream.nullOutputStream()) {
+      @Override
+      public void println(Object line) {
+        lines.add(String.valueOf(line));
+      }
+    });
+    return lines.toString();
+  }
+
+  /**
+   * Waits for a change.
+   * 
+   * @param future Future of the change.
+   * @return Why the change failed, or null if it didn't.
+   */
+  private static Throwable await(CompletableFuture<Void> future) {
+    try {
+      future.join();
+      return null;
+    } catch (CompletionException e) {
+      return e.getCause();
+    }
+  }
+
+  /**
+   * Throws the failure of a change, if it has the given type.
+   * 
+   * @param <E> Type of the exception.
+   * @param failure Why the change failed, or null.
+   * @param type Type of the exception.
+   * @throws E
+   */
+  private static <E extends Exception> void throwIf(Throwable failure, Class<E> type) throws E {
+    if (type.isInstance(failure))
+      throw type.cast(failure);
+  }
+
+  /**
+   * Throws the failure of a change, if there was one, as an unchecked
+   * exception. Called once every expected type was checked.
+   * 
+   * @param failure Why the change failed, or null.
+   */
+  private static void rethrow(Throwable failure) {
+    if (failure instanceof RuntimeException)
+      throw (RuntimeException) failure;
+    if (failure instanceof Error)
+      throw (Error) failure;
+    if (failure != null)
+      throw new IllegalStateException(failure);
   }
 
   /**
@@ -35,7 +551,7 @@ public class WarehouseManager {
    * @return Current date.
    */
   public int date() {
-    return this._warehouse.date();
+    return measure(DATE, () -> this._warehouse.date());
   }
 
   /**
@@ -45,8 +561,20 @@ public class WarehouseManager {
    * @throws InvalidDateException
    */
   public void advanceDate(int days) throws InvalidDateException {
-    this._warehouse.advanceDate(days);
-    this._dirtyFlag = true;
+    Throwable failure = await(this.submit(ADVANCE_DATE, Journal.record("DATE", days), w -> w.advanceDate(days)));
+    throwIf(failure, InvalidDateException.class);
+    rethrow(failure);
+  }
+
+  /**
+   * Enables or disables merging of batches with the same partner and price. When
+   * enabled, such batches are listed as a single batch with the sum of their
+   * amounts.
+   * 
+   * @param merge Whether batches should be merged.
+   */
+  public void setBatchMerging(boolean merge) {
+    rethrow(await(this.submit(SET_BATCH_MERGING, Journal.record("MERGE", merge), w -> w.setBatchMerging(merge))));
   }
 
   /**
@@ -55,7 +583,7 @@ public class WarehouseManager {
    * @return Available balance.
    */
   public double availableBalance() {
-    return this._warehouse.availableBalance();
+    return measure(AVAILABLE_BALANCE, () -> Money.toDouble(this._warehouse.availableBalance()));
   }
 
   /**
@@ -64,7 +592,7 @@ public class WarehouseManager {
    * @return Accounting balance.
    */
   public double accountingBalance() {
-    return this._warehouse.accountingBalance();
+    return measure(ACCOUNTING_BALANCE, () -> Money.toDouble(this._warehouse.accountingBalance()));
   }
 
   /**
@@ -73,9 +601,31 @@ public class WarehouseManager {
    * @return String with a list of known products.
    */
   public String products() {
-    return this._warehouse.products().stream()
-        .map(p -> p.toString())
-        .collect(Collectors.joining("\n"));
+    return lines(this::products);
+  }
+
+  /**
+   * Writes the list of known products.
+   * 
+   * @param out Where to write.
+   */
+  public void products(PrintStream out) {
+    measure(PRODUCTS, () -> {
+      this._warehouse.forEachProduct(out::println);
+      return null;
+    });
+  }
+
+  /**
+   * Returns a page of the list of known products.
+   * 
+   * @param cursor Cursor returned with the previous page, or null for the
+   *          first page.
+   * @param size Most products in the page.
+   * @return Page of products.
+   */
+  public Page<String> products(String cursor, int size) {
+    return measure(PRODUCTS, () -> this._warehouse.products(cursor, size).map(p -> p.toString()));
   }
 
   /**
@@ -85,8 +635,10 @@ public class WarehouseManager {
    * @throws DuplicateProductKeyException
    */
   public void registerProduct(String key) throws DuplicateProductKeyException {
-    this._warehouse.registerProduct(key);
-    this._dirtyFlag = true;
+    Throwable failure = await(this.submit(REGISTER_PRODUCT, Journal.record("PRODUCT", key),
+        w -> w.registerProduct(key)));
+    throwIf(failure, DuplicateProductKeyException.class);
+    rethrow(failure);
   }
 
   /**
@@ -106,8 +658,23 @@ public class WarehouseManager {
    */
   public void registerProduct(String key, double aggravation, String[] componentKeys, int[] componentAmounts)
       throws DuplicateProductKeyException, UnknownProductKeyException, InvalidRecipeException {
-    this._warehouse.registerProduct(key, aggravation, componentKeys, componentAmounts);
-    this._dirtyFlag = true;
+    String[] record = new String[3 + 2 * componentKeys.length];
+    record[0] = "DERIVATE";
+    record[1] = key;
+    record[2] = String.valueOf(aggravation);
+    for (int i = 0; i < componentKeys.length; i++) {
+      record[3 + 2 * i] = componentKeys[i];
+      record[4 + 2 * i] = String.valueOf(componentAmounts[i]);
+    }
+
+    String[] keys = Arrays.copyOf(componentKeys, componentKeys.length);
+    int[] amounts = Arrays.copyOf(componentAmounts, componentAmounts.length);
+    Throwable failure = await(this.submit(REGISTER_DERIVATE, record,
+        w -> w.registerProduct(key, aggravation, keys, amounts)));
+    throwIf(failure, DuplicateProductKeyException.class);
+    throwIf(failure, UnknownProductKeyException.class);
+    throwIf(failure, InvalidRecipeException.class);
+    rethrow(failure);
   }
 
   /**
@@ -116,9 +683,31 @@ public class WarehouseManager {
    * @return String with a list of batches.
    */
   public String batches() {
-    return this._warehouse.batches().stream()
-        .map(b -> b.toString())
-        .collect(Collectors.joining("\n"));
+    return lines(this::batches);
+  }
+
+  /**
+   * Writes the list of batches the warehouse has.
+   * 
+   * @param out Where to write.
+   */
+  public void batches(PrintStream out) {
+    measure(BATCHES, () -> {
+      this._warehouse.forEachBatch(b -> true, out::println);
+      return null;
+    });
+  }
+
+  /**
+   * Returns a page of the list of batches the warehouse has.
+   * 
+   * @param cursor Cursor returned with the previous page, or null for the
+   *          first page.
+   * @param size Most batches in the page.
+   * @return Page of batches.
+   */
+  public Page<String> batches(String cursor, int size) {
+    return measure(BATCHES, () -> this._warehouse.batches(cursor, size).map(b -> b.toString()));
   }
 
   /**
@@ -130,9 +719,42 @@ public class WarehouseManager {
    * @throws UnknownPartnerKeyException
    */
   public String batchesByPartner(String partnerKey) throws UnknownPartnerKeyException {
-    return this._warehouse.batchesByPartner(this._warehouse.partner(partnerKey))
-        .stream().map(b -> b.toString())
-        .collect(Collectors.joining("\n"));
+    return lines(out -> this.batchesByPartner(partnerKey, out));
+  }
+
+  /**
+   * Writes the list of batches the warehouse has which are associated to a
+   * partner.
+   * 
+   * @param partnerKey Partner key.
+   * @param out Where to write.
+   * @throws UnknownPartnerKeyException
+   */
+  public void batchesByPartner(String partnerKey, PrintStream out) throws UnknownPartnerKeyException {
+    Warehouse warehouse = this._warehouse;
+    measure(BATCHES_BY_PARTNER, () -> {
+      Partner partner = warehouse.partner(partnerKey);
+      warehouse.forEachBatch(b -> b.partner() == partner, out::println);
+      return null;
+    });
+  }
+
+  /**
+   * Returns a page of the list of batches the warehouse has which are
+   * associated to a partner.
+   * 
+   * @param partnerKey Partner key.
+   * @param cursor Cursor returned with the previous page, or null for the
+   *          first page.
+   * @param size Most batches in the page.
+   * @return Page of batches.
+   * @throws UnknownPartnerKeyException
+   */
+  public Page<String> batchesByPartner(String partnerKey, String cursor, int size)
+      throws UnknownPartnerKeyException {
+    Warehouse warehouse = this._warehouse;
+    return measure(BATCHES_BY_PARTNER, () -> warehouse.batchesByPartner(warehouse.partner(partnerKey), cursor, size)
+        .map(b -> b.toString()));
   }
 
   /**
@@ -144,9 +766,38 @@ public class WarehouseManager {
    * @throws UnknownProductKeyException
    */
   public String batchesByProduct(String productKey) throws UnknownProductKeyException {
-    return this._warehouse.product(productKey).batches()
-        .stream().map(b -> b.toString())
-        .collect(Collectors.joining("\n"));
+    return lines(out -> this.batchesByProduct(productKey, out));
+  }
+
+  /**
+   * Writes the list of batches of a certain product the warehouse has.
+   * 
+   * @param productKey Product key.
+   * @param out Where to write.
+   * @throws UnknownProductKeyException
+   */
+  public void batchesByProduct(String productKey, PrintStream out) throws UnknownProductKeyException {
+    measure(BATCHES_BY_PRODUCT, () -> {
+      this._warehouse.batchesByProduct(productKey).forEach(out::println);
+      return null;
+    });
+  }
+
+  /**
+   * Returns a page of the list of batches of a certain product the warehouse
+   * has.
+   * 
+   * @param productKey Product key.
+   * @param cursor Cursor returned with the previous page, or null for the
+   *          first page.
+   * @param size Most batches in the page.
+   * @return Page of batches.
+   * @throws UnknownProductKeyException
+   */
+  public Page<String> batchesByProduct(String productKey, String cursor, int size)
+      throws UnknownProductKeyException {
+    return measure(BATCHES_BY_PRODUCT, () -> this._warehouse.batchesByProduct(productKey, cursor, size)
+        .map(b -> b.toString()));
   }
 
   /**
@@ -157,9 +808,36 @@ public class WarehouseManager {
    * @return String with a list of batches.
    */
   public String batchesByPrice(double priceLimit) {
-    return this._warehouse.batchesByPrice(priceLimit)
-        .stream().map(b -> b.toString())
-        .collect(Collectors.joining("\n"));
+    return lines(out -> this.batchesByPrice(priceLimit, out));
+  }
+
+  /**
+   * Writes the list of batches under a certain price the warehouse has.
+   * 
+   * @param priceLimit The maximum price of the batches written.
+   * @param out Where to write.
+   */
+  public void batchesByPrice(double priceLimit, PrintStream out) {
+    long limit = Money.fromDouble(priceLimit);
+    measure(BATCHES_BY_PRICE, () -> {
+      this._warehouse.forEachBatch(b -> b.price() <= limit, out::println);
+      return null;
+    });
+  }
+
+  /**
+   * Returns a page of the list of batches under a certain price the warehouse
+   * has.
+   * 
+   * @param priceLimit The maximum price of the batches listed.
+   * @param cursor Cursor returned with the previous page, or null for the
+   *          first page.
+   * @param size Most batches in the page.
+   * @return Page of batches.
+   */
+  public Page<String> batchesByPrice(double priceLimit, String cursor, int size) {
+    return measure(BATCHES_BY_PRICE, () -> this._warehouse.batchesByPrice(Money.fromDouble(priceLimit), cursor, size)
+        .map(b -> b.toString()));
   }
 
   /**
@@ -170,9 +848,23 @@ public class WarehouseManager {
    * @throws UnknownPartnerKeyException
    */
   public String partner(String key) throws UnknownPartnerKeyException {
-    return this._warehouse.partner(key).toString() + this._warehouse.partnerNotifications(key)
-        .stream().map(n -> "\n" + n.toString())
-        .collect(Collectors.joining());
+    return lines(out -> this.partner(key, out));
+  }
+
+  /**
+   * Writes information about a partner, followed by its notifications.
+   * 
+   * @param key Partner key.
+   * @param out Where to write.
+   * @throws UnknownPartnerKeyException
+   */
+  public void partner(String key, PrintStream out) throws UnknownPartnerKeyException {
+    Warehouse warehouse = this._warehouse;
+    measure(PARTNER, () -> {
+      out.println(warehouse.partner(key));
+      warehouse.partnerNotifications(key).forEach(out::println);
+      return null;
+    });
   }
 
   /**
@@ -181,9 +873,31 @@ public class WarehouseManager {
    * @return String with a list of partners.
    */
   public String partners() {
-    return this._warehouse.partners().stream()
-        .map(p -> p.toString())
-        .collect(Collectors.joining("\n"));
+    return lines(this::partners);
+  }
+
+  /**
+   * Writes the list of partners the warehouse has.
+   * 
+   * @param out Where to write.
+   */
+  public void partners(PrintStream out) {
+    measure(PARTNERS, () -> {
+      this._warehouse.forEachPartner(out::println);
+      return null;
+    });
+  }
+
+  /**
+   * Returns a page of the list of partners the warehouse has.
+   * 
+   * @param cursor Cursor returned with the previous page, or null for the
+   *          first page.
+   * @param size Most partners in the page.
+   * @return Page of partners.
+   */
+  public Page<String> partners(String cursor, int size) {
+    return measure(PARTNERS, () -> this._warehouse.partners(cursor, size).map(p -> p.toString()));
   }
 
   /**
@@ -195,8 +909,10 @@ public class WarehouseManager {
    * @throws DuplicatePartnerKeyException
    */
   public void registerPartner(String key, String name, String address) throws DuplicatePartnerKeyException {
-    this._warehouse.registerPartner(key, name, address);
-    this._dirtyFlag = true;
+    Throwable failure = await(this.submit(REGISTER_PARTNER, Journal.record("PARTNER", key, name, address),
+        w -> w.registerPartner(key, name, address)));
+    throwIf(failure, DuplicatePartnerKeyException.class);
+    rethrow(failure);
   }
 
   /**
@@ -209,8 +925,11 @@ public class WarehouseManager {
    */
   public void toggleNotification(String partnerKey, String productKey)
       throws UnknownPartnerKeyException, UnknownProductKeyException {
-    this._warehouse.toggleNotification(partnerKey, productKey);
-    this._dirtyFlag = true;
+    Throwable failure = await(this.submit(TOGGLE_NOTIFICATION, Journal.record("TOGGLE", partnerKey, productKey),
+        w -> w.toggleNotification(partnerKey, productKey)));
+    throwIf(failure, UnknownPartnerKeyException.class);
+    throwIf(failure, UnknownProductKeyException.class);
+    rethrow(failure);
   }
 
   /**
@@ -222,9 +941,38 @@ public class WarehouseManager {
    * @throws UnknownPartnerKeyException
    */
   public String partnerAcquisitions(String partnerKey) throws UnknownPartnerKeyException {
-    return this._warehouse.partnerAcquisitions(partnerKey).stream()
-        .map(t -> t.toString())
-        .collect(Collectors.joining("\n"));
+    return lines(out -> this.partnerAcquisitions(partnerKey, out));
+  }
+
+  /**
+   * Writes the list of purchases the warehouse has made to a certain partner.
+   * 
+   * @param partnerKey Partner key.
+   * @param out Where to write.
+   * @throws UnknownPartnerKeyException
+   */
+  public void partnerAcquisitions(String partnerKey, PrintStream out) throws UnknownPartnerKeyException {
+    measure(PARTNER_ACQUISITIONS, () -> {
+      this._warehouse.forEachPartnerAcquisition(partnerKey, out::println);
+      return null;
+    });
+  }
+
+  /**
+   * Returns a page of the list of purchases the warehouse has made to a certain
+   * partner.
+   * 
+   * @param partnerKey Partner key.
+   * @param cursor Cursor returned with the previous page, or null for the
+   *          first page.
+   * @param size Most transactions in the page.
+   * @return Page of transactions.
+   * @throws UnknownPartnerKeyException
+   */
+  public Page<String> partnerAcquisitions(String partnerKey, String cursor, int size)
+      throws UnknownPartnerKeyException {
+    return measure(PARTNER_ACQUISITIONS, () -> this._warehouse.partnerAcquisitions(partnerKey, cursor, size)
+        .map(t -> t.toString()));
   }
 
   /**
@@ -236,9 +984,39 @@ public class WarehouseManager {
    * @throws UnknownPartnerKeyException
    */
   public String partnerSalesAndBreakdowns(String partnerKey) throws UnknownPartnerKeyException {
-    return this._warehouse.partnerSalesAndBreakdowns(partnerKey).stream()
-        .map(t -> t.toString())
-        .collect(Collectors.joining("\n"));
+    return lines(out -> this.partnerSalesAndBreakdowns(partnerKey, out));
+  }
+
+  /**
+   * Writes the list of sales and breakdowns the warehouse has made to a certain
+   * partner.
+   * 
+   * @param partnerKey Partner key.
+   * @param out Where to write.
+   * @throws UnknownPartnerKeyException
+   */
+  public void partnerSalesAndBreakdowns(String partnerKey, PrintStream out) throws UnknownPartnerKeyException {
+    measure(PARTNER_SALES_AND_BREAKDOWNS, () -> {
+      this._warehouse.forEachPartnerSaleAndBreakdown(partnerKey, out::println);
+      return null;
+    });
+  }
+
+  /**
+   * Returns a page of the list of sales and breakdowns the warehouse has made
+   * to a certain partner.
+   * 
+   * @param partnerKey Partner key.
+   * @param cursor Cursor returned with the previous page, or null for the
+   *          first page.
+   * @param size Most transactions in the page.
+   * @return Page of transactions.
+   * @throws UnknownPartnerKeyException
+   */
+  public Page<String> partnerSalesAndBreakdowns(String partnerKey, String cursor, int size)
+      throws UnknownPartnerKeyException {
+    return measure(PARTNER_SALES_AND_BREAKDOWNS,
+        () -> this._warehouse.partnerSalesAndBreakdowns(partnerKey, cursor, size).map(t -> t.toString()));
   }
 
   /**
@@ -250,9 +1028,39 @@ public class WarehouseManager {
    * @throws UnknownPartnerKeyException
    */
   public String partnerPaidTransactions(String partnerKey) throws UnknownPartnerKeyException {
-    return this._warehouse.partnerPaidTransactions(partnerKey).stream()
-        .map(t -> t.toString())
-        .collect(Collectors.joining("\n"));
+    return lines(out -> this.partnerPaidTransactions(partnerKey, out));
+  }
+
+  /**
+   * Writes the list of paid transactions the warehouse has with a certain
+   * partner.
+   * 
+   * @param partnerKey Partner key.
+   * @param out Where to write.
+   * @throws UnknownPartnerKeyException
+   */
+  public void partnerPaidTransactions(String partnerKey, PrintStream out) throws UnknownPartnerKeyException {
+    measure(PARTNER_PAID_TRANSACTIONS, () -> {
+      this._warehouse.forEachPartnerPaidTransaction(partnerKey, out::println);
+      return null;
+    });
+  }
+
+  /**
+   * Returns a page of the list of paid transactions the warehouse has with a
+   * certain partner.
+   * 
+   * @param partnerKey Partner key.
+   * @param cursor Cursor returned with the previous page, or null for the
+   *          first page.
+   * @param size Most transactions in the page.
+   * @return Page of transactions.
+   * @throws UnknownPartnerKeyException
+   */
+  public Page<String> partnerPaidTransactions(String partnerKey, String cursor, int size)
+      throws UnknownPartnerKeyException {
+    return measure(PARTNER_PAID_TRANSACTIONS, () -> this._warehouse.partnerPaidTransactions(partnerKey, cursor, size)
+        .map(t -> t.toString()));
   }
 
   /**
@@ -264,9 +1072,39 @@ public class WarehouseManager {
    * @throws UnknownPartnerKeyException
    */
   public String partnerHistory(String partnerKey) throws UnknownPartnerKeyException {
-    return this._warehouse.partnerTransactions(partnerKey).stream()
-        .map(t -> t.toString())
-        .collect(Collectors.joining("\n"));
+    return lines(out -> this.partnerHistory(partnerKey, out));
+  }
+
+  /**
+   * Writes the list of transactions the warehouse has made with a certain
+   * partner.
+   * 
+   * @param partnerKey Partner key.
+   * @param out Where to write.
+   * @throws UnknownPartnerKeyException
+   */
+  public void partnerHistory(String partnerKey, PrintStream out) throws UnknownPartnerKeyException {
+    measure(PARTNER_HISTORY, () -> {
+      this._warehouse.forEachPartnerTransaction(partnerKey, out::println);
+      return null;
+    });
+  }
+
+  /**
+   * Returns a page of the list of transactions the warehouse has made with a
+   * certain partner.
+   * 
+   * @param partnerKey Partner key.
+   * @param cursor Cursor returned with the previous page, or null for the
+   *          first page.
+   * @param size Most transactions in the page.
+   * @return Page of transactions.
+   * @throws UnknownPartnerKeyException
+   */
+  public Page<String> partnerHistory(String partnerKey, String cursor, int size)
+      throws UnknownPartnerKeyException {
+    return measure(PARTNER_HISTORY, () -> this._warehouse.partnerTransactions(partnerKey, cursor, size)
+        .map(t -> t.toString()));
   }
 
   /**
@@ -277,7 +1115,7 @@ public class WarehouseManager {
    * @throws UnknownTransactionKeyException
    */
   public String transaction(int key) throws UnknownTransactionKeyException {
-    return this._warehouse.transaction(key).toString();
+    return measure(TRANSACTION, () -> this._warehouse.transaction(key).toString());
   }
 
   /**
@@ -292,8 +1130,25 @@ public class WarehouseManager {
    */
   public void registerBreakdown(String partnerKey, String productKey, int amount)
       throws UnknownPartnerKeyException, UnknownProductKeyException, UnavailableProductException {
-    this._warehouse.registerBreakdown(partnerKey, productKey, amount);
-    this._dirtyFlag = true;
+    Throwable failure = await(this.registerBreakdownAsync(partnerKey, productKey, amount));
+    throwIf(failure, UnknownPartnerKeyException.class);
+    throwIf(failure, UnknownProductKeyException.class);
+    throwIf(failure, UnavailableProductException.class);
+    rethrow(failure);
+  }
+
+  /**
+   * Registers a breakdown transaction, without waiting for it.
+   * 
+   * @param partnerKey Partner key.
+   * @param productKey Product key.
+   * @param amount How many units were broke down?
+   * @return Completed once the breakdown is durable, or with the exception
+   *         registerBreakdown() would throw.
+   */
+  public CompletableFuture<Void> registerBreakdownAsync(String partnerKey, String productKey, int amount) {
+    return this.submit(REGISTER_BREAKDOWN, productKey, Journal.record("BREAKDOWN", partnerKey, productKey, amount),
+        w -> w.registerBreakdown(partnerKey, productKey, amount));
   }
 
   /**
@@ -309,8 +1164,112 @@ public class WarehouseManager {
    */
   public void registerSale(String partnerKey, String productKey, int deadline, int amount)
       throws UnknownPartnerKeyException, UnknownProductKeyException, UnavailableProductException {
-    this._warehouse.registerSale(partnerKey, productKey, deadline, amount);
-    this._dirtyFlag = true;
+    Throwable failure = await(this.registerSaleAsync(partnerKey, productKey, deadline, amount));
+    throwIf(failure, UnknownPartnerKeyException.class);
+    throwIf(failure, UnknownProductKeyException.class);
+    throwIf(failure, UnavailableProductException.class);
+    rethrow(failure);
+  }
+
+  /**
+   * Registers a sale transaction, without waiting for it.
+   * 
+   * @param partnerKey Partner key.
+   * @param productKey Product key.
+   * @param deadline Sale payment deadline.
+   * @param amount Number of units sold.
+   * @return Completed once the sale is durable, or with the exception
+   *         registerSale() would throw.
+   */
+  public CompletableFuture<Void> registerSaleAsync(String partnerKey, String productKey, int deadline, int amount) {
+    // The units made out of components are only known once the sale is applied
+    String[] record = Journal.record("SALE", partnerKey, productKey, deadline, amount, "");
+    return this.submit(REGISTER_SALE, productKey, record, w -> {
+      List<Integer> plan = new ArrayList<Integer>();
+      int id = w.registerSale(partnerKey, productKey, deadline, amount, plan);
+      record[5] = Journal.plan(plan);
+      return id;
+    });
+  }
+
+  /**
+   * Reserves units of a product for a sale to a partner, holding them, or the
+   * components needed to make them, until registerSale(int, int) sells them, or
+   * the reservation expires. Reservations aren't saved, nor recorded in the
+   * journal.
+   * 
+   * @param partnerKey Partner key.
+   * @param productKey Product key.
+   * @param amount Number of units.
+   * @param timeout Time before the reservation expires, in milliseconds.
+   * @return Reservation id.
+   * @throws UnknownPartnerKeyException
+   * @throws UnknownProductKeyException
+   * @throws UnavailableProductException
+   */
+  public int reserve(String partnerKey, String productKey, int amount, long timeout)
+      throws UnknownPartnerKeyException, UnknownProductKeyException, UnavailableProductException {
+    if (this._follower != null)
+      throw readOnly();
+    return WarehouseManager.<Integer, UnknownPartnerKeyException, UnknownProductKeyException,
+        UnavailableProductException>measure(RESERVE,
+            () -> this._warehouse.reserve(partnerKey, productKey, amount, timeout));
+  }
+
+  /**
+   * Cancels a reservation, releasing its units.
+   * 
+   * @param reservationKey Reservation id.
+   * @throws UnknownReservationKeyException
+   */
+  public void cancelReservation(int reservationKey) throws UnknownReservationKeyException {
+    if (this._follower != null)
+      throw readOnly();
+    measure(CANCEL_RESERVATION, () -> {
+      this._warehouse.cancelReservation(reservationKey);
+      return null;
+    });
+  }
+
+  /**
+   * Registers the sale of the units of a reservation.
+   * 
+   * @param reservationKey Reservation id.
+   * @param deadline Sale payment deadline.
+   * @throws UnknownReservationKeyException if there is no such reservation, or
+   *           it was used, cancelled, or expired.
+   * @throws UnavailableProductException if the held units are missing.
+   */
+  public void registerSale(int reservationKey, int deadline)
+      throws UnknownReservationKeyException, UnavailableProductException {
+    Throwable failure = await(this.registerSaleAsync(reservationKey, deadline));
+    throwIf(failure, UnknownReservationKeyException.class);
+    throwIf(failure, UnavailableProductException.class);
+    rethrow(failure);
+  }
+
+  /**
+   * Registers the sale of the units of a reservation, without waiting for it.
+   * 
+   * @param reservationKey Reservation id.
+   * @param deadline Sale payment deadline.
+   * @return Completed once the sale is durable, or with the exception
+   *         registerSale(int, int) would throw.
+   */
+  public CompletableFuture<Void> registerSaleAsync(int reservationKey, int deadline) {
+    Reservation reservation;
+    try {
+      reservation = this._warehouse.reservation(reservationKey);
+    } catch (UnknownReservationKeyException e) {
+      long start = REGISTER_RESERVED_SALE.start();
+      return CompletableFuture.failedFuture(REGISTER_RESERVED_SALE.failed(start, e));
+    }
+
+    // Recorded as a plain sale, since reservations aren't
+    String productKey = reservation.product().key();
+    String[] record = Journal.record("SALE", reservation.partner().key(), productKey, deadline, reservation.amount(),
+        Journal.plan(Arrays.stream(reservation.plan()).boxed().collect(Collectors.toList())));
+    return this.submit(REGISTER_RESERVED_SALE, productKey, record, w -> w.registerSale(reservationKey, deadline));
   }
 
   /**
@@ -325,8 +1284,28 @@ public class WarehouseManager {
    */
   public void registerAcquisition(String partnerKey, String productKey, int amount, double price)
       throws UnknownPartnerKeyException, UnknownProductKeyException {
-    this._warehouse.registerAcquisition(partnerKey, productKey, amount, price);
-    this._dirtyFlag = true;
+    Throwable failure = await(this.registerAcquisitionAsync(partnerKey, productKey, amount, price));
+    throwIf(failure, UnknownPartnerKeyException.class);
+    throwIf(failure, UnknownProductKeyException.class);
+    rethrow(failure);
+  }
+
+  /**
+   * Registers an acquisition transaction, without waiting for it.
+   * 
+   * @param partnerKey Partner key.
+   * @param productKey Product key.
+   * @param amount Number of units bought.
+   * @param price Price of each unit.
+   * @return Completed once the acquisition is durable, or with the exception
+   *         registerAcquisition() would throw.
+   */
+  public CompletableFuture<Void> registerAcquisitionAsync(String partnerKey, String productKey, int amount,
+      double price) {
+    long units = Money.fromDouble(price);
+    return this.submit(REGISTER_ACQUISITION, productKey,
+        Journal.record("ACQUISITION", partnerKey, productKey, amount, units),
+        w -> w.registerAcquisition(partnerKey, productKey, amount, units));
   }
 
   /**
@@ -336,8 +1315,161 @@ public class WarehouseManager {
    * @throws UnknownTransactionKeyException
    */
   public void receiveSalePayment(int transactionKey) throws UnknownTransactionKeyException {
-    this._warehouse.receiveSalePayment(transactionKey);
-    this._dirtyFlag = true;
+    Throwable failure = await(this.receiveSalePaymentAsync(transactionKey));
+    throwIf(failure, UnknownTransactionKeyException.class);
+    rethrow(failure);
+  }
+
+  /**
+   * Registers a sale payment, without waiting for it.
+   * 
+   * @param transactionKey Sale transaction key.
+   * @return Completed once the payment is durable, or with the exception
+   *         receiveSalePayment() would throw.
+   */
+  public CompletableFuture<Void> receiveSalePaymentAsync(int transactionKey) {
+    return this.submit(RECEIVE_SALE_PAYMENT, Journal.record("PAYMENT", transactionKey),
+        w -> w.receiveSalePayment(transactionKey));
+  }
+
+  /**
+   * Holds available units of a product, so that only the holder takes them
+   * later, through transfer() or registerAssembledSale(). Used to sell products
+   * whose components are kept by other warehouses. Holds aren't recorded, and
+   * are lost when the warehouse is replaced.
+   * 
+   * @param holder Holder of the units.
+   * @param partnerKey Key of the partner the units are for.
+   * @param productKey Product key.
+   * @param amount Number of units wanted.
+   * @return Number of units held, which is less than the amount wanted if there
+   *         aren't enough units available.
+   * @throws UnknownPartnerKeyException
+   * @throws UnknownProductKeyException
+   */
+  public int hold(String holder, String partnerKey, String productKey, int amount)
+      throws UnknownPartnerKeyException, UnknownProductKeyException {
+    if (this._follower != null)
+      throw readOnly();
+    return WarehouseManager.<Integer, UnknownPartnerKeyException, UnknownProductKeyException,
+        UnknownProductKeyException>measure(HOLD, () -> this._warehouse.hold(holder, partnerKey, productKey, amount));
+  }
+
+  /**
+   * Releases every unit held for a holder, and forgets the units it took.
+   * 
+   * @param holder Holder of the units.
+   */
+  public void release(String holder) {
+    if (this._follower != null)
+      throw readOnly();
+    measure(RELEASE, () -> {
+      this._warehouse.release(holder);
+      return null;
+    });
+  }
+
+  /**
+   * Takes units of a product held before, to make another product out of them
+   * in another warehouse. Some of the units may be made out of components taken
+   * the same way.
+   * 
+   * @param holder Holder of the units.
+   * @param productKey Product key.
+   * @param amount Number of units.
+   * @param fabricated Number of units made out of components.
+   * @param componentsValue Value of the components, in micro-units.
+   * @return Value of the units, in micro-units.
+   * @throws UnknownProductKeyException
+   * @throws UnavailableProductException
+   */
+  public long transfer(String holder, String productKey, int amount, int fabricated, long componentsValue)
+      throws UnknownProductKeyException, UnavailableProductException {
+    long[] value = new long[1];
+    Throwable failure = await(this.submit(TRANSFER,
+        Journal.record("TRANSFER", productKey, amount, fabricated, componentsValue),
+        w -> value[0] = w.transfer(holder, productKey, amount, fabricated, componentsValue)));
+    throwIf(failure, UnknownProductKeyException.class);
+    throwIf(failure, UnavailableProductException.class);
+    rethrow(failure);
+    return value[0];
+  }
+
+  /**
+   * Puts back the units a holder took through transfer(), when the sale they
+   * were taken for fails. The units go back with the partner and price of the
+   * batches they came from.
+   * 
+   * @param holder Holder of the units.
+   */
+  public void restock(String holder) {
+    List<Batch> batches = this._warehouse.untransfer(holder);
+    if (batches.isEmpty())
+      return;
+    List<Object> fields = new ArrayList<Object>();
+    fields.add("RESTOCK");
+    for (Batch batch : batches)
+      Collections.addAll(fields, batch.product().key(), batch.partner().key(), batch.amount(), batch.price());
+    rethrow(await(this.submit(RESTOCK, Journal.record(fields.toArray()), w -> w.restock(batches))));
+  }
+
+  /**
+   * Registers a sale whose units were held before, or made out of components
+   * taken from other warehouses through transfer().
+   * 
+   * @param holder Holder of the units.
+   * @param partnerKey Partner key.
+   * @param productKey Product key.
+   * @param deadline Sale payment deadline.
+   * @param amount Number of units sold.
+   * @param fabricated Number of units made out of components.
+   * @param componentsValue Value of the components, in micro-units.
+   * @throws UnknownPartnerKeyException
+   * @throws UnknownProductKeyException
+   * @throws UnavailableProductException
+   */
+  public void registerAssembledSale(String holder, String partnerKey, String productKey, int deadline, int amount,
+      int fabricated, long componentsValue)
+      throws UnknownPartnerKeyException, UnknownProductKeyException, UnavailableProductException {
+    Throwable failure = await(this.submit(REGISTER_ASSEMBLED_SALE, productKey,
+        Journal.record("ASSEMBLY", partnerKey, productKey, deadline, amount, fabricated, componentsValue),
+        w -> w.registerAssembledSale(holder, partnerKey, productKey, deadline, amount, fabricated, componentsValue)));
+    throwIf(failure, UnknownPartnerKeyException.class);
+    throwIf(failure, UnknownProductKeyException.class);
+    throwIf(failure, UnavailableProductException.class);
+    rethrow(failure);
+  }
+
+  /**
+   * Returns a table of the statistics of the operations.
+   * 
+   * @return String with the table.
+   */
+  public String statistics() {
+    return Statistics.table();
+  }
+
+  /**
+   * Writes the statistics of the operations to a file, in CSV.
+   * 
+   * @param filename File name.
+   * @throws IOException
+   */
+  public void saveStatistics(String filename) throws IOException {
+    try (Writer writer = Files.newBufferedWriter(Path.of(filename), StandardCharsets.UTF_8)) {
+      Statistics.write(writer);
+    }
+  }
+
+  /**
+   * Returns a table of the memory retained by each subsystem of the warehouse,
+   * with the number of its entities and the bytes each takes, estimated by
+   * walking the warehouse. The warehouse is held exclusively meanwhile.
+   * 
+   * @return String with the table.
+   */
+  public String footprint() {
+    return this._warehouse.footprint().table();
   }
 
   /**
@@ -348,18 +1480,57 @@ public class WarehouseManager {
    * @throws MissingFileAssociationException
    */
   public void save() throws IOException, FileNotFoundException, MissingFileAssociationException {
-    if (this._filename == null) {
-      throw new MissingFileAssociationException();
-    }
+    WarehouseManager.<Void, IOException, MissingFileAssociationException,
+        MissingFileAssociationException>measure(SAVE, () -> {
+          if (this._filename == null) {
+            throw new MissingFileAssociationException();
+          }
 
-    if (this._dirtyFlag) {
-      FileOutputStream f = new FileOutputStream(this._filename);
-      ObjectOutputStream o = new ObjectOutputStream(f);
-      o.writeObject(this._warehouse);
-      o.close();
+          Sequencer sequencer = this._sequencer;
+          if (sequencer == null) {
+            this.write(this._warehouse);
+            return null;
+          }
 
-      this._dirtyFlag = false;
-    }
+          // Once saved, the journal is no longer needed
+          Throwable failure = await(sequencer.checkpoint(Journal.checkpoint("SAVE", this._filename), this::write));
+          throwIf(failure, IOException.class);
+          rethrow(failure);
+          return null;
+        });
+  }
+
+  /**
+   * Writes a warehouse to the associated file, if it was changed.
+   * 
+   * @param warehouse Warehouse.
+   * @throws IOException
+   */
+  private void write(Warehouse warehouse) throws IOException {
+    warehouse.exclusive(() -> {
+      // A copy of another warehouse isn't known to have been saved
+      if (this._dirtyFlag || this._follower != null) {
+        SaveEvent event = new SaveEvent();
+        event.begin();
+        measure(WRITE, () -> {
+          FileOutputStream f = new FileOutputStream(this._filename);
+          ObjectOutputStream o = new ObjectOutputStream(f);
+          o.writeObject(warehouse);
+          o.flush();
+          f.getFD().sync();
+          if (event.shouldCommit()) {
+            event.file = this._filename;
+            event.bytes = f.getChannel().position();
+            event.commit();
+          }
+          o.close();
+          return null;
+        });
+
+        this._dirtyFlag = false;
+      }
+      return null;
+    });
   }
 
   /**
@@ -385,14 +1556,48 @@ public class WarehouseManager {
    * @@throws UnavailableFileException
    */
   public void load(String filename) throws UnavailableFileException {
-    try {
-      FileInputStream f = new FileInputStream(filename);
-      ObjectInputStream o = new ObjectInputStream(f);
-      this._warehouse = (Warehouse) o.readObject();
-      o.close();
-    } catch (IOException | ClassNotFoundException e) {
-      throw new UnavailableFileException(filename);
-    }
+    if (this._follower != null)
+      throw readOnly();
+    measure(LOAD, () -> {
+      Sequencer sequencer = this._sequencer;
+      if (sequencer == null) {
+        this.read(filename);
+        return null;
+      }
+
+      // The changes in the journal were made to the warehouse being replaced
+      Throwable failure = await(sequencer.checkpoint(Journal.checkpoint("LOAD", filename), w -> this.read(filename)));
+      throwIf(failure, UnavailableFileException.class);
+      rethrow(failure);
+      return null;
+    });
+  }
+
+  /**
+   * Replaces the warehouse by one read from a file.
+   * 
+   * @param filename File name.
+   * @throws UnavailableFileException
+   */
+  private void read(String filename) throws UnavailableFileException {
+    LoadEvent event = new LoadEvent();
+    event.begin();
+    measure(READ, () -> {
+      try {
+        FileInputStream f = new FileInputStream(filename);
+        ObjectInputStream o = new ObjectInputStream(f);
+        this._warehouse = (Warehouse) o.readObject();
+        if (event.shouldCommit()) {
+          event.file = filename;
+          event.bytes = f.getChannel().size();
+          event.commit();
+        }
+        o.close();
+      } catch (IOException | ClassNotFoundException e) {
+        throw new UnavailableFileException(filename);
+      }
+      return null;
+    });
 
     this._filename = filename;
     this._dirtyFlag = false;
@@ -405,13 +1610,38 @@ public class WarehouseManager {
    * @throws ImportFileException
    */
   public void importFile(String textfile) throws ImportFileException {
-    try {
-      _warehouse.importFile(textfile);
-    } catch (IOException | BadEntryException | DuplicatePartnerKeyException | DuplicateProductKeyException
-        | UnknownPartnerKeyException | UnknownProductKeyException | InvalidRecipeException e) {
-      throw new ImportFileException(textfile);
-    }
+    if (this._follower != null)
+      throw readOnly();
+    measure(IMPORT_FILE, () -> {
+      Sequencer sequencer = this._sequencer;
+      if (sequencer == null) {
+        try {
+          this._warehouse.importFile(textfile);
+        } catch (IOException | BadEntryException | DuplicatePartnerKeyException | DuplicateProductKeyException
+            | UnknownPartnerKeyException | UnknownProductKeyException | InvalidRecipeException e) {
+          throw new ImportFileException(textfile);
+        }
+        this._dirtyFlag = true;
+        return null;
+      }
 
-    this._dirtyFlag = true;
+      // The journal records the data, since the file may change later
+      String data;
+      try {
+        data = new String(Files.readAllBytes(Path.of(textfile)), Charset.defaultCharset());
+      } catch (IOException e) {
+        throw new ImportFileException(textfile);
+      }
+      Throwable failure = await(sequencer.submit(Journal.record("IMPORT", data),
+          w -> w.importData(new BufferedReader(new StringReader(data)))));
+      if (failure instanceof IOException || failure instanceof BadEntryException
+          || failure instanceof DuplicatePartnerKeyException || failure instanceof DuplicateProductKeyException
+          || failure instanceof UnknownPartnerKeyException || failure instanceof UnknownProductKeyException
+          || failure instanceof InvalidRecipeException)
+        throw new ImportFileException(textfile);
+      rethrow(failure);
+      this._dirtyFlag = true;
+      return null;
+    });
   }
 }
@@ -0,0 +1,37 @@
+package ggc.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * An acquisition registered, with the notifications it sent.
+ */
+@Name("ggc.Acquisition")
+@Label("Acquisition")
+@Category("Warehouse")
+@Description("An acquisition registered, with the notifications it sent.")
+@StackTrace(false)
+public class AcquisitionEvent extends Event {
+  @Label("Transaction")
+  public int transaction;
+
+  @Label("Partner")
+  public String partner;
+
+  @Label("Product")
+  public String product;
+
+  @Label("Amount")
+  public int amount;
+
+  @Label("Price")
+  public double price;
+
+  @Label("Notifications")
+  @Description("Notifications sent about the new batch, one for each observer and method")
+  public int notifications;
+}
@@ -0,0 +1,32 @@
+package ggc.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The date advanced, updating the value of the sales not paid yet.
+ */
+@Name("ggc.AdvanceDate")
+@Label("Advance Date")
+@Category("Warehouse")
+@Description("The date advanced, updating the value of the sales not paid yet.")
+@StackTrace(false)
+public class AdvanceDateEvent extends Event {
+  @Label("Days")
+  public int days;
+
+  @Label("Date")
+  public int date;
+
+  @Label("Transactions")
+  @Description("Transactions visited")
+  public int transactions;
+
+  @Label("Sales Touched")
+  @Description("Sales not paid yet, whose value was updated")
+  public int sales;
+}
@@ -0,0 +1,38 @@
+package ggc.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A breakdown registered.
+ */
+@Name("ggc.Breakdown")
+@Label("Breakdown")
+@Category("Warehouse")
+@Description("A breakdown registered.")
+@StackTrace(false)
+public class BreakdownEvent extends Event {
+  @Label("Transaction")
+  @Description("Breakdown transaction, or -1 if the product is simple")
+  public int transaction;
+
+  @Label("Partner")
+  public String partner;
+
+  @Label("Product")
+  public String product;
+
+  @Label("Amount")
+  public int amount;
+
+  @Label("Components")
+  @Description("Batches of components made")
+  public int components;
+
+  @Label("Value")
+  public double value;
+}
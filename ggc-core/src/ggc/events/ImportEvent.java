@@ -0,0 +1,27 @@
+package ggc.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Data imported.
+ */
+@Name("ggc.Import")
+@Label("Import")
+@Category("Warehouse")
+@Description("Data imported.")
+@StackTrace(false)
+public class ImportEvent extends Event {
+  @Label("Entries")
+  public int entries;
+
+  @Label("Partners")
+  public int partners;
+
+  @Label("Batches")
+  public int batches;
+}
@@ -0,0 +1,26 @@
+package ggc.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A warehouse read from a file.
+ */
+@Name("ggc.Load")
+@Label("Load")
+@Category("Warehouse")
+@Description("A warehouse read from a file.")
+@StackTrace(false)
+public class LoadEvent extends Event {
+  @Label("File")
+  public String file;
+
+  @Label("Bytes Read")
+  @DataAmount
+  public long bytes;
+}
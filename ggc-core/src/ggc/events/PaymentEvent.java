@@ -0,0 +1,28 @@
+package ggc.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A payment received.
+ */
+@Name("ggc.Payment")
+@Label("Payment")
+@Category("Warehouse")
+@Description("A payment received.")
+@StackTrace(false)
+public class PaymentEvent extends Event {
+  @Label("Transaction")
+  public int transaction;
+
+  @Label("Partner")
+  public String partner;
+
+  @Label("Value")
+  @Description("Value paid, 0 if the transaction was paid before or is not a sale")
+  public double value;
+}
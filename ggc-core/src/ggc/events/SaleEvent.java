@@ -0,0 +1,41 @@
+package ggc.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A sale registered, with the units made out of components to sell it.
+ */
+@Name("ggc.Sale")
+@Label("Sale")
+@Category("Warehouse")
+@Description("A sale registered, with the units made out of components to sell it.")
+@StackTrace(false)
+public class SaleEvent extends Event {
+  @Label("Transaction")
+  public int transaction;
+
+  @Label("Partner")
+  public String partner;
+
+  @Label("Product")
+  public String product;
+
+  @Label("Amount")
+  public int amount;
+
+  @Label("Recipe Depth")
+  @Description("Levels of components below the product, 0 for simple products")
+  public int recipeDepth;
+
+  @Label("Units Fabricated")
+  @Description("Units of the product and of its components made out of components")
+  public int fabricated;
+
+  @Label("Base Value")
+  public double value;
+}
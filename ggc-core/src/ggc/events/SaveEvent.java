@@ -0,0 +1,26 @@
+package ggc.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The warehouse written to a file.
+ */
+@Name("ggc.Save")
+@Label("Save")
+@Category("Warehouse")
+@Description("The warehouse written to a file.")
+@StackTrace(false)
+public class SaveEvent extends Event {
+  @Label("File")
+  public String file;
+
+  @Label("Bytes Written")
+  @DataAmount
+  public long bytes;
+}
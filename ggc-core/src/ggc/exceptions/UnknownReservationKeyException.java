@@ -0,0 +1,26 @@
+package ggc.exceptions;
+
+/**
+ * Class for representing an unknown reservation key error.
+ */
+public class UnknownReservationKeyException extends Exception {
+
+  /** Serial number for serialization. */
+  private static final long serialVersionUID = 202610191600L;
+
+  private int _reservationKey;
+
+  /**
+   * @param reservationKey The reservation key that was not found.
+   */
+  public UnknownReservationKeyException(int reservationKey) {
+    this._reservationKey = reservationKey;
+  }
+
+  /**
+   * @return The requested reservation key.
+   */
+  public int getReservationKey() {
+    return this._reservationKey;
+  }
+}
@@ -11,9 +11,9 @@ public class BargainNotification extends Notification {
 
   /**
    * @param product The product which caused this notification
-   * @param price The price of the product on the new batch
+   * @param price The price of the product on the new batch, in micro-units
    */
-  public BargainNotification(Product product, double price) {
+  public BargainNotification(Product product, long price) {
     super(product, price);
   }
 
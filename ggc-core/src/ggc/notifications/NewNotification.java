@@ -11,9 +11,9 @@ public class NewNotification extends Notification {
 
   /**
    * @param product The product which caused this notification
-   * @param price The price of the product on the new batch
+   * @param price The price of the product on the new batch, in micro-units
    */
-  public NewNotification(Product product, double price) {
+  public NewNotification(Product product, long price) {
     super(product, price);
   }
 
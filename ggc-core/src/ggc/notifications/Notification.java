@@ -2,6 +2,7 @@ package ggc.notifications;
 
 import java.io.Serializable;
 
+import ggc.Money;
 import ggc.products.Product;
 
 /**
@@ -14,14 +15,14 @@ public abstract class Notification implements Serializable {
   /** The product which caused this notification. */
   private Product _product;
 
-  /** The price of the product on the new batch. */
-  private double _price;
+  /** The price of the product on the new batch, in micro-units. */
+  private long _price;
 
   /**
    * @param product The product which caused this notification
-   * @param price The price of the product on the new batch
+   * @param price The price of the product on the new batch, in micro-units
    */
-  public Notification(Product product, double price) {
+  public Notification(Product product, long price) {
     this._product = product;
     this._price = price;
   }
@@ -34,14 +35,14 @@ public abstract class Notification implements Serializable {
   }
 
   /**
-   * @return The price of the product on the new batch
+   * @return The price of the product on the new batch, in micro-units
    */
-  public double price() {
+  public long price() {
     return this._price;
   }
 
   @Override
   public String toString() {
-    return this._product.key() + "|" + Math.round(this._price);
+    return this._product.key() + "|" + Money.round(this._price);
   }
 }
@@ -7,8 +7,8 @@ public interface NotificationMethod {
   /**
    * Sends a notification to an observer.
    * 
-   * @param observer The observer to notify.
+   * @param observer Ordinal of the observer to notify.
    * @param notification The notification to send.
    */
-  public abstract void send(Observer observer, Notification notification);
+  public abstract void send(int observer, Notification notification);
 }
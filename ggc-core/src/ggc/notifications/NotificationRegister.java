@@ -1,6 +1,5 @@
 package ggc.notifications;
 
-import java.util.HashMap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.io.Serializable;
@@ -12,14 +11,25 @@ public class NotificationRegister implements NotificationMethod, Serializable {
   /** Serial number for serialization. */
   private static final long serialVersionUID = 202111101133L;
 
-  /** Notifications registered, by observer. */
-  private final HashMap<Observer, ArrayList<Notification>> _notifications;
+  /** Notifications registered, indexed by observer ordinal. */
+  private final ArrayList<ArrayList<Notification>> _notifications;
 
   /**
    * Default constructor.
    */
   public NotificationRegister() {
-    this._notifications = new HashMap<Observer, ArrayList<Notification>>();
+    this._notifications = new ArrayList<ArrayList<Notification>>();
+  }
+
+  /**
+   * @return Number of notifications registered, for every observer.
+   */
+  public synchronized int size() {
+    int size = 0;
+    for (ArrayList<Notification> notifications : this._notifications)
+      if (notifications != null)
+        size += notifications.size();
+    return size;
   }
 
   /**
@@ -28,31 +38,36 @@ public class NotificationRegister implements NotificationMethod, Serializable {
    * @param observer The observer.
    * @return The notifications registered for the observer.
    */
-  public Collection<Notification> popNotifications(Observer observer) {
-    ArrayList<Notification> notifs = this.getNotifications(observer);
-    this._notifications.remove(observer);
-    return notifs;
+  public synchronized Collection<Notification> popNotifications(Observer observer) {
+    int ordinal = observer.ordinal();
+    if (ordinal >= this._notifications.size() || this._notifications.get(ordinal) == null)
+      return new ArrayList<Notification>();
+
+    return this._notifications.set(ordinal, null);
   }
 
   /**
-   * Gets the notifications registered for a specific observer, and cleans them.
+   * Gets the notifications registered for a specific observer, creating the
+   * list if needed.
    * 
-   * @param observer The observer.
+   * @param ordinal Ordinal of the observer.
    * @return The notifications registered for the observer.
    */
-  private ArrayList<Notification> getNotifications(Observer observer) {
-    ArrayList<Notification> notifs = this._notifications.get(observer);
+  private ArrayList<Notification> getNotifications(int ordinal) {
+    while (this._notifications.size() <= ordinal)
+      this._notifications.add(null);
 
+    ArrayList<Notification> notifs = this._notifications.get(ordinal);
     if (notifs == null) {
       notifs = new ArrayList<Notification>();
-      this._notifications.put(observer, notifs);
+      this._notifications.set(ordinal, notifs);
     }
 
     return notifs;
   }
 
   @Override
-  public void send(Observer observer, Notification notification) {
+  public synchronized void send(int observer, Notification notification) {
     this.getNotifications(observer).add(notification);
   }
 }
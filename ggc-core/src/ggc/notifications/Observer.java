@@ -6,4 +6,24 @@ import java.io.Serializable;
 public abstract class Observer implements Serializable {
   /** Serial number for serialization. */
   private static final long serialVersionUID = 202111061517L;
+
+  /** Dense ordinal which identifies this observer. */
+  private int _ordinal;
+
+  /**
+   * @param ordinal Dense ordinal which identifies this observer.
+   */
+  public Observer(int ordinal) {
+    this._ordinal = ordinal;
+  }
+
+  /**
+   * Returns the ordinal of this observer. Ordinals are assigned in registration
+   * order, starting at 0, so they can be used to index arrays.
+   * 
+   * @return Observer ordinal.
+   */
+  public int ordinal() {
+    return this._ordinal;
+  }
 }
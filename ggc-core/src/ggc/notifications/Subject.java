@@ -1,7 +1,11 @@
 package ggc.notifications;
 
 import java.io.Serializable;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.BitSet;
+
+import ggc.Footprint;
+import ggc.Statistics;
 
 /**
  * Observer design pattern pattern Subject implementation.
@@ -10,18 +14,22 @@ public abstract class Subject implements Serializable {
   /** Serial number for serialization. */
   private static final long serialVersionUID = 202111111057L;
 
-  /** Observer set. */
-  private HashSet<Observer> _observers;
+  /** Statistics of notifyObservers(). */
+  private static final Statistics.Operation NOTIFY_OBSERVERS = Statistics.operation("Subject.notifyObservers",
+      Statistics.STEP_SAMPLING);
+
+  /** Ordinals of the attached observers. */
+  private BitSet _observers;
 
-  /** Notification method set. */
-  private HashSet<NotificationMethod> _notificationMethods;
+  /** Notification methods, without repetitions. */
+  private ArrayList<NotificationMethod> _notificationMethods;
 
   /**
    * Default constructor.
    */
   public Subject() {
-    this._observers = new HashSet<Observer>();
-    this._notificationMethods = new HashSet<NotificationMethod>();
+    this._observers = new BitSet();
+    this._notificationMethods = new ArrayList<NotificationMethod>(1);
   }
 
   /**
@@ -31,7 +39,7 @@ public abstract class Subject implements Serializable {
    * @return true if the subject has the observer attached, false otherwise.
    */
   public boolean hasObserverAttached(Observer observer) {
-    return this._observers.contains(observer);
+    return this._observers.get(observer.ordinal());
   }
 
   /**
@@ -40,7 +48,7 @@ public abstract class Subject implements Serializable {
    * @param observer The observer to attach.
    */
   public void attachObserver(Observer observer) {
-    this._observers.add(observer);
+    this._observers.set(observer.ordinal());
   }
 
   /**
@@ -49,7 +57,18 @@ public abstract class Subject implements Serializable {
    * @param observer The observer to detach.
    */
   public void detachObserver(Observer observer) {
-    this._observers.remove(observer);
+    this._observers.clear(observer.ordinal());
+  }
+
+  /**
+   * Adds the observer and notification method sets to a footprint.
+   * 
+   * @param footprint Footprint.
+   * @param subsystem Name of the subsystem of the sets, whose entities are the
+   *          observers.
+   */
+  public void measureObservers(Footprint footprint, String subsystem) {
+    footprint.add(subsystem, this._observers.cardinality(), this._observers, this._notificationMethods);
   }
 
   /**
@@ -58,7 +77,8 @@ public abstract class Subject implements Serializable {
    * @param method The method to register.
    */
   public void registerNotificationMethod(NotificationMethod method) {
-    this._notificationMethods.add(method);
+    if (!this._notificationMethods.contains(method))
+      this._notificationMethods.add(method);
   }
 
   /**
@@ -75,19 +95,27 @@ public abstract class Subject implements Serializable {
    * 
    * @param method Notification method to use.
    * @param notification Notification to send.
+   * @return Number of notifications sent.
    */
-  public void notifyObservers(NotificationMethod method, Notification notification) {
-    for (Observer observer : this._observers)
-      method.send(observer, notification);
+  public int notifyObservers(NotificationMethod method, Notification notification) {
+    int sent = 0;
+    for (int i = this._observers.nextSetBit(0); i >= 0; i = this._observers.nextSetBit(i + 1), sent++)
+      method.send(i, notification);
+    return sent;
   }
 
   /**
    * Notifies all attached observers with all default notification methods.
    * 
    * @param notification Notification to send.
+   * @return Number of notifications sent.
    */
-  public void notifyObservers(Notification notification) {
+  public int notifyObservers(Notification notification) {
+    long start = NOTIFY_OBSERVERS.start();
+    int sent = 0;
     for (NotificationMethod method : this._notificationMethods)
-      notifyObservers(method, notification);
+      sent += notifyObservers(method, notification);
+    NOTIFY_OBSERVERS.succeeded(start);
+    return sent;
   }
 }
@@ -1,42 +1,40 @@
 package ggc.partners;
 
+import ggc.Money;
 import ggc.products.Product;
 
 public class EliteRank extends Partner.Rank {
   /** Serial number for serialization. */
   private static final long serialVersionUID = 202111101049L;
 
-  public EliteRank(Partner partner) {
-    partner.super();
+  public EliteRank() {
   }
 
   @Override
-  public double getSalePaymentPrice(Product product, int delay, double basePrice) {
+  public long getSalePaymentPrice(Product product, int delay, long basePrice) {
     if (delay <= 0) // Period 1 and 2
-      return basePrice * 0.9; // 10% discount
+      return Money.multiply(basePrice, 0.9); // 10% discount
     else if (delay <= product.getPeriodN()) // Period 3
-      return basePrice * 0.95; // 5% discount
+      return Money.multiply(basePrice, 0.95); // 5% discount
     else // Period 4
       return basePrice; // No fee
   }
 
   @Override
-  public double registerSalePayment(Product product, int delay, double basePrice) {
-    double realPrice = this.getSalePaymentPrice(product, delay, basePrice);
-
+  public Partner.State registerSalePayment(Partner.State state, int delay, long price) {
     if (delay <= 0)
-      this.setPoints(this.points() + realPrice * 10.0);
+      return state.withPoints(state.points() + price * 10);
     else if (delay > 15) {
-      this.setPoints(this.points() * 0.25); // Lose 75% of the points
-      this.setRank(new SelectionRank(this.partner()));
+      // Lose 75% of the points
+      return state.withPoints(Money.multiply(state.points(), 0.25)).withRank(new SelectionRank());
     }
-
-    return realPrice;
+    return state;
   }
 
   @Override
-  public void onPointsChange() {
+  public Partner.State onPointsChange(Partner.State state) {
     // Do nothing
+    return state;
   }
 
   @Override
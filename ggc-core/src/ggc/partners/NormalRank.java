@@ -1,47 +1,44 @@
 package ggc.partners;
 
+import ggc.Money;
 import ggc.products.Product;
 
 public class NormalRank extends Partner.Rank {
   /** Serial number for serialization. */
   private static final long serialVersionUID = 202110251450L;
 
-  public NormalRank(Partner partner) {
-    partner.super();
+  public NormalRank() {
   }
 
   @Override
-  public double getSalePaymentPrice(Product product, int delay, double basePrice) {
+  public long getSalePaymentPrice(Product product, int delay, long basePrice) {
     if (delay <= -product.getPeriodN()) // Period 1
-      return basePrice * 0.9; // 10% discount
+      return Money.multiply(basePrice, 0.9); // 10% discount
     else if (delay <= 0) // Period 2
       return basePrice; // No discount
     else if (delay <= product.getPeriodN()) // Period 3
-      return basePrice * (1.0 + 0.05 * delay); // 5% daily fee
+      return Money.multiply(basePrice, 1.0 + 0.05 * delay); // 5% daily fee
     else // Period 4
-      return basePrice * (1.0 + 0.1 * delay); // 10% daily fee
+      return Money.multiply(basePrice, 1.0 + 0.1 * delay); // 10% daily fee
   }
 
   @Override
-  public double registerSalePayment(Product product, int delay, double basePrice) {
-    double realPrice = this.getSalePaymentPrice(product, delay, basePrice);
-
+  public Partner.State registerSalePayment(Partner.State state, int delay, long price) {
     if (delay <= 0)
-      this.setPoints(this.points() + realPrice * 10.0);
+      state = state.withPoints(state.points() + price * 10);
     else
-      this.setPoints(0.0);
-    this.onPointsChange();
-
-    return realPrice;
+      state = state.withPoints(Money.ZERO);
+    return this.onPointsChange(state);
   }
 
   @Override
-  public void onPointsChange() {
-    if (this.points() > 25000.0) { // Upgrade to elite
-      this.setRank(new EliteRank(this.partner()));
-    } else if (this.points() > 2000.0) { // Upgrade to selection
-      this.setRank(new SelectionRank(this.partner()));
+  public Partner.State onPointsChange(Partner.State state) {
+    if (state.points() > 25000 * Money.UNIT) { // Upgrade to elite
+      return state.withRank(new EliteRank());
+    } else if (state.points() > 2000 * Money.UNIT) { // Upgrade to selection
+      return state.withRank(new SelectionRank());
     }
+    return state;
   }
 
   @Override
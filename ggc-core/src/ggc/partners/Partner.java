@@ -1,12 +1,24 @@
 package ggc.partners;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.function.UnaryOperator;
 
+import ggc.AtomicVersions;
+import ggc.Money;
+import ggc.RenderCache;
+import ggc.Versions;
 import ggc.products.Product;
 import ggc.notifications.Observer;
 
 /**
- * Class Partner implements a warehouse partner.
+ * Class Partner implements a warehouse partner. The partner's totals, points
+ * and rank form an immutable state, which is replaced by compare-and-set, since
+ * the same partner may be involved in concurrent operations on different
+ * products. Changes to different partners never wait for each other, and a rank
+ * transition is computed together with the points it follows from.
  */
 public class Partner extends Observer {
   /** Serial number for serialization. */
@@ -21,100 +33,178 @@ public class Partner extends Observer {
   /** Partner address. */
   private String _address;
 
-  /** Partner rank. */
-  private Rank _rank;
+  /** Versions of the state of this partner. Saved by writeObject(). */
+  private transient AtomicVersions<State> _versions;
 
-  /** Total number of points. */
-  private double _points;
+  /**
+   * State of a partner at some point in time.
+   */
+  public static class State implements Serializable {
+    /** Serial number for serialization. */
+    private static final long serialVersionUID = 202610191602L;
 
-  /** Total value of acquisitions. */
-  private double _acquisitionsValue;
+    /** The partner. */
+    private final Partner _partner;
 
-  /** Total value of sales. */
-  private double _salesValue;
+    /** Rank. */
+    private final Rank _rank;
 
-  /** Total value of paid sales. */
-  private double _paidSalesValues;
+    /** Points, in micro-units. */
+    private final long _points;
 
-  /** Partner rank. */
-  public abstract class Rank implements Serializable {
-    /** Serial number for serialization. */
-    private static final long serialVersionUID = 202111101024L;
+    /** Total value of acquisitions, in micro-units. */
+    private final long _acquisitionsValue;
+
+    /** Total value of sales, in micro-units. */
+    private final long _salesValue;
+
+    /** Total value of paid sales, in micro-units. */
+    private final long _paidSalesValues;
+
+    /** Line describing the state, once made, if kept. */
+    private transient String _line;
+
+    private State(Partner partner, Rank rank, long points, long acquisitionsValue, long salesValue,
+        long paidSalesValues) {
+      this._partner = partner;
+      this._rank = rank;
+      this._points = points;
+      this._acquisitionsValue = acquisitionsValue;
+      this._salesValue = salesValue;
+      this._paidSalesValues = paidSalesValues;
+    }
 
     /**
-     * Called when the partner executes a payment.
-     * 
-     * @param product The product that was paid.
-     * @param delay Delay of the payment (can be negative).
-     * @param basePrice Base price of the payment.
-     * @return The price paid with fees/discounts.
+     * @return The partner.
      */
-    public abstract double getSalePaymentPrice(Product product, int delay, double basePrice);
+    public Partner partner() {
+      return this._partner;
+    }
 
     /**
-     * Called when the partner executes a sale payment.
-     * 
-     * @param product The product that was sold.
-     * @param delay Delay of the sale payment (can be negative).
-     * @param basePrice Base price of the sale payment.
-     * @return The price paid with fees/discounts.
+     * @return Rank.
      */
-    public abstract double registerSalePayment(Product product, int delay, double basePrice);
+    public Rank rank() {
+      return this._rank;
+    }
 
     /**
-     * Called when the partner's points change.
+     * @return Points, in micro-units.
      */
-    public abstract void onPointsChange();
+    public long points() {
+      return this._points;
+    }
 
     /**
-     * Sets the rank of the partner.
-     * 
      * @param rank New rank.
+     * @return This state with another rank.
      */
-    protected void setRank(Rank rank) {
-      Partner.this._rank = rank;
+    State withRank(Rank rank) {
+      return new State(this._partner, rank, this._points, this._acquisitionsValue, this._salesValue,
+          this._paidSalesValues);
     }
 
     /**
-     * @return The points of the partner.
+     * @param points New points, in micro-units.
+     * @return This state with other points.
      */
-    public double points() {
-      return Partner.this._points;
+    State withPoints(long points) {
+      return new State(this._partner, this._rank, points, this._acquisitionsValue, this._salesValue,
+          this._paidSalesValues);
+    }
+
+    @Override
+    public String toString() {
+      String line = this._line;
+      if (line == null) {
+        line = this._partner._key + "|" + this._partner._name + "|" + this._partner._address + "|" + this._rank + "|"
+            + Money.round(this._points) + "|" + Money.round(this._acquisitionsValue) + "|"
+            + Money.round(this._salesValue) + "|" + Money.round(this._paidSalesValues);
+        if (RenderCache.enabled())
+          this._line = line;
+      }
+      return line;
     }
+  }
+
+  /**
+   * Partner rank. Ranks hold no state of their own: they compute the state a
+   * partner moves to.
+   */
+  public abstract static class Rank implements Serializable {
+    /** Serial number for serialization. */
+    private static final long serialVersionUID = 202111101024L;
+
+    /**
+     * Called when the partner executes a payment.
+     * 
+     * @param product The product that was paid.
+     * @param delay Delay of the payment (can be negative).
+     * @param basePrice Base price of the payment, in micro-units.
+     * @return The price paid with fees/discounts, in micro-units.
+     */
+    public abstract long getSalePaymentPrice(Product product, int delay, long basePrice);
 
     /**
-     * Sets the points of the partner.
+     * Called when the partner executes a sale payment.
      * 
-     * @param points New points.
+     * @param state State of the partner, which holds this rank.
+     * @param delay Delay of the sale payment (can be negative).
+     * @param price The price paid with fees/discounts, in micro-units.
+     * @return The state of the partner after the payment.
      */
-    protected void setPoints(double points) {
-      Partner.this._points = points;
-    }
+    public abstract State registerSalePayment(State state, int delay, long price);
 
     /**
-     * Gets the partner which holds this rank.
+     * Called when the partner's points change.
      * 
-     * @return Partner which holds this rank.
+     * @param state State of the partner, which holds this rank.
+     * @return The state of the partner, with its new rank.
      */
-    protected Partner partner() {
-      return Partner.this;
-    }
+    public abstract State onPointsChange(State state);
   }
 
   /**
+   * @param ordinal Partner ordinal.
    * @param key Partner key.
    * @param name Partner name.
    * @param address Partner address.
    */
-  public Partner(String key, String name, String address) {
+  public Partner(int ordinal, String key, String name, String address) {
+    super(ordinal);
     this._key = key;
     this._name = name;
     this._address = address;
-    this._rank = new NormalRank(this);
-    this._points = 0.0;
-    this._acquisitionsValue = 0.0;
-    this._salesValue = 0.0;
-    this._paidSalesValues = 0.0;
+    this._versions = new AtomicVersions<State>(
+        new State(this, new NormalRank(), Money.ZERO, Money.ZERO, Money.ZERO, Money.ZERO));
+  }
+
+  private void writeObject(ObjectOutputStream oos) throws IOException {
+    oos.defaultWriteObject();
+    oos.writeObject(this._versions.get());
+  }
+
+  private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+    ois.defaultReadObject();
+    this._versions = new AtomicVersions<State>((State) ois.readObject());
+  }
+
+  /**
+   * Returns the versions of the state of this partner.
+   * 
+   * @return Versions.
+   */
+  public AtomicVersions<State> versions() {
+    return this._versions;
+  }
+
+  /**
+   * Returns the current state of this partner.
+   * 
+   * @return State.
+   */
+  public State state() {
+    return this._versions.get();
   }
 
   /**
@@ -149,61 +239,84 @@ public class Partner extends Observer {
    * 
    * @param product The product that was sold.
    * @param delay Delay of the sale payment (can be negative).
-   * @param basePrice Base price of the sale.
-   * @return The price paid with fees/discounts.
+   * @param basePrice Base price of the sale, in micro-units.
+   * @return The price paid with fees/discounts, in micro-units.
    */
-  public double getSalePaymentPrice(Product product, int delay, double basePrice) {
-    return this._rank.getSalePaymentPrice(product, delay, basePrice);
+  public long getSalePaymentPrice(Product product, int delay, long basePrice) {
+    return this.state()._rank.getSalePaymentPrice(product, delay, basePrice);
   }
 
   /**
-   * Registers a sale payment.
+   * Changes the state of this partner.
    * 
+   * @param clock Clock.
+   * @param version Epoch of the write.
+   * @param change Computes the next state from the current one.
+   * @return The state replaced.
+   */
+  private State update(Versions.Clock clock, long version, UnaryOperator<State> change) {
+    return this._versions.update(clock, version, change);
+  }
+
+  /**
+   * Registers a sale payment. The price depends on the rank the partner holds
+   * when the payment is applied.
+   * 
+   * @param clock Clock.
+   * @param version Epoch of the write.
    * @param product The product that was sold.
    * @param delay Delay of the sale payment (can be negative).
-   * @param basePrice Base price of the sale.
-   * @return The price paid with fees/discounts.
+   * @param basePrice Base price of the sale, in micro-units.
+   * @return The price paid with fees/discounts, in micro-units.
    */
-  public double registerSalePayment(Product product, int delay, double basePrice) {
-    double price = this._rank.registerSalePayment(product, delay, basePrice);
-    this._paidSalesValues += price;
-    return price;
+  public long registerSalePayment(Versions.Clock clock, long version, Product product, int delay, long basePrice) {
+    State previous = this.update(clock, version, s -> {
+      long price = s._rank.getSalePaymentPrice(product, delay, basePrice);
+      State next = s._rank.registerSalePayment(s, delay, price);
+      return new State(this, next._rank, next._points, next._acquisitionsValue, next._salesValue,
+          next._paidSalesValues + price);
+    });
+    return previous._rank.getSalePaymentPrice(product, delay, basePrice);
   }
 
   /**
    * Registers a sale made to this partner.
    * 
-   * @param value Sale value.
+   * @param clock Clock.
+   * @param version Epoch of the write.
+   * @param value Sale value, in micro-units.
    */
-  public void registerSale(double value) {
-    this._salesValue += value;
+  public void registerSale(Versions.Clock clock, long version, long value) {
+    this.update(clock, version, s -> new State(this, s._rank, s._points, s._acquisitionsValue, s._salesValue + value,
+        s._paidSalesValues));
   }
 
   /**
    * Registers an acquisition made to this partner.
    * 
-   * @param value Acquisition value.
+   * @param clock Clock.
+   * @param version Epoch of the write.
+   * @param value Acquisition value, in micro-units.
    */
-  public void registerAcquisition(double value) {
-    this._acquisitionsValue += value;
+  public void registerAcquisition(Versions.Clock clock, long version, long value) {
+    this.update(clock, version, s -> new State(this, s._rank, s._points, s._acquisitionsValue + value,
+        s._salesValue, s._paidSalesValues));
   }
 
   /**
    * Registers a breakdown requested by this partner.
    * 
-   * @param value Breakdown value.
+   * @param clock Clock.
+   * @param version Epoch of the write.
+   * @param value Breakdown value, in micro-units.
    */
-  public void registerBreakdown(double value) {
-    if (value > 0.0) {
-      this._points += value * 10.0;
-      this._rank.onPointsChange();
-    }
+  public void registerBreakdown(Versions.Clock clock, long version, long value) {
+    if (value > Money.ZERO)
+      this.update(clock, version, s -> s._rank.onPointsChange(s.withPoints(s._points + value * 10)));
   }
 
   @Override
   public String toString() {
-    return this._key + "|" + this._name + "|" + this._address + "|" + this._rank.toString() + "|"
-        + Math.round(this._points) + "|" + Math.round(this._acquisitionsValue) + "|" + Math.round(this._salesValue)
-        + "|" + Math.round(this._paidSalesValues);
+    return this.state().toString();
   }
 }
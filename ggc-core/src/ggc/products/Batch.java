@@ -3,10 +3,12 @@ package ggc.products;
 import java.io.Serializable;
 import java.util.Comparator;
 
+import ggc.Money;
 import ggc.partners.Partner;
 
 /**
- * Represents a batch of a certain product.
+ * Represents a batch of a certain product. Batches are stored by their product
+ * in a compact form, so instances of this class are snapshots of a batch.
  */
 public class Batch implements Serializable {
   /** Serial number for serialization. */
@@ -21,8 +23,8 @@ public class Batch implements Serializable {
   /** Number of units of the product in this batch. */
   private int _amount;
 
-  /** The price of each unit in this batch. */
-  private double _price;
+  /** The price of each unit in this batch, in micro-units. */
+  private long _price;
 
   /** Compares two batches by their price. */
   public static final Comparator<Batch> PRICE_COMPARATOR = new PriceComparator();
@@ -35,7 +37,7 @@ public class Batch implements Serializable {
     private static final long serialVersionUID = 202110251449L;
 
     public int compare(Batch lhs, Batch rhs) {
-      return Double.compare(lhs._price, rhs._price);
+      return Long.compare(lhs._price, rhs._price);
     }
   }
 
@@ -44,12 +46,13 @@ public class Batch implements Serializable {
     private static final long serialVersionUID = 202110251450L;
 
     public int compare(Batch lhs, Batch rhs) {
-      if (!lhs._product.key().equals(rhs._product.key()))
+      // Products and partners are unique per key, so identity decides equality
+      if (lhs._product != rhs._product)
         return lhs._product.key().compareTo(rhs._product.key());
-      else if (!lhs._partner.key().equals(rhs._partner.key()))
+      else if (lhs._partner != rhs._partner)
         return lhs._partner.key().compareTo(rhs._partner.key());
       else if (lhs._price != rhs._price)
-        return Double.compare(lhs._price, rhs._price);
+        return Long.compare(lhs._price, rhs._price);
       else
         return Integer.compare(lhs._amount, rhs._amount);
     }
@@ -59,9 +62,9 @@ public class Batch implements Serializable {
    * @param product Product stored in the batch.
    * @param partner Partner associated to the batch.
    * @param amount Number of units of the product.
-   * @param price Price of each unit.
+   * @param price Price of each unit, in micro-units.
    */
-  public Batch(Product product, Partner partner, int amount, double price) {
+  public Batch(Product product, Partner partner, int amount, long price) {
     this._product = product;
     this._partner = partner;
     this._amount = amount;
@@ -98,23 +101,14 @@ public class Batch implements Serializable {
   /**
    * Returns the price of each unit in this batch.
    * 
-   * @return Price of each unit in this batch.
+   * @return Price of each unit in this batch, in micro-units.
    */
-  public double price() {
+  public long price() {
     return this._price;
   }
 
-  /**
-   * Sets the number of units on this batch.
-   * 
-   * @param amount Number of units.
-   */
-  public void setAmount(int amount)  {
-    this._amount = amount;
-  }
-
   @Override
   public String toString() {
-    return this._product.key() + "|" + this._partner.key() + "|" + Math.round(this._price) + "|" + this._amount;
+    return this._product.key() + "|" + this._partner.key() + "|" + Money.round(this._price) + "|" + this._amount;
   };
 }
@@ -0,0 +1,365 @@
+package ggc.products;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import ggc.Money;
+import ggc.partners.Partner;
+
+/**
+ * Stores the batches of a product in parallel arrays, arranged as a binary
+ * min-heap on the price. Batch objects are only created as views, when they
+ * are requested through the product's public interface.
+ *
+ * The heap is maintained with the same rules as java.util.PriorityQueue, so
+ * batches with the same price are consumed in the same order.
+ *
+ * Optionally, batches can be merged: a new batch from a partner which already
+ * has a batch at the same price is added to the existing one, which is then
+ * listed as a single batch holding the sum of the amounts.
+ */
+class BatchStore implements Serializable {
+  /** Serial number for serialization. */
+  private static final long serialVersionUID = 202610191300L;
+
+  /** Initial capacity of the arrays. */
+  private static final int INITIAL_CAPACITY = 4;
+
+  /** Partner associated to each batch. */
+  private Partner[] _partners;
+
+  /** Price of each unit of each batch, in micro-units. */
+  private long[] _prices;
+
+  /** Number of units in each batch. */
+  private int[] _amounts;
+
+  /** Number of batches stored. */
+  private int _size;
+
+  /** Slot of each batch, by partner and price, or null if merging is off. */
+  private HashMap<LotKey, Integer> _slots;
+
+  /** Identifies the batches which are merged together. */
+  private static class LotKey implements Serializable {
+    /** Serial number for serialization. */
+    private static final long serialVersionUID = 202610191400L;
+
+    /** Partner ordinal. */
+    private final int _partner;
+
+    /** Price of each unit, in micro-units. */
+    private final long _price;
+
+    LotKey(Partner partner, long price) {
+      this._partner = partner.ordinal();
+      this._price = price;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof LotKey && ((LotKey) other)._partner == this._partner
+          && ((LotKey) other)._price == this._price;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * this._partner + Long.hashCode(this._price);
+    }
+  }
+
+  /** Default constructor. */
+  public BatchStore() {
+    this._partners = new Partner[INITIAL_CAPACITY];
+    this._prices = new long[INITIAL_CAPACITY];
+    this._amounts = new int[INITIAL_CAPACITY];
+    this._size = 0;
+    this._slots = null;
+  }
+
+  /**
+   * Copies the batches stored. The copy doesn't merge batches.
+   * 
+   * @return New store with the same batches.
+   */
+  public BatchStore copy() {
+    BatchStore copy = new BatchStore();
+    copy._partners = Arrays.copyOf(this._partners, Math.max(this._size, 1));
+    copy._prices = Arrays.copyOf(this._prices, Math.max(this._size, 1));
+    copy._amounts = Arrays.copyOf(this._amounts, Math.max(this._size, 1));
+    copy._size = this._size;
+    return copy;
+  }
+
+  /**
+   * Enables or disables batch merging. When enabled, batches which are already
+   * stored are merged too.
+   *
+   * @param merge Whether batches should be merged.
+   */
+  public void setMerging(boolean merge) {
+    if (!merge) {
+      this._slots = null;
+    } else if (this._slots == null) {
+      Partner[] partners = this._partners;
+      long[] prices = this._prices;
+      int[] amounts = this._amounts;
+      int size = this._size;
+
+      // Add every batch again, so that duplicates are merged
+      this._partners = new Partner[partners.length];
+      this._prices = new long[prices.length];
+      this._amounts = new int[amounts.length];
+      this._size = 0;
+      this._slots = new HashMap<LotKey, Integer>();
+      for (int i = 0; i < size; i++)
+        this.add(partners[i], amounts[i], prices[i]);
+    }
+  }
+
+  /**
+   * @return Whether batches are being merged.
+   */
+  public boolean isMerging() {
+    return this._slots != null;
+  }
+
+  /**
+   * @return Number of batches stored.
+   */
+  public int size() {
+    return this._size;
+  }
+
+  /**
+   * @return Whether there are no batches stored.
+   */
+  public boolean isEmpty() {
+    return this._size == 0;
+  }
+
+  /**
+   * Returns the unit price of the cheapest batch. Must not be called on an empty
+   * store.
+   *
+   * @return Price of the cheapest batch, in micro-units.
+   */
+  public long cheapestPrice() {
+    return this._prices[0];
+  }
+
+  /**
+   * Creates a view of the cheapest batch.
+   *
+   * @param product Product the batches belong to.
+   * @return The cheapest batch, or null if there are no batches.
+   */
+  public Batch cheapest(Product product) {
+    return this._size == 0 ? null : this.view(product, 0);
+  }
+
+  /**
+   * Creates views of all batches, in no particular order.
+   *
+   * @param product Product the batches belong to.
+   * @return List of batches.
+   */
+  public List<Batch> views(Product product) {
+    List<Batch> batches = new ArrayList<Batch>(this._size);
+    for (int i = 0; i < this._size; i++)
+      batches.add(this.view(product, i));
+    return batches;
+  }
+
+  /**
+   * Adds a new batch.
+   *
+   * @param partner Partner associated to the batch.
+   * @param amount Number of units in the batch.
+   * @param price Price of each unit, in micro-units.
+   */
+  public void add(Partner partner, int amount, long price) {
+    if (this._slots != null) {
+      Integer slot = this._slots.get(new LotKey(partner, price));
+      if (slot != null) {
+        // The price is the same, so the heap doesn't change
+        this._amounts[slot] += amount;
+        return;
+      }
+    }
+
+    if (this._size == this._prices.length)
+      this.grow();
+
+    this.siftUp(this._size++, partner, price, amount);
+  }
+
+  /**
+   * Removes units from the cheapest batches. The caller must make sure there are
+   * enough units stored.
+   *
+   * @param amount Number of units to remove.
+   * @return Total price of the units removed, in micro-units.
+   */
+  public long take(int amount) {
+    return this.take(amount, null, null);
+  }
+
+  /**
+   * Removes units from the cheapest batches, collecting what was removed from
+   * each of them. The caller must make sure there are enough units stored.
+   *
+   * @param amount Number of units to remove.
+   * @param product Product of the batches.
+   * @param taken Collects the units removed from each batch, or null.
+   * @return Total price of the units removed, in micro-units.
+   */
+  public long take(int amount, Product product, List<Batch> taken) {
+    long price = Money.ZERO;
+
+    while (amount > 0) {
+      int units = Math.min(this._amounts[0], amount);
+      price += this._prices[0] * units;
+      if (taken != null)
+        taken.add(new Batch(product, this._partners[0], units, this._prices[0]));
+      amount -= units;
+
+      this._amounts[0] -= units;
+      if (this._amounts[0] == 0)
+        this.poll();
+    }
+
+    return price;
+  }
+
+  /**
+   * Sorts the batches by their partner, price and amount, as
+   * Batch.LIST_COMPARATOR does; batches which compare equal stay in the order
+   * of views().
+   *
+   * @return Slots of the batches, in order.
+   */
+  int[] sorted() {
+    Integer[] slots = new Integer[this._size];
+    for (int i = 0; i < this._size; i++)
+      slots[i] = i;
+    Arrays.sort(slots, (i, j) -> this.compare(i, this._partners[j].key(), this._prices[j], this._amounts[j]));
+    int[] order = new int[this._size];
+    for (int i = 0; i < this._size; i++)
+      order[i] = slots[i];
+    return order;
+  }
+
+  /**
+   * Finds where batches with a partner, price and amount are, or would be, in
+   * the order of sorted().
+   *
+   * @param order Slots of the batches, as given by sorted().
+   * @param partnerKey Partner key.
+   * @param price Price of each unit, in micro-units.
+   * @param amount Number of units.
+   * @param after Whether to find the first batch after them, instead of the
+   *          first of them.
+   * @return Position in the order.
+   */
+  int search(int[] order, String partnerKey, long price, int amount, boolean after) {
+    int low = 0, high = order.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      int comparison = this.compare(order[middle], partnerKey, price, amount);
+      if (comparison < 0 || (after && comparison == 0))
+        low = middle + 1;
+      else
+        high = middle;
+    }
+    return low;
+  }
+
+  /**
+   * Compares a batch to a partner, price and amount, as Batch.LIST_COMPARATOR
+   * compares batches of the same product.
+   */
+  private int compare(int slot, String partnerKey, long price, int amount) {
+    int comparison = this._partners[slot].key().compareTo(partnerKey);
+    if (comparison != 0)
+      return comparison;
+    if (this._prices[slot] != price)
+      return Long.compare(this._prices[slot], price);
+    return Integer.compare(this._amounts[slot], amount);
+  }
+
+  /**
+   * Creates a view of a batch.
+   *
+   * @param product Product the batches belong to.
+   * @param slot Slot of the batch.
+   * @return Batch.
+   */
+  Batch view(Product product, int slot) {
+    return new Batch(product, this._partners[slot], this._amounts[slot], this._prices[slot]);
+  }
+
+  private void grow() {
+    int capacity = this._prices.length * 2;
+    this._partners = Arrays.copyOf(this._partners, capacity);
+    this._prices = Arrays.copyOf(this._prices, capacity);
+    this._amounts = Arrays.copyOf(this._amounts, capacity);
+  }
+
+  /** Removes the cheapest batch. */
+  private void poll() {
+    if (this._slots != null)
+      this._slots.remove(new LotKey(this._partners[0], this._prices[0]));
+
+    int last = --this._size;
+    Partner partner = this._partners[last];
+    long price = this._prices[last];
+    int amount = this._amounts[last];
+    this._partners[last] = null;
+
+    if (last > 0)
+      this.siftDown(0, partner, price, amount);
+  }
+
+  private void siftUp(int k, Partner partner, long price, int amount) {
+    while (k > 0) {
+      int parent = (k - 1) >>> 1;
+      if (price >= this._prices[parent])
+        break;
+      this.move(parent, k);
+      k = parent;
+    }
+    this.set(k, partner, price, amount);
+  }
+
+  private void siftDown(int k, Partner partner, long price, int amount) {
+    int half = this._size >>> 1;
+    while (k < half) {
+      int child = (k << 1) + 1;
+      int right = child + 1;
+      if (right < this._size && this._prices[child] > this._prices[right])
+        child = right;
+      if (price <= this._prices[child])
+        break;
+      this.move(child, k);
+      k = child;
+    }
+    this.set(k, partner, price, amount);
+  }
+
+  private void move(int from, int to) {
+    this.set(to, this._partners[from], this._prices[from], this._amounts[from]);
+  }
+
+  private void set(int i, Partner partner, long price, int amount) {
+    this._partners[i] = partner;
+    this._prices[i] = price;
+    this._amounts[i] = amount;
+
+    if (this._slots != null)
+      this._slots.put(new LotKey(partner, price), i);
+  }
+}
@@ -1,5 +1,6 @@
 package ggc.products;
 
+import ggc.Money;
 import ggc.exceptions.UnavailableProductException;
 import ggc.partners.Partner;
 
@@ -14,11 +15,12 @@ public class DerivateProduct extends Product {
   private Recipe _recipe;
 
   /**
+   * @param ordinal Product ordinal.
    * @param id Product ID.
    * @param Recipe Product recipe.
    */
-  public DerivateProduct(String id, Recipe recipe) {
-    super(id);
+  public DerivateProduct(int ordinal, String id, Recipe recipe) {
+    super(ordinal, id);
     this._recipe = recipe;
   }
 
@@ -38,11 +40,12 @@ public class DerivateProduct extends Product {
    * @param partner Partner which requested the breakdown.
    * @param amount Amount of product to breakdown.
    * @return The value produced (or destroyed) by the breakdown: the the value of
-   *         the produced components - the value of the original product.
+   *         the produced components - the value of the original product, in
+   *         micro-units.
    */
-  public double breakdown(Partner partner, int amount) throws UnavailableProductException {
-    double oldValue = this.take(amount);
-    double newValue = 0.0;
+  public long breakdown(Partner partner, int amount) throws UnavailableProductException {
+    long oldValue = this.take(amount);
+    long newValue = Money.ZERO;
 
     Recipe.Component[] components = this._recipe.components();
     for (int i = 0; i < components.length; i++) {
@@ -50,7 +53,7 @@ public class DerivateProduct extends Product {
       Batch cheapestBatch = product.cheapestBatch();
 
       // Get value of the new batch of the component
-      double value;
+      long value;
       if (cheapestBatch == null)
         value = product.maxPrice();
       else
@@ -63,18 +66,30 @@ public class DerivateProduct extends Product {
     return newValue - oldValue;
   }
 
+  /**
+   * Values units of this product made out of its components, updating the
+   * maximum price of the product.
+   * 
+   * @param amount Number of units made.
+   * @param componentsValue Value of the components used, in micro-units.
+   * @return Value of the units made, in micro-units.
+   */
+  public long fabricate(int amount, long componentsValue) {
+    long value = Money.multiply(componentsValue, 1.0 + this._recipe.aggravation());
+    this.addPrice(Money.divide(value, amount));
+    return value;
+  }
+
   @Override
-  public double sell(int amount) throws UnavailableProductException {
-    if (this.stock() < amount) {
-      double value = 0.0;
-      int amountLeft = amount - this.stock();
+  public long sell(int amount) throws UnavailableProductException {
+    if (this.available() < amount) {
+      long value = Money.ZERO;
+      int amountLeft = amount - this.available();
 
       for (Recipe.Component component : this._recipe.components())
         value += component.product().sell(amountLeft * component.amount());
 
-      value *= 1.0 + this._recipe.aggravation();
-      this.addPrice(value / amountLeft);
-      return value + this.take(this.stock());
+      return this.fabricate(amountLeft, value) + this.take(this.available());
     } else
       return this.take(amount);
   }
@@ -90,7 +105,7 @@ public class DerivateProduct extends Product {
   }
 
   @Override
-  public String toString() {
-    return super.toString() + "|" + this._recipe.toString();
+  protected String toString(long maxPrice, int stock) {
+    return super.toString(maxPrice, stock) + "|" + this._recipe.toString();
   }
 }
\ No newline at end of file
@@ -1,11 +1,18 @@
 package ggc.products;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.NoSuchElementException;
 
+import ggc.Footprint;
+import ggc.Money;
+import ggc.RenderCache;
+import ggc.Statistics;
+import ggc.Versions;
 import ggc.exceptions.UnavailableProductException;
 import ggc.notifications.BargainNotification;
 import ggc.notifications.NewNotification;
@@ -20,26 +27,240 @@ public abstract class Product extends Subject {
   /** Serial number for serialization. */
   private static final long serialVersionUID = 202110151906L;
 
+  /** Statistics of checkSell(). */
+  private static final Statistics.Operation CHECK_SELL = Statistics.operation("Product.checkSell",
+      Statistics.STEP_SAMPLING);
+
+  /** Statistics of take(). */
+  private static final Statistics.Operation TAKE = Statistics.operation("Product.take", Statistics.STEP_SAMPLING);
+
+  /** Product ordinal. */
+  private int _ordinal;
+
   /** Product key. */
   private String _key;
 
-  /** Maximum product price registered until now. */
-  private double _maxPrice;
+  /** Maximum product price registered until now, in micro-units. */
+  private long _maxPrice;
 
   /** Current product stock. */
   private int _stock;
 
+  /** Units of the stock held for operations which will take them later. */
+  private transient int _held;
+
   /** The current batches of this product. */
-  private PriorityQueue<Batch> _batches;
+  private BatchStore _batches;
+
+  /** Versions of the state of this product, for readers. */
+  private transient Versions<State> _versions;
+
+  /** Line describing the current state, once made, if kept. */
+  private transient String _line;
+
+  /** Slots of the current batches in the order of batches(), once needed. */
+  private transient int[] _order;
 
   /**
+   * State of a product at some point in time: a copy, which can be kept, or a
+   * view of the current state, which is only valid while the product's lock is
+   * held. Lines and orders made for a view are kept by the product until it
+   * changes, and copies start with those the product kept.
+   */
+  public static class State {
+    /** The product. */
+    private final Product _product;
+
+    /** Maximum price, in micro-units. */
+    private final long _maxPrice;
+
+    /** Stock. */
+    private final int _stock;
+
+    /** Batches, or null if only the product's description was captured. */
+    private final BatchStore _batches;
+
+    /** Whether this is a view of the current state. */
+    private final boolean _view;
+
+    /** Line describing the state, once made, if kept. */
+    private String _line;
+
+    /** Slots of the batches in the order of batches(), once needed. */
+    private volatile int[] _order;
+
+    State(Product product, BatchStore batches, boolean view) {
+      this._product = product;
+      this._maxPrice = product._maxPrice;
+      this._stock = product._stock;
+      this._batches = batches;
+      this._view = view;
+      this._line = product._line;
+      this._order = product._order;
+    }
+
+    /**
+     * @return The product.
+     */
+    public Product product() {
+      return this._product;
+    }
+
+    /**
+     * Describes the product in this state, without its batches.
+     * 
+     * @return This state, if it is a copy, or else a copy without batches.
+     */
+    public State summary() {
+      if (!this._view)
+        return this;
+      this.toString();
+      return new State(this._product, null, false);
+    }
+
+    /**
+     * Returns the batches of the product, sorted by their partner, price and
+     * amount.
+     * 
+     * @return Collection of batches.
+     * @throws IllegalStateException if the state was captured without them.
+     */
+    public Collection<Batch> batches() {
+      List<Batch> batches = this.store().views(this._product);
+      Collections.sort(batches, Batch.LIST_COMPARATOR);
+      return batches;
+    }
+
+    /**
+     * Returns the batches of the product after those already listed, in the
+     * order of batches(). The batches are sorted once for the state, and
+     * found by searching that order, so listing a page takes no longer the
+     * further it is.
+     * 
+     * @param partnerKey Key of the partner of the last batch listed, or null
+     *          to start from the first batch.
+     * @param price Price of the last batch listed, in micro-units.
+     * @param amount Number of units of the last batch listed.
+     * @param like Number of batches listed with the partner, price and amount
+     *          of the last one, which can't be told apart.
+     * @return Iterator of the batches, made as they are reached.
+     * @throws IllegalStateException if the state was captured without them.
+     */
+    public Iterator<Batch> batchesAfter(String partnerKey, long price, int amount, int like) {
+      BatchStore store = this.store();
+      int[] order = this._order;
+      if (order == null) {
+        this._order = order = store.sorted();
+        if (this._view)
+          this._product._order = order;
+      }
+
+      int first = 0;
+      if (partnerKey != null) {
+        first = store.search(order, partnerKey, price, amount, false);
+        first += Math.min(like, store.search(order, partnerKey, price, amount, true) - first);
+      }
+      int[] slots = order;
+      int start = first;
+      return new Iterator<Batch>() {
+        private int _next = start;
+
+        @Override
+        public boolean hasNext() {
+          return this._next < slots.length;
+        }
+
+        @Override
+        public Batch next() {
+          if (this._next == slots.length)
+            throw new NoSuchElementException();
+          return store.view(State.this._product, slots[this._next++]);
+        }
+      };
+    }
+
+    private BatchStore store() {
+      if (this._batches == null)
+        throw new IllegalStateException("batches of " + this._product.key() + " weren't captured");
+      return this._batches;
+    }
+
+    @Override
+    public String toString() {
+      String line = this._line;
+      if (line == null) {
+        line = this._product.toString(this._maxPrice, this._stock);
+        if (RenderCache.enabled()) {
+          this._line = line;
+          if (this._view)
+            this._product._line = line;
+        }
+      }
+      return line;
+    }
+  }
+
+  /**
+   * @param ordinal Product ordinal.
    * @param key Product key.
    */
-  public Product(String key) {
+  public Product(int ordinal, String key) {
+    this._ordinal = ordinal;
     this._key = key;
-    this._maxPrice = 0.0;
+    this._maxPrice = Money.ZERO;
     this._stock = 0;
-    this._batches = new PriorityQueue<Batch>(Batch.PRICE_COMPARATOR);
+    this._batches = new BatchStore();
+    this._versions = new Versions<State>();
+  }
+
+  private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+    ois.defaultReadObject();
+    this._versions = new Versions<State>();
+  }
+
+  /**
+   * Returns the product ordinal. Ordinals are assigned in registration order,
+   * starting at 0, so the components of a product always have lower ordinals.
+   * 
+   * @return Product ordinal.
+   */
+  public int ordinal() {
+    return this._ordinal;
+  }
+
+  /**
+   * Returns the versions of the state of this product.
+   * 
+   * @return Versions.
+   */
+  public Versions<State> versions() {
+    return this._versions;
+  }
+
+  /**
+   * Copies the current state of this product. The caller must make sure the
+   * product isn't changed meanwhile.
+   * 
+   * @return Copy of the state.
+   */
+  public State state() {
+    return new State(this, this._batches.copy(), false);
+  }
+
+  /**
+   * Returns a view of the current state of this product, which copies nothing.
+   * The caller must hold the product's lock while using it.
+   * 
+   * @return View of the state.
+   */
+  public State view() {
+    return new State(this, this._batches, true);
+  }
+
+  /** Forgets the line and order kept for the current state, after it changes. */
+  private void changed() {
+    this._line = null;
+    this._order = null;
   }
 
   /**
@@ -54,9 +275,9 @@ public abstract class Product extends Subject {
   /**
    * Returns the maximum price at which the product was valued.
    * 
-   * @return Maximum price.
+   * @return Maximum price, in micro-units.
    */
-  public double maxPrice() {
+  public long maxPrice() {
     return this._maxPrice;
   }
 
@@ -64,11 +285,12 @@ public abstract class Product extends Subject {
    * Updates the maximum price of this product, if the price is bigger than the
    * previous maximum.
    * 
-   * @param price New price.
+   * @param price New price, in micro-units.
    */
-  protected void addPrice(double price) {
+  protected void addPrice(long price) {
     if (price > this._maxPrice) {
       this._maxPrice = price;
+      this.changed();
     }
   }
 
@@ -81,6 +303,34 @@ public abstract class Product extends Subject {
     return this._stock;
   }
 
+  /**
+   * Returns the units of the stock which aren't held.
+   * 
+   * @return Available stock.
+   */
+  public int available() {
+    return this._stock - this._held;
+  }
+
+  /**
+   * Holds units of the stock, so that only their holder takes them. The units
+   * must be available.
+   * 
+   * @param amount Number of units.
+   */
+  public void hold(int amount) {
+    this._held += amount;
+  }
+
+  /**
+   * Releases units held by hold(), making them available again.
+   * 
+   * @param amount Number of units.
+   */
+  public void release(int amount) {
+    this._held -= amount;
+  }
+
   /**
    * Returns the batches of this product, sorted by their partner, price and
    * amount.
@@ -88,16 +338,37 @@ public abstract class Product extends Subject {
    * @return Array of batches.
    */
   public Collection<Batch> batches() {
-    List<Batch> batches = new ArrayList<Batch>(this._batches);
+    List<Batch> batches = this._batches.views(this);
     Collections.sort(batches, Batch.LIST_COMPARATOR);
     return batches;
   }
 
+  /**
+   * Adds the batches of this product to a footprint.
+   * 
+   * @param footprint Footprint.
+   * @param subsystem Name of the subsystem of the batches.
+   */
+  public void measureBatches(Footprint footprint, String subsystem) {
+    footprint.add(subsystem, this._batches.size(), this._batches);
+  }
+
+  /**
+   * Enables or disables merging of batches with the same partner and price.
+   * Merged batches are listed as a single batch with the sum of the amounts.
+   * 
+   * @param merge Whether batches should be merged.
+   */
+  public void setBatchMerging(boolean merge) {
+    this._batches.setMerging(merge);
+    this.changed();
+  }
+
   /**
    * @return The cheapest batch of this product, or null if there are no batches.
    */
   public Batch cheapestBatch() {
-    return this._batches.peek();
+    return this._batches.cheapest(this);
   }
 
   /**
@@ -105,21 +376,24 @@ public abstract class Product extends Subject {
    * 
    * @param partner Partner associated to the batch.
    * @param amount Amount of units in the batch.
-   * @param price Price of each unit in the batch.
+   * @param price Price of each unit in the batch, in micro-units.
+   * @return Number of notifications sent about the batch.
    */
-  public void addBatch(Partner partner, int amount, double price) {
+  public int addBatch(Partner partner, int amount, long price) {
     // Notify observers
-    if (this._maxPrice > 0.0) {
+    int sent = 0;
+    if (this._maxPrice > Money.ZERO) {
       if (this._stock == 0)
-        this.notifyObservers(new NewNotification(this, price));
-      else if (this.cheapestBatch().price() > price)
-        this.notifyObservers(new BargainNotification(this, price));
+        sent = this.notifyObservers(new NewNotification(this, price));
+      else if (this._batches.cheapestPrice() > price)
+        sent = this.notifyObservers(new BargainNotification(this, price));
     }
 
-    Batch batch = new Batch(this, partner, amount, price);
-    this._batches.add(batch);
+    this._batches.add(partner, amount, price);
     this._stock += amount;
+    this.changed();
     this.addPrice(price);
+    return sent;
   }
 
   /**
@@ -127,30 +401,46 @@ public abstract class Product extends Subject {
    * total price of the units is as low as possible.
    * 
    * @param amount Amount of product to remove.
-   * @return Total price of the units removed.
+   * @return Total price of the units removed, in micro-units.
    * @throws UnavailableProductException
    */
-  public double take(int amount) throws UnavailableProductException {
-    if (this._stock < amount) {
-      throw new UnavailableProductException(this._key, amount, this._stock);
-    }
+  public long take(int amount) throws UnavailableProductException {
+    return this.take(amount, null);
+  }
 
-    double price = 0.0;
+  /**
+   * Removes an amount of this product like take(int), collecting the units
+   * removed from each batch.
+   * 
+   * @param amount Amount of product to remove.
+   * @param taken Collects the units removed from each batch, or null.
+   * @return Total price of the units removed, in micro-units.
+   * @throws UnavailableProductException
+   */
+  public long take(int amount, List<Batch> taken) throws UnavailableProductException {
+    long start = TAKE.start();
+    if (this.available() < amount) {
+      throw TAKE.failed(start, new UnavailableProductException(this._key, amount, this.available()));
+    }
 
     // Gets batches until enough units of the product are found
     this._stock -= amount;
-    while (amount > 0) {
-      Batch batch = this._batches.peek();
-      int units = Math.min(batch.amount(), amount);
-      price += batch.price() * units;
-      amount -= units;
-
-      batch.setAmount(batch.amount() - units);
-      if (batch.amount() == 0)
-        this._batches.poll(); // Remove batch from the queue.
-    }
+    long value = this._batches.take(amount, this, taken);
+    this.changed();
+    TAKE.succeeded(start);
+    return value;
+  }
 
-    return price;
+  /**
+   * Puts back units removed by take(), as a batch with the partner and price
+   * they had. Nobody is notified, since the units were in stock before.
+   * 
+   * @param batch Units removed from a batch.
+   */
+  public void restock(Batch batch) {
+    this._batches.add(batch.partner(), batch.amount(), batch.price());
+    this._stock += batch.amount();
+    this.changed();
   }
 
   /**
@@ -161,7 +451,13 @@ public abstract class Product extends Subject {
    * @throws UnavailableProductException
    */
   public void checkSell(int amount) throws UnavailableProductException {
-    this.accept(new SellChecker(amount));
+    long start = CHECK_SELL.start();
+    try {
+      this.accept(new SellChecker(amount));
+    } catch (UnavailableProductException e) {
+      throw CHECK_SELL.failed(start, e);
+    }
+    CHECK_SELL.succeeded(start);
   }
 
   /**
@@ -170,10 +466,10 @@ public abstract class Product extends Subject {
    * of the product, it will be fabricated, if possible.
    * 
    * @param amount Amount of product to sell.
-   * @return Total price of the units sold.
+   * @return Total price of the units sold, in micro-units.
    * @throws UnavailableProductException
    */
-  public abstract double sell(int amount) throws UnavailableProductException;
+  public abstract long sell(int amount) throws UnavailableProductException;
 
   /**
    * Returns the constant used to calculate transaction fees for this product.
@@ -191,8 +487,19 @@ public abstract class Product extends Subject {
    */
   public abstract <T extends Throwable> void accept(ProductVisitor<T> visitor) throws T;
 
+  /**
+   * Describes this product with the given price and stock.
+   * 
+   * @param maxPrice Maximum price, in micro-units.
+   * @param stock Stock.
+   * @return Description of the product.
+   */
+  protected String toString(long maxPrice, int stock) {
+    return this._key + "|" + Money.round(maxPrice) + "|" + stock;
+  }
+
   @Override
   public String toString() {
-    return this._key + "|" + Math.round(this._maxPrice) + "|" + this._stock;
+    return this.toString(this._maxPrice, this._stock);
   }
 }
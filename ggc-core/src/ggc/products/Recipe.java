@@ -2,6 +2,7 @@ package ggc.products;
 
 import java.io.Serializable;
 
+import ggc.RenderCache;
 import ggc.exceptions.InvalidRecipeException;
 
 /**
@@ -17,6 +18,9 @@ public class Recipe implements Serializable {
   /** Recipe components. */
   private Component[] _components;
 
+  /** Description of the recipe, once made, if kept. */
+  private transient String _description;
+
   /** Represents a single recipe component. */
   public static class Component implements Serializable {
     /** Serial number for serialization. */
@@ -92,9 +96,15 @@ public class Recipe implements Serializable {
 
   @Override
   public String toString() {
-    String out = this._aggravation + "|" + this._components[0].toString();
-    for (int i = 1; i < this._components.length; ++i)
-      out += "#" + this._components[i].toString();
-    return out;
+    String description = this._description;
+    if (description == null) {
+      StringBuilder builder = new StringBuilder().append(this._aggravation).append('|').append(this._components[0]);
+      for (int i = 1; i < this._components.length; ++i)
+        builder.append('#').append(this._components[i]);
+      description = builder.toString();
+      if (RenderCache.enabled())
+        this._description = description;
+    }
+    return description;
   }
 }
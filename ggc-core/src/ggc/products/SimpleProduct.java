@@ -10,14 +10,15 @@ public class SimpleProduct extends Product {
   private static final long serialVersionUID = 202110151907L;
 
   /**
+   * @param ordinal Product ordinal.
    * @param id Product ID.
    */
-  public SimpleProduct(String id) {
-    super(id);
+  public SimpleProduct(int ordinal, String id) {
+    super(ordinal, id);
   }
   
   @Override
-  public double sell(int amount) throws UnavailableProductException {
+  public long sell(int amount) throws UnavailableProductException {
     return this.take(amount);
   }
 
@@ -1,5 +1,6 @@
 package ggc.transactions;
 
+import ggc.Money;
 import ggc.products.Product;
 
 import ggc.partners.Partner;
@@ -9,18 +10,19 @@ import ggc.partners.Partner;
  */
 public class Acquisition extends Transaction {
 
-  /* The value of the transaction. */
-  private double _value;
+  /* The value of the transaction, in micro-units. */
+  private long _value;
 
   /**
    * @param id The acquisition's id.
    * @param date The acquisition's date.
    * @param amount The amount of the product acquired in this acquisition.
-   * @param unitValue The value of each unit of product acquired.
+   * @param unitValue The value of each unit of product acquired, in
+   *          micro-units.
    * @param product The product that was acquired.
    * @param partner The partner which supplied the product.
    */
-  public Acquisition(int id, int date, int amount, Product product, Partner partner, double unitValue) {
+  public Acquisition(int id, int date, int amount, Product product, Partner partner, long unitValue) {
     super(id, date, amount, product, partner);
     this._value = unitValue * amount;
   }
@@ -28,9 +30,9 @@ public class Acquisition extends Transaction {
   /**
    * Returns the value of the transaction.
    *
-   * @return The value of the transaction.
+   * @return The value of the transaction, in micro-units.
    */
-  public double value() {
+  public long value() {
     return this._value;
   }
 
@@ -41,6 +43,6 @@ public class Acquisition extends Transaction {
 
   @Override
   public String toString() {
-    return "COMPRA|" + super.toString() + "|" + Math.round(this._value) + "|" + this.date();
+    return this.line(() -> "COMPRA|" + super.toString() + "|" + Money.round(this._value) + "|" + this.date());
   }
 }
@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.util.Arrays;
 import java.util.stream.Collectors;
 
+import ggc.Money;
 import ggc.products.Product;
 
 import ggc.partners.Partner;
@@ -21,12 +22,12 @@ public class Breakdown extends Transaction {
 
   /**
    * Base value (diffence between the value of the original product and the
-   * components).
+   * components), in micro-units.
    */
-  private double _baseValue;
+  private long _baseValue;
 
-  /** The value that was payed. */
-  private double _payedValue;
+  /** The value that was payed, in micro-units. */
+  private long _payedValue;
 
   /**
    * Represents a component that results from the breakdown.
@@ -42,15 +43,15 @@ public class Breakdown extends Transaction {
     /** The quantity of the component that results from the breakdown. */
     private int _amount;
 
-    /** The component's value. */
-    private double _value;
+    /** The component's value, in micro-units. */
+    private long _value;
 
     /**
      * @param product The component's product.
      * @param amount The quantity of the component that results from the breakdown.
-     * @param value The component's value.
+     * @param value The component's value, in micro-units.
      */
-    public Component(Product product, int amount, double value) {
+    public Component(Product product, int amount, long value) {
       this._product = product;
       this._amount = amount;
       this._value = value;
@@ -66,7 +67,7 @@ public class Breakdown extends Transaction {
 
     @Override
     public String toString() {
-      return this._product.key() + ":" + this._amount + ":" + Math.round(this._amount * this._value);
+      return this._product.key() + ":" + this._amount + ":" + Money.round(this._amount * this._value);
     }
   }
 
@@ -76,11 +77,11 @@ public class Breakdown extends Transaction {
    * @param amount The amount of the product that was broke down.
    * @param product The product that was broke down.
    * @param partner The partner that payed for the breakdown.
-   * @param baseValue The base value of the breakdown.
-   * @param payedValue The value that was payed.
+   * @param baseValue The base value of the breakdown, in micro-units.
+   * @param payedValue The value that was payed, in micro-units.
    * @param components The components that resulted from the breakdown.
    */
-  public Breakdown(int id, int date, int amount, Product product, Partner partner, double baseValue, double payedValue,
+  public Breakdown(int id, int date, int amount, Product product, Partner partner, long baseValue, long payedValue,
       Component[] components) {
     super(id, date, amount, product, partner);
     this._baseValue = baseValue;
@@ -97,16 +98,16 @@ public class Breakdown extends Transaction {
 
   /**
    * @return The base value (diffence between the value of the original product
-   *         and the components).
+   *         and the components), in micro-units.
    */
-  public double baseValue() {
+  public long baseValue() {
     return this._baseValue;
   }
 
   /**
-   * @return The value that was payed.
+   * @return The value that was payed, in micro-units.
    */
-  public double payedValue() {
+  public long payedValue() {
     return this._payedValue;
   }
 
@@ -117,9 +118,9 @@ public class Breakdown extends Transaction {
 
   @Override
   public String toString() {
-    return "DESAGREGAÇÃO|" + super.toString() + "|" + Math.round(this._baseValue) + "|" + Math.round(this._payedValue)
-        + "|" + this.date() + "|" + Arrays.stream(this._components)
+    return this.line(() -> "DESAGREGAÇÃO|" + super.toString() + "|" + Money.round(this._baseValue) + "|"
+        + Money.round(this._payedValue) + "|" + this.date() + "|" + Arrays.stream(this._components)
             .map(c -> c.toString())
-            .collect(Collectors.joining("#"));
+            .collect(Collectors.joining("#")));
   }
 }
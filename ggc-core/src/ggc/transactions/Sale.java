@@ -1,5 +1,10 @@
 package ggc.transactions;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
+import ggc.Money;
+import ggc.Versions;
 import ggc.partners.Partner;
 import ggc.products.Product;
 
@@ -11,24 +16,64 @@ public class Sale extends Transaction {
   /** Deadline for this sale's payment. */
   private int _deadline;
 
-  /** The sale's value with no fees/discounts aplied. */
-  private double _baseValue;
+  /** The sale's value with no fees/discounts aplied, in micro-units. */
+  private long _baseValue;
 
-  /** The sale's value with fees/discounts applied */
-  private double _realValue;
+  /** The sale's value with fees/discounts applied, in micro-units. */
+  private long _realValue;
 
   /** The payment date for this sale. */
   private int _paymentDate;
 
+  /** Versions of the payment state of this sale, for readers. */
+  private transient Versions<Transaction> _versions;
+
   /** Default constructor */
-  public Sale(int id, int date, Product product, int amount, Partner partner, int deadline, double baseValue) {
+  public Sale(int id, int date, Product product, int amount, Partner partner, int deadline, long baseValue) {
     super(id, date, amount, product, partner);
     this._deadline = deadline;
     this._baseValue = baseValue;
     this._paymentDate = -1;
+    this._versions = new Versions<Transaction>();
     this.updatePaymentValue(date);
   }
 
+  /**
+   * Copies a sale, while holding its monitor. The copy has no versions of its
+   * own.
+   * 
+   * @param other Sale to copy.
+   */
+  private Sale(Sale other) {
+    super(other.id(), other.date(), other.amount(), other.product(), other.partner());
+    this._deadline = other._deadline;
+    this._baseValue = other._baseValue;
+    this._realValue = other._realValue;
+    this._paymentDate = other._paymentDate;
+    this.shareLine(other);
+  }
+
+  private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+    ois.defaultReadObject();
+    this._versions = new Versions<Transaction>();
+  }
+
+  /**
+   * Returns the versions of the payment state of this sale. Writers hold the
+   * sale's monitor.
+   * 
+   * @return Versions.
+   */
+  @Override
+  public Versions<Transaction> versions() {
+    return this._versions;
+  }
+
+  @Override
+  public synchronized Transaction state() {
+    return new Sale(this);
+  }
+
   /**
    * Returns the deadline for this transaction's payment.
    *
@@ -41,9 +86,10 @@ public class Sale extends Transaction {
   /**
    * Returns the base value to be paid for this transaction, without fees.
    *
-   * @return Base value to be paid for this transaction, without fees.
+   * @return Base value to be paid for this transaction, without fees, in
+   *         micro-units.
    */
-  public double baseValue() {
+  public long baseValue() {
     return this._baseValue;
   }
 
@@ -51,9 +97,9 @@ public class Sale extends Transaction {
    * Returns the value paid for this transaction, or the value that must be paid
    * if it hasn't been paid yet.
    *
-   * @return Value paid for this transaction.
+   * @return Value paid for this transaction, in micro-units.
    */
-  public double realValue() {
+  public long realValue() {
     return this._realValue;
   }
 
@@ -63,10 +109,15 @@ public class Sale extends Transaction {
    * 
    * @param date Date.
    */
-  public void updatePaymentValue(int date) {
+  public synchronized void updatePaymentValue(int date) {
     // Only change it if the transaction hasn't already been paid
-    if (!this.paid())
-      this._realValue = this.partner().getSalePaymentPrice(this.product(), date - this._deadline, this._baseValue);
+    if (!this.paid()) {
+      long value = this.partner().getSalePaymentPrice(this.product(), date - this._deadline, this._baseValue);
+      if (value != this._realValue) {
+        this._realValue = value;
+        this.forgetLine();
+      }
+    }
   }
 
   /**
@@ -83,16 +134,20 @@ public class Sale extends Transaction {
    * Pays the sale.
    * 
    * @param date Current date.
-   * @return The value paid for this transaction. If the transaction was already
-   *         paid, returns 0.
+   * @param clock Clock versioning the partner's state.
+   * @param version Epoch of the payment.
+   * @return The value paid for this transaction, in micro-units. If the
+   *         transaction was already paid, returns 0.
    */
-  public double pay(int date) {
+  public synchronized long pay(int date, Versions.Clock clock, long version) {
     if (!this.paid()) {
-      this._realValue = this.partner().registerSalePayment(this.product(), date - this._deadline, this._baseValue);
+      this._realValue = this.partner().registerSalePayment(clock, version, this.product(), date - this._deadline,
+          this._baseValue);
       this._paymentDate = date;
+      this.forgetLine();
       return this._realValue;
     } else
-      return 0.0;
+      return Money.ZERO;
   }
 
   public boolean paid() {
@@ -105,8 +160,8 @@ public class Sale extends Transaction {
   }
 
   @Override
-  public String toString() {
-    return "VENDA|" + super.toString() + "|" + Math.round(this._baseValue) + "|" + Math.round(this._realValue) + "|"
-        + this._deadline + (!this.paid() ? "" : "|" + this._paymentDate);
+  public synchronized String toString() {
+    return this.line(() -> "VENDA|" + super.toString() + "|" + Money.round(this._baseValue) + "|"
+        + Money.round(this._realValue) + "|" + this._deadline + (!this.paid() ? "" : "|" + this._paymentDate));
   }
 }
@@ -1,7 +1,10 @@
 package ggc.transactions;
 
 import java.io.Serializable;
+import java.util.function.Supplier;
 
+import ggc.RenderCache;
+import ggc.Versions;
 import ggc.products.Product;
 import ggc.partners.Partner;
 
@@ -28,6 +31,9 @@ public abstract class Transaction implements Serializable {
   /** The partner involved in the transaction. */
   private Partner _partner;
 
+  /** Line describing the transaction, once made, if kept. */
+  private transient volatile String _line;
+
   /**
    * @param id The transaction's id.
    * @param date The transaction's date.
@@ -88,6 +94,63 @@ public abstract class Transaction implements Serializable {
     return this._partner;
   }
 
+  /**
+   * Returns the versions of the state of this transaction, or null if the
+   * transaction never changes after being registered.
+   *
+   * @return Versions, or null.
+   */
+  public Versions<Transaction> versions() {
+    return null;
+  }
+
+  /**
+   * Copies the current state of this transaction. Transactions which never
+   * change return themselves.
+   *
+   * @return Copy of the state.
+   */
+  public Transaction state() {
+    return this;
+  }
+
+  /**
+   * Returns the line describing this transaction, making it if it isn't kept.
+   * Transactions which change must call forgetLine() when they do, while
+   * holding the lock under which they call this.
+   *
+   * @param describe Makes the line.
+   * @return Line describing the transaction.
+   */
+  protected String line(Supplier<String> describe) {
+    String line = this._line;
+    if (line == null) {
+      line = describe.get();
+      if (RenderCache.enabled())
+        this._line = line;
+    }
+    return line;
+  }
+
+  /**
+   * Shares the line of a transaction this one is a copy of, making it first if
+   * lines are kept, so that copies don't make it again. The caller must hold
+   * the lock under which the original calls line().
+   *
+   * @param original Transaction copied.
+   */
+  protected void shareLine(Transaction original) {
+    if (RenderCache.enabled())
+      this._line = original.toString();
+  }
+
+  /**
+   * Forgets the line describing this transaction, after it changes.
+   */
+  protected void forgetLine() {
+    this._line = null;
+  }
+
   /**
    * Accepts a visitor.
    * 
@@ -1,5 +1,7 @@
 package ggc.visitors;
 
+import ggc.Money;
+
 import ggc.transactions.TransactionVisitor;
 import ggc.transactions.Acquisition;
 import ggc.transactions.Sale;
@@ -9,16 +11,16 @@ import ggc.transactions.Breakdown;
  * Visitor used to find the accounting balance.
  */
 public class AccountingBalanceCalculator implements TransactionVisitor {
-  private double _balance;
+  private long _balance;
 
   public AccountingBalanceCalculator() {
-    this._balance = 0.0;
+    this._balance = Money.ZERO;
   }
 
   /**
-   * @return The accounting balance.
+   * @return The accounting balance, in micro-units.
    */
-  public double result() {
+  public long result() {
     return this._balance;
   }
 
@@ -2,6 +2,7 @@ package ggc.visitors;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.function.Consumer;
 
 import ggc.transactions.Transaction;
 import ggc.transactions.TransactionVisitor;
@@ -16,13 +17,25 @@ public class AcquisitionCollector implements TransactionVisitor {
 
   private Collection<Transaction> _result = new ArrayList<>();
 
+  private Consumer<Transaction> _sink = this._result::add;
+
+  public AcquisitionCollector() {
+  }
+
+  /**
+   * @param sink Receives each acquisition found, instead of result().
+   */
+  public AcquisitionCollector(Consumer<Transaction> sink) {
+    this._sink = sink;
+  }
+
   public Collection<Transaction> result() {
     return this._result;
   }
 
   @Override
   public void visit(Acquisition acquisition) {
-    this._result.add(acquisition);
+    this._sink.accept(acquisition);
   }
 
   @Override
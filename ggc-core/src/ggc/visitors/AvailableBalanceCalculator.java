@@ -1,5 +1,7 @@
 package ggc.visitors;
 
+import ggc.Money;
+
 import ggc.transactions.TransactionVisitor;
 import ggc.transactions.Acquisition;
 import ggc.transactions.Sale;
@@ -9,16 +11,16 @@ import ggc.transactions.Breakdown;
  * Visitor used to find the available balance.
  */
 public class AvailableBalanceCalculator implements TransactionVisitor {
-  private double _balance;
+  private long _balance;
 
   public AvailableBalanceCalculator() {
-    this._balance = 0.0;
+    this._balance = Money.ZERO;
   }
 
   /**
-   * @return The available balance.
+   * @return The available balance, in micro-units.
    */
-  public double result() {
+  public long result() {
     return this._balance;
   }
 
@@ -29,7 +31,7 @@ public class AvailableBalanceCalculator implements TransactionVisitor {
 
   @Override
   public void visit(Sale sale) {
-    this._balance += sale.paid() ? sale.realValue() : 0.0;
+    this._balance += sale.paid() ? sale.realValue() : Money.ZERO;
   }
 
   @Override
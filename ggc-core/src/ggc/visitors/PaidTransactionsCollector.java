@@ -1,6 +1,7 @@
 package ggc.visitors;
 
 import java.util.Collection;
+import java.util.function.Consumer;
 import java.util.ArrayList;
 
 import ggc.transactions.Transaction;
@@ -16,6 +17,18 @@ public class PaidTransactionsCollector implements TransactionVisitor {
 
   private Collection<Transaction> _result = new ArrayList<>();
 
+  private Consumer<Transaction> _sink = this._result::add;
+
+  public PaidTransactionsCollector() {
+  }
+
+  /**
+   * @param sink Receives each paid transaction found, instead of result().
+   */
+  public PaidTransactionsCollector(Consumer<Transaction> sink) {
+    this._sink = sink;
+  }
+
   public Collection<Transaction> result() {
     return this._result;
   }
@@ -28,7 +41,7 @@ public class PaidTransactionsCollector implements TransactionVisitor {
   @Override
   public void visit(Sale sale) {
     if (sale.paid())
-      this._result.add(sale);
+      this._sink.accept(sale);
   }
 
   @Override
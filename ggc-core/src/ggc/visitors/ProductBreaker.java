@@ -1,5 +1,7 @@
 package ggc.visitors;
 
+import ggc.Money;
+
 import ggc.products.ProductVisitor;
 import ggc.products.Recipe;
 import ggc.products.Product;
@@ -22,8 +24,8 @@ public class ProductBreaker implements ProductVisitor<UnavailableProductExceptio
   /** Amount of the product to break. */
   private int _amount;
 
-  /** Breakdown value. */
-  private double _value;
+  /** Breakdown value, in micro-units. */
+  private long _value;
 
   /** Breakdown components. */
   private Breakdown.Component[] _components;
@@ -31,14 +33,14 @@ public class ProductBreaker implements ProductVisitor<UnavailableProductExceptio
   public ProductBreaker(Partner partner, int amount) {
     this._partner = partner;
     this._amount = amount;
-    this._value = 0.0;
+    this._value = Money.ZERO;
   }
 
   public Breakdown.Component[] breakdownComponents() {
     return this._components;
   }
 
-  public double breakdownValue() {
+  public long breakdownValue() {
     return this._value;
   }
 
@@ -56,7 +58,7 @@ public class ProductBreaker implements ProductVisitor<UnavailableProductExceptio
 
     for (int i = 0; i < rComponents.length; i++) {
       int amount = rComponents[i].amount() * this._amount;
-      double value = this.productValue(rComponents[i].product());
+      long value = this.productValue(rComponents[i].product());
       
       this._components[i] = new Breakdown.Component(rComponents[i].product(), amount, value);
       rComponents[i].product().addBatch(this._partner, amount, value);
@@ -64,7 +66,7 @@ public class ProductBreaker implements ProductVisitor<UnavailableProductExceptio
     }
   }
 
-  private double productValue(Product product) {
+  private long productValue(Product product) {
     return product.stock() != 0 ? product.cheapestBatch().price() : product.maxPrice();
   }
 }
@@ -2,6 +2,7 @@ package ggc.visitors;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.function.Consumer;
 
 import ggc.transactions.Transaction;
 import ggc.transactions.TransactionVisitor;
@@ -16,6 +17,18 @@ public class SaleAndBreakdownCollector implements TransactionVisitor {
 
   private Collection<Transaction> _result = new ArrayList<>();
 
+  private Consumer<Transaction> _sink = this._result::add;
+
+  public SaleAndBreakdownCollector() {
+  }
+
+  /**
+   * @param sink Receives each sale and breakdown found, instead of result().
+   */
+  public SaleAndBreakdownCollector(Consumer<Transaction> sink) {
+    this._sink = sink;
+  }
+
   public Collection<Transaction> result() {
       return this._result;
   }
@@ -27,11 +40,11 @@ public class SaleAndBreakdownCollector implements TransactionVisitor {
 
   @Override
   public void visit(Sale sale) {
-    this._result.add(sale);
+    this._sink.accept(sale);
   }
 
   @Override
   public void visit(Breakdown breakdown) {
-    this._result.add(breakdown);
+    this._sink.accept(breakdown);
   }
 }
\ No newline at end of file
@@ -55,8 +55,8 @@ public class SellChecker implements ProductVisitor<UnavailableProductException>
    */
   private void findMissing(SimpleProduct product) throws UnavailableProductException {
     // The product wasn't visited before, so the 'virtual' stock is the same as the
-    // real stock.
-    this._currentStocks.putIfAbsent(product, product.stock());
+    // available stock.
+    this._currentStocks.putIfAbsent(product, product.available());
 
     // If the needed amount is greater than the 'virtual' stock, we throw an
     // exception.
@@ -79,8 +79,8 @@ public class SellChecker implements ProductVisitor<UnavailableProductException>
    */
   private void findMissing(DerivateProduct product) throws UnavailableProductException {
     // The product wasn't visited before, so the 'virtual' stock is the same as the
-    // real stock.
-    _currentStocks.putIfAbsent(product, product.stock());
+    // available stock.
+    _currentStocks.putIfAbsent(product, product.available());
     int currentStock = _currentStocks.get(product);
     int required = this._neededAmounts.pop() - currentStock;
 
@@ -122,7 +122,7 @@ public class SellChecker implements ProductVisitor<UnavailableProductException>
    */
   private void countMissing(DerivateProduct product) throws UnavailableProductException {
     // The amount of product that needs to be agreggated
-    int required = this._neededAmounts.pop() - product.stock();
+    int required = this._neededAmounts.pop() - product.available();
     if (required > 0) {
       for (Recipe.Component rc : product.recipe().components()) {
         this._neededAmounts.push(required * rc.amount());
@@ -135,8 +135,8 @@ public class SellChecker implements ProductVisitor<UnavailableProductException>
   public void visit(SimpleProduct product) throws UnavailableProductException {
     if (this._root == null) {
       // This is the root
-      if (product.stock() < this._amount)
-        throw new UnavailableProductException(product.key(), this._amount, product.stock());
+      if (product.available() < this._amount)
+        throw new UnavailableProductException(product.key(), this._amount, product.available());
       return;
     }
 
@@ -164,7 +164,7 @@ public class SellChecker implements ProductVisitor<UnavailableProductException>
 
         // Throw exception
         throw new UnavailableProductException(this._missingComponent.key(), this._missingAmount,
-            this._missingComponent.stock());
+            this._missingComponent.available());
       }
     } else {
       // This is not the root, choose the right method
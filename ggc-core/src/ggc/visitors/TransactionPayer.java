@@ -1,5 +1,8 @@
 package ggc.visitors;
 
+import ggc.Money;
+import ggc.Versions;
+
 import ggc.transactions.TransactionVisitor;
 import ggc.transactions.Acquisition;
 import ggc.transactions.Sale;
@@ -10,17 +13,26 @@ import ggc.transactions.Breakdown;
  */
 public class TransactionPayer implements TransactionVisitor {
   private int _date;
-  private double _value;
+  private Versions.Clock _clock;
+  private long _version;
+  private long _value;
 
-  public TransactionPayer(int date) {
+  /**
+   * @param date Current date.
+   * @param clock Clock versioning the partners' states.
+   * @param version Epoch of the payment.
+   */
+  public TransactionPayer(int date, Versions.Clock clock, long version) {
     this._date = date;
-    this._value = 0.0;
+    this._clock = clock;
+    this._version = version;
+    this._value = Money.ZERO;
   }
 
   /**
-   * @return The value of the transaction paid.
+   * @return The value of the transaction paid, in micro-units.
    */
-  public double value() {
+  public long value() {
     return this._value;
   }
 
@@ -31,7 +43,7 @@ public class TransactionPayer implements TransactionVisitor {
 
   @Override
   public void visit(Sale sale) {
-    this._value = sale.pay(this._date);
+    this._value = sale.pay(this._date, this._clock, this._version);
   }
 
   @Override
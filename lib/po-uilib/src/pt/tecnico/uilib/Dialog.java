@@ -61,6 +61,16 @@ public class Dialog implements AutoCloseable {
     _backend.render(title, text);
   }
 
+  /**
+   * @param <E>   exception thrown while writing.
+   * @param title message title.
+   * @param text  writes the message text.
+   * @throws E if the text can't be written.
+   */
+  public <E extends Exception> void render(String title, TextWriter<E> text) throws E {
+    _backend.render(title, text);
+  }
+
   /** Close the interaction. */
   public void close() {
     _backend.close();
@@ -98,6 +98,20 @@ public class Display {
     display();
   }
 
+  /**
+   * Display text as it's written, without holding it. Any text added before is
+   * displayed first.
+   * 
+   * @param <E>   exception thrown while writing.
+   * @param toPop writes the text.
+   * @throws E if the text can't be written.
+   */
+  public <E extends Exception> void popup(TextWriter<E> toPop) throws E {
+    if (_text.length() > 0)
+      display();
+    _ui.render(_title, toPop);
+  }
+
   /**
    * Easy display method.
    * 
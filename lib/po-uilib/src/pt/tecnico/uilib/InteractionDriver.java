@@ -1,5 +1,8 @@
 package pt.tecnico.uilib;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
 import pt.tecnico.uilib.forms.Form;
 import pt.tecnico.uilib.menus.Menu;
 
@@ -20,6 +23,25 @@ public interface InteractionDriver {
    */
   void render(String title, String text);
 
+  /**
+   * Render text as it's written. By default, the text is collected and then
+   * rendered as a whole: back-ends which can show it as it's written should
+   * override this.
+   * 
+   * @param <E>   exception thrown while writing.
+   * @param title message title.
+   * @param text  writes the message text.
+   * @throws E if the text can't be written.
+   */
+  default <E extends Exception> void render(String title, TextWriter<E> text) throws E {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    text.write(new PrintStream(buffer, true));
+    String collected = buffer.toString();
+    if (collected.endsWith(System.lineSeparator()))
+      collected = collected.substring(0, collected.length() - System.lineSeparator().length());
+    render(title, collected);
+  }
+
   /** Close all I/O channels. */
   void close();
 
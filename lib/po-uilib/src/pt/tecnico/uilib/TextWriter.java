@@ -0,0 +1,20 @@
+package pt.tecnico.uilib;
+
+import java.io.PrintStream;
+
+/**
+ * Text written line by line to a stream, rather than built before being shown,
+ * so that long texts need not be held in memory.
+ *
+ * @param <E> exception thrown while writing.
+ */
+@FunctionalInterface
+public interface TextWriter<E extends Exception> {
+
+  /**
+   * @param out where to write the text, each line ended by a new-line.
+   * @throws E if the text can't be written.
+   */
+  void write(PrintStream out) throws E;
+
+}
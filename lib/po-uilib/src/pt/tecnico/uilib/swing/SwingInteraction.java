@@ -1,8 +1,11 @@
 package pt.tecnico.uilib.swing;
 
+import java.io.PrintStream;
+
 import javax.swing.JFrame;
 
 import pt.tecnico.uilib.InteractionDriver;
+import pt.tecnico.uilib.TextWriter;
 import pt.tecnico.uilib.forms.Form;
 import pt.tecnico.uilib.menus.CommandException;
 import pt.tecnico.uilib.menus.Menu;
@@ -18,6 +21,9 @@ public class SwingInteraction extends JFrame implements InteractionDriver {
   /** Application title (for window titles). */
   private static final String MAIN_TITLE = "Programação com Objectos";
 
+  /** Length of the texts from which they are shown as listings. */
+  private static final int LISTING_LENGTH = 1 << 16;
+
   /** Constructor. */
   public SwingInteraction() {
     super(MAIN_TITLE);
@@ -66,7 +72,30 @@ public class SwingInteraction extends JFrame implements InteractionDriver {
   /** @see pt.tecnico.uilib.InteractionDriver#render(String, String) */
   @Override
   public void render(String title, String text) {
-    message(title, text);
+    if (text.length() < LISTING_LENGTH)
+      message(title, text);
+    else
+      render(title, out -> out.print(text));
+  }
+
+  /**
+   * Texts are shown as listings, as they're written.
+   * 
+   * @see pt.tecnico.uilib.InteractionDriver#render(String, TextWriter)
+   */
+  @Override
+  public <E extends Exception> void render(String title, TextWriter<E> text) throws E {
+    SwingListing panel = new SwingListing(title);
+    add(panel);
+    pack();
+    try {
+      try (PrintStream out = panel.stream()) {
+        text.write(out);
+      }
+      panel.await();
+    } finally {
+      remove(panel);
+    }
   }
 
   /** @see pt.tecnico.uilib.InteractionDriver#close() */
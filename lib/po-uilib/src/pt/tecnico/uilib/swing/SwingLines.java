@@ -0,0 +1,163 @@
+package pt.tecnico.uilib.swing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import javax.swing.AbstractListModel;
+import javax.swing.SwingUtilities;
+
+/**
+ * This class holds the lines of a text shown in a list: the characters of all
+ * lines are kept in a single buffer, with the offset where each one starts,
+ * and a row's string is only made when the list shows it. The text may grow
+ * while shown: lines are appended by the thread writing the text, and handed
+ * to the list, in the event dispatch thread, every few of them.
+ */
+class SwingLines extends AbstractListModel<String> {
+
+  /** Serial number for serialization. */
+  private static final long serialVersionUID = 202610191710L;
+
+  /** Most lines appended before they are handed to the list. */
+  private static final int BATCH_LINES = 4096;
+
+  /** Longest time (ns) lines wait before being handed to the list. */
+  private static final long BATCH_NANOS = 100_000_000L;
+
+  /** Characters of the lines, without line separators. */
+  private final StringBuilder _text = new StringBuilder();
+
+  /** Offset in the text where each line starts, and where the next one will. */
+  private int[] _starts = new int[1025];
+
+  /** Number of lines appended. */
+  private int _appended;
+
+  /** Number of characters of the longest line appended. */
+  private int _widest;
+
+  /** Whether further lines are dropped. */
+  private volatile boolean _closed;
+
+  /** Number of lines handed to the list (only used by the event thread). */
+  private int _shown;
+
+  /** Number of lines appended when they were last handed to the list. */
+  private int _published;
+
+  /** When lines were last handed to the list, from System.nanoTime(). */
+  private long _publishedAt = System.nanoTime();
+
+  /** @see javax.swing.ListModel#getSize() */
+  @Override
+  public int getSize() {
+    return _shown;
+  }
+
+  /** @see javax.swing.ListModel#getElementAt(int) */
+  @Override
+  public synchronized String getElementAt(int index) {
+    return _text.substring(_starts[index], _starts[index + 1]);
+  }
+
+  /**
+   * @return number of characters of the longest line appended.
+   */
+  synchronized int widest() {
+    return _widest;
+  }
+
+  /**
+   * Drops the lines appended from now on, once nobody will see them.
+   */
+  void close() {
+    _closed = true;
+  }
+
+  /**
+   * @param line line to append, without its line separator.
+   */
+  void append(CharSequence line) {
+    if (_closed)
+      return;
+
+    synchronized (this) {
+      if (_appended + 1 == _starts.length)
+        _starts = Arrays.copyOf(_starts, _starts.length * 2);
+      _text.append(line);
+      _starts[++_appended] = _text.length();
+      _widest = Math.max(_widest, line.length());
+    }
+    if (_appended - _published >= BATCH_LINES || System.nanoTime() - _publishedAt >= BATCH_NANOS)
+      publish();
+  }
+
+  /**
+   * Hands the lines appended until now to the list.
+   */
+  void publish() {
+    _published = _appended;
+    _publishedAt = System.nanoTime();
+    SwingUtilities.invokeLater(this::show);
+  }
+
+  /**
+   * Shows the lines handed to the list (in the event dispatch thread).
+   */
+  private void show() {
+    int appended;
+    synchronized (this) {
+      appended = _appended;
+    }
+    if (appended > _shown) {
+      int first = _shown;
+      _shown = appended;
+      fireIntervalAdded(this, first, appended - 1);
+    }
+  }
+
+  /**
+   * Returns a stream whose text is appended line by line, by the thread which
+   * writes it. Closing the stream appends the last line, if it has no line
+   * separator, and hands every line to the list.
+   *
+   * @return stream of the text.
+   */
+  PrintStream stream() {
+    Charset charset = Charset.defaultCharset();
+    return new PrintStream(new OutputStream() {
+      /** Bytes of the line being written. */
+      private final ByteArrayOutputStream _line = new ByteArrayOutputStream();
+
+      @Override
+      public void write(int b) {
+        write(new byte[] { (byte) b }, 0, 1);
+      }
+
+      @Override
+      public void write(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++)
+          if (bytes[i] == '\n') {
+            _line.write(bytes, offset, i - offset);
+            String line = _line.toString(charset);
+            _line.reset();
+            append(line.endsWith("\r") ? line.substring(0, line.length() - 1) : line);
+            offset = i + 1;
+          }
+        _line.write(bytes, offset, end - offset);
+      }
+
+      @Override
+      public void close() {
+        if (_line.size() > 0)
+          write('\n');
+        publish();
+      }
+    }, false, charset);
+  }
+
+}
@@ -0,0 +1,121 @@
+package pt.tecnico.uilib.swing;
+
+import java.awt.BorderLayout;
+import java.awt.Font;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.io.PrintStream;
+
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JScrollPane;
+import javax.swing.SwingConstants;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+
+/**
+ * This class manages a listing window: it displays a text which may be very
+ * long, and still being written, one line per row. Only the rows in view are
+ * laid out and painted, since every row has the same size.
+ */
+class SwingListing extends SwingPanel {
+
+  /** Serial number for serialization. */
+  private static final long serialVersionUID = 202610191711L;
+
+  /** Number of rows in view. */
+  private static final int ROWS = 20;
+
+  /** Least number of columns in view. */
+  private static final int COLUMNS = 70;
+
+  /** Lines of the text. */
+  private final SwingLines _lines = new SwingLines();
+
+  /** Number of columns the rows are wide. */
+  private int _columns = COLUMNS;
+
+  /**
+   * Build a panel to display a listing.
+   *
+   * @param title the panel title
+   */
+  SwingListing(String title) {
+    super(new BorderLayout());
+
+    if (title != null)
+      add(new JLabel(title, SwingConstants.CENTER), BorderLayout.NORTH);
+
+    JList<String> list = new JList<String>(_lines);
+    list.setFont(new Font(Font.MONOSPACED, Font.PLAIN, list.getFont().getSize()));
+    list.setVisibleRowCount(ROWS);
+    // With a prototype, rows are sized without looking at every line
+    list.setPrototypeCellValue("M".repeat(COLUMNS));
+    _lines.addListDataListener(new ListDataListener() {
+      @Override
+      public void intervalAdded(ListDataEvent event) {
+        // Monospaced, so the longest line is the widest
+        int widest = _lines.widest();
+        if (widest > _columns) {
+          _columns = widest;
+          list.setPrototypeCellValue("M".repeat(widest));
+        }
+      }
+
+      @Override
+      public void intervalRemoved(ListDataEvent event) {
+        // lines are never removed
+      }
+
+      @Override
+      public void contentsChanged(ListDataEvent event) {
+        // lines never change
+      }
+    });
+
+    JScrollPane scrollPane = new JScrollPane(list);
+    add(scrollPane, BorderLayout.CENTER);
+
+    JButton button = new JButton("OK");
+    add(button, BorderLayout.SOUTH);
+    button.addActionListener(this);
+    button.setActionCommand("0");
+    button.setMnemonic(KeyEvent.VK_ENTER);
+  }
+
+  /**
+   * @return stream where the text is written (must be closed at the end).
+   */
+  PrintStream stream() {
+    return _lines.stream();
+  }
+
+  /**
+   * Closing the listing while the text is still being written drops the rest.
+   *
+   * @see pt.tecnico.uilib.swing.SwingPanel#actionPerformed(java.awt.event.ActionEvent)
+   */
+  @Override
+  public void actionPerformed(ActionEvent event) {
+    _lines.close();
+    super.actionPerformed(event);
+  }
+
+  /**
+   * Wait until the listing is closed, which may happen before the text is
+   * fully written.
+   */
+  @Override
+  synchronized void await() {
+    synchronized (_lock) {
+      while (!_end)
+        try {
+          _lock.wait();
+        } catch (InterruptedException e) {
+          System.out.println(e);
+        }
+    }
+  }
+
+}
@@ -18,4 +18,10 @@ interface Properties {
   /** Property name: log channel property name. */
   String LOG_CHANNEL = "log";
 
+  /**
+   * Property name: Should each logged line start with the milliseconds since
+   * the start of the interaction, and a tab?
+   */
+  String LOG_TIMES = "logTimes";
+
 }
\ No newline at end of file
@@ -0,0 +1,273 @@
+package pt.tecnico.uilib.text;
+
+import java.io.PrintStream;
+import java.util.List;
+
+import pt.tecnico.uilib.InteractionDriver;
+import pt.tecnico.uilib.TextWriter;
+import pt.tecnico.uilib.forms.Field;
+import pt.tecnico.uilib.forms.Form;
+import pt.tecnico.uilib.menus.Command;
+import pt.tecnico.uilib.menus.CommandException;
+import pt.tecnico.uilib.menus.DoOpenMenu;
+import pt.tecnico.uilib.menus.Menu;
+
+/**
+ * Replay back-end: answers menus and forms with the input of a past session,
+ * as written to the log channel by the text interaction, and measures the
+ * commands it performs.
+ *
+ * Menus and prompts are only written to the output if asked for, in which
+ * case the output is the same the text interaction wrote for the session.
+ * Input is given as fast as possible, or, if the log is time-stamped (see
+ * Properties.LOG_TIMES), optionally at the pace it was first given.
+ */
+public class ReplayInteraction implements InteractionDriver {
+
+  /** Observer of the commands performed. */
+  public interface Probe {
+
+    /**
+     * @param command the command performed.
+     * @param nanos   how long it took, without waiting for input.
+     * @param failed  whether it failed.
+     */
+    void performed(Command<?> command, long nanos, boolean failed);
+
+  }
+
+  /** Input lines. */
+  private String[] _lines;
+
+  /** When each line was given (ms since the start), or null. */
+  private long[] _times;
+
+  /** Index of the next line. */
+  private int _next;
+
+  /** Pace relative to the session's (0: as fast as possible). */
+  private double _speed;
+
+  /** Output channel. */
+  private PrintStream _out;
+
+  /** Write menus and prompts? */
+  private boolean _transcript;
+
+  /** Copy input to output? */
+  private boolean _writeInput;
+
+  /** Observer of the commands (may be null). */
+  private Probe _probe;
+
+  /** When the replay started (ns). */
+  private long _start;
+
+  /** Time spent waiting for input (ns). */
+  private long _waited;
+
+  /**
+   * @param log        the session's log.
+   * @param speed      pace relative to the session's, when the log is
+   *                   time-stamped (0: as fast as possible).
+   * @param out        output channel.
+   * @param transcript whether menus and prompts are written.
+   * @param probe      observer of the commands (may be null).
+   */
+  public ReplayInteraction(List<String> log, double speed, PrintStream out, boolean transcript, Probe probe) {
+    _lines = new String[log.size()];
+    if (isTimed(log))
+      _times = new long[log.size()];
+    for (int i = 0; i < _lines.length; i++) {
+      String line = log.get(i);
+      if (_times != null) {
+        int tab = line.indexOf('\t');
+        _times[i] = Long.parseLong(line.substring(0, tab));
+        line = line.substring(tab + 1);
+      }
+      _lines[i] = line;
+    }
+
+    _speed = speed;
+    _out = out;
+    _transcript = transcript;
+    _writeInput = Boolean.getBoolean(Properties.WRITE_INPUT);
+    _probe = probe;
+    _start = System.nanoTime();
+  }
+
+  /**
+   * @param log a session's log.
+   * @return whether its lines are time-stamped.
+   */
+  public static boolean isTimed(List<String> log) {
+    // Sessions start by choosing an option, which has no tabs
+    return !log.isEmpty() && log.get(0).matches("\\d+\t.*");
+  }
+
+  /** @return the number of lines read so far. */
+  public int position() {
+    return _next;
+  }
+
+  /** @return the time spent waiting for input (ns). */
+  public long waited() {
+    return _waited;
+  }
+
+  /** @see pt.tecnico.uilib.InteractionDriver#close() */
+  @Override
+  public void close() {
+    _out.flush();
+  }
+
+  /** @see pt.tecnico.uilib.InteractionDriver#open(pt.tecnico.uilib.menus.Menu) */
+  @Override
+  public void open(Menu menu) {
+    int option = 0, i;
+
+    while (true) {
+      if (_transcript) {
+        _out.println(menu.title());
+        for (i = 0; i < menu.size(); i++)
+          if (menu.entry(i).isValid())
+            _out.println((i + 1) + " - " + menu.entry(i).title()); //$NON-NLS-1$
+        _out.println(Prompt.exit());
+      }
+      i = menu.size();
+
+      try {
+        option = readInteger(Prompt.option());
+        if (option == 0)
+          return;
+
+        if (option < 0 || option > i || !menu.entry(option - 1).isValid()) {
+          _out.println(Message.invalidOption());
+        } else {
+          perform(menu.entry(option - 1));
+          if (menu.entry(option - 1).isLast())
+            return;
+        }
+      } catch (CommandException e) {
+        _out.println(menu.entry(option - 1).title() + ": " + e);
+      } catch (NumberFormatException e) {
+        _out.println(Message.errorInvalidNumber(e));
+      } catch (RuntimeEOFException e) {
+        _out.println(Message.errorREOF(e));
+        return;
+      }
+    }
+  }
+
+  /**
+   * Performs a command, telling the probe how it went. Opening a menu is not
+   * measured, as the commands in it are.
+   *
+   * @param command the command.
+   * @throws CommandException if the command fails.
+   */
+  private void perform(Command<?> command) throws CommandException {
+    if (_probe == null || command instanceof DoOpenMenu) {
+      command.performCommand();
+      return;
+    }
+
+    long waited = _waited;
+    long start = System.nanoTime();
+    boolean failed = true;
+    try {
+      command.performCommand();
+      failed = false;
+    } finally {
+      _probe.performed(command, System.nanoTime() - start - (_waited - waited), failed);
+    }
+  }
+
+  /** @see pt.tecnico.uilib.InteractionDriver#fill(pt.tecnico.uilib.forms.Form) */
+  @Override
+  public void fill(Form form) {
+    try {
+      for (Field<?> in : form.entries()) {
+        if (!in.isReadOnly()) {
+          while (!in.parse(readString(in.prompt())))
+            ;
+        } else if (_transcript) {
+          _out.println(in.prompt());
+        }
+      }
+    } catch (NumberFormatException e) {
+      _out.println(Message.errorInvalidNumber(e));
+    } catch (RuntimeEOFException e) {
+      _out.println(Message.errorREOF(e));
+    }
+  }
+
+  /** @see pt.tecnico.uilib.InteractionDriver#render(String, String) */
+  @Override
+  public void render(String title, String text) {
+    if (text.length() > 0)
+      _out.println(text);
+  }
+
+  /** @see pt.tecnico.uilib.InteractionDriver#render(String, TextWriter) */
+  @Override
+  public <E extends Exception> void render(String title, TextWriter<E> text) throws E {
+    text.write(_out);
+  }
+
+  /**
+   * @param prompt a prompt (may be null)
+   * @return the next line of the log.
+   */
+  private final String readString(String prompt) {
+    if (prompt != null && _transcript)
+      _out.print(prompt);
+
+    if (_next == _lines.length)
+      throw new RuntimeEOFException(Message.endOfInput());
+    if (_times != null && _speed > 0)
+      pace(_times[_next]);
+    String str = _lines[_next++];
+
+    if (_writeInput && _transcript)
+      _out.println(str);
+
+    return str;
+  }
+
+  /**
+   * Waits until a line is due.
+   *
+   * @param time when the line was given in the session (ms since the start).
+   */
+  private void pace(long time) {
+    long due = _start + (long) (time * 1000000 / _speed);
+    long now = System.nanoTime();
+    if (due <= now)
+      return;
+
+    try {
+      Thread.sleep((due - now) / 1000000, (int) ((due - now) % 1000000));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    _waited += System.nanoTime() - now;
+  }
+
+  /**
+   * Read an integer number from the input.
+   *
+   * @param prompt a prompt (may be null)
+   * @return the number read from the input.
+   */
+  private final int readInteger(String prompt) {
+    while (true) {
+      try {
+        return Integer.parseInt(readString(prompt));
+      } catch (NumberFormatException e) {
+        _out.println(Message.errorInvalidNumber(e));
+      }
+    }
+  }
+
+}
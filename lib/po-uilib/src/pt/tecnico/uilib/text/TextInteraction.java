@@ -10,6 +10,7 @@ import java.io.InputStreamReader;
 import java.io.PrintStream;
 
 import pt.tecnico.uilib.InteractionDriver;
+import pt.tecnico.uilib.TextWriter;
 import pt.tecnico.uilib.forms.Field;
 import pt.tecnico.uilib.forms.Form;
 import pt.tecnico.uilib.menus.CommandException;
@@ -32,6 +33,12 @@ public class TextInteraction implements InteractionDriver {
   /** Copy input to output? */
   private boolean _writeInput;
 
+  /** Time-stamp logged input? */
+  private boolean _logTimes;
+
+  /** When the interaction started (ns), for the time-stamps. */
+  private long _start = System.nanoTime();
+
   /**
    * Constructor (package).
    */
@@ -71,6 +78,7 @@ public class TextInteraction implements InteractionDriver {
     }
 
     _writeInput = Boolean.getBoolean(Properties.WRITE_INPUT);
+    _logTimes = Boolean.getBoolean(Properties.LOG_TIMES);
   }
 
   /** @see pt.tecnico.uilib.InteractionDriver#close() */
@@ -161,6 +169,12 @@ public class TextInteraction implements InteractionDriver {
       _out.println(text);
   }
 
+  /** @see pt.tecnico.uilib.InteractionDriver#render(String, TextWriter) */
+  @Override
+  public <E extends Exception> void render(String title, TextWriter<E> text) throws E {
+    text.write(_out);
+  }
+
   /**
    * @param prompt a prompt (may be null)
    * @return the string read from the input.
@@ -174,8 +188,11 @@ public class TextInteraction implements InteractionDriver {
     if (str == null)
       throw new RuntimeEOFException(Message.endOfInput());
 
-    if (_log != null)
+    if (_log != null) {
+      if (_logTimes)
+        _log.print((System.nanoTime() - _start) / 1000000 + "\t");
       _log.println(str);
+    }
 
     if (_writeInput)
       _out.println(str);